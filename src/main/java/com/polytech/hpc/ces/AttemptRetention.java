@@ -0,0 +1,45 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents how the execution attempts of a task are kept once they ended.
+ * @enum
+ * @author Nicolas
+ */
+public enum AttemptRetention {
+	FULL,      // Every execution attempt is kept in the task.
+	AGGREGATE, // Only the number of attempts and the wasted time are kept.
+	SPILL;     // Ended attempts are written to the execution trace, then dropped.
+	
+	/**
+	 * Gets the string representation of an attempt retention.
+	 * @param retention The input attempt retention.
+	 * @return a string representing the attempt retention.
+	 */
+	public static String toString(AttemptRetention retention) {
+		switch (retention) {
+		case FULL: return "full";
+		case AGGREGATE: return "aggregate";
+		case SPILL: return "spill";
+		default: return "?";
+		}
+	}
+}
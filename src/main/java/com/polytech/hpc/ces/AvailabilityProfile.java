@@ -0,0 +1,491 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.HashMap;
+
+/**
+ * Represents the resources used in the whole cluster over future time, as a skyline
+ * built from intervals of usage: the running execution attempts until their expected
+ * end, and the reservations of the waiting tasks.
+ * 
+ * The skyline is held as the steps of usage at the dates where it changes, i.e. the
+ * ends of the intervals, in a balanced search tree (a treap) keyed by date. Every node
+ * of the tree keeps, per dimension, the sum of the steps below it and the extrema of
+ * their prefix sums, so that adding or removing an interval updates two steps in
+ * O(log n), n being the number of intervals, and the earliest date at which a task
+ * fits is found by descending the tree from hole to hole. The memory used therefore
+ * depends on the number of intervals, not on how far in the future they end. The
+ * steps before the current date are folded into a single one as time goes by.
+ * @class
+ * @author Nicolas
+ */
+public class AvailabilityProfile {
+	/** The date returned by the searches of the tree which find no step. */
+	private static final long NONE = Long.MIN_VALUE;
+	
+	/** The total capacity of the available containers, per dimension. */
+	private long[] capacity;
+	
+	/** The date before which the steps are folded into the first one. */
+	private int floor;
+	
+	/** The root of the tree of steps, or null if the usage is always 0. */
+	private Step root;
+	
+	/** The state of the generator of the priorities of the tree nodes. */
+	private long priorities;
+	
+	/** The intervals of usage, by key. */
+	private HashMap<Object, Interval> intervals;
+	
+	/**
+	 * Creates a new empty profile, without capacity.
+	 * @constructor
+	 */
+	public AvailabilityProfile() {
+		capacity = new long[ResourceDimensions.getCount()];
+		floor = Simulator.getTime();
+		root = null;
+		priorities = 0x9E3779B97F4A7C15L;
+		intervals = new HashMap<Object, Interval>();
+	}
+	
+	/**
+	 * Adds the capacity of a container which becomes available.
+	 * @param resources The capacity of the container.
+	 */
+	public void addCapacity(ResourceDescriptor resources) {
+		for (int i = 0; i < capacity.length; i++) {
+			capacity[i] += resources.get(i);
+		}
+	}
+	
+	/**
+	 * Removes the capacity of a container which becomes unavailable.
+	 * @param resources The capacity of the container.
+	 */
+	public void removeCapacity(ResourceDescriptor resources) {
+		for (int i = 0; i < capacity.length; i++) {
+			capacity[i] -= resources.get(i);
+		}
+	}
+	
+	/**
+	 * Adds an interval of usage, e.g. a running execution attempt or a reservation.
+	 * @param key The key of the interval, by which it is released.
+	 * @param start The first date of the interval.
+	 * @param end The date after the last one of the interval.
+	 * @param resources The resources used during the interval.
+	 */
+	public void reserve(Object key, int start, int end, ResourceDescriptor resources) {
+		release(key, start);
+		Interval interval = new Interval(start, end, resources);
+		intervals.put(key, interval);
+		update(interval, 1);
+	}
+	
+	/**
+	 * Removes what remains of an interval of usage from a given date.
+	 * @param key The key of the interval.
+	 * @param from The date from which the resources are released.
+	 */
+	public void release(Object key, int from) {
+		Interval interval = intervals.remove(key);
+		if (interval != null) {
+			interval.start = Math.max(interval.start, from);
+			update(interval, -1);
+		}
+	}
+	
+	/**
+	 * Gets the number of intervals of usage.
+	 * @return the number of running attempts and reservations.
+	 */
+	public int getIntervalCount() {
+		return intervals.size();
+	}
+	
+	/**
+	 * Gets the number of steps of the skyline, which bounds the memory it uses.
+	 * @return the number of dates at which the usage changes.
+	 */
+	public int getStepCount() {
+		return root != null ? root.size : 0;
+	}
+	
+	/**
+	 * Gets the resources used at a given date. The past steps are folded as time goes
+	 * by, so that past dates are not accurate.
+	 * @param dimension The resource dimension.
+	 * @param date The date.
+	 * @return the amount of resource used.
+	 */
+	public long getUsage(int dimension, int date) {
+		long usage = 0;
+		Step node = root;
+		while (node != null) {
+			if (node.date <= date) {
+				usage += sum(node.left, dimension) + node.delta[dimension];
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return usage;
+	}
+	
+	/**
+	 * Gets the earliest date at which some resources are free during some time.
+	 * @param from The first date to consider.
+	 * @param duration The time during which the resources are needed.
+	 * @param resources The resources needed.
+	 * @return the earliest date, or -1 if the resources exceed the capacity.
+	 */
+	public int getEarliestStart(int from, int duration, ResourceDescriptor resources) {
+		for (int i = 0; i < capacity.length; i++) {
+			if (resources.get(i) > capacity[i]) {
+				return -1;
+			}
+		}
+		fold();
+		int start = Math.max(from, floor);
+		duration = Math.max(1, duration);
+		boolean fits = false;
+		while (!fits) {
+			fits = true;
+			for (int i = 0; i < capacity.length && fits; i++) {
+				if (resources.get(i) <= 0) {
+					continue;
+				}
+				long limit = capacity[i] - resources.get(i);
+				long above = getUsage(i, start) > limit ? start
+						: find(root, i, start, limit, true, 0);
+				if (above != NONE && above < (long) start + duration) {
+					// the next hole starts where the usage goes below the limit again
+					long below = find(root, i, above, limit, false, 0);
+					if (below == NONE) {
+						// only when the capacity was removed below the final usage
+						return -1;
+					}
+					start = (int) below;
+					fits = false;
+				}
+			}
+		}
+		return start;
+	}
+	
+	/**
+	 * Adds or removes an interval in the skyline.
+	 * @param interval The interval.
+	 * @param sign 1 to add the interval, -1 to remove it.
+	 */
+	private void update(Interval interval, int sign) {
+		if (interval.start >= interval.end) {
+			return;
+		}
+		fold();
+		long[] amounts = new long[capacity.length];
+		for (int i = 0; i < amounts.length; i++) {
+			amounts[i] = sign * (long) interval.resources.get(i);
+		}
+		addStep(interval.start, amounts);
+		for (int i = 0; i < amounts.length; i++) {
+			amounts[i] = -amounts[i];
+		}
+		addStep(interval.end, amounts);
+	}
+	
+	/**
+	 * Folds the steps before the current date into a single step at this date, the
+	 * usage before it not being needed anymore.
+	 */
+	private void fold() {
+		int now = Simulator.getTime();
+		if (now <= floor) {
+			return;
+		}
+		floor = now;
+		Step[] parts = split(root, (long) now + 1);
+		if (parts[0] == null) {
+			return;
+		}
+		Step folded = new Step(now, parts[0].sum.clone(), nextPriority());
+		root = merge(folded.isEmpty() ? null : folded, parts[1]);
+	}
+	
+	/**
+	 * Adds amounts to the step of usage at a date, a date before the folded ones being
+	 * accounted to the first step.
+	 * @param date The date of the step.
+	 * @param amounts The amounts to add, per dimension.
+	 */
+	private void addStep(int date, long[] amounts) {
+		date = Math.max(date, floor);
+		Step[] lower = split(root, date);
+		Step[] upper = split(lower[1], (long) date + 1);
+		Step step = upper[0];
+		if (step == null) {
+			step = new Step(date, amounts.clone(), nextPriority());
+		} else {
+			for (int i = 0; i < amounts.length; i++) {
+				step.delta[i] += amounts[i];
+			}
+			step.refresh();
+		}
+		root = merge(merge(lower[0], step.isEmpty() ? null : step), upper[1]);
+	}
+	
+	/**
+	 * Draws the priority of a new node of the tree, by a xorshift generator distinct
+	 * from the random generator of the simulation.
+	 * @return the priority.
+	 */
+	private int nextPriority() {
+		priorities ^= priorities << 13;
+		priorities ^= priorities >>> 7;
+		priorities ^= priorities << 17;
+		return (int) priorities;
+	}
+	
+	/**
+	 * Splits a tree by date.
+	 * @param node The root of the tree, or null.
+	 * @param date The date from which the steps go to the second tree.
+	 * @return the roots of the steps before the date and of the other ones.
+	 */
+	private static Step[] split(Step node, long date) {
+		if (node == null) {
+			return new Step[2];
+		}
+		Step[] parts;
+		if (node.date < date) {
+			parts = split(node.right, date);
+			node.right = parts[0];
+			parts[0] = node;
+		} else {
+			parts = split(node.left, date);
+			node.left = parts[1];
+			parts[1] = node;
+		}
+		node.refresh();
+		return parts;
+	}
+	
+	/**
+	 * Merges two trees, the steps of the first one being before those of the second.
+	 * @param first The root of the first tree, or null.
+	 * @param second The root of the second tree, or null.
+	 * @return the root of the merged tree.
+	 */
+	private static Step merge(Step first, Step second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			first.refresh();
+			return first;
+		}
+		second.left = merge(first, second.left);
+		second.refresh();
+		return second;
+	}
+	
+	/**
+	 * Finds the first step after a date at which the usage crosses a limit.
+	 * @param node The root of a subtree.
+	 * @param dimension The resource dimension.
+	 * @param after The date after which the step is searched.
+	 * @param limit The limit.
+	 * @param exceeds true to find a usage above the limit, false to find a usage at
+	 * most equal to it.
+	 * @param before The usage accumulated by the steps before the subtree.
+	 * @return the date of the step, or NONE if none.
+	 */
+	private static long find(Step node, int dimension, long after, long limit,
+			boolean exceeds, long before) {
+		if (node == null) {
+			return NONE;
+		}
+		if (node.date <= after) {
+			return find(node.right, dimension, after, limit, exceeds,
+					before + sum(node.left, dimension) + node.delta[dimension]);
+		}
+		long found = find(node.left, dimension, after, limit, exceeds, before);
+		if (found != NONE) {
+			return found;
+		}
+		long usage = before + sum(node.left, dimension) + node.delta[dimension];
+		if (exceeds ? usage > limit : usage <= limit) {
+			return node.date;
+		}
+		// the steps of the right subtree are all after the date
+		node = node.right;
+		while (node != null) {
+			long extreme = exceeds ? usage + node.maxPrefix[dimension]
+					: usage + node.minPrefix[dimension];
+			if (exceeds ? extreme <= limit : extreme > limit) {
+				return NONE;
+			}
+			Step left = node.left;
+			if (left != null && (exceeds ? usage + left.maxPrefix[dimension] > limit
+					: usage + left.minPrefix[dimension] <= limit)) {
+				node = left;
+				continue;
+			}
+			usage += sum(left, dimension) + node.delta[dimension];
+			if (exceeds ? usage > limit : usage <= limit) {
+				return node.date;
+			}
+			node = node.right;
+		}
+		return NONE;
+	}
+	
+	/**
+	 * Gets the sum of the steps of a subtree.
+	 * @param node The root of the subtree, or null.
+	 * @param dimension The resource dimension.
+	 * @return the sum of the steps, 0 for an empty subtree.
+	 */
+	private static long sum(Step node, int dimension) {
+		return node != null ? node.sum[dimension] : 0;
+	}
+	
+	/**
+	 * A step of usage of the skyline, node of the tree of steps.
+	 * @class
+	 */
+	private static class Step {
+		/** The date at which the usage changes. */
+		private final int date;
+		
+		/** The change of usage at the date, per dimension. */
+		private final long[] delta;
+		
+		/** The priority of the node, greater than those of its children. */
+		private final int priority;
+		
+		/** The subtree of the steps before the date, or null. */
+		private Step left;
+		
+		/** The subtree of the steps after the date, or null. */
+		private Step right;
+		
+		/** The number of steps of the subtree. */
+		private int size;
+		
+		/** The sum of the steps of the subtree, per dimension. */
+		private final long[] sum;
+		
+		/** The maximum prefix sum of the steps of the subtree, per dimension. */
+		private final long[] maxPrefix;
+		
+		/** The minimum prefix sum of the steps of the subtree, per dimension. */
+		private final long[] minPrefix;
+		
+		/**
+		 * Creates a new step, without subtrees.
+		 * @param date The date at which the usage changes.
+		 * @param delta The change of usage, per dimension.
+		 * @param priority The priority of the node.
+		 * @constructor
+		 */
+		Step(int date, long[] delta, int priority) {
+			this.date = date;
+			this.delta = delta;
+			this.priority = priority;
+			sum = new long[delta.length];
+			maxPrefix = new long[delta.length];
+			minPrefix = new long[delta.length];
+			refresh();
+		}
+		
+		/**
+		 * Returns whether the step does not change the usage.
+		 * @return true if the change is 0 in every dimension.
+		 */
+		boolean isEmpty() {
+			for (long amount : delta) {
+				if (amount != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Computes the size, the sums and the prefix extrema of the subtree again from
+		 * those of its children.
+		 */
+		void refresh() {
+			size = 1 + (left != null ? left.size : 0) + (right != null ? right.size : 0);
+			for (int i = 0; i < delta.length; i++) {
+				long usage = sum(left, i) + delta[i];
+				long max = usage;
+				long min = usage;
+				if (left != null) {
+					max = Math.max(max, left.maxPrefix[i]);
+					min = Math.min(min, left.minPrefix[i]);
+				}
+				if (right != null) {
+					max = Math.max(max, usage + right.maxPrefix[i]);
+					min = Math.min(min, usage + right.minPrefix[i]);
+				}
+				sum[i] = usage + sum(right, i);
+				maxPrefix[i] = max;
+				minPrefix[i] = min;
+			}
+		}
+	}
+	
+	/**
+	 * An interval of usage of the profile.
+	 * @class
+	 */
+	private static class Interval {
+		/** The first date of the interval. */
+		private int start;
+		
+		/** The date after the last one of the interval. */
+		private final int end;
+		
+		/** The resources used during the interval. */
+		private final ResourceDescriptor resources;
+		
+		/**
+		 * Creates a new interval.
+		 * @param start The first date of the interval.
+		 * @param end The date after the last one of the interval.
+		 * @param resources The resources used during the interval.
+		 * @constructor
+		 */
+		Interval(int start, int end, ResourceDescriptor resources) {
+			this.start = start;
+			this.end = end;
+			this.resources = resources;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents how the ready tasks which do not fit in the cluster hold resources back
+ * for later, so that smaller tasks are only backfilled into the holes left.
+ * @enum
+ * @author Nicolas
+ */
+public enum BackfillMode {
+	NONE,         // Ready tasks are started greedily, without reservation.
+	EASY,         // The first waiting task and the critical ones get a reservation.
+	CONSERVATIVE; // Every waiting task gets a reservation.
+	
+	/**
+	 * Gets the string representation of a backfilling mode.
+	 * @param mode The input backfilling mode.
+	 * @return a string representing the backfilling mode.
+	 */
+	public static String toString(BackfillMode mode) {
+		switch (mode) {
+		case NONE: return "none";
+		case EASY: return "easy";
+		case CONSERVATIVE: return "conservative";
+		default: return "?";
+		}
+	}
+}
@@ -33,6 +33,9 @@ import org.slf4j.LoggerFactory;
 public class Container {
 	private static final Logger LOGGER = LoggerFactory.getLogger(Container.class);
 	
+	/** The identifier of the container in the cluster. */
+	private int id;
+	
 	/** The cluster node on which the container is deployed. */
 	private int node;
 	
@@ -42,20 +45,42 @@ public class Container {
 	/** The list of tasks being executed on this container. */
 	private ArrayList<Task> tasks;
 	
+	/** The resources used by the tasks being executed, kept up to date. */
+	private ResourceDescriptor used;
+	
 	/** The time at which the container starts to be empty. */
 	private int emptyTime;
 	
+	/** Whether the container can run tasks, i.e. its node is up. */
+	private boolean available;
+	
+	/** The tracker of the tenant shares to keep up to date, if any. */
+	private TenantShareTracker shares;
+	
 	/**
 	 * Creates a new container.
+	 * @param id The identifier of the container in the cluster.
 	 * @param node The node on which the container is deployed.
 	 * @param capacity The resource capacity of the container.
 	 * @constructor
 	 */
-	public Container(int node, ResourceDescriptor capacity) {
+	public Container(int id, int node, ResourceDescriptor capacity) {
+		this.id = id;
 		this.node = node;
 		this.capacity = capacity;
 		tasks = new ArrayList<Task>();
+		used = new ResourceDescriptor();
 		emptyTime = 0;
+		available = true;
+		shares = null;
+	}
+	
+	/**
+	 * Gets the identifier of the container in the cluster.
+	 * @return the identifier of the container.
+	 */
+	public int getId() {
+		return id;
 	}
 	
 	/**
@@ -79,11 +104,7 @@ public class Container {
 	 * @return the resource used by the container.
 	 */
 	public ResourceDescriptor getResourcesUsed() {
-		ResourceDescriptor res = new ResourceDescriptor();
-		for (Task t : tasks) {
-			res.add(t.getResources());
-		}
-		return res;
+		return new ResourceDescriptor(used);
 	}
 	
 	/**
@@ -92,12 +113,44 @@ public class Container {
 	 */
 	public ResourceDescriptor getResourcesAvail() {
 		ResourceDescriptor res = new ResourceDescriptor(capacity);
-		for (Task t : tasks) {
-			res.subtract(t.getResources());
-		}
+		res.subtract(used);
 		return res;
 	}
 	
+	/**
+	 * Returns whether the container has enough available resources to run a task.
+	 * @param task The task to run.
+	 * @return true if the container is available and the task fits in it.
+	 */
+	public boolean canRun(Task task) {
+		return available
+				&& ResourceDescriptor.fits(capacity, used, task.getRequiredResources());
+	}
+	
+	/**
+	 * Sets whether the container can run tasks.
+	 * @param available Whether the node of the container is up.
+	 */
+	void setAvailable(boolean available) {
+		this.available = available;
+	}
+	
+	/**
+	 * Returns whether the container can run tasks.
+	 * @return false if the node of the container failed.
+	 */
+	public boolean isAvailable() {
+		return available;
+	}
+	
+	/**
+	 * Sets the tracker of the tenant shares updated when tasks are added or removed.
+	 * @param shares The tracker of the tenant shares, or null.
+	 */
+	public void setShareTracker(TenantShareTracker shares) {
+		this.shares = shares;
+	}
+	
 	public ArrayList<Task> getTasks() {
 		return tasks;
 	}
@@ -113,9 +166,39 @@ public class Container {
 	/**
 	 * Adds a task to be executed on the container.
 	 * @param task The task to execute.
+	 * @return false if the task does not fit in the resources left.
 	 */
-	public void addTask(Task task) {
+	public boolean addTask(Task task) {
+		if (!canRun(task)) {
+			LOGGER.error("Attempt to run task {} on container {} which has {} left",
+					task.getName(), id, getResourcesAvail());
+			return false;
+		}
 		tasks.add(task);
+		used.add(task.getRequiredResources());
+		if (shares != null) {
+			shares.onTaskAdded(task);
+		}
+		return true;
+	}
+	
+	/**
+	 * Reserves the resources of a task which is not run by the container, so that the
+	 * container is not chosen for more tasks than it can run. Reservations are made by
+	 * the all-or-nothing placement of a gang, until its tasks are added, and by the
+	 * teardown of the container of a preempted task, until it is over.
+	 * @param task The task whose resources are reserved.
+	 */
+	void reserve(Task task) {
+		used.add(task.getRequiredResources());
+	}
+	
+	/**
+	 * Cancels the reservation of the resources of a task.
+	 * @param task The task whose resources were reserved.
+	 */
+	void cancelReservation(Task task) {
+		used.subtract(task.getRequiredResources());
 	}
 	
 	/**
@@ -123,7 +206,15 @@ public class Container {
 	 * @param task The task to remove.
 	 */
 	public void removeTask(Task task) {
-		tasks.remove(task);
+		if (!tasks.remove(task)) {
+			LOGGER.error("Attempt to remove task {} which is not run by container {}",
+					task.getName(), id);
+			return;
+		}
+		used.subtract(task.getRequiredResources());
+		if (shares != null) {
+			shares.onTaskRemoved(task);
+		}
 		if (isEmpty()) {
 			emptyTime = Simulator.getTime();
 		}
@@ -0,0 +1,59 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the date at which the container of a preempted execution attempt is torn
+ * down and releases the resources of the attempt.
+ * @class
+ * @author Nicolas
+ */
+public class ContainerTeardownEvent extends Event {
+	/** The preempted execution attempt. */
+	private TaskExecutionRecord attempt;
+	
+	/**
+	 * Creates a new container teardown event.
+	 * @param time The date at which the container is torn down.
+	 * @param attempt The preempted execution attempt.
+	 * @constructor
+	 */
+	public ContainerTeardownEvent(int time, TaskExecutionRecord attempt) {
+		super(time);
+		this.attempt = attempt;
+	}
+	
+	/**
+	 * Releases the resources held by the preempted execution attempt.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		simulator.endTeardown(attempt);
+	}
+	
+	/**
+	 * Gets the preempted execution attempt.
+	 * @return the execution attempt.
+	 */
+	public TaskExecutionRecord getAttempt() {
+		return attempt;
+	}
+}
@@ -0,0 +1,224 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Estimates the remaining length of the critical path of a task DAG.
+ * The bottom level of a task, i.e. the length of the longest path from its start to
+ * the end of the DAG, is the makespan minus its maximum starting date. The remaining
+ * critical path starts from a ready or running task: a ready task cannot end its path
+ * before its bottom level from now, a running task before its starting date plus its
+ * bottom level. Both bounds are kept in multisets whose maxima are cached, so that the
+ * estimate is read in constant time and updated in logarithmic time as tasks start,
+ * finish or are preempted.
+ * @class
+ * @author Nicolas
+ */
+public class CriticalPathEstimator {
+	/** The bottom levels of the ready tasks, with their multiplicity. */
+	private TreeMap<Integer, Integer> readyBottomLevels;
+	
+	/** The completion bounds of the running tasks, with their multiplicity. */
+	private TreeMap<Integer, Integer> runningCompletions;
+	
+	/** The greatest bottom level of the ready tasks. */
+	private int maxReadyBottomLevel;
+	
+	/** The greatest completion bound of the running tasks. */
+	private int maxRunningCompletion;
+	
+	/**
+	 * Creates a new estimator with no ready nor running task.
+	 * @constructor
+	 */
+	public CriticalPathEstimator() {
+		readyBottomLevels = new TreeMap<Integer, Integer>();
+		runningCompletions = new TreeMap<Integer, Integer>();
+		maxReadyBottomLevel = 0;
+		maxRunningCompletion = Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * Gets the bottom level of a task, derived from its maximum starting date.
+	 * @param task The task.
+	 * @return the length of the longest path from the start of the task to the end of
+	 * its DAG.
+	 */
+	public static int getBottomLevel(Task task) {
+		return task.getDAG().getMakespan()
+				- task.getExecutionContext().getMaxStartDate();
+	}
+	
+	/**
+	 * Rebuilds the estimate from the status of the tasks of a DAG.
+	 * @param tasks The tasks of the DAG.
+	 */
+	public void rebuild(List<Task> tasks) {
+		readyBottomLevels.clear();
+		runningCompletions.clear();
+		for (Task task : tasks) {
+			TaskExecutionContext context = task.getExecutionContext();
+			if (context.getStatus() == TaskStatus.READY) {
+				add(readyBottomLevels, getBottomLevel(task));
+			} else if (context.getStatus() == TaskStatus.RUNNING
+					&& context.getAttempt() != null) {
+				add(runningCompletions, context.getAttempt().getStartDate()
+						+ getBottomLevel(task));
+			}
+		}
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a task which became ready.
+	 * @param task The ready task.
+	 */
+	public void addReady(Task task) {
+		add(readyBottomLevels, getBottomLevel(task));
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a ready task which waits for a parent task again.
+	 * @param task The task which is not ready anymore.
+	 */
+	public void removeReady(Task task) {
+		remove(readyBottomLevels, getBottomLevel(task));
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a ready task which started to run.
+	 * @param task The task.
+	 * @param startDate The starting date of its execution attempt.
+	 */
+	public void start(Task task, int startDate) {
+		int bottomLevel = getBottomLevel(task);
+		remove(readyBottomLevels, bottomLevel);
+		add(runningCompletions, startDate + bottomLevel);
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a running task which was preempted and became ready again.
+	 * @param task The task.
+	 * @param startDate The starting date of its preempted execution attempt.
+	 */
+	public void preempt(Task task, int startDate) {
+		int bottomLevel = getBottomLevel(task);
+		remove(runningCompletions, startDate + bottomLevel);
+		add(readyBottomLevels, bottomLevel);
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a running task which finished.
+	 * @param task The task.
+	 * @param startDate The starting date of its execution attempt.
+	 */
+	public void finish(Task task, int startDate) {
+		remove(runningCompletions, startDate + getBottomLevel(task));
+		refresh();
+	}
+	
+	/**
+	 * Accounts for a task whose bottom level changed with the duration or the edges of
+	 * a task it leads to.
+	 * @param task The task.
+	 * @param oldBottomLevel The bottom level of the task before the change.
+	 * @param newBottomLevel The bottom level of the task after the change.
+	 */
+	public void updateBottomLevel(Task task, int oldBottomLevel, int newBottomLevel) {
+		TaskExecutionContext context = task.getExecutionContext();
+		if (context.getStatus() == TaskStatus.READY) {
+			remove(readyBottomLevels, oldBottomLevel);
+			add(readyBottomLevels, newBottomLevel);
+		} else if (context.getStatus() == TaskStatus.RUNNING
+				&& context.getAttempt() != null) {
+			int startDate = context.getAttempt().getStartDate();
+			remove(runningCompletions, startDate + oldBottomLevel);
+			add(runningCompletions, startDate + newBottomLevel);
+		} else {
+			return;
+		}
+		refresh();
+	}
+	
+	/**
+	 * Gets the estimated remaining length of the critical path.
+	 * @param now The current date.
+	 * @return the remaining makespan of the DAG from now, assuming enough resources.
+	 */
+	public int getRemainingMakespan(int now) {
+		int remaining = maxReadyBottomLevel;
+		if (maxRunningCompletion != Integer.MIN_VALUE) {
+			remaining = Math.max(remaining, maxRunningCompletion - now);
+		}
+		return Math.max(remaining, 0);
+	}
+	
+	/**
+	 * Gets the delay of the DAG if a running task was preempted now.
+	 * The preempted task cannot end its path before its bottom level from now.
+	 * @param task The running task.
+	 * @param now The current date.
+	 * @return the increase of the remaining makespan of the DAG.
+	 */
+	public int getPreemptionDelay(Task task, int now) {
+		return Math.max(0, getBottomLevel(task) - getRemainingMakespan(now));
+	}
+	
+	/**
+	 * Adds a value to a multiset.
+	 */
+	private static void add(TreeMap<Integer, Integer> multiset, int value) {
+		Integer count = multiset.get(value);
+		multiset.put(value, count == null ? 1 : count + 1);
+	}
+	
+	/**
+	 * Removes a value from a multiset.
+	 */
+	private static void remove(TreeMap<Integer, Integer> multiset, int value) {
+		Integer count = multiset.get(value);
+		if (count == null) {
+			return;
+		}
+		if (count == 1) {
+			multiset.remove(value);
+		} else {
+			multiset.put(value, count - 1);
+		}
+	}
+	
+	/**
+	 * Refreshes the cached maxima of the multisets.
+	 */
+	private void refresh() {
+		Map.Entry<Integer, Integer> last = readyBottomLevels.lastEntry();
+		maxReadyBottomLevel = last != null ? last.getKey() : 0;
+		last = runningCompletions.lastEntry();
+		maxRunningCompletion = last != null ? last.getKey() : Integer.MIN_VALUE;
+	}
+}
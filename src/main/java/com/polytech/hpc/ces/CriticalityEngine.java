@@ -0,0 +1,417 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memoises the criticality of the tasks of a task DAG.
+ * The top level of a task is the length of the longest path from a root task to its
+ * start, i.e. its minimum starting date, and its bottom level, or upward rank, the
+ * length of the longest path from its start to the end of the DAG. Both are kept per
+ * task, with the length of the longest path through every task in a multiset whose
+ * maximum is the makespan. When the duration or the edges of a task change, the top
+ * levels are recomputed downward and the bottom levels upward from it in topological
+ * order, stopping on every path whose levels do not change. The execution contexts
+ * are then rewritten for the tasks whose levels changed only, or for all of them if
+ * the makespan changed since the priorities are normalised by it.
+ * @class
+ * @author Nicolas
+ */
+public class CriticalityEngine {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CriticalityEngine.class);
+	
+	/** The estimator of the remaining critical path, told about bottom level changes. */
+	private final CriticalPathEstimator criticalPath;
+	
+	/** The tasks of the DAG, indexed by identifier. */
+	private List<Task> tasks;
+	
+	/** The top level of every task. */
+	private int[] topLevels;
+	
+	/** The bottom level of every task. */
+	private int[] bottomLevels;
+	
+	/** The position of every task in the topological order, or MAX_VALUE in a cycle. */
+	private int[] ranks;
+	
+	/** The lengths of the longest paths through the tasks, with their multiplicity. */
+	private TreeMap<Integer, Integer> pathLengths;
+	
+	/** The length of the critical path of the DAG. */
+	private int makespan;
+	
+	/** Whether the DAG had no cycle when it was last rebuilt. */
+	private boolean acyclic;
+	
+	/** The weight of the downstream work in the priority, between 0 and 1. */
+	private double downstreamWeight;
+	
+	/** The number of tasks whose levels were recomputed by the last change. */
+	private int recomputedCount;
+	
+	/**
+	 * Creates a new engine for an empty DAG.
+	 * @param criticalPath The estimator of the remaining critical path of the DAG.
+	 * @constructor
+	 */
+	public CriticalityEngine(CriticalPathEstimator criticalPath) {
+		this.criticalPath = criticalPath;
+		tasks = Collections.emptyList();
+		topLevels = new int[0];
+		bottomLevels = new int[0];
+		ranks = new int[0];
+		pathLengths = new TreeMap<Integer, Integer>();
+		makespan = 0;
+		acyclic = true;
+		downstreamWeight = 0.0;
+		recomputedCount = 0;
+	}
+	
+	/**
+	 * Recomputes the levels of all the tasks and rewrites their execution contexts.
+	 * @param tasks The tasks of the DAG, indexed by identifier.
+	 * @param order The tasks of the DAG which are not in a cycle, in topological order.
+	 */
+	public void rebuild(List<Task> tasks, List<Task> order) {
+		this.tasks = tasks;
+		topLevels = new int[tasks.size()];
+		bottomLevels = new int[tasks.size()];
+		ranks = new int[tasks.size()];
+		Arrays.fill(ranks, Integer.MAX_VALUE);
+		pathLengths.clear();
+		acyclic = order.size() == tasks.size();
+		for (int i = 0; i < order.size(); i++) {
+			Task task = order.get(i);
+			ranks[task.getId()] = i;
+			topLevels[task.getId()] = computeTopLevel(task);
+		}
+		for (int i = order.size() - 1; i >= 0; i--) {
+			Task task = order.get(i);
+			bottomLevels[task.getId()] = computeBottomLevel(task);
+			add(pathLengths, getPathLength(task));
+		}
+		makespan = getLongestPathLength();
+		for (Task task : order) {
+			refresh(task);
+		}
+		recomputedCount = order.size();
+	}
+	
+	/**
+	 * Returns whether an edge keeps the current topological order, so that the levels
+	 * may be updated incrementally once it is added.
+	 * @param parent The parent task of the edge.
+	 * @param child The child task of the edge.
+	 * @return true if the parent comes before the child in the topological order.
+	 */
+	public boolean isOrdered(Task parent, Task child) {
+		return isTracked(parent) && isTracked(child)
+				&& ranks[parent.getId()] < ranks[child.getId()];
+	}
+	
+	/**
+	 * Updates the levels after the duration, the parents or the children of a task
+	 * changed. Removing an edge or changing a duration never breaks the topological
+	 * order, whereas an added edge must be checked with isOrdered first.
+	 * @param task The modified task.
+	 * @param downward Whether the top levels of the task and its descendants may
+	 * have changed.
+	 * @param upward Whether the bottom levels of the task and its ancestors may have
+	 * changed.
+	 * @return false if the task is not tracked or the DAG has a cycle, in which case
+	 * the levels must be rebuilt.
+	 */
+	public boolean invalidate(Task task, boolean downward, boolean upward) {
+		if (!isTracked(task)) {
+			return false;
+		}
+		recomputedCount = 0;
+		int oldMakespan = makespan;
+		// bottom levels of the tasks whose levels changed, before the change
+		LinkedHashMap<Task, Integer> changed = new LinkedHashMap<Task, Integer>();
+		if (downward) {
+			PriorityQueue<Task> queue = new PriorityQueue<Task>(11, getRankOrder(1));
+			HashSet<Task> queued = new HashSet<Task>();
+			queue.add(task);
+			queued.add(task);
+			while (!queue.isEmpty()) {
+				Task current = queue.poll();
+				int topLevel = computeTopLevel(current);
+				recomputedCount++;
+				if (topLevel != topLevels[current.getId()]) {
+					remove(pathLengths, getPathLength(current));
+					topLevels[current.getId()] = topLevel;
+					add(pathLengths, getPathLength(current));
+					markChanged(changed, current);
+				} else if (current != task) {
+					continue;
+				}
+				// the children of the task depend on its duration even if its top level
+				// did not change
+				for (Task child : current.getChildTasks()) {
+					if (queued.add(child)) {
+						queue.add(child);
+					}
+				}
+			}
+		}
+		if (upward) {
+			PriorityQueue<Task> queue = new PriorityQueue<Task>(11, getRankOrder(-1));
+			HashSet<Task> queued = new HashSet<Task>();
+			queue.add(task);
+			queued.add(task);
+			while (!queue.isEmpty()) {
+				Task current = queue.poll();
+				int bottomLevel = computeBottomLevel(current);
+				recomputedCount++;
+				if (bottomLevel == bottomLevels[current.getId()]) {
+					continue;
+				}
+				markChanged(changed, current);
+				remove(pathLengths, getPathLength(current));
+				bottomLevels[current.getId()] = bottomLevel;
+				add(pathLengths, getPathLength(current));
+				for (Task parent : current.getParentTasks()) {
+					if (queued.add(parent)) {
+						queue.add(parent);
+					}
+				}
+			}
+		}
+		makespan = getLongestPathLength();
+		if (makespan != oldMakespan) {
+			for (Task other : tasks) {
+				refresh(other);
+			}
+		} else {
+			for (Task other : changed.keySet()) {
+				refresh(other);
+			}
+		}
+		for (Map.Entry<Task, Integer> entry : changed.entrySet()) {
+			int bottomLevel = bottomLevels[entry.getKey().getId()];
+			if (bottomLevel != entry.getValue()) {
+				criticalPath.updateBottomLevel(entry.getKey(), entry.getValue(),
+						bottomLevel);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets the weight of the downstream work in the priority of the tasks.
+	 * With a weight of 0, the priority of a task only decreases with its slack; with a
+	 * weight of 1, it is its bottom level relative to the makespan.
+	 * @param downstreamWeight The weight, between 0 and 1.
+	 */
+	public void setDownstreamWeight(double downstreamWeight) {
+		if (downstreamWeight < 0.0 || downstreamWeight > 1.0) {
+			LOGGER.error("Attempt to set an invalid downstream weight ({})",
+					downstreamWeight);
+			return;
+		}
+		this.downstreamWeight = downstreamWeight;
+		for (Task task : tasks) {
+			refresh(task);
+		}
+	}
+	
+	/**
+	 * Gets the weight of the downstream work in the priority of the tasks.
+	 * @return the weight, between 0 and 1.
+	 */
+	public double getDownstreamWeight() {
+		return downstreamWeight;
+	}
+	
+	/**
+	 * Gets the length of the critical path of the DAG.
+	 * @return the makespan of the DAG.
+	 */
+	public int getMakespan() {
+		return makespan;
+	}
+	
+	/**
+	 * Gets the top level of a task.
+	 * @param task The task.
+	 * @return the length of the longest path from a root task to the start of the task.
+	 */
+	public int getTopLevel(Task task) {
+		return topLevels[task.getId()];
+	}
+	
+	/**
+	 * Gets the bottom level of a task.
+	 * @param task The task.
+	 * @return the length of the longest path from the start of the task to the end of
+	 * the DAG.
+	 */
+	public int getBottomLevel(Task task) {
+		return bottomLevels[task.getId()];
+	}
+	
+	/**
+	 * Gets the slack of a task.
+	 * @param task The task.
+	 * @return the time by which the task may be delayed without delaying the DAG.
+	 */
+	public int getSlack(Task task) {
+		return makespan - getPathLength(task);
+	}
+	
+	/**
+	 * Gets the priority of a task, a weighted mean of one minus its slack and of its
+	 * bottom level, both relative to the makespan.
+	 * @param task The task.
+	 * @return the priority of the task, between 0 and 1.
+	 */
+	public double getPriority(Task task) {
+		if (makespan <= 0) {
+			return 1.0;
+		}
+		return ((1.0 - downstreamWeight) * getPathLength(task)
+				+ downstreamWeight * bottomLevels[task.getId()]) / makespan;
+	}
+	
+	/**
+	 * Gets the number of tasks whose levels were recomputed by the last change.
+	 * @return the number of recomputed tasks.
+	 */
+	public int getRecomputedCount() {
+		return recomputedCount;
+	}
+	
+	/**
+	 * Returns whether the levels of a task are kept and may be updated incrementally.
+	 */
+	private boolean isTracked(Task task) {
+		int id = task.getId();
+		return acyclic && tasks.size() == ranks.length && id >= 0 && id < ranks.length
+				&& tasks.get(id) == task;
+	}
+	
+	/**
+	 * Computes the top level of a task from the levels of its parents.
+	 */
+	private int computeTopLevel(Task task) {
+		int topLevel = 0;
+		for (Task parent : task.getParentTasks()) {
+			topLevel = Math.max(topLevel, topLevels[parent.getId()] + parent.getDuration());
+		}
+		return topLevel;
+	}
+	
+	/**
+	 * Computes the bottom level of a task from the levels of its children.
+	 */
+	private int computeBottomLevel(Task task) {
+		int bottomLevel = 0;
+		for (Task child : task.getChildTasks()) {
+			bottomLevel = Math.max(bottomLevel, bottomLevels[child.getId()]);
+		}
+		return bottomLevel + task.getDuration();
+	}
+	
+	/**
+	 * Gets the length of the longest path through a task.
+	 */
+	private int getPathLength(Task task) {
+		return topLevels[task.getId()] + bottomLevels[task.getId()];
+	}
+	
+	/**
+	 * Gets the length of the longest path through any task.
+	 */
+	private int getLongestPathLength() {
+		return pathLengths.isEmpty() ? 0 : pathLengths.lastKey();
+	}
+	
+	/**
+	 * Rewrites the starting dates and the priority of a task from its levels.
+	 */
+	private void refresh(Task task) {
+		if (ranks[task.getId()] == Integer.MAX_VALUE) {
+			return;
+		}
+		TaskExecutionContext context = task.getExecutionContext();
+		context.setStartDates(topLevels[task.getId()],
+				makespan - bottomLevels[task.getId()]);
+		context.setPriority(getPriority(task));
+	}
+	
+	/**
+	 * Records the bottom level of a task before its first change.
+	 */
+	private void markChanged(Map<Task, Integer> changed, Task task) {
+		if (!changed.containsKey(task)) {
+			changed.put(task, bottomLevels[task.getId()]);
+		}
+	}
+	
+	/**
+	 * Gets the order of the tasks by topological rank.
+	 * @param direction 1 for the topological order, -1 for the reverse order.
+	 */
+	private Comparator<Task> getRankOrder(final int direction) {
+		return new Comparator<Task>() {
+			@Override
+			public int compare(Task t1, Task t2) {
+				return direction * Integer.compare(ranks[t1.getId()], ranks[t2.getId()]);
+			}
+		};
+	}
+	
+	/**
+	 * Adds a value to a multiset.
+	 */
+	private static void add(TreeMap<Integer, Integer> multiset, int value) {
+		Integer count = multiset.get(value);
+		multiset.put(value, count == null ? 1 : count + 1);
+	}
+	
+	/**
+	 * Removes a value from a multiset.
+	 */
+	private static void remove(TreeMap<Integer, Integer> multiset, int value) {
+		Integer count = multiset.get(value);
+		if (count == null) {
+			return;
+		}
+		if (count == 1) {
+			multiset.remove(value);
+		} else {
+			multiset.put(value, count - 1);
+		}
+	}
+}
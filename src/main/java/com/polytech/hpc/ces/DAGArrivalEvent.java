@@ -0,0 +1,58 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the arrival of a task DAG in the simulation.
+ * @class
+ * @author Nicolas
+ */
+public class DAGArrivalEvent extends Event {
+	/** The task DAG which arrives. */
+	private TaskDAG dag;
+	
+	/**
+	 * Creates a new task DAG arrival event.
+	 * @param time The date at which the task DAG arrives.
+	 * @param dag The task DAG which arrives.
+	 * @constructor
+	 */
+	public DAGArrivalEvent(int time, TaskDAG dag) {
+		super(time);
+		this.dag = dag;
+	}
+	
+	/**
+	 * Adds the task DAG to the simulation.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		simulator.addDAG(dag);
+	}
+	
+	/**
+	 * Gets the task DAG which arrives.
+	 * @return the task DAG.
+	 */
+	public TaskDAG getDAG() {
+		return dag;
+	}
+}
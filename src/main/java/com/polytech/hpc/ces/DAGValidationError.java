@@ -0,0 +1,51 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the errors found by the validation of a task DAG before it is loaded.
+ * @enum
+ * @author Nicolas
+ */
+public enum DAGValidationError {
+	INVALID_TASK,      // A task misses its name, duration or required resources.
+	DUPLICATE_NAME,    // Several tasks have the same name.
+	DANGLING_PARENT,   // A task names a parent which is not in the DAG.
+	CYCLE,             // Some tasks depend on themselves and can never be ready.
+	OVERSIZED_REQUEST, // A task requires more resources than any node has.
+	GANG_DEPENDENCY;   // A task depends on a task of its gang, which cannot start.
+	
+	/**
+	 * Gets the string representation of a validation error.
+	 * @param error The input validation error.
+	 * @return a string representing the validation error.
+	 */
+	public static String toString(DAGValidationError error) {
+		switch (error) {
+		case INVALID_TASK: return "invalid task";
+		case DUPLICATE_NAME: return "duplicate name";
+		case DANGLING_PARENT: return "dangling parent";
+		case CYCLE: return "cycle";
+		case OVERSIZED_REQUEST: return "oversized request";
+		case GANG_DEPENDENCY: return "gang dependency";
+		default: return "?";
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the errors found by the validation of a task DAG. Every error is counted,
+ * whereas only the first messages of each kind of error are kept, so that the report
+ * of a huge invalid DAG stays small.
+ * @class
+ * @author Nicolas
+ */
+public class DAGValidationReport {
+	/** The number of messages kept for each kind of error. */
+	public static final int MAX_MESSAGES = 20;
+	
+	/** The name of the validated task DAG, or null if it has none. */
+	private String dagName;
+	
+	/** The number of errors of each kind. */
+	private int[] counts;
+	
+	/** The messages kept, in the order the errors were found. */
+	private ArrayList<String> messages;
+	
+	/**
+	 * Creates a new report without error.
+	 * @param dagName The name of the validated task DAG, or null if it has none.
+	 * @constructor
+	 */
+	public DAGValidationReport(String dagName) {
+		this.dagName = dagName;
+		counts = new int[DAGValidationError.values().length];
+		messages = new ArrayList<String>();
+	}
+	
+	/**
+	 * Adds an error to the report.
+	 * @param error The kind of error.
+	 * @param message The description of the error.
+	 */
+	public void add(DAGValidationError error, String message) {
+		if (counts[error.ordinal()]++ < MAX_MESSAGES) {
+			messages.add(DAGValidationError.toString(error) + ": " + message);
+		}
+	}
+	
+	/**
+	 * Returns whether the task DAG has no error.
+	 * @return true if the task DAG is valid.
+	 */
+	public boolean isValid() {
+		for (int count : counts) {
+			if (count > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the number of errors of a kind.
+	 * @param error The kind of error.
+	 * @return the number of errors found.
+	 */
+	public int getCount(DAGValidationError error) {
+		return counts[error.ordinal()];
+	}
+	
+	/**
+	 * Gets the messages kept, at most MAX_MESSAGES per kind of error.
+	 * @return the descriptions of the errors.
+	 */
+	public List<String> getMessages() {
+		return messages;
+	}
+	
+	/**
+	 * Gets the name of the validated task DAG.
+	 * @return the name of the task DAG, or null if it has none.
+	 */
+	public String getDAGName() {
+		return dagName;
+	}
+	
+	/**
+	 * Returns the string representation of the report, with the number of errors of
+	 * each kind followed by the messages kept.
+	 * @return a string representing the report.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("DAG ").append(dagName);
+		if (isValid()) {
+			return builder.append(" is valid").toString();
+		}
+		String separator = ": ";
+		for (DAGValidationError error : DAGValidationError.values()) {
+			if (counts[error.ordinal()] > 0) {
+				builder.append(separator).append(counts[error.ordinal()]).append(' ')
+						.append(DAGValidationError.toString(error));
+				separator = ", ";
+			}
+		}
+		for (String message : messages) {
+			builder.append("\n\t").append(message);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,185 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the scheduling decisions of a simulation so that it can be replayed.
+ * Every placement, preemption and random draw is written along with the date of the
+ * event it belongs to. The log starts with its magic number, version and the seed of
+ * the simulation; entries are a type byte, the date as a variable-length delta from
+ * the previous entry, then the fields of the entry as variable-length ints (or the
+ * bits of the drawn double).
+ * @see DecisionReplay
+ * @class
+ * @author Nicolas
+ */
+public class DecisionLog {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DecisionLog.class);
+	
+	/** The magic number of decision logs ("CESL"). */
+	static final int MAGIC = 0x4345534C;
+	
+	/** The version of the decision log format. */
+	static final int VERSION = 1;
+	
+	/** A task was placed in a container: DAG, task and container identifiers. */
+	static final byte PLACEMENT = 1;
+	
+	/** A running task was preempted: DAG and task identifiers. */
+	static final byte PREEMPTION = 2;
+	
+	/** A number was drawn while processing an event: the drawn double. */
+	static final byte EVENT_DRAW = 3;
+	
+	/** A number was drawn by the scheduling policies: the drawn double. */
+	static final byte POLICY_DRAW = 4;
+	
+	/** The log file. */
+	private File file;
+	
+	/** The output stream of the log. */
+	private DataOutputStream out;
+	
+	/** The date of the last entry. */
+	private int lastTime;
+	
+	/**
+	 * Creates a new decision log.
+	 * @param file The log file.
+	 * @param seed The seed of the simulation.
+	 * @throws IOException if the log file cannot be created.
+	 * @constructor
+	 */
+	public DecisionLog(File file, long seed) throws IOException {
+		this.file = file;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+		lastTime = 0;
+	}
+	
+	/**
+	 * Records the placement of a task.
+	 * @param attempt The execution attempt created by the placement.
+	 */
+	public void logPlacement(TaskExecutionRecord attempt) {
+		Task task = attempt.getTask();
+		try {
+			writeHeader(PLACEMENT, attempt.getStartDate());
+			writeVarInt(task.getDAG().getId());
+			writeVarInt(task.getId());
+			writeVarInt(attempt.getContainer().getId());
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Records the preemption of a task.
+	 * @param attempt The execution attempt which was preempted.
+	 */
+	public void logPreemption(TaskExecutionRecord attempt) {
+		Task task = attempt.getTask();
+		try {
+			writeHeader(PREEMPTION, attempt.getEndDate());
+			writeVarInt(task.getDAG().getId());
+			writeVarInt(task.getId());
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Records a random draw.
+	 * @param time The date of the draw.
+	 * @param value The drawn number.
+	 * @param policy Whether the number was drawn by the scheduling policies.
+	 */
+	public void logDraw(int time, double value, boolean policy) {
+		try {
+			writeHeader(policy ? POLICY_DRAW : EVENT_DRAW, time);
+			out.writeLong(Double.doubleToLongBits(value));
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Closes the log.
+	 */
+	public void close() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close decision log {}: {}", file, e.getMessage());
+		}
+		out = null;
+	}
+	
+	/**
+	 * Writes the type and date of an entry.
+	 * @param type The type of the entry.
+	 * @param time The date of the entry.
+	 * @throws IOException if the entry cannot be written.
+	 */
+	private void writeHeader(byte type, int time) throws IOException {
+		if (out == null) {
+			throw new IOException("the log is closed");
+		}
+		out.writeByte(type);
+		writeVarInt(time - lastTime);
+		lastTime = time;
+	}
+	
+	/**
+	 * Writes a non-negative int on as few bytes as possible, 7 bits per byte.
+	 * @param value The value to write.
+	 * @throws IOException if the value cannot be written.
+	 */
+	private void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Stops recording after a write error.
+	 * @param e The write error.
+	 */
+	private void fail(IOException e) {
+		LOGGER.error("Unable to write decision log {}: {}", file, e.getMessage());
+		close();
+	}
+}
@@ -0,0 +1,211 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays the scheduling decisions recorded by a decision log.
+ * The simulator processes its events as usual, but the placements and preemptions are
+ * read from the log instead of evaluating the scheduling policies. The random draws of
+ * the policies are skipped on the random generator of the simulator, so that the
+ * simulation can go on after the replay exactly as the recorded one did.
+ * @see DecisionLog
+ * @class
+ * @author Nicolas
+ */
+public class DecisionReplay {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DecisionReplay.class);
+	
+	/** The log file. */
+	private File file;
+	
+	/** The input stream of the log. */
+	private DataInputStream in;
+	
+	/** The seed of the recorded simulation. */
+	private long seed;
+	
+	/** The type of the next entry, or 0 at the end of the log. */
+	private byte type;
+	
+	/** The date of the next entry. */
+	private int time;
+	
+	/** The identifier fields of the next entry. */
+	private int[] fields;
+	
+	/** The drawn number of the next entry. */
+	private double value;
+	
+	/**
+	 * Opens a decision log to replay.
+	 * @param file The log file.
+	 * @throws IOException if the file is not a decision log.
+	 * @constructor
+	 */
+	public DecisionReplay(File file) throws IOException {
+		this.file = file;
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		if (in.readInt() != DecisionLog.MAGIC || in.readInt() != DecisionLog.VERSION) {
+			in.close();
+			throw new IOException(file + " is not a decision log");
+		}
+		seed = in.readLong();
+		fields = new int[3];
+		time = 0;
+		next();
+	}
+	
+	/**
+	 * Gets the seed of the recorded simulation.
+	 * @return the seed of the simulation.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Applies the scheduling decisions recorded up to the current date of the simulator.
+	 * @param simulator The simulator replaying the log.
+	 */
+	public void apply(Simulator simulator) {
+		while (type != 0 && time <= Simulator.getTime()) {
+			if (type == DecisionLog.EVENT_DRAW) {
+				// the draw belongs to the next event
+				return;
+			}
+			// the entry is consumed first since placements may draw durations
+			byte entry = type;
+			Task task = entry != DecisionLog.POLICY_DRAW ? getTask(simulator) : null;
+			int container = fields[2];
+			next();
+			switch (entry) {
+			case DecisionLog.PLACEMENT:
+				simulator.startTask(task, simulator.getContainers().get(container));
+				break;
+			case DecisionLog.PREEMPTION:
+				simulator.preemptTask(task);
+				break;
+			default:
+				simulator.skipRandom();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the number drawn by the current event.
+	 * @param drawn The number drawn by the simulator, compared to the recorded one.
+	 * @return the recorded number.
+	 */
+	public double nextDraw(double drawn) {
+		if (type != DecisionLog.EVENT_DRAW) {
+			LOGGER.error("Replay of {} diverged at {}: no draw was recorded", file,
+					Simulator.getTime());
+			return drawn;
+		}
+		if (value != drawn) {
+			LOGGER.error("Replay of {} diverged at {}: {} drawn instead of {}", file,
+					Simulator.getTime(), drawn, value);
+		}
+		double recorded = value;
+		next();
+		return recorded;
+	}
+	
+	/**
+	 * Closes the log.
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close decision log {}: {}", file, e.getMessage());
+		}
+		type = 0;
+	}
+	
+	/**
+	 * Gets the task of the current entry.
+	 * @param simulator The simulator replaying the log.
+	 * @return the task of the entry.
+	 */
+	private Task getTask(Simulator simulator) {
+		return simulator.getDAGs().get(fields[0]).getTasks().get(fields[1]);
+	}
+	
+	/**
+	 * Reads the next entry of the log.
+	 */
+	private void next() {
+		try {
+			type = in.readByte();
+			time += readVarInt();
+			switch (type) {
+			case DecisionLog.PLACEMENT:
+				fields[0] = readVarInt();
+				fields[1] = readVarInt();
+				fields[2] = readVarInt();
+				break;
+			case DecisionLog.PREEMPTION:
+				fields[0] = readVarInt();
+				fields[1] = readVarInt();
+				break;
+			case DecisionLog.EVENT_DRAW:
+			case DecisionLog.POLICY_DRAW:
+				value = Double.longBitsToDouble(in.readLong());
+				break;
+			default:
+				LOGGER.error("Unknown entry {} in decision log {}", type, file);
+				close();
+			}
+		} catch (EOFException e) {
+			close();
+		} catch (IOException e) {
+			LOGGER.error("Unable to read decision log {}: {}", file, e.getMessage());
+			close();
+		}
+	}
+	
+	/**
+	 * Reads a variable-length int written by the decision log.
+	 * @return the value read.
+	 * @throws IOException if the value cannot be read.
+	 */
+	private int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
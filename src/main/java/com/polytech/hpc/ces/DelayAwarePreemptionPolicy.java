@@ -0,0 +1,85 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Preempts the running tasks whose preemption delays their task DAG the least.
+ * The delay of every candidate is read in constant time from the remaining critical
+ * path estimate of its DAG, so that victims can be selected on every event. Only the
+ * tasks whose priority is lower than the priority of the ready task are candidates,
+ * and the container which delays the DAGs the least is chosen.
+ * @class
+ * @author Nicolas
+ */
+public class DelayAwarePreemptionPolicy implements PreemptionPolicy {
+	/**
+	 * Selects the running tasks to preempt whose total delay is the lowest.
+	 * @param simulator The simulator running the tasks.
+	 * @param task The ready task which does not fit in any container.
+	 * @return the tasks to preempt, or an empty list if there is no such container.
+	 */
+	@Override
+	public List<Task> selectVictims(Simulator simulator, Task task) {
+		List<Task> best = Collections.emptyList();
+		long bestDelay = Long.MAX_VALUE;
+		for (Container container : simulator.getContainers()) {
+			if (!container.getCapacity().isSuperSet(task.getRequiredResources())) {
+				continue;
+			}
+			ArrayList<Task> candidates = new ArrayList<Task>();
+			for (Task running : container.getTasks()) {
+				if (running.getCriticity() < task.getCriticity()) {
+					candidates.add(running);
+				}
+			}
+			Collections.sort(candidates, new Comparator<Task>() {
+				@Override
+				public int compare(Task t1, Task t2) {
+					int order = t1.getDAG().getPreemptionDelay(t1)
+							- t2.getDAG().getPreemptionDelay(t2);
+					return order != 0 ? order
+							: Double.compare(t1.getCriticity(), t2.getCriticity());
+				}
+			});
+			ResourceDescriptor avail = container.getResourcesAvail();
+			ArrayList<Task> victims = new ArrayList<Task>();
+			long delay = 0;
+			for (Task candidate : candidates) {
+				if (avail.isSuperSet(task.getRequiredResources())) {
+					break;
+				}
+				avail.add(candidate.getRequiredResources());
+				victims.add(candidate);
+				delay += candidate.getDAG().getPreemptionDelay(candidate);
+			}
+			if (avail.isSuperSet(task.getRequiredResources()) && !victims.isEmpty()
+					&& delay < bestDelay) {
+				best = victims;
+				bestDelay = delay;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,627 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs one shard of a simulation split across processes, so that no process holds the
+ * whole cluster nor all the task DAGs.
+ * Every process is given the whole cluster and workload description, but only keeps
+ * its nodes, containers and task DAGs, with the same partitioning as ShardedSimulator.
+ * The processes are connected by loopback TCP channels and synchronise with the
+ * Chandy-Misra-Bryant protocol: a process only processes the events before the dates
+ * promised by all the others, and promises in turn the date of its next event or
+ * message plus the lookahead through null messages.
+ * A process whose shard has no event and no task running elsewhere is done: it
+ * promises that it sends nothing more, except to the processes whose tasks migrated to
+ * it. Such a process expects the completion of a task it sent to a done process one
+ * lookahead after its arrival at the earliest, until that process promises a date
+ * again. Once all the processes are done, the simulation is over.
+ * @class
+ * @author Nicolas
+ */
+public class DistributedSimulator implements ShardCoordinator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DistributedSimulator.class);
+	
+	/** The time a process waits for a message when it cannot go on, in ms. */
+	private static final long MESSAGE_WAIT = 100L;
+	
+	/** The time a process retries to connect to another one, in ms. */
+	private static final long CONNECT_TIMEOUT = 30000L;
+	
+	/** The index of the process. */
+	private int rank;
+	
+	/** The number of processes. */
+	private int processCount;
+	
+	/** The shard of the process. */
+	private SimulatorShard shard;
+	
+	/** The shard of every task DAG, by identifier. */
+	private int[] homeShards;
+	
+	/** The task DAGs of the shard, by identifier. */
+	private HashMap<Integer, TaskDAG> dags;
+	
+	/** The task DAGs of the tasks migrated to the shard, by identifier. */
+	private HashMap<Integer, TaskDAG> remoteDAGs;
+	
+	/** The number of task DAGs of the simulation. */
+	private int dagCount;
+	
+	/** The number of nodes of the cluster. */
+	private int nodeCount;
+	
+	/** The number of containers of the cluster. */
+	private int containerCount;
+	
+	/** The shortest duration of the tasks of the simulation. */
+	private int shortestDuration;
+	
+	/** The delay of the messages between processes, or 0 for the shortest duration. */
+	private int lookahead;
+	
+	/** The channels to the other processes, by index. */
+	private ShardChannel[] channels;
+	
+	/** The frames read from the channels. */
+	private BlockingQueue<ShardChannel.Frame> inbox;
+	
+	/** The date last promised by every other process, by index. */
+	private int[] clocks;
+	
+	/** The date last promised to every other process, by index. */
+	private int[] promises;
+	
+	/** The resources left in every shard, as last known. */
+	private ResourceDescriptor[] freeResources;
+	
+	/** The resources left in the container with the most of them of every shard. */
+	private ResourceDescriptor[] largestFreeResources;
+	
+	/** The arrival dates of the tasks migrated from the shard and not finished yet. */
+	private HashMap<Task, Integer> migrations;
+	
+	/** The arrival dates of the migrated tasks by process, with their multiplicity. */
+	private ArrayList<TreeMap<Integer, Integer>> migrationDates;
+	
+	/** The number of tasks of every process which migrated to the shard and run in it. */
+	private int[] hostedTaskCounts;
+	
+	/** Whether the shard will send nothing more but completions. */
+	private boolean done;
+	
+	/**
+	 * Creates a new process of a distributed simulation.
+	 * @param rank The index of the process.
+	 * @param processCount The number of processes.
+	 * @param seed The seed of the random generators, the one of a process being offset
+	 * by its index.
+	 * @constructor
+	 */
+	public DistributedSimulator(int rank, int processCount, long seed) {
+		this.rank = rank;
+		this.processCount = processCount;
+		shard = new SimulatorShard(this, rank, seed + rank);
+		homeShards = new int[16];
+		dags = new HashMap<Integer, TaskDAG>();
+		remoteDAGs = new HashMap<Integer, TaskDAG>();
+		dagCount = 0;
+		nodeCount = 0;
+		containerCount = 0;
+		shortestDuration = Integer.MAX_VALUE;
+		lookahead = 0;
+		channels = new ShardChannel[processCount];
+		inbox = new LinkedBlockingQueue<ShardChannel.Frame>();
+		clocks = new int[processCount];
+		promises = new int[processCount];
+		freeResources = new ResourceDescriptor[processCount];
+		largestFreeResources = new ResourceDescriptor[processCount];
+		for (int i = 0; i < processCount; i++) {
+			freeResources[i] = new ResourceDescriptor();
+			largestFreeResources[i] = new ResourceDescriptor();
+		}
+		migrations = new HashMap<Task, Integer>();
+		migrationDates = new ArrayList<TreeMap<Integer, Integer>>();
+		for (int i = 0; i < processCount; i++) {
+			migrationDates.add(new TreeMap<Integer, Integer>());
+		}
+		hostedTaskCounts = new int[processCount];
+		done = false;
+	}
+	
+	/**
+	 * Runs a process of a distributed simulation whose nodes all have one container
+	 * taking their whole capacity, then prints its results on one line.
+	 * Usage: rank processes port nodes vcores memory dag...
+	 * The process of index i listens to port + i on the loopback interface.
+	 * @param args The arguments of the process.
+	 * @throws IOException if the process cannot connect to the others.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 7) {
+			System.err.println("Usage: DistributedSimulator rank processes port nodes"
+					+ " vcores memory dag...");
+			System.exit(1);
+		}
+		int rank = Integer.parseInt(args[0]);
+		DistributedSimulator simulator = new DistributedSimulator(rank,
+				Integer.parseInt(args[1]), 0L);
+		ResourceDescriptor capacity = new ResourceDescriptor(Integer.parseInt(args[4]),
+				Integer.parseInt(args[5]));
+		for (int i = Integer.parseInt(args[3]); i > 0; i--) {
+			Node node = simulator.addNode(capacity);
+			simulator.addContainer(node, capacity);
+		}
+		simulator.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		for (int i = 6; i < args.length; i++) {
+			simulator.addDAG(TaskDAG.load(new File(args[i])));
+		}
+		simulator.connect(Integer.parseInt(args[2]));
+		simulator.run();
+		simulator.printResults(System.out);
+	}
+	
+	/**
+	 * Adds a node to the cluster, which is only kept if it belongs to the shard of the
+	 * process.
+	 * @param capacity The resource capacity of the node.
+	 * @return the node added.
+	 */
+	public Node addNode(ResourceDescriptor capacity) {
+		int id = nodeCount++;
+		if (id % processCount == rank) {
+			return shard.addNode(id, capacity);
+		}
+		return new Node(id, capacity);
+	}
+	
+	/**
+	 * Deploys a container on a node of the cluster, which is only kept if the node
+	 * belongs to the shard of the process.
+	 * @param node The node on which the container is deployed.
+	 * @param capacity The resource capacity of the container.
+	 * @return the container deployed, or null if it belongs to another process.
+	 */
+	public Container addContainer(Node node, ResourceDescriptor capacity) {
+		int id = containerCount++;
+		if (node.getId() % processCount == rank) {
+			return shard.addContainer(id, node, capacity);
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds a task DAG to the simulation, which is only kept if it belongs to the shard
+	 * of the process.
+	 * @param dag The task DAG to add.
+	 */
+	public void addDAG(TaskDAG dag) {
+		int id = dagCount++;
+		int home = ShardedSimulator.selectHomeShard(dag, id, processCount);
+		if (id == homeShards.length) {
+			homeShards = Arrays.copyOf(homeShards, 2 * id);
+		}
+		homeShards[id] = home;
+		for (Task task : dag.getTasks()) {
+			shortestDuration = Math.min(shortestDuration, task.getDuration());
+		}
+		if (home == rank) {
+			dags.put(id, dag);
+			shard.addDAG(id, dag);
+		}
+	}
+	
+	/**
+	 * Sets the preemption policy of the shard.
+	 * @param preemptionPolicy The preemption policy, or null to never preempt tasks.
+	 */
+	public void setPreemptionPolicy(PreemptionPolicy preemptionPolicy) {
+		shard.setPreemptionPolicy(preemptionPolicy);
+	}
+	
+	/**
+	 * Sets the delay of the messages between processes, which must be the same in all
+	 * the processes.
+	 * @param lookahead The lookahead, or 0 to use the shortest task duration.
+	 */
+	public void setLookahead(int lookahead) {
+		this.lookahead = lookahead;
+	}
+	
+	/**
+	 * Connects the process to all the others. A process connects to the processes of
+	 * lower index, retrying until they listen, and accepts the others.
+	 * @param port The port of the process of index 0, the process of index i listening
+	 * to port + i.
+	 * @throws IOException if a process cannot be reached.
+	 */
+	public void connect(int port) throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		ServerSocket server = new ServerSocket(port + rank, processCount, loopback);
+		try {
+			for (int i = 0; i < rank; i++) {
+				Socket socket = connect(new InetSocketAddress(loopback, port + i));
+				socket.getOutputStream().write(rank);
+				channels[i] = new ShardChannel(i, socket, inbox);
+			}
+			for (int i = rank + 1; i < processCount; i++) {
+				Socket socket = server.accept();
+				int peer = socket.getInputStream().read();
+				if (peer <= rank || peer >= processCount || channels[peer] != null) {
+					socket.close();
+					throw new IOException("Unexpected connection of process " + peer);
+				}
+				channels[peer] = new ShardChannel(peer, socket, inbox);
+			}
+		} finally {
+			server.close();
+		}
+		for (ShardChannel channel : channels) {
+			if (channel != null) {
+				channel.start();
+			}
+		}
+	}
+	
+	/**
+	 * Connects to a process, retrying until it listens.
+	 */
+	private static Socket connect(InetSocketAddress address) throws IOException {
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		while (true) {
+			try {
+				return new Socket(address.getAddress(), address.getPort());
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				try {
+					Thread.sleep(50L);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs the shard of the process until the simulation is over.
+	 * @throws IOException if a channel fails.
+	 */
+	public void run() throws IOException {
+		if (lookahead <= 0) {
+			lookahead = shortestDuration == Integer.MAX_VALUE ? 1
+					: Math.max(1, shortestDuration);
+		}
+		shard.scheduleReadyTasks();
+		sendShardMessages();
+		sendNullMessages();
+		try {
+			while (!isOver()) {
+				boolean progressed = receiveMessages(false);
+				// a date at a time, since a task migrating to a done process lowers the
+				// safe date
+				while (shard.getNextEventTime() < getSafeTime()) {
+					shard.processEvents(shard.getNextEventTime());
+					sendShardMessages();
+					progressed = true;
+				}
+				sendNullMessages();
+				if (!progressed && !isOver()) {
+					receiveMessages(true);
+				}
+			}
+		} finally {
+			for (ShardChannel channel : channels) {
+				if (channel != null) {
+					channel.close();
+				}
+			}
+		}
+		if (!shard.isFinished()) {
+			LOGGER.warn("Process {} stopped at {} with ready tasks that cannot run", rank,
+					shard.getCurrentTime());
+		}
+	}
+	
+	/**
+	 * Returns whether the simulation is over, i.e. all the processes promised to send
+	 * nothing more and no task of the shard runs elsewhere.
+	 */
+	private boolean isOver() {
+		if (!done || shard.getNextEventTime() != Integer.MAX_VALUE) {
+			return false;
+		}
+		for (int i = 0; i < processCount; i++) {
+			if (i != rank && clocks[i] != Integer.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the date before which all the messages the shard will receive are known,
+	 * i.e. the earliest date promised by the other processes. A process which runs
+	 * tasks migrated from the shard cannot send their completion before one lookahead
+	 * after their arrival, even if it promised before to send nothing more.
+	 */
+	private int getSafeTime() {
+		int safe = Integer.MAX_VALUE;
+		for (int i = 0; i < processCount; i++) {
+			if (i == rank) {
+				continue;
+			}
+			int clock = clocks[i];
+			TreeMap<Integer, Integer> dates = migrationDates.get(i);
+			if (!dates.isEmpty()) {
+				int completion = addLookahead(dates.firstKey());
+				clock = clock == Integer.MAX_VALUE ? completion : Math.max(clock, completion);
+			}
+			safe = Math.min(safe, clock);
+		}
+		return safe;
+	}
+	
+	/**
+	 * Applies the frames received from the other processes.
+	 * @param wait Whether to wait for a frame if none was received.
+	 * @return true if a frame was received.
+	 */
+	private boolean receiveMessages(boolean wait) {
+		ShardChannel.Frame frame = inbox.poll();
+		if (frame == null && wait) {
+			try {
+				frame = inbox.poll(MESSAGE_WAIT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (frame == null) {
+			return false;
+		}
+		do {
+			applyFrame(frame);
+		} while ((frame = inbox.poll()) != null);
+		return true;
+	}
+	
+	/**
+	 * Applies a frame received from another process.
+	 */
+	private void applyFrame(ShardChannel.Frame frame) {
+		switch (frame.type) {
+		case ShardChannel.NULL_MESSAGE:
+			// a done process promises a date again once tasks migrate to it
+			clocks[frame.peer] = frame.time;
+			if (frame.freeResources != null) {
+				freeResources[frame.peer] = frame.freeResources;
+				largestFreeResources[frame.peer] = frame.largestFreeResources;
+			} else {
+				freeResources[frame.peer] = new ResourceDescriptor();
+				largestFreeResources[frame.peer] = new ResourceDescriptor();
+			}
+			break;
+		case ShardChannel.TASK_MIGRATION:
+			clocks[frame.peer] = Math.max(clocks[frame.peer], frame.time);
+			hostedTaskCounts[frame.peer]++;
+			shard.schedule(new TaskMigrationEvent(frame.time, frame.peer,
+					createRemoteTask(frame)));
+			break;
+		case ShardChannel.TASK_COMPLETION:
+			clocks[frame.peer] = Math.max(clocks[frame.peer], frame.time);
+			Task task = dags.get(frame.dagId).getTasks().get(frame.taskId);
+			Integer date = migrations.remove(task);
+			if (date != null) {
+				removeMigrationDate(frame.peer, date);
+			}
+			shard.schedule(new RemoteTaskFinishEvent(frame.time, frame.peer, rank, task));
+			break;
+		default:
+			LOGGER.error("Unknown message {} from process {}", frame.type, frame.peer);
+		}
+	}
+	
+	/**
+	 * Creates a ready task standing for a task of another process which migrated.
+	 * It belongs to a task DAG holding no other task, with the identifier and owner of
+	 * the original task DAG.
+	 */
+	private Task createRemoteTask(ShardChannel.Frame frame) {
+		TaskDAG dag = remoteDAGs.get(frame.dagId);
+		if (dag == null) {
+			dag = new TaskDAG();
+			dag.setName(frame.owner);
+			dag.setOwner(frame.owner);
+			dag.setId(frame.dagId);
+			remoteDAGs.put(frame.dagId, dag);
+		}
+		Task task = new Task(dag, frame.taskId, frame.name, frame.resources,
+				frame.dataNodeId >= 0 ? frame.dataNodeId : null, frame.duration,
+				Collections.<Task>emptyList(), Collections.<Task>emptyList());
+		task.getExecutionContext().setPriority(frame.priority);
+		task.getExecutionContext().setStatus(TaskStatus.READY);
+		return task;
+	}
+	
+	/**
+	 * Sends the messages of the shard, choosing the process of every migrating task.
+	 * @throws IOException if a channel fails.
+	 */
+	private void sendShardMessages() throws IOException {
+		for (ShardMessage message : shard.drainOutbox()) {
+			Task task = message.getTask();
+			if (message instanceof TaskMigrationEvent) {
+				int target = ShardedSimulator.reserve(rank, task.getRequiredResources(),
+						freeResources, largestFreeResources);
+				if (target == rank) {
+					// no process has room left, the task waits in the shard
+					shard.schedule(message);
+					continue;
+				}
+				migrations.put(task, message.getTime());
+				TreeMap<Integer, Integer> dates = migrationDates.get(target);
+				Integer count = dates.get(message.getTime());
+				dates.put(message.getTime(), count == null ? 1 : count + 1);
+				channels[target].sendMigration(message.getTime(), task);
+			} else {
+				hostedTaskCounts[message.getTarget()]--;
+				channels[message.getTarget()].sendCompletion(message.getTime(), task);
+			}
+		}
+	}
+	
+	/**
+	 * Sends a null message to every process whose promise changed, or to all if the
+	 * resources left in the shard changed.
+	 * @throws IOException if a channel fails.
+	 */
+	private void sendNullMessages() throws IOException {
+		// ready tasks left have no container to wait for, and do not migrate anymore
+		if (!done && shard.getNextEventTime() == Integer.MAX_VALUE && migrations.isEmpty()) {
+			done = true;
+		}
+		shard.summarizeFreeResources();
+		int date = addLookahead(Math.min(shard.getNextEventTime(), getSafeTime()));
+		ResourceDescriptor free = shard.getFreeResources();
+		boolean freeChanged = !free.isSuperSet(freeResources[rank])
+				|| !freeResources[rank].isSuperSet(free);
+		freeResources[rank] = new ResourceDescriptor(free);
+		for (int i = 0; i < processCount; i++) {
+			if (i == rank) {
+				continue;
+			}
+			int promise = done && hostedTaskCounts[i] == 0 ? Integer.MAX_VALUE : date;
+			if (promise != promises[i] || freeChanged) {
+				promises[i] = promise;
+				channels[i].sendNullMessage(promise, free, shard.getLargestFreeResources());
+			}
+			channels[i].flush();
+		}
+	}
+	
+	/**
+	 * Removes an arrival date of a migrated task.
+	 */
+	private void removeMigrationDate(int process, int date) {
+		TreeMap<Integer, Integer> dates = migrationDates.get(process);
+		int count = dates.get(date);
+		if (count == 1) {
+			dates.remove(date);
+		} else {
+			dates.put(date, count - 1);
+		}
+	}
+	
+	/**
+	 * Adds the lookahead to a date, saturating at Integer.MAX_VALUE.
+	 */
+	private int addLookahead(int date) {
+		return date > Integer.MAX_VALUE - lookahead ? Integer.MAX_VALUE : date + lookahead;
+	}
+	
+	/**
+	 * Prints the results of the process on one line of space separated key=value pairs.
+	 * @param out The stream to print to.
+	 */
+	public void printResults(PrintStream out) {
+		int finished = 0;
+		for (TaskDAG dag : dags.values()) {
+			for (Task task : dag.getTasks()) {
+				if (task.getStatus() == TaskStatus.FINISHED) {
+					finished++;
+				}
+			}
+		}
+		out.println("rank=" + rank + " time=" + shard.getCurrentTime() + " dags="
+				+ dags.size() + " finished=" + shard.isFinished() + " tasks=" + finished
+				+ " migrations=" + shard.getMigrationCount());
+	}
+	
+	/**
+	 * Returns whether tasks of the shard may migrate to another process, i.e. another
+	 * process had room for it as last known and the shard did not promise to send
+	 * nothing more.
+	 * @param shard The index of the shard of the task.
+	 * @param task The ready task.
+	 * @return true if the task may migrate.
+	 */
+	@Override
+	public boolean hasRoomOutside(int shard, Task task) {
+		return !done && ShardedSimulator.hasRoomOutside(shard, task, freeResources,
+				largestFreeResources);
+	}
+	
+	/**
+	 * Gets the process which holds a task DAG.
+	 * @param dag The task DAG of the simulation.
+	 * @return the index of the process.
+	 */
+	@Override
+	public int getHomeShard(TaskDAG dag) {
+		return homeShards[dag.getId()];
+	}
+	
+	/**
+	 * Gets the delay of the messages between processes.
+	 * @return the lookahead, or 0 if not set and the simulation did not run yet.
+	 */
+	@Override
+	public int getLookahead() {
+		return lookahead;
+	}
+	
+	/**
+	 * Gets the shard of the process.
+	 * @return the shard.
+	 */
+	public SimulatorShard getShard() {
+		return shard;
+	}
+	
+	/**
+	 * Gets the index of the process.
+	 * @return the index of the process.
+	 */
+	public int getRank() {
+		return rank;
+	}
+}
@@ -0,0 +1,103 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Preempts the running tasks of the most over-share tenant, following dominant
+ * resource fairness. Tasks are preempted only if the tenant of the ready task would
+ * still have a dominant share lower than or equal to the one left to the victim
+ * tenant once the task runs, so that tenants never preempt each other in turn.
+ * Only the running tasks of the victim tenant are examined, the container which
+ * requires the fewest preemptions being chosen.
+ * @class
+ * @author Nicolas
+ */
+public class DominantSharePreemptionPolicy implements PreemptionPolicy {
+	/** Orders the tasks by increasing priority. */
+	private static final Comparator<Task> CRITICITY_ORDER = new Comparator<Task>() {
+		@Override
+		public int compare(Task t1, Task t2) {
+			return Double.compare(t1.getCriticity(), t2.getCriticity());
+		}
+	};
+	
+	/**
+	 * Selects the fewest running tasks of the most over-share tenant to preempt in a
+	 * container.
+	 * @param simulator The simulator running the tasks.
+	 * @param task The ready task which does not fit in any container.
+	 * @return the tasks to preempt, or an empty list if fairness does not require it.
+	 */
+	@Override
+	public List<Task> selectVictims(Simulator simulator, Task task) {
+		TenantShareTracker shares = simulator.getShareTracker();
+		Tenant tenant = shares.getTenant(task);
+		Tenant victim = shares.getMostOverShareTenant();
+		double share = shares.getDominantShareWith(tenant, task.getRequiredResources());
+		if (victim == null || victim == tenant || victim.getDominantShare() <= share) {
+			return Collections.emptyList();
+		}
+		LinkedHashMap<Container, ArrayList<Task>> candidates =
+				new LinkedHashMap<Container, ArrayList<Task>>();
+		for (Task running : victim.getRunningTasks()) {
+			Container container = running.getExecutionContext().getContainer();
+			if (!container.getCapacity().isSuperSet(task.getRequiredResources())) {
+				continue;
+			}
+			ArrayList<Task> tasks = candidates.get(container);
+			if (tasks == null) {
+				tasks = new ArrayList<Task>();
+				candidates.put(container, tasks);
+			}
+			tasks.add(running);
+		}
+		List<Task> best = Collections.emptyList();
+		for (Map.Entry<Container, ArrayList<Task>> entry : candidates.entrySet()) {
+			ArrayList<Task> tasks = entry.getValue();
+			Collections.sort(tasks, CRITICITY_ORDER);
+			ResourceDescriptor avail = entry.getKey().getResourcesAvail();
+			ResourceDescriptor released = new ResourceDescriptor();
+			ArrayList<Task> victims = new ArrayList<Task>();
+			for (Task candidate : tasks) {
+				if (avail.isSuperSet(task.getRequiredResources())) {
+					break;
+				}
+				avail.add(candidate.getRequiredResources());
+				released.add(candidate.getRequiredResources());
+				victims.add(candidate);
+			}
+			// the victim tenant must not fall below the tenant of the task, otherwise
+			// both tenants would keep on preempting each other
+			if (avail.isSuperSet(task.getRequiredResources()) && !victims.isEmpty()
+					&& shares.getDominantShareWithout(victim, released) >= share
+					&& (best.isEmpty() || victims.size() < best.size())) {
+				best = victims;
+			}
+		}
+		return best;
+	}
+}
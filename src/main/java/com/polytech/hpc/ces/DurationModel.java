@@ -0,0 +1,37 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Draws the duration of the execution attempts of the tasks.
+ * Models must draw their random numbers from the simulator so that the simulations
+ * can be replayed.
+ * @interface
+ * @author Nicolas
+ */
+public interface DurationModel {
+	/**
+	 * Draws the duration of an execution attempt of a task.
+	 * @param simulator The simulator whose random generator is used.
+	 * @param task The task which starts to run.
+	 * @return the duration of the execution attempt.
+	 */
+	int drawDuration(Simulator simulator, Task task);
+}
@@ -0,0 +1,114 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Draws durations from the ratios between the actual and expected durations of
+ * observed execution attempts, e.g. those of an execution trace.
+ * @class
+ * @author Nicolas
+ */
+public class EmpiricalDurationModel implements DurationModel {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			EmpiricalDurationModel.class);
+	
+	/** The observed ratios between the actual and expected durations. */
+	private double[] ratios;
+	
+	/**
+	 * Creates a new empirical duration model.
+	 * @param ratios The observed ratios between the actual and expected durations.
+	 * @constructor
+	 */
+	public EmpiricalDurationModel(double[] ratios) {
+		this.ratios = ratios;
+	}
+	
+	/**
+	 * Loads the ratios of the attempts which finished in an execution trace.
+	 * @param file The execution trace.
+	 * @param dags The task DAGs of the traced simulation, by index.
+	 * @return the duration model, or null if the trace holds no finished attempt.
+	 * @throws IOException if the execution trace cannot be read.
+	 */
+	public static EmpiricalDurationModel load(File file, List<TaskDAG> dags)
+			throws IOException {
+		ExecutionTraceReader reader = new ExecutionTraceReader(file);
+		double[] ratios = new double[64];
+		int count = 0;
+		try {
+			while (reader.next()) {
+				int dagId = reader.getDAGId();
+				if (reader.isPreempted() || reader.isFailed() || dagId < 0
+						|| dagId >= dags.size()) {
+					continue;
+				}
+				int duration = dags.get(dagId).getTasks().get(reader.getTaskId())
+						.getDuration();
+				if (duration <= 0) {
+					continue;
+				}
+				if (count == ratios.length) {
+					double[] extended = new double[2 * count];
+					System.arraycopy(ratios, 0, extended, 0, count);
+					ratios = extended;
+				}
+				ratios[count++] = (double) (reader.getEndDate() - reader.getStartDate())
+						/ duration;
+			}
+		} finally {
+			reader.close();
+		}
+		if (count == 0) {
+			LOGGER.error("No finished execution attempt in execution trace {}", file);
+			return null;
+		}
+		double[] loaded = new double[count];
+		System.arraycopy(ratios, 0, loaded, 0, count);
+		return new EmpiricalDurationModel(loaded);
+	}
+	
+	/**
+	 * Draws the duration of an execution attempt of a task.
+	 * @param simulator The simulator whose random generator is used.
+	 * @param task The task which starts to run.
+	 * @return the duration of the task scaled by an observed ratio.
+	 */
+	@Override
+	public int drawDuration(Simulator simulator, Task task) {
+		double ratio = ratios[(int) (simulator.nextRandom() * ratios.length)];
+		return (int) Math.min(Math.round(task.getDuration() * ratio), Integer.MAX_VALUE / 2);
+	}
+	
+	/**
+	 * Gets the number of observed ratios.
+	 * @return the number of ratios.
+	 */
+	public int getRatioCount() {
+		return ratios.length;
+	}
+}
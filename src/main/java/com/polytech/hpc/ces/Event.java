@@ -0,0 +1,107 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents an event of the simulation.
+ * Events are processed by increasing date. Events that occur at the same date are
+ * processed in the order they were scheduled, which keeps the runs reproducible.
+ * @class
+ * @author Nicolas
+ */
+public abstract class Event implements Comparable<Event> {
+	/** The date of the event. */
+	private int time;
+	
+	/** The scheduling order of the event, used to break ties between dates. */
+	private long sequence;
+	
+	/** Whether the event was cancelled before being processed. */
+	private boolean cancelled;
+	
+	/**
+	 * Creates a new event.
+	 * @param time The date of the event.
+	 * @constructor
+	 */
+	public Event(int time) {
+		this.time = time;
+		sequence = 0;
+		cancelled = false;
+	}
+	
+	/**
+	 * Processes the event.
+	 * @param simulator The simulator processing the event.
+	 */
+	public abstract void process(Simulator simulator);
+	
+	/**
+	 * Sets the scheduling order of the event.
+	 * @param sequence The scheduling order of the event.
+	 */
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Cancels the event, which will be skipped by the simulator.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Gets the date of the event.
+	 * @return the date of the event.
+	 */
+	public int getTime() {
+		return time;
+	}
+	
+	/**
+	 * Gets the scheduling order of the event.
+	 * @return the scheduling order of the event.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Returns whether the event was cancelled.
+	 * @return true if the event was cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Compares the processing order of two events.
+	 * @param event The event to compare to.
+	 * @return a negative value if this event is processed first.
+	 */
+	@Override
+	public int compareTo(Event event) {
+		if (time != event.time) {
+			return time < event.time ? -1 : 1;
+		}
+		return sequence < event.sequence ? -1 : (sequence == event.sequence ? 0 : 1);
+	}
+}
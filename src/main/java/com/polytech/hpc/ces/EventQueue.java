@@ -0,0 +1,59 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Holds the pending events of a simulation, ordered by date then scheduling order.
+ * Events are never added before the date of the last event polled. Cancelled events
+ * are skipped, so that implementations may drop them lazily.
+ * @interface
+ * @author Nicolas
+ */
+public interface EventQueue {
+	/**
+	 * Adds an event, whose scheduling order is set.
+	 * @param event The event to add.
+	 */
+	void add(Event event);
+	
+	/**
+	 * Gets the next event which is not cancelled, without removing it.
+	 * @return the next event, or null if no event is pending.
+	 */
+	Event peek();
+	
+	/**
+	 * Removes the next event which is not cancelled.
+	 * @return the next event, or null if no event is pending.
+	 */
+	Event poll();
+	
+	/**
+	 * Returns whether no event is pending, cancelled events apart.
+	 * @return true if no event is pending.
+	 */
+	boolean isEmpty();
+	
+	/**
+	 * Gets the number of events held, including the cancelled events not dropped yet.
+	 * @return the number of events held.
+	 */
+	int size();
+}
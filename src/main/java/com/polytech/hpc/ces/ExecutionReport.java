@@ -0,0 +1,524 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Turns the execution attempts of a simulation into a Gantt chart and utilisation
+ * series. Attempts are streamed in the order they ended, in a single pass: every
+ * attempt is written to the Gantt data as soon as it is read, so that the memory used
+ * only depends on the cluster and on the number of utilisation buckets.
+ * The report is made of:
+ * - gantt.csv, the attempts with their node, container and lane,
+ * - gantt.svg, a lane per vcore of every container, grouped by node, interrupted
+ *   attempts being drawn distinctly,
+ * - utilisation.csv, the vcore utilisation of every node and the vcores wasted by
+ *   interrupted attempts, by time bucket,
+ * - index.html, a summary with the utilisation chart and the Gantt chart.
+ * @class
+ * @author Nicolas
+ */
+public class ExecutionReport {
+	/** The height of a lane, in pixels. */
+	static final int ROW_HEIGHT = 10;
+	
+	/** The gap between the lanes of two nodes, in pixels. */
+	static final int NODE_GAP = 6;
+	
+	/** The width of the node labels, in pixels. */
+	static final int LABEL_WIDTH = 60;
+	
+	/** The height of the utilisation chart, in pixels. */
+	static final int CHART_HEIGHT = 200;
+	
+	/** The simulator whose attempts are reported. */
+	private Simulator simulator;
+	
+	/** The directory of the report. */
+	private File directory;
+	
+	/** The width of the utilisation buckets. */
+	private int bucketWidth;
+	
+	/** The number of pixels per time unit of the Gantt chart. */
+	private double timeScale;
+	
+	/** The Gantt data being written. */
+	private Writer gantt;
+	
+	/** The temporary file holding the Gantt chart segments. */
+	private File segmentFile;
+	
+	/** The Gantt chart segments being written. */
+	private Writer segments;
+	
+	/** The first row of every container in the Gantt chart. */
+	private int[] firstRows;
+	
+	/** The ending date of the last attempt of every lane of every container. */
+	private int[][] laneEnds;
+	
+	/** The changes of used vcores by bucket, for every node then interrupted attempts. */
+	private long[][] rateChanges;
+	
+	/** The vcore-time of the changes of every bucket within the bucket. */
+	private long[][] areaChanges;
+	
+	/** The number of buckets used. */
+	private int bucketCount;
+	
+	/** The greatest ending date of the attempts. */
+	private int makespan;
+	
+	/** The number of attempts reported. */
+	private long attemptCount;
+	
+	/** The number of preempted attempts reported. */
+	private long preemptedCount;
+	
+	/** The number of attempts killed by node failures reported. */
+	private long failedCount;
+	
+	/** A buffer used to format the lines of the outputs. */
+	private StringBuilder line;
+	
+	/**
+	 * Creates a new report of the attempts run by the cluster of a simulator.
+	 * @param simulator The simulator, which holds the cluster and task DAGs.
+	 * @param directory The directory of the report, created if needed.
+	 * @param bucketWidth The width of the utilisation buckets.
+	 * @param timeScale The number of pixels per time unit of the Gantt chart.
+	 * @throws IOException if the report cannot be created.
+	 * @constructor
+	 */
+	public ExecutionReport(Simulator simulator, File directory, int bucketWidth,
+			double timeScale) throws IOException {
+		this.simulator = simulator;
+		this.directory = directory;
+		this.bucketWidth = Math.max(1, bucketWidth);
+		this.timeScale = timeScale;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+		gantt = open(new File(directory, "gantt.csv"));
+		gantt.write("node,container,lane,dag,task,start,end,state\n");
+		segmentFile = File.createTempFile("gantt", ".svg", directory);
+		segments = open(segmentFile);
+		
+		line = new StringBuilder(256);
+		ArrayList<Container> containers = simulator.getContainers();
+		firstRows = new int[containers.size()];
+		laneEnds = new int[containers.size()][];
+		int row = 0;
+		for (Node node : simulator.getNodes()) {
+			line.setLength(0);
+			line.append("<text class=\"node\" x=\"2\" y=\"")
+					.append(getY(node.getId(), row) + ROW_HEIGHT).append("\">node ")
+					.append(node.getId()).append("</text>\n");
+			segments.write(line.toString());
+			for (Container container : node.getContainers()) {
+				firstRows[container.getId()] = row;
+				laneEnds[container.getId()] = new int[Math.max(1,
+						container.getCapacity().getVcores())];
+				row += laneEnds[container.getId()].length;
+			}
+		}
+		rateChanges = new long[simulator.getNodes().size() + 1][16];
+		areaChanges = new long[simulator.getNodes().size() + 1][16];
+		bucketCount = 0;
+		makespan = 0;
+	}
+	
+	/**
+	 * Adds the attempts of an execution trace.
+	 * @param file The execution trace of the simulation.
+	 * @throws IOException if the trace cannot be read or the report written.
+	 */
+	public void addTrace(File file) throws IOException {
+		ExecutionTraceReader reader = new ExecutionTraceReader(file);
+		try {
+			while (reader.next()) {
+				add(reader.getDAGId(), reader.getTaskId(), reader.getContainerId(),
+						reader.getNodeId(), reader.getStartDate(), reader.getEndDate(),
+						reader.isPreempted(), reader.isFailed());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Adds the ended attempts retained by the tasks of the simulation.
+	 * Unlike traces, retained attempts are sorted by ending date first.
+	 * @throws IOException if the report cannot be written.
+	 */
+	public void addRetainedAttempts() throws IOException {
+		ArrayList<TaskExecutionRecord> attempts = new ArrayList<TaskExecutionRecord>();
+		for (TaskDAG dag : simulator.getDAGs()) {
+			for (Task task : dag.getTasks()) {
+				for (TaskExecutionRecord attempt : task.getExecutionAttempts()) {
+					if (attempt.getEndDate() != null) {
+						attempts.add(attempt);
+					}
+				}
+			}
+		}
+		Collections.sort(attempts, new Comparator<TaskExecutionRecord>() {
+			@Override
+			public int compare(TaskExecutionRecord a1, TaskExecutionRecord a2) {
+				return a1.getEndDate().compareTo(a2.getEndDate());
+			}
+		});
+		for (TaskExecutionRecord attempt : attempts) {
+			Task task = attempt.getTask();
+			Container container = attempt.getContainer();
+			add(task.getDAG().getId(), task.getId(), container.getId(),
+					container.getNode(), attempt.getStartDate(), attempt.getEndDate(),
+					attempt.isPreempted(), attempt.isFailed());
+		}
+	}
+	
+	/**
+	 * Adds an attempt, which must not end before the attempts added previously for the
+	 * lanes to be exact.
+	 */
+	private void add(int dagId, int taskId, int containerId, int nodeId, int start,
+			int end, boolean preempted, boolean failed) throws IOException {
+		Task task = dagId >= 0 ? simulator.getDAGs().get(dagId).getTasks().get(taskId)
+				: null;
+		String name = task != null ? escape(task.getName()) : Integer.toString(taskId);
+		String state = failed ? "failed" : (preempted ? "preempted" : "finished");
+		int lane = assignLane(containerId, start, end);
+		
+		line.setLength(0);
+		line.append(nodeId).append(',').append(containerId).append(',').append(lane)
+				.append(',').append(dagId).append(',').append(name).append(',')
+				.append(start).append(',').append(end).append(',').append(state)
+				.append('\n');
+		gantt.write(line.toString());
+		
+		long x = Math.round(start * timeScale);
+		long width = Math.max(1L, Math.round(end * timeScale) - x);
+		line.setLength(0);
+		line.append("<rect class=\"").append(state).append("\" x=\"")
+				.append(LABEL_WIDTH + x).append("\" y=\"")
+				.append(getY(nodeId, firstRows[containerId] + lane))
+				.append("\" width=\"").append(width).append("\" height=\"")
+				.append(ROW_HEIGHT - 1).append("\"><title>").append(name).append(" [")
+				.append(start).append(',').append(end).append(") ").append(state)
+				.append("</title></rect>\n");
+		segments.write(line.toString());
+		
+		int vcores = task != null ? task.getRequiredResources().getVcores() : 1;
+		accumulate(nodeId, start, end, vcores);
+		if (preempted || failed) {
+			accumulate(rateChanges.length - 1, start, end, vcores);
+		}
+		makespan = Math.max(makespan, end);
+		attemptCount++;
+		if (preempted) {
+			preemptedCount++;
+		}
+		if (failed) {
+			failedCount++;
+		}
+	}
+	
+	/**
+	 * Assigns an attempt to the first lane of its container free at its start.
+	 * Since attempts come by ending date, a lane whose last attempt ended before the
+	 * start of the attempt holds no attempt overlapping it.
+	 * @return the lane, or the lane freed first if they all overlap the attempt.
+	 */
+	private int assignLane(int containerId, int start, int end) {
+		int[] ends = laneEnds[containerId];
+		int lane = 0;
+		for (int i = 0; i < ends.length; i++) {
+			if (ends[i] <= start) {
+				lane = i;
+				break;
+			}
+			if (ends[i] < ends[lane]) {
+				lane = i;
+			}
+		}
+		ends[lane] = end;
+		return lane;
+	}
+	
+	/**
+	 * Accumulates the vcores used by an attempt in the utilisation buckets.
+	 * Only the changes of rate are recorded, so that an attempt costs O(1) whatever
+	 * the number of buckets it spans.
+	 */
+	private void accumulate(int series, int start, int end, int vcores) {
+		change(series, start, vcores);
+		change(series, end, -vcores);
+	}
+	
+	/**
+	 * Records a change of the vcores used at a date.
+	 */
+	private void change(int series, int time, long vcores) {
+		int bucket = time / bucketWidth;
+		if (bucket >= rateChanges[series].length) {
+			int length = Math.max(bucket + 1, 2 * rateChanges[series].length);
+			for (int i = 0; i < rateChanges.length; i++) {
+				long[] rates = new long[length];
+				long[] areas = new long[length];
+				System.arraycopy(rateChanges[i], 0, rates, 0, rateChanges[i].length);
+				System.arraycopy(areaChanges[i], 0, areas, 0, areaChanges[i].length);
+				rateChanges[i] = rates;
+				areaChanges[i] = areas;
+			}
+		}
+		rateChanges[series][bucket] += vcores;
+		areaChanges[series][bucket] += vcores * ((long) (bucket + 1) * bucketWidth - time);
+		bucketCount = Math.max(bucketCount, bucket + 1);
+	}
+	
+	/**
+	 * Finishes the report: writes the Gantt chart, the utilisation series and the
+	 * summary page.
+	 * @throws IOException if the report cannot be written.
+	 */
+	public void finish() throws IOException {
+		gantt.close();
+		segments.close();
+		writeGanttChart();
+		double[][] utilisation = computeUtilisation();
+		writeUtilisation(utilisation);
+		writeSummary(utilisation);
+		if (!segmentFile.delete()) {
+			segmentFile.deleteOnExit();
+		}
+	}
+	
+	/**
+	 * Writes the Gantt chart, whose size is only known once all the attempts are read.
+	 */
+	private void writeGanttChart() throws IOException {
+		int rows = 0;
+		for (int[] ends : laneEnds) {
+			rows += ends.length;
+		}
+		long width = LABEL_WIDTH + Math.round(makespan * timeScale) + 1;
+		int height = getY(simulator.getNodes().size(), rows);
+		Writer svg = open(new File(directory, "gantt.svg"));
+		try {
+			svg.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width
+					+ "\" height=\"" + height + "\">\n<style>"
+					+ "rect.finished{fill:#4a90d9}"
+					+ "rect.preempted{fill:#e8a33d;stroke:#b0521c}"
+					+ "rect.failed{fill:#d0021b;stroke:#6b0010}"
+					+ "text.node{font:10px sans-serif}</style>\n");
+			copy(segmentFile, svg);
+			svg.write("</svg>\n");
+		} finally {
+			svg.close();
+		}
+	}
+	
+	/**
+	 * Integrates the changes of rate into the utilisation of every bucket.
+	 * @return the utilisation by series then bucket, between 0 and 1.
+	 */
+	private double[][] computeUtilisation() {
+		ArrayList<Node> nodes = simulator.getNodes();
+		long clusterVcores = 0;
+		for (Node node : nodes) {
+			clusterVcores += node.getCapacity().getVcores();
+		}
+		double[][] utilisation = new double[rateChanges.length][bucketCount];
+		for (int series = 0; series < rateChanges.length; series++) {
+			long capacity = series < nodes.size()
+					? nodes.get(series).getCapacity().getVcores() : clusterVcores;
+			long rate = 0;
+			for (int bucket = 0; bucket < bucketCount; bucket++) {
+				long area = rate * bucketWidth + areaChanges[series][bucket];
+				rate += rateChanges[series][bucket];
+				utilisation[series][bucket] = capacity > 0
+						? (double) area / (capacity * bucketWidth) : 0.0;
+			}
+		}
+		return utilisation;
+	}
+	
+	/**
+	 * Writes the utilisation series.
+	 */
+	private void writeUtilisation(double[][] utilisation) throws IOException {
+		Writer csv = open(new File(directory, "utilisation.csv"));
+		try {
+			line.setLength(0);
+			line.append("start");
+			for (Node node : simulator.getNodes()) {
+				line.append(",node").append(node.getId());
+			}
+			line.append(",wasted\n");
+			csv.write(line.toString());
+			for (int bucket = 0; bucket < bucketCount; bucket++) {
+				line.setLength(0);
+				line.append((long) bucket * bucketWidth);
+				for (double[] series : utilisation) {
+					line.append(',').append(Math.round(series[bucket] * 10000) / 10000.0);
+				}
+				line.append('\n');
+				csv.write(line.toString());
+			}
+		} finally {
+			csv.close();
+		}
+	}
+	
+	/**
+	 * Writes the summary page with the utilisation chart.
+	 */
+	private void writeSummary(double[][] utilisation) throws IOException {
+		Writer html = open(new File(directory, "index.html"));
+		try {
+			html.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\">"
+					+ "<title>CES execution report</title></head><body>\n"
+					+ "<h1>CES execution report</h1>\n<table>\n");
+			html.write("<tr><th>Attempts</th><td>" + attemptCount + "</td></tr>\n");
+			html.write("<tr><th>Preempted</th><td>" + preemptedCount + "</td></tr>\n");
+			html.write("<tr><th>Failed</th><td>" + failedCount + "</td></tr>\n");
+			html.write("<tr><th>Makespan</th><td>" + makespan + "</td></tr>\n");
+			for (int series = 0; series < utilisation.length; series++) {
+				double mean = 0.0;
+				for (double value : utilisation[series]) {
+					mean += value;
+				}
+				mean = bucketCount > 0 ? mean / bucketCount : 0.0;
+				html.write("<tr><th>" + getSeriesName(series) + "</th><td>"
+						+ Math.round(mean * 1000) / 10.0 + "%</td></tr>\n");
+			}
+			html.write("</table>\n<h2>Utilisation</h2>\n");
+			int width = Math.max(1, Math.min(bucketCount, 2000));
+			html.write("<svg width=\"" + (width + 1) + "\" height=\"" + (CHART_HEIGHT + 1)
+					+ "\"><rect width=\"" + width + "\" height=\"" + CHART_HEIGHT
+					+ "\" fill=\"none\" stroke=\"#999\"/>\n");
+			for (int series = 0; series < utilisation.length; series++) {
+				line.setLength(0);
+				line.append("<polyline fill=\"none\" stroke=\"hsl(")
+						.append(series == utilisation.length - 1 ? 0 : series * 137 % 360)
+						.append(",70%,45%)\" points=\"");
+				for (int x = 0; x < width; x++) {
+					// several buckets per pixel are averaged
+					int from = (int) ((long) x * bucketCount / width);
+					int to = (int) Math.max(from + 1, (long) (x + 1) * bucketCount / width);
+					double value = 0.0;
+					for (int bucket = from; bucket < to; bucket++) {
+						value += utilisation[series][bucket];
+					}
+					value /= to - from;
+					line.append(x).append(',')
+							.append(Math.round((1.0 - value) * CHART_HEIGHT)).append(' ');
+				}
+				line.append("\"><title>").append(getSeriesName(series))
+						.append("</title></polyline>\n");
+				html.write(line.toString());
+			}
+			html.write("</svg>\n<h2>Gantt chart</h2>\n<p>Preempted attempts are orange, "
+					+ "failed attempts red.</p>\n<img src=\"gantt.svg\" alt=\"Gantt\">\n"
+					+ "</body></html>\n");
+		} finally {
+			html.close();
+		}
+	}
+	
+	/**
+	 * Gets the name of a utilisation series.
+	 */
+	private String getSeriesName(int series) {
+		return series < simulator.getNodes().size() ? "node " + series : "wasted";
+	}
+	
+	/**
+	 * Escapes a task name for the CSV and SVG outputs.
+	 */
+	private static String escape(String name) {
+		if (name.indexOf(',') < 0 && name.indexOf('&') < 0 && name.indexOf('<') < 0
+				&& name.indexOf('"') < 0) {
+			return name;
+		}
+		return name.replace(",", ";").replace("&", "&amp;").replace("<", "&lt;")
+				.replace("\"", "&quot;");
+	}
+	
+	/**
+	 * Gets the vertical position of a row of the Gantt chart.
+	 */
+	private static int getY(int nodeIndex, int row) {
+		return row * ROW_HEIGHT + nodeIndex * NODE_GAP;
+	}
+	
+	/**
+	 * Opens a buffered UTF-8 writer.
+	 */
+	private static Writer open(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8"), 1 << 16);
+	}
+	
+	/**
+	 * Copies a UTF-8 file to a writer.
+	 */
+	private static void copy(File file, Writer writer) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			char[] buffer = new char[1 << 16];
+			int count;
+			while ((count = reader.read(buffer)) >= 0) {
+				writer.write(buffer, 0, count);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Gets the number of attempts reported.
+	 * @return the number of attempts.
+	 */
+	public long getAttemptCount() {
+		return attemptCount;
+	}
+	
+	/**
+	 * Gets the greatest ending date of the attempts reported.
+	 * @return the makespan of the simulation.
+	 */
+	public int getMakespan() {
+		return makespan;
+	}
+}
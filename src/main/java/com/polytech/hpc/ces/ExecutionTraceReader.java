@@ -0,0 +1,180 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the execution attempts of a binary execution trace one record at a time.
+ * Records are read in the order the attempts ended.
+ * @see ExecutionTraceWriter
+ * @class
+ * @author Nicolas
+ */
+public class ExecutionTraceReader {
+	/** The trace file. */
+	private File file;
+	
+	/** The input stream of the trace. */
+	private DataInputStream in;
+	
+	/** The task DAG index of the current record. */
+	private int dagId;
+	
+	/** The task index of the current record. */
+	private int taskId;
+	
+	/** The container of the current record. */
+	private int containerId;
+	
+	/** The node of the current record. */
+	private int nodeId;
+	
+	/** The starting date of the current record. */
+	private int startDate;
+	
+	/** The ending date of the current record. */
+	private int endDate;
+	
+	/** The flags of the current record. */
+	private int flags;
+	
+	/**
+	 * Opens an execution trace.
+	 * @param file The trace file.
+	 * @throws IOException if the file cannot be read or is not an execution trace.
+	 * @constructor
+	 */
+	public ExecutionTraceReader(File file) throws IOException {
+		this.file = file;
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+				1 << 16));
+		if (in.readInt() != ExecutionTraceWriter.MAGIC
+				|| in.readInt() != ExecutionTraceWriter.VERSION) {
+			in.close();
+			throw new IOException(file + " is not an execution trace");
+		}
+	}
+	
+	/**
+	 * Reads the next record.
+	 * @return false if the end of the trace is reached.
+	 * @throws IOException if the trace cannot be read.
+	 */
+	public boolean next() throws IOException {
+		try {
+			dagId = in.readInt();
+		} catch (EOFException e) {
+			return false;
+		}
+		taskId = in.readInt();
+		containerId = in.readInt();
+		nodeId = in.readInt();
+		startDate = in.readInt();
+		endDate = in.readInt();
+		flags = in.readUnsignedByte();
+		return true;
+	}
+	
+	/**
+	 * Closes the trace.
+	 * @throws IOException if the trace cannot be closed.
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	/**
+	 * Gets the trace file.
+	 * @return the trace file.
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Gets the index of the task DAG of the current record.
+	 * @return the task DAG index, -1 if the task had no DAG.
+	 */
+	public int getDAGId() {
+		return dagId;
+	}
+	
+	/**
+	 * Gets the index of the task of the current record in its DAG.
+	 * @return the task index.
+	 */
+	public int getTaskId() {
+		return taskId;
+	}
+	
+	/**
+	 * Gets the container of the current record.
+	 * @return the container identifier.
+	 */
+	public int getContainerId() {
+		return containerId;
+	}
+	
+	/**
+	 * Gets the node of the current record.
+	 * @return the node identifier.
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+	
+	/**
+	 * Gets the starting date of the current record.
+	 * @return the starting date of the attempt.
+	 */
+	public int getStartDate() {
+		return startDate;
+	}
+	
+	/**
+	 * Gets the ending date of the current record.
+	 * @return the ending date of the attempt.
+	 */
+	public int getEndDate() {
+		return endDate;
+	}
+	
+	/**
+	 * Returns whether the attempt of the current record was preempted.
+	 * @return true if the attempt was preempted.
+	 */
+	public boolean isPreempted() {
+		return (flags & ExecutionTraceWriter.FLAG_PREEMPTED) != 0;
+	}
+	
+	/**
+	 * Returns whether the attempt of the current record was killed by a node failure.
+	 * @return true if the attempt failed.
+	 */
+	public boolean isFailed() {
+		return (flags & ExecutionTraceWriter.FLAG_FAILED) != 0;
+	}
+}
@@ -0,0 +1,130 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes ended execution attempts to a binary execution trace.
+ * The trace starts with its magic number and version, followed by fixed-size records
+ * of RECORD_SIZE bytes: the DAG, task, container and node identifiers, the starting
+ * and ending dates as ints, then a flag byte (FLAG_PREEMPTED, FLAG_FAILED).
+ * @class
+ * @author Nicolas
+ */
+public class ExecutionTraceWriter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			ExecutionTraceWriter.class);
+	
+	/** The magic number of execution traces ("CEST"). */
+	static final int MAGIC = 0x43455354;
+	
+	/** The version of the execution trace format. */
+	static final int VERSION = 1;
+	
+	/** The size of a record, in bytes. */
+	static final int RECORD_SIZE = 25;
+	
+	/** The flag set if the attempt was preempted. */
+	static final int FLAG_PREEMPTED = 1;
+	
+	/** The flag set if the attempt was killed by a node failure. */
+	static final int FLAG_FAILED = 2;
+	
+	/** The trace file. */
+	private File file;
+	
+	/** The output stream of the trace. */
+	private DataOutputStream out;
+	
+	/** The number of records written. */
+	private long recordCount;
+	
+	/**
+	 * Creates a new execution trace.
+	 * @param file The trace file.
+	 * @throws IOException if the trace file cannot be created.
+	 * @constructor
+	 */
+	public ExecutionTraceWriter(File file) throws IOException {
+		this.file = file;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+				1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		recordCount = 0;
+	}
+	
+	/**
+	 * Writes an ended execution attempt.
+	 * @param attempt The execution attempt, which must have an ending date.
+	 */
+	public void write(TaskExecutionRecord attempt) {
+		if (out == null) {
+			return;
+		}
+		Task task = attempt.getTask();
+		Container container = attempt.getContainer();
+		try {
+			out.writeInt(task.getDAG() != null ? task.getDAG().getId() : -1);
+			out.writeInt(task.getId());
+			out.writeInt(container.getId());
+			out.writeInt(container.getNode());
+			out.writeInt(attempt.getStartDate());
+			out.writeInt(attempt.getEndDate());
+			out.writeByte((attempt.isPreempted() ? FLAG_PREEMPTED : 0)
+					| (attempt.isFailed() ? FLAG_FAILED : 0));
+			recordCount++;
+		} catch (IOException e) {
+			LOGGER.error("Unable to write execution trace {}: {}", file, e.getMessage());
+			close();
+		}
+	}
+	
+	/**
+	 * Gets the number of records written.
+	 * @return the number of execution attempts written.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+	
+	/**
+	 * Closes the trace.
+	 */
+	public void close() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close execution trace {}: {}", file, e.getMessage());
+		}
+		out = null;
+	}
+}
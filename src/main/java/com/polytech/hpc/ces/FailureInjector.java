@@ -0,0 +1,182 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Injects node failures and recoveries in a simulation.
+ * The time between failures of every node and the time to repair it follow
+ * exponential distributions. When a node fails, the other nodes of its rack fail with
+ * it with a given probability. All the draws go through the random generator of the
+ * simulator, so that the failures depend on its seed only and are replayed.
+ * Every node has at most one pending failure or recovery event, so that a failure
+ * only affects the events of the nodes of its rack.
+ * @class
+ * @author Nicolas
+ */
+public class FailureInjector {
+	/** The mean time between failures of a node. */
+	private double meanTimeBetweenFailures;
+	
+	/** The mean time to repair a failed node. */
+	private double meanTimeToRepair;
+	
+	/** The probability that a failure takes down the whole rack of the node. */
+	private double rackCorrelation;
+	
+	/** The nodes of every rack. */
+	private HashMap<Integer, ArrayList<Node>> racks;
+	
+	/** The pending event of every node, by node identifier. */
+	private ArrayList<Event> pendingEvents;
+	
+	/**
+	 * Creates a new failure injector.
+	 * @param meanTimeBetweenFailures The mean time between failures of a node.
+	 * @param meanTimeToRepair The mean time to repair a failed node.
+	 * @param rackCorrelation The probability that a failure takes down the whole rack.
+	 * @constructor
+	 */
+	public FailureInjector(double meanTimeBetweenFailures, double meanTimeToRepair,
+			double rackCorrelation) {
+		this.meanTimeBetweenFailures = meanTimeBetweenFailures;
+		this.meanTimeToRepair = meanTimeToRepair;
+		this.rackCorrelation = rackCorrelation;
+		racks = new HashMap<Integer, ArrayList<Node>>();
+		pendingEvents = new ArrayList<Event>();
+	}
+	
+	/**
+	 * Schedules the first failure of every node of the cluster.
+	 * @param simulator The simulator whose nodes fail.
+	 */
+	public void start(Simulator simulator) {
+		racks.clear();
+		pendingEvents.clear();
+		for (Node node : simulator.getNodes()) {
+			ArrayList<Node> rack = racks.get(node.getRack());
+			if (rack == null) {
+				rack = new ArrayList<Node>();
+				racks.put(node.getRack(), rack);
+			}
+			rack.add(node);
+			pendingEvents.add(null);
+		}
+		for (Node node : simulator.getNodes()) {
+			scheduleFailure(simulator, node);
+		}
+	}
+	
+	/**
+	 * Makes a node fail, possibly with its whole rack, and schedules its recovery.
+	 * Once all the task DAGs are finished, no more failures occur.
+	 * @param simulator The simulator whose node fails.
+	 * @param node The node which fails.
+	 */
+	void onNodeFailure(Simulator simulator, Node node) {
+		pendingEvents.set(node.getId(), null);
+		if (simulator.isFinished()) {
+			return;
+		}
+		fail(simulator, node);
+		if (simulator.nextRandom() >= rackCorrelation) {
+			return;
+		}
+		for (Node other : racks.get(node.getRack())) {
+			if (other.isUp()) {
+				if (pendingEvents.get(other.getId()) != null) {
+					pendingEvents.get(other.getId()).cancel();
+				}
+				fail(simulator, other);
+			}
+		}
+	}
+	
+	/**
+	 * Makes a node recover and schedules its next failure.
+	 * @param simulator The simulator whose node recovers.
+	 * @param node The node which recovers.
+	 */
+	void onNodeRecovery(Simulator simulator, Node node) {
+		pendingEvents.set(node.getId(), null);
+		simulator.recoverNode(node);
+		if (!simulator.isFinished()) {
+			scheduleFailure(simulator, node);
+		}
+	}
+	
+	/**
+	 * Makes a node fail and schedules its recovery.
+	 */
+	private void fail(Simulator simulator, Node node) {
+		simulator.failNode(node);
+		Event event = new NodeRecoveryEvent(Simulator.getTime()
+				+ drawDelay(simulator, meanTimeToRepair), this, node);
+		pendingEvents.set(node.getId(), event);
+		simulator.schedule(event);
+	}
+	
+	/**
+	 * Schedules the next failure of a node.
+	 */
+	private void scheduleFailure(Simulator simulator, Node node) {
+		Event event = new NodeFailureEvent(Simulator.getTime()
+				+ drawDelay(simulator, meanTimeBetweenFailures), this, node);
+		pendingEvents.set(node.getId(), event);
+		simulator.schedule(event);
+	}
+	
+	/**
+	 * Draws a delay from an exponential distribution.
+	 * @param simulator The simulator whose random generator is used.
+	 * @param mean The mean of the distribution.
+	 * @return the delay, at least 1.
+	 */
+	private static int drawDelay(Simulator simulator, double mean) {
+		double delay = -mean * Math.log(1.0 - simulator.nextRandom());
+		return (int) Math.max(1.0, Math.min(Math.ceil(delay), Integer.MAX_VALUE / 2));
+	}
+	
+	/**
+	 * Gets the mean time between failures of a node.
+	 * @return the mean time between failures.
+	 */
+	public double getMeanTimeBetweenFailures() {
+		return meanTimeBetweenFailures;
+	}
+	
+	/**
+	 * Gets the mean time to repair a failed node.
+	 * @return the mean time to repair.
+	 */
+	public double getMeanTimeToRepair() {
+		return meanTimeToRepair;
+	}
+	
+	/**
+	 * Gets the probability that a failure takes down the whole rack of the node.
+	 * @return the rack correlation.
+	 */
+	public double getRackCorrelation() {
+		return rackCorrelation;
+	}
+}
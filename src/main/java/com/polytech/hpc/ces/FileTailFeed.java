@@ -0,0 +1,75 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Feeds a running simulation with the task DAGs appended to a file, one per line.
+ * @class
+ * @author Nicolas
+ */
+public class FileTailFeed extends WorkloadFeed {
+	/** The file read. */
+	private File file;
+	
+	/** Whether to wait for new lines at the end of the file. */
+	private boolean follow;
+	
+	/**
+	 * Creates a new file feed.
+	 * @param file The file read.
+	 * @param queue The queue to which task DAGs are submitted.
+	 * @param follow Whether to wait for new lines at the end of the file until the feed
+	 * is stopped, like tail -f.
+	 * @constructor
+	 */
+	public FileTailFeed(File file, SubmissionQueue queue, boolean follow) {
+		super(queue);
+		this.file = file;
+		this.follow = follow;
+	}
+	
+	/**
+	 * Reads the file and submits its task DAGs.
+	 * @throws IOException if the file cannot be read.
+	 */
+	@Override
+	protected void feed() throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			readLines(reader, follow);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Gets the file read.
+	 * @return the file.
+	 */
+	public File getFile() {
+		return file;
+	}
+}
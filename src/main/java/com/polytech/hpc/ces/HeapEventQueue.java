@@ -0,0 +1,89 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.PriorityQueue;
+
+/**
+ * Event queue backed by a binary heap, in O(log n) per event.
+ * @class
+ * @author Nicolas
+ */
+public class HeapEventQueue implements EventQueue {
+	/** The heap of events. */
+	private PriorityQueue<Event> events;
+	
+	/**
+	 * Creates a new empty event queue.
+	 * @constructor
+	 */
+	public HeapEventQueue() {
+		events = new PriorityQueue<Event>();
+	}
+	
+	/**
+	 * Adds an event.
+	 * @param event The event to add.
+	 */
+	@Override
+	public void add(Event event) {
+		events.add(event);
+	}
+	
+	/**
+	 * Gets the next event which is not cancelled, without removing it.
+	 * @return the next event, or null if no event is pending.
+	 */
+	@Override
+	public Event peek() {
+		while (!events.isEmpty() && events.peek().isCancelled()) {
+			events.poll();
+		}
+		return events.peek();
+	}
+	
+	/**
+	 * Removes the next event which is not cancelled.
+	 * @return the next event, or null if no event is pending.
+	 */
+	@Override
+	public Event poll() {
+		peek();
+		return events.poll();
+	}
+	
+	/**
+	 * Returns whether no event is pending, cancelled events apart.
+	 * @return true if no event is pending.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+	
+	/**
+	 * Gets the number of events held, including the cancelled events not dropped yet.
+	 * @return the number of events held.
+	 */
+	@Override
+	public int size() {
+		return events.size();
+	}
+}
@@ -0,0 +1,67 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Draws lognormal durations whose median is the duration of the task.
+ * @class
+ * @author Nicolas
+ */
+public class LognormalDurationModel implements DurationModel {
+	/** The standard deviation of the logarithm of the durations. */
+	private double sigma;
+	
+	/**
+	 * Creates a new lognormal duration model.
+	 * @param sigma The standard deviation of the logarithm of the durations.
+	 * @constructor
+	 */
+	public LognormalDurationModel(double sigma) {
+		this.sigma = sigma;
+	}
+	
+	/**
+	 * Draws the duration of an execution attempt of a task.
+	 * The normal variable is drawn with the Box-Muller transform.
+	 * @param simulator The simulator whose random generator is used.
+	 * @param task The task which starts to run.
+	 * @return the duration of the execution attempt, at least 1 unless the task
+	 * lasts 0.
+	 */
+	@Override
+	public int drawDuration(Simulator simulator, Task task) {
+		double u1 = simulator.nextRandom();
+		double u2 = simulator.nextRandom();
+		if (task.getDuration() == 0) {
+			return 0;
+		}
+		double normal = Math.sqrt(-2.0 * Math.log(1.0 - u1)) * Math.cos(2.0 * Math.PI * u2);
+		double duration = task.getDuration() * Math.exp(sigma * normal);
+		return (int) Math.max(1.0, Math.min(Math.round(duration), Integer.MAX_VALUE / 2));
+	}
+	
+	/**
+	 * Gets the standard deviation of the logarithm of the durations.
+	 * @return the sigma parameter.
+	 */
+	public double getSigma() {
+		return sigma;
+	}
+}
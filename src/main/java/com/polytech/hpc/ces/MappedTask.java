@@ -0,0 +1,193 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a task of a mapped task DAG as a flyweight view.
+ * The properties of the task are read from the columns of the mapped file and its
+ * state from the off-heap state store of the DAG, so that a view holds no more than
+ * its index. Views are created on access and only the ready and running tasks keep
+ * theirs, which hold their running execution attempts and their container.
+ * @class
+ * @author Nicolas
+ */
+final class MappedTask extends Task {
+	/** The mapped task DAG which stores the task. */
+	private final MappedTaskDAG dag;
+	
+	/** The execution context of the task, backed by the state store. */
+	private final MappedTaskExecutionContext context;
+	
+	/** The running execution attempts of the task. */
+	private final ArrayList<TaskExecutionRecord> runningAttempts;
+	
+	/**
+	 * Creates a new view of a task of a mapped task DAG.
+	 * @param dag The mapped task DAG which stores the task.
+	 * @param id The index of the task in the task DAG.
+	 * @constructor
+	 */
+	MappedTask(MappedTaskDAG dag, int id) {
+		super(dag, id);
+		this.dag = dag;
+		context = new MappedTaskExecutionContext(this, dag, id);
+		runningAttempts = new ArrayList<TaskExecutionRecord>(1);
+	}
+	
+	/**
+	 * Gets the name of the task within its task DAG.
+	 * @return the name of the task, read from the string table.
+	 */
+	@Override
+	String getLocalName() {
+		return dag.getTaskName(getId());
+	}
+	
+	/**
+	 * Gets the amount of resources required to run the task.
+	 * @return a copy of the amount of resources required.
+	 */
+	@Override
+	public ResourceDescriptor getRequiredResources() {
+		return dag.getRequiredResources(getId());
+	}
+	
+	/**
+	 * Gets the expected duration of the task.
+	 * @return the duration of the task.
+	 */
+	@Override
+	public int getDuration() {
+		return dag.getDuration(getId());
+	}
+	
+	/**
+	 * Gets the location of data required for this task in the cluster.
+	 * @return the node identifier of data required for this task.
+	 */
+	@Override
+	public Integer getDataNodeId() {
+		return dag.getDataNodeId(getId());
+	}
+	
+	/**
+	 * Gets the list of parent tasks in the task DAG.
+	 * @return the list of parent tasks, read from the mapped file.
+	 */
+	@Override
+	public List<Task> getParentTasks() {
+		return dag.getParentTasks(getId());
+	}
+	
+	/**
+	 * Gets the list of child tasks in the task DAG.
+	 * @return the list of child tasks, read from the mapped file.
+	 */
+	@Override
+	public List<Task> getChildTasks() {
+		return dag.getChildTasks(getId());
+	}
+	
+	/**
+	 * Gets the execution context of the task.
+	 * @return the execution context of the task.
+	 */
+	@Override
+	public TaskExecutionContext getExecutionContext() {
+		return context;
+	}
+	
+	/**
+	 * Adds an execution attempt of the task.
+	 * @param attempt The execution attempt, created when the task starts to run.
+	 */
+	@Override
+	public void addExecutionAttempt(TaskExecutionRecord attempt) {
+		runningAttempts.add(attempt);
+		dag.getStateStore().addAttempt(getId());
+	}
+	
+	/**
+	 * Accounts for an execution attempt which ended in the state store.
+	 * Ended attempts are never retained, since the view of a finished task is dropped:
+	 * the full retention behaves as the aggregated one.
+	 * @param attempt The execution attempt, which must have an ending date.
+	 * @param retention How ended execution attempts are kept.
+	 * @param trace The execution trace to which spilled attempts are written.
+	 */
+	@Override
+	public void endExecutionAttempt(TaskExecutionRecord attempt,
+			AttemptRetention retention, ExecutionTraceWriter trace) {
+		dag.getStateStore().endAttempt(getId(), attempt);
+		if (retention == AttemptRetention.SPILL && trace != null) {
+			trace.write(attempt);
+		}
+		runningAttempts.remove(attempt);
+	}
+	
+	/**
+	 * Gets the running execution attempts of the task.
+	 * @return the list of running execution attempts.
+	 */
+	@Override
+	public ArrayList<TaskExecutionRecord> getExecutionAttempts() {
+		return runningAttempts;
+	}
+	
+	/**
+	 * Gets the number of execution attempts of the task.
+	 * @return the number of execution attempts.
+	 */
+	@Override
+	public int getExecutionAttemptCount() {
+		return dag.getStateStore().getAttemptCount(getId());
+	}
+	
+	/**
+	 * Gets the number of preempted execution attempts of the task.
+	 * @return the number of preemptions.
+	 */
+	@Override
+	public int getPreemptionCount() {
+		return dag.getStateStore().getPreemptionCount(getId());
+	}
+	
+	/**
+	 * Gets the number of execution attempts of the task killed by node failures.
+	 * @return the number of failures.
+	 */
+	@Override
+	public int getFailureCount() {
+		return dag.getStateStore().getFailureCount(getId());
+	}
+	
+	/**
+	 * Gets the time spent running the interrupted execution attempts of the task.
+	 * @return the wasted time.
+	 */
+	@Override
+	public long getWastedTime() {
+		return dag.getStateStore().getWastedTime(getId());
+	}
+}
@@ -0,0 +1,498 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents a read-only task DAG mapped from a compiled task DAG file.
+ * The file is mapped in memory and the task properties are read from its columns
+ * without being copied, while the state of the tasks is kept off the heap by a
+ * {@link TaskStateStore}. Tasks are flyweight views created on access: only the ready
+ * and running tasks keep their view, so that the heap does not grow with the number
+ * of tasks.
+ * 
+ * A compiled task DAG file is made of a header followed by int columns, all big-endian:
+ * <ul>
+ * <li>the header, whose fields are located at the HEADER_* offsets;</li>
+ * <li>the duration, vcores, memory (MB) and dataNodeId (-1 if none) columns;</li>
+ * <li>the minStartDate and maxStartDate columns, computed when compiling;</li>
+ * <li>the parent and child edges, as CSR offsets (taskCount + 1) and indices;</li>
+ * <li>the string table: offsets (taskCount + 2), the DAG name first, then bytes;</li>
+ * <li>the amounts of the resource dimensions following vcores and memory, one column
+ * per dimension;</li>
+ * <li>the priority column, as doubles computed when compiling.</li>
+ * </ul>
+ * Tasks are stored in topological order, root tasks first.
+ * Loading a DAG does not depend on its number of tasks: the state store starts zeroed,
+ * the unfinished parent counts being derived from the parent offsets, and only the
+ * root tasks are checked for readiness.
+ * @see TaskDAGCompiler
+ * @class
+ * @author Nicolas
+ */
+public class MappedTaskDAG extends TaskDAG {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedTaskDAG.class);
+	
+	/** The extension of compiled task DAG files. */
+	public static final String FILE_EXTENSION = ".cesdag";
+	
+	/** The magic number of compiled task DAG files ("CESD"). */
+	static final int MAGIC = 0x43455344;
+	
+	/** The version of the compiled task DAG format. */
+	static final int VERSION = 3;
+	
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_TASK_COUNT = 8;
+	static final int HEADER_EDGE_COUNT = 12;
+	static final int HEADER_ROOT_COUNT = 16;
+	static final int HEADER_MAKESPAN = 20;
+	static final int HEADER_DURATIONS = 24;
+	static final int HEADER_VCORES = 28;
+	static final int HEADER_MEMORY = 32;
+	static final int HEADER_DATA_NODE_IDS = 36;
+	static final int HEADER_MIN_START_DATES = 40;
+	static final int HEADER_MAX_START_DATES = 44;
+	static final int HEADER_PARENT_OFFSETS = 48;
+	static final int HEADER_PARENT_INDICES = 52;
+	static final int HEADER_CHILD_OFFSETS = 56;
+	static final int HEADER_CHILD_INDICES = 60;
+	static final int HEADER_STRING_OFFSETS = 64;
+	static final int HEADER_STRING_BYTES = 68;
+	static final int HEADER_DIMENSION_COUNT = 72;
+	static final int HEADER_EXTRA_RESOURCES = 76;
+	static final int HEADER_PRIORITIES = 80;
+	static final int HEADER_SIZE = 84;
+	
+	/** The charset of the string table. */
+	static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	/** The mapped file. */
+	private final ByteBuffer buffer;
+	
+	/** The number of tasks. */
+	private final int taskCount;
+	
+	/** The number of root tasks, stored first. */
+	private final int rootCount;
+	
+	/** The length of the critical path of the task DAG. */
+	private final int makespan;
+	
+	/** The state of the tasks, addressed by their index. */
+	private final TaskStateStore states;
+	
+	/** The views of the ready and running tasks, by index. */
+	private final HashMap<Integer, MappedTask> liveTasks;
+	
+	/** The number of finished tasks. */
+	private int finishedTaskCount;
+	
+	/** The list of tasks, whose views are created on access. */
+	private final List<Task> tasks;
+	
+	/**
+	 * Creates a new task DAG from a mapped compiled task DAG file.
+	 * @param buffer The mapped file.
+	 * @constructor
+	 */
+	private MappedTaskDAG(ByteBuffer buffer) {
+		this.buffer = buffer;
+		taskCount = buffer.getInt(HEADER_TASK_COUNT);
+		rootCount = buffer.getInt(HEADER_ROOT_COUNT);
+		makespan = buffer.getInt(HEADER_MAKESPAN);
+		states = new TaskStateStore(taskCount);
+		liveTasks = new HashMap<Integer, MappedTask>();
+		finishedTaskCount = 0;
+		tasks = new AbstractList<Task>() {
+			@Override
+			public Task get(int index) {
+				return getTask(index);
+			}
+			
+			@Override
+			public int size() {
+				return taskCount;
+			}
+		};
+		setName(getString(0));
+	}
+	
+	/**
+	 * Maps a compiled task DAG file.
+	 * @param file The compiled task DAG file.
+	 * @return the task DAG, or null if the file cannot be mapped or was compiled with
+	 * other resource dimensions than the declared ones.
+	 */
+	public static MappedTaskDAG load(File file) {
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			FileChannel channel = input.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(HEADER_MAGIC) != MAGIC) {
+				LOGGER.error("{} is not a compiled task DAG", file);
+				return null;
+			}
+			if (buffer.getInt(HEADER_VERSION) != VERSION) {
+				LOGGER.error("Unsupported version {} of compiled task DAG {}",
+						buffer.getInt(HEADER_VERSION), file);
+				return null;
+			}
+			if (buffer.getInt(HEADER_DIMENSION_COUNT) != ResourceDimensions.getCount()) {
+				LOGGER.error("{} was compiled with {} resource dimensions instead of {}",
+						file, buffer.getInt(HEADER_DIMENSION_COUNT),
+						ResourceDimensions.getCount());
+				return null;
+			}
+			MappedTaskDAG dag = new MappedTaskDAG(buffer);
+			dag.update();
+			return dag;
+		} catch (IOException e) {
+			LOGGER.error("Unable to map task DAG {}: {}", file, e.getMessage());
+		} finally {
+			if (input != null) {
+				try {
+					// the mapping remains valid once the file is closed
+					input.close();
+				} catch (IOException e) {
+					LOGGER.warn("Unable to close {}: {}", file, e.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads a value of a column.
+	 * @param column The header field that holds the offset of the column.
+	 * @param index The index of the value in the column.
+	 * @return the value.
+	 */
+	private int getInt(int column, int index) {
+		return buffer.getInt(buffer.getInt(column) + 4 * index);
+	}
+	
+	/**
+	 * Reads a string of the string table.
+	 * @param index The index of the string, 0 being the name of the DAG.
+	 * @return the string.
+	 */
+	private String getString(int index) {
+		int start = getInt(HEADER_STRING_OFFSETS, index);
+		int end = getInt(HEADER_STRING_OFFSETS, index + 1);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer view = buffer.duplicate();
+		view.position(buffer.getInt(HEADER_STRING_BYTES) + start);
+		view.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+	
+	/**
+	 * Gets a task of the DAG, whose view is created unless the task is ready or running.
+	 * @param index The index of the task.
+	 * @return the task.
+	 */
+	public Task getTask(int index) {
+		if (index < 0 || index >= taskCount) {
+			throw new IndexOutOfBoundsException("Task " + index + " of " + taskCount);
+		}
+		MappedTask task = liveTasks.get(index);
+		return task != null ? task : new MappedTask(this, index);
+	}
+	
+	/**
+	 * Sets the status of a task in the state store, keeping the view of the task while
+	 * it is ready or running so that the simulator always sees the same instance.
+	 * @param task The view of the task.
+	 * @param status The status of the task.
+	 */
+	void setStatus(MappedTask task, TaskStatus status) {
+		int index = task.getId();
+		TaskStatus previous = states.getStatus(index);
+		if (previous == TaskStatus.FINISHED && status != TaskStatus.FINISHED) {
+			finishedTaskCount--;
+		} else if (previous != TaskStatus.FINISHED && status == TaskStatus.FINISHED) {
+			finishedTaskCount++;
+		}
+		states.setStatus(index, status);
+		if (status == TaskStatus.READY || status == TaskStatus.RUNNING) {
+			liveTasks.put(index, task);
+		} else {
+			liveTasks.remove(index);
+		}
+	}
+	
+	/**
+	 * Gets the store of the state of the tasks.
+	 * @return the state store.
+	 */
+	TaskStateStore getStateStore() {
+		return states;
+	}
+	
+	/**
+	 * Gets the name of a task within the DAG.
+	 * @param index The index of the task.
+	 * @return the name of the task.
+	 */
+	String getTaskName(int index) {
+		return getString(index + 1);
+	}
+	
+	/**
+	 * Gets the amount of resources required to run a task.
+	 * @param index The index of the task.
+	 * @return a new descriptor of the resources required.
+	 */
+	ResourceDescriptor getRequiredResources(int index) {
+		ResourceDescriptor requiredResources = new ResourceDescriptor(
+				getInt(HEADER_VCORES, index), getInt(HEADER_MEMORY, index));
+		for (int i = 2; i < ResourceDimensions.getCount(); i++) {
+			requiredResources.set(i, getInt(HEADER_EXTRA_RESOURCES,
+					(i - 2) * taskCount + index));
+		}
+		return requiredResources;
+	}
+	
+	/**
+	 * Gets the location of data required for a task in the cluster.
+	 * @param index The index of the task.
+	 * @return the node identifier of data required, or null if none.
+	 */
+	Integer getDataNodeId(int index) {
+		int dataNodeId = getInt(HEADER_DATA_NODE_IDS, index);
+		return dataNodeId >= 0 ? Integer.valueOf(dataNodeId) : null;
+	}
+	
+	/**
+	 * Gets the parents of a task.
+	 * @param index The index of the task.
+	 * @return the list of parent tasks, read from the mapped file.
+	 */
+	List<Task> getParentTasks(int index) {
+		return new EdgeList(HEADER_PARENT_OFFSETS, HEADER_PARENT_INDICES, index);
+	}
+	
+	/**
+	 * Gets the children of a task.
+	 * @param index The index of the task.
+	 * @return the list of child tasks, read from the mapped file.
+	 */
+	List<Task> getChildTasks(int index) {
+		return new EdgeList(HEADER_CHILD_OFFSETS, HEADER_CHILD_INDICES, index);
+	}
+	
+	/**
+	 * Gets the number of parents of a task.
+	 * @param index The index of the task.
+	 * @return the number of parent tasks.
+	 */
+	int getParentCount(int index) {
+		return getInt(HEADER_PARENT_OFFSETS, index + 1) - getInt(HEADER_PARENT_OFFSETS, index);
+	}
+	
+	/**
+	 * Gets the number of unfinished parents of a task, derived from the number of its
+	 * parents and of its finished parents.
+	 * @param index The index of the task.
+	 * @return the number of unfinished parent tasks.
+	 */
+	int getUnfinishedParentCount(int index) {
+		return getParentCount(index) - states.getFinishedParentCount(index);
+	}
+	
+	/**
+	 * Sets the number of unfinished parents of a task.
+	 * @param index The index of the task.
+	 * @param count The number of unfinished parent tasks.
+	 */
+	void setUnfinishedParentCount(int index, int count) {
+		states.setFinishedParentCount(index, getParentCount(index) - count);
+	}
+	
+	/**
+	 * Gets the priority of a task, computed when compiling.
+	 * @param index The index of the task.
+	 * @return the priority of the task.
+	 */
+	double getPriority(int index) {
+		return buffer.getDouble(buffer.getInt(HEADER_PRIORITIES) + 8 * index);
+	}
+	
+	/**
+	 * Gets the minimum starting date of a task, computed when compiling.
+	 * @param index The index of the task.
+	 * @return the minimum starting date.
+	 */
+	int getMinStartDate(int index) {
+		return getInt(HEADER_MIN_START_DATES, index);
+	}
+	
+	/**
+	 * Gets the maximum starting date of a task, computed when compiling.
+	 * @param index The index of the task.
+	 * @return the maximum starting date.
+	 */
+	int getMaxStartDate(int index) {
+		return getInt(HEADER_MAX_START_DATES, index);
+	}
+	
+	/**
+	 * Gets the duration of a task without creating its view.
+	 * @param index The index of the task.
+	 * @return the duration of the task.
+	 */
+	public int getDuration(int index) {
+		return getInt(HEADER_DURATIONS, index);
+	}
+	
+	/**
+	 * Gets the number of tasks of the DAG without creating their views.
+	 * @return the number of tasks.
+	 */
+	public int getTaskCount() {
+		return taskCount;
+	}
+	
+	/**
+	 * Gets the number of edges of the DAG.
+	 * @return the number of parent-child relations.
+	 */
+	public int getEdgeCount() {
+		return buffer.getInt(HEADER_EDGE_COUNT);
+	}
+	
+	/**
+	 * Updates the readiness of the tasks.
+	 * Starting dates and priorities were computed when compiling, so that only the
+	 * pending root tasks become ready: the other tasks become ready when their last
+	 * parent finishes. The root tasks are stored first.
+	 */
+	@Override
+	public void update() {
+		for (int i = 0; i < rootCount; i++) {
+			if (states.getStatus(i) == TaskStatus.PENDING) {
+				setReady(getTask(i));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the tasks of the DAG in topological order, which is the storage order.
+	 * @return the list of tasks in topological order.
+	 */
+	@Override
+	public List<Task> getTopologicalOrder() {
+		return tasks;
+	}
+	
+	/**
+	 * Gets the list of tasks of the task DAG, whose views are created on access.
+	 * @return the list of tasks.
+	 */
+	@Override
+	public List<Task> getTasks() {
+		return tasks;
+	}
+	
+	/**
+	 * Gets the length of the critical path of the task DAG.
+	 * @return the makespan of the task DAG.
+	 */
+	@Override
+	public int getMakespan() {
+		return makespan;
+	}
+	
+	/**
+	 * Returns whether all the tasks of the task DAG are finished.
+	 * @return true if the task DAG is finished.
+	 */
+	@Override
+	public boolean isFinished() {
+		return finishedTaskCount == taskCount;
+	}
+	
+	/**
+	 * Returns whether the task DAG is read-only.
+	 * @return always true.
+	 */
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+	
+	/**
+	 * A list of tasks read from the CSR edge arrays of the mapped file.
+	 * @class
+	 */
+	private class EdgeList extends AbstractList<Task> {
+		/** The index of the first edge of the task in the indices column. */
+		private final int start;
+		
+		/** The number of edges of the task. */
+		private final int size;
+		
+		/** The header field that holds the offset of the indices column. */
+		private final int indices;
+		
+		/**
+		 * Creates a new edge list.
+		 * @param offsets The header field that holds the offset of the CSR offsets.
+		 * @param indices The header field that holds the offset of the CSR indices.
+		 * @param index The index of the task.
+		 * @constructor
+		 */
+		EdgeList(int offsets, int indices, int index) {
+			this.indices = indices;
+			start = getInt(offsets, index);
+			size = getInt(offsets, index + 1) - start;
+		}
+		
+		@Override
+		public Task get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Edge " + index + " of " + size);
+			}
+			return getTask(getInt(indices, start + index));
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the execution context of a task of a mapped task DAG.
+ * The starting dates are read from the mapped file, where they were computed when
+ * compiling along with the priority, and the status and unfinished parent count from
+ * the off-heap state store of the DAG. Only the container and the current attempt, which are set
+ * while the task runs, are kept by the context itself.
+ * @class
+ * @author Nicolas
+ */
+final class MappedTaskExecutionContext extends TaskExecutionContext {
+	/** The mapped task DAG which stores the task. */
+	private final MappedTaskDAG dag;
+	
+	/** The index of the task in the task DAG. */
+	private final int index;
+	
+	/**
+	 * Creates a new execution context of a task of a mapped task DAG.
+	 * @param task The view of the task.
+	 * @param dag The mapped task DAG which stores the task.
+	 * @param index The index of the task in the task DAG.
+	 * @constructor
+	 */
+	MappedTaskExecutionContext(MappedTask task, MappedTaskDAG dag, int index) {
+		super(task);
+		this.dag = dag;
+		this.index = index;
+	}
+	
+	/**
+	 * Ignores the minimum starting date, which was computed when compiling.
+	 * @param minStartDate The minimum starting date of the task.
+	 */
+	@Override
+	public void setMinStartDate(int minStartDate) {
+	}
+	
+	/**
+	 * Ignores the maximum starting date, which was computed when compiling.
+	 * @param maxStartDate The maximum starting date of the task.
+	 */
+	@Override
+	public void setMaxStartDate(int maxStartDate) {
+	}
+	
+	/**
+	 * Ignores the starting dates, which were computed when compiling.
+	 * @param minStartDate The minimum starting date of the task.
+	 * @param maxStartDate The maximum starting date of the task.
+	 */
+	@Override
+	void setStartDates(int minStartDate, int maxStartDate) {
+	}
+	
+	/**
+	 * Ignores the priority, which was computed when compiling.
+	 * @param priority The priority of the task.
+	 */
+	@Override
+	public void setPriority(double priority) {
+	}
+	
+	/**
+	 * Sets the current status of the task, the task DAG keeping the views of the ready
+	 * and running tasks, which hold the date at which they became ready.
+	 * @param status The current status of the task.
+	 */
+	@Override
+	public void setStatus(TaskStatus status) {
+		super.setStatus(status);
+		dag.setStatus((MappedTask) getTask(), status);
+	}
+	
+	/**
+	 * Sets the number of parent tasks which are not finished.
+	 * @param unfinishedParentCount The number of unfinished parent tasks.
+	 */
+	@Override
+	void setUnfinishedParentCount(int unfinishedParentCount) {
+		dag.setUnfinishedParentCount(index, unfinishedParentCount);
+	}
+	
+	/**
+	 * Accounts for a parent task which finished.
+	 * @return the number of parent tasks which are still not finished.
+	 */
+	@Override
+	int onParentFinished() {
+		int count = getUnfinishedParentCount() - 1;
+		setUnfinishedParentCount(count);
+		return count;
+	}
+	
+	/**
+	 * Accounts for a finished parent task which must run again.
+	 */
+	@Override
+	void onParentLost() {
+		setUnfinishedParentCount(getUnfinishedParentCount() + 1);
+	}
+	
+	/**
+	 * Gets the number of parent tasks which are not finished.
+	 * @return the number of unfinished parent tasks, 0 if the task can run.
+	 */
+	@Override
+	public int getUnfinishedParentCount() {
+		return dag.getUnfinishedParentCount(index);
+	}
+	
+	/**
+	 * Gets the minimum starting date of the task in the task DAG.
+	 * @return the minimum starting date of the task.
+	 */
+	@Override
+	public Integer getMinStartDate() {
+		return dag.getMinStartDate(index);
+	}
+	
+	/**
+	 * Gets the maximum starting date of the task in the task DAG.
+	 * @return the maximum starting date of the task.
+	 */
+	@Override
+	public Integer getMaxStartDate() {
+		return dag.getMaxStartDate(index);
+	}
+	
+	/**
+	 * Gets the priority of the task in the task DAG.
+	 * @return the priority of the task.
+	 */
+	@Override
+	public Double getPriority() {
+		return dag.getPriority(index);
+	}
+	
+	/**
+	 * Gets the current status of the task in the task DAG execution pipeline.
+	 * @return the current status of the task.
+	 */
+	@Override
+	public TaskStatus getStatus() {
+		return dag.getStateStore().getStatus(index);
+	}
+	
+	/**
+	 * Gets the string representation of the task execution context.
+	 * @return a string representing the execution context of the task.
+	 */
+	@Override
+	public String toString() {
+		return getTask().getName() + ": d=(" + getMinStartDate() + ","
+				+ getMaxStartDate() + ") p=" + getPriority() + " s=\""
+				+ TaskStatus.toString(getStatus()) + "\"";
+	}
+}
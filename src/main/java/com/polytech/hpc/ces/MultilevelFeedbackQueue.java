@@ -0,0 +1,272 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.util.AbstractQueue;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of ready tasks as a multi-level feedback queue with aging.
+ * A task enters the level given by its priority, level 0 holding the most critical
+ * tasks, and is demoted by one level per preemption. Within a level, tasks are served
+ * in the order they became ready.
+ * 
+ * Aging is lazy: time is divided in epochs of agingInterval, and a task waiting since
+ * k epochs is served as if it were k levels higher. No task is ever moved or scanned,
+ * since the oldest task of each level, its head, is the most promoted one: polling
+ * compares the heads of the levels, in O(levels + log n).
+ * @class
+ * @author Nicolas
+ */
+public class MultilevelFeedbackQueue extends AbstractQueue<Task> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			MultilevelFeedbackQueue.class);
+	
+	/**
+	 * Orders the tasks of a level by date at which they became ready, then by
+	 * decreasing priority.
+	 */
+	private static final Comparator<Task> WAITING_ORDER = new Comparator<Task>() {
+		@Override
+		public int compare(Task t1, Task t2) {
+			int order = t1.getExecutionContext().getReadyDate()
+					- t2.getExecutionContext().getReadyDate();
+			if (order == 0) {
+				order = Simulator.PRIORITY_ORDER.compare(t1, t2);
+			}
+			return order;
+		}
+	};
+	
+	/** The tasks of every level, level 0 being served first. */
+	private PriorityQueue<Task>[] levels;
+	
+	/** The duration of an epoch, after which a waiting task is promoted. */
+	private int agingInterval;
+	
+	/** The number of tasks held. */
+	private int size;
+	
+	/**
+	 * Creates a new empty multi-level feedback queue.
+	 * @param levelCount The number of levels.
+	 * @param agingInterval The time after which a waiting task is promoted by one level,
+	 * or Integer.MAX_VALUE to disable aging.
+	 * @constructor
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public MultilevelFeedbackQueue(int levelCount, int agingInterval) {
+		if (levelCount < 1) {
+			LOGGER.error("Attempt to create a multi-level queue with {} levels",
+					levelCount);
+			levelCount = 1;
+		}
+		if (agingInterval <= 0) {
+			LOGGER.error("Attempt to set an invalid aging interval ({})", agingInterval);
+			agingInterval = Integer.MAX_VALUE;
+		}
+		levels = new PriorityQueue[levelCount];
+		for (int i = 0; i < levelCount; i++) {
+			levels[i] = new PriorityQueue<Task>(11, WAITING_ORDER);
+		}
+		this.agingInterval = agingInterval;
+		size = 0;
+	}
+	
+	/**
+	 * Gets the level a task enters, from its priority and its preemptions.
+	 * @param task The ready task.
+	 * @return the level of the task, 0 being the highest.
+	 */
+	int getBaseLevel(Task task) {
+		long level = (long) ((1.0 - task.getCriticity()) * levels.length)
+				+ task.getPreemptionCount();
+		return (int) Math.min(level, levels.length - 1);
+	}
+	
+	/**
+	 * Gets the level of a task once promoted according to its waiting time.
+	 * @param task The ready task.
+	 * @return the current level of the task, 0 being the highest.
+	 */
+	public int getLevel(Task task) {
+		return (int) Math.max(0, getPromotedLevel(getBaseLevel(task), task));
+	}
+	
+	/**
+	 * Gets the level of a task once promoted, which is negative for the tasks which
+	 * waited longer than needed to reach level 0.
+	 * @param level The level the task entered.
+	 * @param task The ready task.
+	 * @return the promoted level.
+	 */
+	private long getPromotedLevel(int level, Task task) {
+		int epoch = Simulator.getTime() / agingInterval;
+		return (long) level - (epoch - task.getExecutionContext().getReadyDate()
+				/ agingInterval);
+	}
+	
+	/**
+	 * Finds the level whose head is served first.
+	 * @return the level, or -1 if the queue is empty.
+	 */
+	private int selectLevel() {
+		int selected = -1;
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < levels.length; i++) {
+			Task head = levels[i].peek();
+			if (head != null) {
+				long level = getPromotedLevel(i, head);
+				if (level < best) {
+					best = level;
+					selected = i;
+				}
+			}
+		}
+		return selected;
+	}
+	
+	/**
+	 * Adds a ready task to the level given by its priority and its preemptions.
+	 * @param task The ready task.
+	 * @return always true.
+	 */
+	@Override
+	public boolean offer(Task task) {
+		levels[getBaseLevel(task)].add(task);
+		size++;
+		return true;
+	}
+	
+	/**
+	 * Gets the task served first, without removing it.
+	 * @return the task, or null if the queue is empty.
+	 */
+	@Override
+	public Task peek() {
+		int level = selectLevel();
+		return level >= 0 ? levels[level].peek() : null;
+	}
+	
+	/**
+	 * Removes the task served first.
+	 * @return the task, or null if the queue is empty.
+	 */
+	@Override
+	public Task poll() {
+		int level = selectLevel();
+		if (level < 0) {
+			return null;
+		}
+		size--;
+		return levels[level].poll();
+	}
+	
+	/**
+	 * Removes a task from its level.
+	 * @param o The task to remove.
+	 * @return true if the task was held.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Task)) {
+			return false;
+		}
+		boolean removed = levels[getBaseLevel((Task) o)].remove(o);
+		// the priority of the task may have changed since it was added
+		for (int i = 0; !removed && i < levels.length; i++) {
+			removed = levels[i].remove(o);
+		}
+		if (removed) {
+			size--;
+		}
+		return removed;
+	}
+	
+	/**
+	 * Gets the number of tasks held.
+	 * @return the number of tasks.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of levels.
+	 * @return the number of levels.
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+	
+	/**
+	 * Gets the number of tasks which entered a level, whatever their promotion.
+	 * @param level The level.
+	 * @return the number of tasks of the level.
+	 */
+	public int getDepth(int level) {
+		return levels[level].size();
+	}
+	
+	/**
+	 * Iterates over the tasks level by level, in no particular order within a level.
+	 * @return an iterator over the tasks.
+	 */
+	@Override
+	public Iterator<Task> iterator() {
+		return new Iterator<Task>() {
+			/** The level being iterated. */
+			private int level = 0;
+			
+			/** The iterator over the current level. */
+			private Iterator<Task> current = levels[0].iterator();
+			
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && level < levels.length - 1) {
+					current = levels[++level].iterator();
+				}
+				return current.hasNext();
+			}
+			
+			@Override
+			public Task next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+			
+			@Override
+			public void remove() {
+				current.remove();
+				size--;
+			}
+		};
+	}
+}
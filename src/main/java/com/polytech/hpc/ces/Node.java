@@ -19,6 +19,8 @@
 
 package com.polytech.hpc.ces;
 
+import java.util.ArrayList;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,5 +32,130 @@ import org.slf4j.LoggerFactory;
 public class Node {
 	private static final Logger LOGGER = LoggerFactory.getLogger(Node.class);
 	
-	// TODO: implement this class
+	/** The identifier of the node in the cluster. */
+	private int id;
+	
+	/** The resource capacity of the node. */
+	private ResourceDescriptor capacity;
+	
+	/** The containers deployed on the node. */
+	private ArrayList<Container> containers;
+	
+	/** The rack of the node, whose nodes may fail together. */
+	private int rack;
+	
+	/** Whether the node is up. */
+	private boolean up;
+	
+	/**
+	 * Creates a new node.
+	 * @param id The identifier of the node in the cluster.
+	 * @param capacity The resource capacity of the node.
+	 * @constructor
+	 */
+	public Node(int id, ResourceDescriptor capacity) {
+		this.id = id;
+		this.capacity = capacity;
+		containers = new ArrayList<Container>();
+		rack = id;
+		up = true;
+	}
+	
+	/**
+	 * Deploys a container on the node.
+	 * @param container The container to deploy.
+	 * @return false if the container belongs to another node or exceeds the resources
+	 * left on the node.
+	 */
+	public boolean addContainer(Container container) {
+		if (container.getNode() != id) {
+			LOGGER.error("Attempt to deploy a container of node {} on node {}",
+					container.getNode(), id);
+			return false;
+		}
+		if (!getResourcesUnallocated().isSuperSet(container.getCapacity())) {
+			LOGGER.error("Attempt to deploy a container of {} on node {} which has {} left",
+					container.getCapacity(), id, getResourcesUnallocated());
+			return false;
+		}
+		containers.add(container);
+		return true;
+	}
+	
+	/**
+	 * Sets the rack of the node.
+	 * @param rack The rack of the node, which defaults to the node identifier.
+	 */
+	public void setRack(int rack) {
+		this.rack = rack;
+	}
+	
+	/**
+	 * Sets whether the node is up.
+	 * @param up Whether the node is up.
+	 */
+	void setUp(boolean up) {
+		this.up = up;
+	}
+	
+	/**
+	 * Gets the identifier of the node in the cluster.
+	 * @return the identifier of the node.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Gets the resource capacity of the node.
+	 * @return the resource capacity of the node.
+	 */
+	public ResourceDescriptor getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Gets the resources of the node that are not allocated to a container.
+	 * @return the resources not allocated to a container.
+	 */
+	public ResourceDescriptor getResourcesUnallocated() {
+		ResourceDescriptor res = new ResourceDescriptor(capacity);
+		for (Container container : containers) {
+			res.subtract(container.getCapacity());
+		}
+		return res;
+	}
+	
+	/**
+	 * Gets the containers deployed on the node.
+	 * @return the list of containers.
+	 */
+	public ArrayList<Container> getContainers() {
+		return containers;
+	}
+	
+	/**
+	 * Gets the rack of the node.
+	 * @return the rack of the node.
+	 */
+	public int getRack() {
+		return rack;
+	}
+	
+	/**
+	 * Returns whether the node is up.
+	 * @return true if the node is up, false if it failed.
+	 */
+	public boolean isUp() {
+		return up;
+	}
+	
+	/**
+	 * Returns the string representation of the node.
+	 * @return a string representing the node.
+	 */
+	@Override
+	public String toString() {
+		return "Node " + id + " " + capacity + (up ? "" : " (down)");
+	}
 }
@@ -0,0 +1,63 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the recovery of a failed node, generated by a failure injector.
+ * @class
+ * @author Nicolas
+ */
+public class NodeRecoveryEvent extends Event {
+	/** The failure injector which generated the event. */
+	private FailureInjector injector;
+	
+	/** The node which recovers. */
+	private Node node;
+	
+	/**
+	 * Creates a new node recovery event.
+	 * @param time The date at which the node recovers.
+	 * @param injector The failure injector which generated the event.
+	 * @param node The node which recovers.
+	 * @constructor
+	 */
+	public NodeRecoveryEvent(int time, FailureInjector injector, Node node) {
+		super(time);
+		this.injector = injector;
+		this.node = node;
+	}
+	
+	/**
+	 * Makes the node recover.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		injector.onNodeRecovery(simulator, node);
+	}
+	
+	/**
+	 * Gets the node which recovers.
+	 * @return the node.
+	 */
+	public Node getNode() {
+		return node;
+	}
+}
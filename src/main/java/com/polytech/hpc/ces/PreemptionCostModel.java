@@ -0,0 +1,100 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Models the overheads of preempting and restarting tasks, which the simulator plays
+ * as scheduled events. A preempted task holds the resources of its container until the
+ * container is torn down. A task which restarts after an interrupted attempt warms up
+ * and fetches its input again, from the node which holds its data, before it runs for
+ * its whole duration, the work of its interrupted attempts being lost.
+ * @class
+ * @author Nicolas
+ */
+public class PreemptionCostModel {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			PreemptionCostModel.class);
+	
+	/** The time to tear down the container of a preempted task. */
+	private final int teardownLatency;
+	
+	/** The time for a restarted task to warm up. */
+	private final int warmUp;
+	
+	/** The time to fetch the input of a task on the node which holds its data. */
+	private final int localFetchTime;
+	
+	/** The time to fetch the input of a task from another node. */
+	private final int remoteFetchTime;
+	
+	/**
+	 * Creates a new preemption cost model.
+	 * @param teardownLatency The time to tear down the container of a preempted task.
+	 * @param warmUp The time for a restarted task to warm up.
+	 * @param localFetchTime The time to fetch the input of a task on the node which
+	 * holds its data.
+	 * @param remoteFetchTime The time to fetch the input of a task from another node.
+	 * @constructor
+	 */
+	public PreemptionCostModel(int teardownLatency, int warmUp, int localFetchTime,
+			int remoteFetchTime) {
+		if (teardownLatency < 0 || warmUp < 0 || localFetchTime < 0
+				|| remoteFetchTime < 0) {
+			LOGGER.error("Negative preemption costs were set to 0");
+		}
+		this.teardownLatency = Math.max(0, teardownLatency);
+		this.warmUp = Math.max(0, warmUp);
+		this.localFetchTime = Math.max(0, localFetchTime);
+		this.remoteFetchTime = Math.max(0, remoteFetchTime);
+	}
+	
+	/**
+	 * Gets the time to tear down the container of a preempted task.
+	 * @return the teardown latency.
+	 */
+	public int getTeardownLatency() {
+		return teardownLatency;
+	}
+	
+	/**
+	 * Gets the time for a restarted task to warm up.
+	 * @return the warm-up time.
+	 */
+	public int getWarmUp() {
+		return warmUp;
+	}
+	
+	/**
+	 * Gets the time for a restarted task to fetch its input again.
+	 * @param task The restarted task.
+	 * @param container The container which runs the task.
+	 * @return the fetch time, or 0 if the task has no input data.
+	 */
+	public int getFetchTime(Task task, Container container) {
+		if (task.getDataNodeId() == null) {
+			return 0;
+		}
+		return task.getDataNodeId() == container.getNode() ? localFetchTime
+				: remoteFetchTime;
+	}
+}
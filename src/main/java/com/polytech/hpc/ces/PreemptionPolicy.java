@@ -0,0 +1,38 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.List;
+
+/**
+ * Decides which running tasks to preempt to run a ready task.
+ * @interface
+ * @author Nicolas
+ */
+public interface PreemptionPolicy {
+	/**
+	 * Selects the running tasks to preempt so that a ready task fits in a container.
+	 * @param simulator The simulator running the tasks.
+	 * @param task The ready task which does not fit in any container.
+	 * @return the tasks to preempt, all from the same container, or an empty list if
+	 * the task should wait.
+	 */
+	List<Task> selectVictims(Simulator simulator, Task task);
+}
@@ -0,0 +1,79 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Preempts the running tasks whose priority is lower than the priority of the ready
+ * task. The container which requires the fewest preemptions is chosen, the least
+ * critical tasks being preempted first.
+ * @class
+ * @author Nicolas
+ */
+public class PriorityPreemptionPolicy implements PreemptionPolicy {
+	/** Orders the tasks by increasing priority. */
+	private static final Comparator<Task> CRITICITY_ORDER = new Comparator<Task>() {
+		@Override
+		public int compare(Task t1, Task t2) {
+			return Double.compare(t1.getCriticity(), t2.getCriticity());
+		}
+	};
+	
+	/**
+	 * Selects the fewest running tasks of lower priority to preempt in a container.
+	 * @param simulator The simulator running the tasks.
+	 * @param task The ready task which does not fit in any container.
+	 * @return the tasks to preempt, or an empty list if there is no such container.
+	 */
+	@Override
+	public List<Task> selectVictims(Simulator simulator, Task task) {
+		List<Task> best = Collections.emptyList();
+		for (Container container : simulator.getContainers()) {
+			if (!container.getCapacity().isSuperSet(task.getRequiredResources())) {
+				continue;
+			}
+			ArrayList<Task> candidates = new ArrayList<Task>();
+			for (Task running : container.getTasks()) {
+				if (running.getCriticity() < task.getCriticity()) {
+					candidates.add(running);
+				}
+			}
+			Collections.sort(candidates, CRITICITY_ORDER);
+			ResourceDescriptor avail = container.getResourcesAvail();
+			ArrayList<Task> victims = new ArrayList<Task>();
+			for (Task candidate : candidates) {
+				if (avail.isSuperSet(task.getRequiredResources())) {
+					break;
+				}
+				avail.add(candidate.getRequiredResources());
+				victims.add(candidate);
+			}
+			if (avail.isSuperSet(task.getRequiredResources()) && !victims.isEmpty()
+					&& (best.isEmpty() || victims.size() < best.size())) {
+				best = victims;
+			}
+		}
+		return best;
+	}
+}
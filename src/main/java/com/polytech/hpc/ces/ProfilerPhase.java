@@ -0,0 +1,50 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents a phase of the simulation measured by the profiler.
+ * @enum
+ * @author Nicolas
+ */
+public enum ProfilerPhase {
+	EVENT,      // An event is dispatched.
+	READINESS,  // Finished tasks release their children in their task DAG.
+	PLACEMENT,  // Ready tasks are placed in the containers.
+	PREEMPTION, // Running tasks are selected by the preemption policy and preempted.
+	TRACE;      // Attempts are written to the execution trace or the decision log.
+	
+	/**
+	 * Gets the string representation of a profiler phase.
+	 * @param phase The input profiler phase.
+	 * @return a string representing the profiler phase.
+	 */
+	public static String toString(ProfilerPhase phase) {
+		switch (phase) {
+		case EVENT: return "event";
+		case READINESS: return "readiness";
+		case PLACEMENT: return "placement";
+		case PREEMPTION: return "preemption";
+		case TRACE: return "trace";
+		default: return "?";
+		}
+	}
+}
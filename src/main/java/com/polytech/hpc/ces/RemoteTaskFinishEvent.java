@@ -0,0 +1,49 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the notification of the end of a task which migrated, received by the
+ * shard which holds its task DAG.
+ * @class
+ * @author Nicolas
+ */
+public class RemoteTaskFinishEvent extends ShardMessage {
+	/**
+	 * Creates a new remote task finish event.
+	 * @param time The date at which the notification is received.
+	 * @param source The index of the shard which ran the task.
+	 * @param target The index of the shard which holds the task DAG.
+	 * @param task The task which finished.
+	 * @constructor
+	 */
+	public RemoteTaskFinishEvent(int time, int source, int target, Task task) {
+		super(time, source, target, task);
+	}
+	
+	/**
+	 * Marks the task as finished in its task DAG.
+	 * @param simulator The shard processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		((SimulatorShard) simulator).onRemoteTaskFinished(getTask());
+	}
+}
@@ -19,24 +19,30 @@
 
 package com.polytech.hpc.ces;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A resource descriptor that holds the parameters of a resource.
+ * Resources are dense vectors over the dimensions declared by ResourceDimensions, the
+ * first two being the number of virtual cores and the amount of memory, in MB.
+ * Comparisons are written as unrolled branch-free loops, so that checking whether a
+ * task fits in a container costs about the same whatever the number of dimensions.
+ * @see ResourceDimensions
  * @class
  * @author Nicolas
  */
 public class ResourceDescriptor {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceDescriptor.class);
 	
-	/** Number of virtual cores. */
-	private int vcores;
-	
-	/** Amount of memory, in MB. */
-	private int memory;
+	/** The amount of resource for every dimension. */
+	private int[] values;
 	
 	/**
 	 * Creates a new resource descriptor from a number of virtual cores and an amount of memory, 
@@ -46,6 +52,7 @@ public class ResourceDescriptor {
 	 * @constructor
 	 */
 	public ResourceDescriptor(int vcores, int memory) {
+		this();
 		setVcores(vcores);
 		setMemory(memory);
 	}
@@ -55,8 +62,7 @@ public class ResourceDescriptor {
 	 * @constructor
 	 */
 	public ResourceDescriptor() {
-		vcores = 0;
-		memory = 0;
+		values = new int[ResourceDimensions.getCount()];
 	}
 	
 	/**
@@ -65,8 +71,7 @@ public class ResourceDescriptor {
 	 * @constructor
 	 */
 	public ResourceDescriptor(ResourceDescriptor res) {
-		vcores = res.getVcores();
-		memory = res.getMemory();
+		values = res.values.clone();
 	}
 	
 	/**
@@ -75,15 +80,26 @@ public class ResourceDescriptor {
 	 * @constructor
 	 */
 	public ResourceDescriptor(JSONArray array) {
+		this();
 		setFromJSONArray(array);
 	}
 	
+	/**
+	 * Creates a new resource descriptor from a JSON object.
+	 * @param object The JSON object that holds the resource parameters by name.
+	 * @constructor
+	 */
+	public ResourceDescriptor(JSONObject object) {
+		this();
+		setFromJSONObject(object);
+	}
+	
 	/**
 	 * Gets the number of virtual cores;
 	 * @return the number of virtual cores;
 	 */
 	public int getVcores() {
-		return vcores;
+		return values[ResourceDimensions.VCORES];
 	}
 	
 	/**
@@ -91,7 +107,25 @@ public class ResourceDescriptor {
 	 * @return the amount of memory.
 	 */
 	public int getMemory() {
-		return memory;
+		return values[ResourceDimensions.MEMORY];
+	}
+	
+	/**
+	 * Gets the amount of resource of a dimension.
+	 * @param dimension The index of the dimension.
+	 * @return the amount of resource, 0 if the dimension was declared after the creation
+	 * of the resource descriptor.
+	 */
+	public int get(int dimension) {
+		return dimension < values.length ? values[dimension] : 0;
+	}
+	
+	/**
+	 * Gets the number of dimensions of the resource descriptor.
+	 * @return the number of dimensions.
+	 */
+	public int getDimensionCount() {
+		return values.length;
 	}
 	
 	/**
@@ -99,12 +133,7 @@ public class ResourceDescriptor {
 	 * @param vcores The number of virtual cores.
 	 */
 	public void setVcores(int vcores) {
-		if (vcores < 0) {
-			LOGGER.error("Attempt to set a negative number of vcores");
-			this.vcores = 0;
-			return;
-		}
-		this.vcores = vcores;
+		set(ResourceDimensions.VCORES, vcores);
 	}
 	
 	/**
@@ -112,22 +141,84 @@ public class ResourceDescriptor {
 	 * @param memory The amount of memory.
 	 */
 	public void setMemory(int memory) {
-		if (memory < 0) {
-			LOGGER.error("Attempt to set a negative number of memory");
-			this.memory = 0;
+		set(ResourceDimensions.MEMORY, memory);
+	}
+	
+	/**
+	 * Sets the amount of resource of a dimension.
+	 * @param dimension The index of the dimension.
+	 * @param value The amount of resource.
+	 */
+	public void set(int dimension, int value) {
+		if (dimension >= values.length) {
+			if (dimension >= ResourceDimensions.getCount()) {
+				LOGGER.error("Attempt to set the undeclared resource dimension {}",
+						dimension);
+				return;
+			}
+			int[] extended = new int[ResourceDimensions.getCount()];
+			System.arraycopy(values, 0, extended, 0, values.length);
+			values = extended;
+		}
+		if (value < 0) {
+			LOGGER.error("Attempt to set a negative amount of {}",
+					ResourceDimensions.getName(dimension));
+			values[dimension] = 0;
 			return;
 		}
-		this.memory = memory;
+		values[dimension] = value;
 	}
 	
 	/**
 	 * Sets the resource parameters from a JSON array.
+	 * The array holds the amounts in the order of the declared dimensions; missing
+	 * amounts are set to 0.
 	 * @param array The JSON array that holds the resource parameters.
 	 */
 	public void setFromJSONArray(JSONArray array) {
+		if (array.length() > ResourceDimensions.getCount()) {
+			LOGGER.warn("{} amounts given for {} declared resource dimensions",
+					array.length(), ResourceDimensions.getCount());
+		}
+		try {
+			int count = Math.min(array.length(), ResourceDimensions.getCount());
+			for (int i = 0; i < count; i++) {
+				set(i, array.getInt(i));
+			}
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns the resource parameters as a JSON array, in the order of the declared
+	 * dimensions.
+	 * @return the JSON array that holds the resource parameters.
+	 */
+	public JSONArray toJSONArray() {
+		JSONArray array = new JSONArray();
+		for (int i = 0; i < getDimensionCount(); i++) {
+			array.put(get(i));
+		}
+		return array;
+	}
+	
+	/**
+	 * Sets the resource parameters from a JSON object, indexed by dimension name.
+	 * @param object The JSON object that holds the resource parameters.
+	 */
+	public void setFromJSONObject(JSONObject object) {
 		try {
-			setVcores(array.getInt(0));
-			setMemory(array.getInt(1));
+			Iterator<?> keys = object.keys();
+			while (keys.hasNext()) {
+				String name = (String) keys.next();
+				int dimension = ResourceDimensions.indexOf(name);
+				if (dimension < 0) {
+					LOGGER.error("Unknown resource dimension {}", name);
+					continue;
+				}
+				set(dimension, object.getInt(name));
+			}
 		} catch (JSONException e) {
 			LOGGER.error("JSONException occured: {}", e.getMessage());
 		}
@@ -137,8 +228,9 @@ public class ResourceDescriptor {
 	 * Resets the parameters of a resource descriptor.
 	 */
 	public void reset() {
-		vcores = 0;
-		memory = 0;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 0;
+		}
 	}
 	
 	/**
@@ -146,8 +238,12 @@ public class ResourceDescriptor {
 	 * @param res The resource parameters to add.
 	 */
 	public void add(ResourceDescriptor res) {
-		setVcores(vcores + res.getVcores());
-		setMemory(memory + res.getMemory());
+		if (res.values.length > values.length) {
+			values = Arrays.copyOf(values, res.values.length);
+		}
+		for (int i = 0; i < res.values.length; i++) {
+			values[i] += res.values[i];
+		}
 	}
 	
 	/**
@@ -158,8 +254,9 @@ public class ResourceDescriptor {
 		if (!this.isSuperSet(res)) {
 			LOGGER.warn("Attempt to substract {} to {}", res, this);
 		}
-		setVcores(vcores - res.getVcores());
-		setMemory(memory - res.getMemory());
+		for (int i = 0; i < Math.min(values.length, res.values.length); i++) {
+			values[i] = Math.max(0, values[i] - res.values[i]);
+		}
 	}
 	
 	/**
@@ -168,7 +265,67 @@ public class ResourceDescriptor {
 	 * @return true if the resource descriptor is a super set of the given one.
 	 */
 	public boolean isSuperSet(ResourceDescriptor res) {
-		return vcores >= res.getVcores() && memory >= res.getMemory();
+		return fits(values, null, res.values);
+	}
+	
+	/**
+	 * Returns whether some resources fit in a capacity once the used resources are
+	 * removed from it, without allocating the available resources.
+	 * @param capacity The capacity.
+	 * @param used The resources used in the capacity.
+	 * @param res The resources to fit.
+	 * @return true if the resources fit in the available capacity.
+	 */
+	public static boolean fits(ResourceDescriptor capacity, ResourceDescriptor used,
+			ResourceDescriptor res) {
+		return fits(capacity.values, used.values, res.values);
+	}
+	
+	/**
+	 * Returns whether an amount fits in a capacity minus the used amount, for every
+	 * dimension. Differences are ORed so that the sign bit tells whether a dimension
+	 * does not fit; the loop has no branch and is unrolled by four dimensions.
+	 * Amounts are never negative, so that the differences cannot overflow.
+	 * @param capacity The capacity vector.
+	 * @param used The used vector, or null if nothing is used.
+	 * @param res The amount vector.
+	 * @return true if the amount fits for every dimension.
+	 */
+	private static boolean fits(int[] capacity, int[] used, int[] res) {
+		int n = Math.min(capacity.length, res.length);
+		if (used != null) {
+			n = Math.min(n, used.length);
+		}
+		int signs = 0;
+		int i = 0;
+		if (used == null) {
+			for (; i + 3 < n; i += 4) {
+				signs |= (capacity[i] - res[i]) | (capacity[i + 1] - res[i + 1])
+						| (capacity[i + 2] - res[i + 2]) | (capacity[i + 3] - res[i + 3]);
+			}
+			for (; i < n; i++) {
+				signs |= capacity[i] - res[i];
+			}
+		} else {
+			for (; i + 3 < n; i += 4) {
+				signs |= (capacity[i] - used[i] - res[i])
+						| (capacity[i + 1] - used[i + 1] - res[i + 1])
+						| (capacity[i + 2] - used[i + 2] - res[i + 2])
+						| (capacity[i + 3] - used[i + 3] - res[i + 3]);
+			}
+			for (; i < n; i++) {
+				signs |= capacity[i] - used[i] - res[i];
+			}
+		}
+		// dimensions missing from the capacity or the used vectors are 0
+		for (int j = n; j < res.length; j++) {
+			int avail = j < capacity.length ? capacity[j] : 0;
+			if (used != null && j < used.length) {
+				avail -= used[j];
+			}
+			signs |= avail - res[j];
+		}
+		return signs >= 0;
 	}
 	
 	/**
@@ -177,6 +334,10 @@ public class ResourceDescriptor {
 	 */
 	@Override
 	public String toString() {
-		return "{" + vcores + "vcores, " + memory + "MB}";
+		String resString = "{" + getVcores() + "vcores, " + getMemory() + "MB";
+		for (int i = 2; i < values.length; i++) {
+			resString += ", " + values[i] + " " + ResourceDimensions.getName(i);
+		}
+		return resString + "}";
 	}
 }
@@ -0,0 +1,122 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Declares the resource dimensions modelled by the resource descriptors.
+ * The first two dimensions are always the number of virtual cores and the amount of
+ * memory, in MB. Other dimensions (GPUs, local SSD, network bandwidth...) are declared
+ * once, before any resource descriptor is created. The dimensions are shared by all
+ * the simulations of the process, so that a different set of dimensions cannot be
+ * declared afterwards.
+ * @class
+ * @author Nicolas
+ */
+public class ResourceDimensions {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			ResourceDimensions.class);
+	
+	/** The index of the virtual cores dimension. */
+	public static final int VCORES = 0;
+	
+	/** The index of the memory dimension. */
+	public static final int MEMORY = 1;
+	
+	/** The names of the dimensions. */
+	private static volatile String[] names = {"vcores", "memory"};
+	
+	/**
+	 * Declares the resource dimensions which follow the virtual cores and the memory.
+	 * Declaring no dimension, or the dimensions already declared, has no effect.
+	 * @param extraNames The names of the additional dimensions.
+	 * @return false if other dimensions are already declared or a name is repeated.
+	 */
+	public static synchronized boolean declare(String... extraNames) {
+		if (extraNames.length == 0) {
+			return true;
+		}
+		if (names.length > 2) {
+			if (Arrays.asList(names).subList(2, names.length).equals(
+					Arrays.asList(extraNames))) {
+				return true;
+			}
+			LOGGER.error("Resource dimensions {} are declared while {} already are",
+					Arrays.toString(extraNames), Arrays.toString(names));
+			return false;
+		}
+		String[] declared = Arrays.copyOf(names, 2 + extraNames.length);
+		for (int i = 0; i < extraNames.length; i++) {
+			for (int j = 0; j < 2 + i; j++) {
+				if (declared[j].equals(extraNames[i])) {
+					LOGGER.error("Resource dimension {} is declared twice", extraNames[i]);
+					return false;
+				}
+			}
+			declared[2 + i] = extraNames[i];
+		}
+		names = declared;
+		return true;
+	}
+	
+	/**
+	 * Gets the number of resource dimensions.
+	 * @return the number of dimensions.
+	 */
+	public static int getCount() {
+		return names.length;
+	}
+	
+	/**
+	 * Gets the name of a resource dimension.
+	 * @param dimension The index of the dimension.
+	 * @return the name of the dimension.
+	 */
+	public static String getName(int dimension) {
+		return names[dimension];
+	}
+	
+	/**
+	 * Gets the names of the resource dimensions.
+	 * @return a copy of the names, by index.
+	 */
+	public static String[] getNames() {
+		return names.clone();
+	}
+	
+	/**
+	 * Gets the index of a resource dimension.
+	 * @param name The name of the dimension.
+	 * @return the index of the dimension, or -1 if it is not declared.
+	 */
+	public static int indexOf(String name) {
+		String[] current = names;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
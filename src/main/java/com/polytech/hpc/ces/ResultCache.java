@@ -0,0 +1,364 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the results of simulation runs on the local disk, addressed by the content
+ * of their inputs. The key of a run is the SHA-256 digest of its inputs written as
+ * canonical JSON, i.e. with sorted keys and normalised numbers, so that formatting,
+ * key order or settings which do not take part in the inputs do not change it. Every
+ * entry holds the results of a run, and optionally its execution trace. The least
+ * recently used entries are evicted once the entries exceed the size of the cache;
+ * their last use is kept as the modification date of their files, so that it
+ * survives the process.
+ * @class
+ * @author Nicolas
+ */
+public class ResultCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+	
+	/** The version of the results, part of every key so that stale results are missed. */
+	public static final int VERSION = 2;
+	
+	/** The extension of the results files. */
+	private static final String RESULTS_EXTENSION = ".json";
+	
+	/** The extension of the execution trace files. */
+	private static final String TRACE_EXTENSION = ".trace";
+	
+	/** The directory which holds the entries. */
+	private final File directory;
+	
+	/** The maximum size of the entries, in bytes. */
+	private final long maxSize;
+	
+	/** The size of every entry by key, from the least to the most recently used. */
+	private final LinkedHashMap<String, Long> entries;
+	
+	/** The size of all the entries, in bytes. */
+	private long size;
+	
+	/** The number of runs found in the cache. */
+	private long hitCount;
+	
+	/** The number of runs missing from the cache. */
+	private long missCount;
+	
+	/**
+	 * Opens a cache, indexing the entries already in its directory.
+	 * @param directory The directory which holds the entries, created if needed.
+	 * @param maxSize The maximum size of the entries, in bytes.
+	 * @constructor
+	 */
+	public ResultCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		size = 0;
+		hitCount = 0;
+		missCount = 0;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.error("Unable to create cache directory {}", directory);
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(RESULTS_EXTENSION)) {
+				String key = name.substring(0, name.length() - RESULTS_EXTENSION.length());
+				long entrySize = file.length() + getTraceFile(key).length();
+				entries.put(key, entrySize);
+				size += entrySize;
+			}
+		}
+		evict();
+	}
+	
+	/**
+	 * Computes the key of a run from its inputs.
+	 * @param inputs The inputs of the run.
+	 * @return the hexadecimal SHA-256 digest of the canonical inputs, or null if they
+	 * cannot be written.
+	 */
+	public static String getKey(JSONObject inputs) {
+		StringBuilder canonical = new StringBuilder();
+		try {
+			canonical.append(VERSION).append(':');
+			appendCanonical(canonical, inputs);
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+					canonical.toString().getBytes(Charset.forName("UTF-8")));
+			StringBuilder key = new StringBuilder(2 * digest.length);
+			for (byte b : digest) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16));
+				key.append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured: {}", e.getMessage());
+		} catch (NoSuchAlgorithmException e) {
+			LOGGER.error("SHA-256 is not available: {}", e.getMessage());
+		}
+		return null;
+	}
+	
+	/**
+	 * Writes a JSON value with the keys of its objects sorted and its numbers
+	 * normalised.
+	 * @param builder The builder to append the value to.
+	 * @param value The JSON value.
+	 * @throws JSONException if a number is not finite.
+	 */
+	private static void appendCanonical(StringBuilder builder, Object value)
+			throws JSONException {
+		if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			ArrayList<String> keys = new ArrayList<String>();
+			for (Iterator<?> iterator = object.keys(); iterator.hasNext();) {
+				keys.add(iterator.next().toString());
+			}
+			Collections.sort(keys);
+			builder.append('{');
+			for (int i = 0; i < keys.size(); i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(JSONObject.quote(keys.get(i))).append(':');
+				appendCanonical(builder, object.get(keys.get(i)));
+			}
+			builder.append('}');
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			builder.append('[');
+			for (int i = 0; i < array.length(); i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				appendCanonical(builder, array.get(i));
+			}
+			builder.append(']');
+		} else if (value instanceof Number) {
+			builder.append(JSONObject.numberToString((Number) value));
+		} else if (value instanceof String) {
+			builder.append(JSONObject.quote((String) value));
+		} else {
+			builder.append(String.valueOf(value));
+		}
+	}
+	
+	/**
+	 * Gets the results of a run, and copies its execution trace.
+	 * @param key The key of the run.
+	 * @param trace The file to copy the execution trace of the run to, or null.
+	 * @return the results of the run, or null if the run is not in the cache.
+	 */
+	public synchronized JSONObject get(String key, File trace) {
+		// unlike a lookup of the key, getting the entry refreshes its access order
+		if (entries.get(key) == null) {
+			missCount++;
+			return null;
+		}
+		File resultsFile = getResultsFile(key);
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(resultsFile), "UTF-8");
+			JSONObject results = new JSONObject(new JSONTokener(reader));
+			if (trace != null) {
+				Files.copy(getTraceFile(key).toPath(), trace.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			resultsFile.setLastModified(System.currentTimeMillis());
+			hitCount++;
+			return results;
+		} catch (IOException e) {
+			LOGGER.error("Unable to read cache entry {}: {}", key, e.getMessage());
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured in cache entry {}: {}", key,
+					e.getMessage());
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					LOGGER.warn("Unable to close {}: {}", resultsFile, e.getMessage());
+				}
+			}
+		}
+		// the entry is corrupted or was removed behind the cache
+		remove(key);
+		missCount++;
+		return null;
+	}
+	
+	/**
+	 * Adds the results of a run, and its execution trace, evicting the least recently
+	 * used entries if the cache is full.
+	 * The files are written under temporary names and renamed, so that an entry is
+	 * never read partly written.
+	 * @param key The key of the run.
+	 * @param results The results of the run.
+	 * @param trace The execution trace of the run, or null.
+	 */
+	public synchronized void put(String key, JSONObject results, File trace) {
+		File resultsFile = getResultsFile(key);
+		File temporary = new File(directory, key + RESULTS_EXTENSION + ".tmp");
+		Writer writer = null;
+		try {
+			remove(key);
+			if (trace != null) {
+				File traceTemporary = new File(directory, key + TRACE_EXTENSION + ".tmp");
+				Files.copy(trace.toPath(), traceTemporary.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+				Files.move(traceTemporary.toPath(), getTraceFile(key).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			writer = new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8");
+			writer.write(results.toString());
+			writer.close();
+			writer = null;
+			Files.move(temporary.toPath(), resultsFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOGGER.error("Unable to write cache entry {}: {}", key, e.getMessage());
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ignored) {
+					// the entry is dropped anyway
+				}
+			}
+			temporary.delete();
+			getTraceFile(key).delete();
+			return;
+		}
+		long entrySize = resultsFile.length() + getTraceFile(key).length();
+		entries.put(key, entrySize);
+		size += entrySize;
+		evict();
+	}
+	
+	/**
+	 * Removes the least recently used entries until the entries fit in the cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			iterator.remove();
+			size -= entry.getValue();
+			getResultsFile(entry.getKey()).delete();
+			getTraceFile(entry.getKey()).delete();
+		}
+	}
+	
+	/**
+	 * Removes an entry and its files.
+	 * @param key The key of the entry.
+	 */
+	private void remove(String key) {
+		Long entrySize = entries.remove(key);
+		if (entrySize != null) {
+			size -= entrySize;
+		}
+		getResultsFile(key).delete();
+		getTraceFile(key).delete();
+	}
+	
+	/**
+	 * Gets the file which holds the results of an entry.
+	 */
+	private File getResultsFile(String key) {
+		return new File(directory, key + RESULTS_EXTENSION);
+	}
+	
+	/**
+	 * Gets the file which holds the execution trace of an entry.
+	 */
+	private File getTraceFile(String key) {
+		return new File(directory, key + TRACE_EXTENSION);
+	}
+	
+	/**
+	 * Gets the size of the entries of the cache.
+	 * @return the size of the entries, in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of entries of the cache.
+	 * @return the number of cached runs.
+	 */
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * Gets the number of runs found in the cache.
+	 * @return the number of hits.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	/**
+	 * Gets the number of runs missing from the cache.
+	 * @return the number of misses.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+}
@@ -0,0 +1,552 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents a simulation scenario read from a JSON scenario file, which describes
+ * the cluster, the workload, the scheduler, the seeds and the outputs of a simulation:
+ * <pre>
+ * {
+ *   "name": "example",
+ *   "seeds": [42, 43],
+ *   "dimensions": ["gpu", "ssd"],        // after the virtual cores and the memory
+ *   "cluster": [{"count": 2, "capacity": [16, 32768], "containers": 1, "rack": 0}],
+ *   "workload": {"dags": ["example.json"], "copies": 4},
+ *   "scheduler": {
+ *     "preemption": "priority",           // none, priority, delay-aware, dominant-share
+ *     "eventQueue": "heap",               // heap, timing-wheel
+ *     "readyQueue": {"type": "mlfq", "levels": 4, "agingInterval": 50},
+ *     "backfilling": {"mode": "easy", "criticalSlack": 0},
+ *     "schedulingWindow": 64,             // waiting tasks examined per scheduling
+ *     "durationModel": {"type": "lognormal", "sigma": 0.25},
+ *     "speculation": 0.0,
+ *     "preemptionCost": {"teardown": 5, "warmUp": 2, "localFetch": 1,
+ *                        "remoteFetch": 10},
+ *     "retention": "aggregate"            // full, aggregate
+ *   },
+ *   "failures": {"meanTimeBetweenFailures": 500, "meanTimeToRepair": 50,
+ *                "rackCorrelation": 0.0},
+ *   "output": {"trace": "{name}-{seed}.bin", "decisions": "{name}-{seed}.log",
+ *              "report": "{name}-{seed}", "bucketWidth": 10}
+ * }
+ * </pre>
+ * Only the cluster and the workload are required. The containers split the capacity
+ * of their node evenly. The resource dimensions are shared by the whole process, so
+ * that the scenarios run together must declare the same ones. Relative paths are resolved against the directory of the
+ * scenario file, and {name} and {seed} are replaced in the output paths.
+ * @class
+ * @author Nicolas
+ */
+public class Scenario {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Scenario.class);
+	
+	/** The extension of scenario files. */
+	public static final String FILE_EXTENSION = ".scenario.json";
+	
+	/** The name of the scenario. */
+	private String name;
+	
+	/** The directory against which relative paths are resolved. */
+	private File directory;
+	
+	/** The seeds of the runs of the scenario, one run per seed. */
+	private long[] seeds;
+	
+	/** The names of the resource dimensions after the virtual cores and the memory. */
+	private String[] dimensions;
+	
+	/** The groups of identical nodes of the cluster. */
+	private JSONArray cluster;
+	
+	/** The task DAG files of the workload. */
+	private ArrayList<File> dagFiles;
+	
+	/** The number of copies of every task DAG of the workload. */
+	private int copies;
+	
+	/** The scheduler settings. */
+	private JSONObject scheduler;
+	
+	/** The failure injection settings, or null if nodes never fail. */
+	private JSONObject failures;
+	
+	/** The output settings. */
+	private JSONObject output;
+	
+	/**
+	 * Creates a new scenario from a JSON object.
+	 * @param object The JSON object that holds the scenario.
+	 * @param directory The directory against which relative paths are resolved.
+	 * @param defaultName The name of the scenario if the object has none.
+	 * @throws JSONException if a required property is missing or invalid.
+	 * @constructor
+	 */
+	public Scenario(JSONObject object, File directory, String defaultName)
+			throws JSONException {
+		this.directory = directory;
+		name = object.optString("name", defaultName);
+		JSONArray seedArray = object.optJSONArray("seeds");
+		if (seedArray != null) {
+			seeds = new long[seedArray.length()];
+			for (int i = 0; i < seeds.length; i++) {
+				seeds[i] = seedArray.getLong(i);
+			}
+		} else {
+			seeds = new long[] {object.optLong("seed", 0L)};
+		}
+		JSONArray dimensionArray = object.optJSONArray("dimensions");
+		dimensions = new String[dimensionArray != null ? dimensionArray.length() : 0];
+		for (int i = 0; i < dimensions.length; i++) {
+			dimensions[i] = dimensionArray.getString(i);
+		}
+		cluster = object.getJSONArray("cluster");
+		JSONObject workload = object.getJSONObject("workload");
+		JSONArray dags = workload.getJSONArray("dags");
+		dagFiles = new ArrayList<File>();
+		for (int i = 0; i < dags.length(); i++) {
+			dagFiles.add(resolve(dags.getString(i)));
+		}
+		copies = Math.max(1, workload.optInt("copies", 1));
+		scheduler = object.optJSONObject("scheduler");
+		if (scheduler == null) {
+			scheduler = new JSONObject();
+		}
+		failures = object.optJSONObject("failures");
+		output = object.optJSONObject("output");
+		if (output == null) {
+			output = new JSONObject();
+		}
+	}
+	
+	/**
+	 * Loads a scenario from a scenario file.
+	 * @param file The scenario file.
+	 * @return the scenario, or null if the file cannot be read.
+	 */
+	public static Scenario load(File file) {
+		String defaultName = file.getName();
+		if (defaultName.endsWith(FILE_EXTENSION)) {
+			defaultName = defaultName.substring(0,
+					defaultName.length() - FILE_EXTENSION.length());
+		}
+		File directory = file.getAbsoluteFile().getParentFile();
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			return new Scenario(new JSONObject(new JSONTokener(reader)), directory,
+					defaultName);
+		} catch (IOException e) {
+			LOGGER.error("Unable to read scenario {}: {}", file, e.getMessage());
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured in {}: {}", file, e.getMessage());
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					LOGGER.warn("Unable to close {}: {}", file, e.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Resolves a path against the directory of the scenario.
+	 * @param path The path, absolute or relative.
+	 * @return the file.
+	 */
+	private File resolve(String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(directory, path);
+	}
+	
+	/**
+	 * Gets an output file of a run, if the output is set.
+	 * @param key The output property.
+	 * @param seed The seed of the run.
+	 * @return the output file, or null if the output is not set.
+	 */
+	private File getOutput(String key, long seed) {
+		String path = output.optString(key, null);
+		if (path == null) {
+			return null;
+		}
+		return resolve(path.replace("{name}", name).replace("{seed}",
+				Long.toString(seed)));
+	}
+	
+	/**
+	 * Creates the simulator of a run of the scenario, with its cluster and workload.
+	 * @param seed The seed of the run.
+	 * @return the simulator, ready to run.
+	 * @throws JSONException if a setting is invalid.
+	 * @throws IOException if a task DAG cannot be loaded or an output created.
+	 */
+	public Simulator createSimulator(long seed) throws JSONException, IOException {
+		declareDimensions();
+		String eventQueue = scheduler.optString("eventQueue", "heap");
+		Simulator simulator;
+		if (eventQueue.equals("heap")) {
+			simulator = new Simulator(seed);
+		} else if (eventQueue.equals("timing-wheel")) {
+			simulator = new Simulator(seed, new TimingWheelEventQueue());
+		} else {
+			throw new JSONException("Unknown event queue " + eventQueue);
+		}
+		for (int i = 0; i < cluster.length(); i++) {
+			JSONObject group = cluster.getJSONObject(i);
+			ResourceDescriptor capacity = group.optJSONObject("capacity") != null
+					? new ResourceDescriptor(group.getJSONObject("capacity"))
+					: new ResourceDescriptor(group.getJSONArray("capacity"));
+			int containerCount = Math.max(1, group.optInt("containers", 1));
+			ResourceDescriptor containerCapacity = new ResourceDescriptor(capacity);
+			for (int j = 0; j < containerCapacity.getDimensionCount(); j++) {
+				containerCapacity.set(j, capacity.get(j) / containerCount);
+			}
+			for (int j = group.optInt("count", 1); j > 0; j--) {
+				Node node = simulator.addNode(capacity);
+				node.setRack(group.optInt("rack", 0));
+				for (int k = 0; k < containerCount; k++) {
+					simulator.addContainer(node, containerCapacity);
+				}
+			}
+		}
+		configureScheduler(simulator);
+		TaskDAGValidator validator = new TaskDAGValidator();
+		for (Node node : simulator.getNodes()) {
+			validator.addNodeCapacity(node.getCapacity());
+		}
+		for (int i = 0; i < copies; i++) {
+			for (File file : dagFiles) {
+				simulator.addDAG(load(file, validator));
+			}
+		}
+		if (failures != null) {
+			new FailureInjector(failures.getDouble("meanTimeBetweenFailures"),
+					failures.getDouble("meanTimeToRepair"),
+					failures.optDouble("rackCorrelation", 0.0)).start(simulator);
+		}
+		File trace = getOutput("trace", seed);
+		if (trace != null) {
+			simulator.spillExecutionAttempts(trace);
+		}
+		File decisions = getOutput("decisions", seed);
+		if (decisions != null) {
+			simulator.recordDecisions(decisions);
+		}
+		return simulator;
+	}
+	
+	/**
+	 * Declares the resource dimensions of the scenario, before its capacities and task
+	 * DAGs are parsed.
+	 * @throws JSONException if other resource dimensions are declared.
+	 */
+	private void declareDimensions() throws JSONException {
+		if (!ResourceDimensions.declare(dimensions)) {
+			throw new JSONException("Conflicting resource dimensions "
+					+ Arrays.toString(dimensions));
+		}
+	}
+	
+	/**
+	 * Loads a task DAG of the workload, so that an invalid task DAG stops the run with
+	 * the report of its validation.
+	 * @param file The task DAG file.
+	 * @param validator The validator of the task DAG.
+	 * @return the task DAG.
+	 * @throws IOException if the task DAG cannot be loaded or is invalid.
+	 */
+	private static TaskDAG load(File file, TaskDAGValidator validator)
+			throws IOException {
+		TaskDAG dag = TaskDAG.load(file, validator);
+		if (dag != null) {
+			return dag;
+		}
+		DAGValidationReport report = validator.getReport();
+		if (report != null && !report.isValid()) {
+			throw new IOException("Invalid task DAG " + file + ": " + report);
+		}
+		throw new IOException("Unable to load task DAG " + file);
+	}
+	
+	/**
+	 * Sets the policies of a simulator from the scheduler settings.
+	 * @param simulator The simulator.
+	 * @throws JSONException if a setting is invalid.
+	 */
+	private void configureScheduler(Simulator simulator) throws JSONException {
+		String preemption = scheduler.optString("preemption", "priority");
+		if (preemption.equals("priority")) {
+			simulator.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		} else if (preemption.equals("delay-aware")) {
+			simulator.setPreemptionPolicy(new DelayAwarePreemptionPolicy());
+		} else if (preemption.equals("dominant-share")) {
+			simulator.setPreemptionPolicy(new DominantSharePreemptionPolicy());
+		} else if (!preemption.equals("none")) {
+			throw new JSONException("Unknown preemption policy " + preemption);
+		}
+		JSONObject readyQueue = scheduler.optJSONObject("readyQueue");
+		if (readyQueue != null) {
+			String type = readyQueue.getString("type");
+			if (!type.equals("mlfq")) {
+				throw new JSONException("Unknown ready queue " + type);
+			}
+			simulator.setReadyQueue(new MultilevelFeedbackQueue(
+					readyQueue.optInt("levels", 4),
+					readyQueue.optInt("agingInterval", Integer.MAX_VALUE)));
+		}
+		JSONObject backfilling = scheduler.optJSONObject("backfilling");
+		if (backfilling != null) {
+			String mode = backfilling.getString("mode");
+			BackfillMode backfillMode = null;
+			for (BackfillMode value : BackfillMode.values()) {
+				if (BackfillMode.toString(value).equals(mode)) {
+					backfillMode = value;
+				}
+			}
+			if (backfillMode == null) {
+				throw new JSONException("Unknown backfilling mode " + mode);
+			}
+			simulator.setBackfilling(backfillMode, backfilling.optInt("criticalSlack", 0));
+		}
+		simulator.setSchedulingWindow(scheduler.optInt("schedulingWindow",
+				Simulator.DEFAULT_SCHEDULING_WINDOW));
+		JSONObject durationModel = scheduler.optJSONObject("durationModel");
+		if (durationModel != null) {
+			String type = durationModel.getString("type");
+			if (!type.equals("lognormal")) {
+				throw new JSONException("Unknown duration model " + type);
+			}
+			simulator.setDurationModel(new LognormalDurationModel(
+					durationModel.getDouble("sigma")));
+		}
+		simulator.setSpeculation(scheduler.optDouble("speculation", 0.0));
+		JSONObject preemptionCost = scheduler.optJSONObject("preemptionCost");
+		if (preemptionCost != null) {
+			simulator.setPreemptionCostModel(new PreemptionCostModel(
+					preemptionCost.optInt("teardown", 0),
+					preemptionCost.optInt("warmUp", 0),
+					preemptionCost.optInt("localFetch", 0),
+					preemptionCost.optInt("remoteFetch", 0)));
+		}
+		String retention = scheduler.optString("retention", "full");
+		AttemptRetention attemptRetention = null;
+		for (AttemptRetention value : AttemptRetention.values()) {
+			if (AttemptRetention.toString(value).equals(retention)) {
+				attemptRetention = value;
+			}
+		}
+		if (attemptRetention == null) {
+			throw new JSONException("Unknown retention " + retention);
+		}
+		simulator.setAttemptRetention(attemptRetention);
+	}
+	
+	/**
+	 * Runs the scenario with a seed, writing its outputs.
+	 * @param seed The seed of the run.
+	 * @return the results of the run, or the error which stopped it.
+	 */
+	public JSONObject run(long seed) {
+		JSONObject results = new JSONObject();
+		try {
+			results.put("scenario", name);
+			results.put("seed", seed);
+			long start = System.nanoTime();
+			Simulator simulator = createSimulator(seed);
+			simulator.run();
+			results.put("wallTime", (System.nanoTime() - start) / 1000000L);
+			results.put("finished", simulator.isFinished());
+			results.put("makespan", simulator.getCurrentTime());
+			long tasks = 0;
+			long attempts = 0;
+			long preemptions = 0;
+			long failed = 0;
+			long wastedTime = 0;
+			for (TaskDAG dag : simulator.getDAGs()) {
+				for (Task task : dag.getTasks()) {
+					tasks++;
+					attempts += task.getExecutionAttemptCount();
+					preemptions += task.getPreemptionCount();
+					failed += task.getFailureCount();
+					wastedTime += task.getWastedTime();
+				}
+			}
+			results.put("dags", simulator.getDAGs().size());
+			results.put("tasks", tasks);
+			results.put("attempts", attempts);
+			results.put("preemptions", preemptions);
+			results.put("failures", failed);
+			results.put("wastedTime", wastedTime);
+			results.put("backupAttempts", simulator.getBackupAttemptCount());
+			results.put("reservations", simulator.getReservationCount());
+			results.put("teardownTime", simulator.getTeardownTime());
+			results.put("warmUpTime", simulator.getWarmUpTime());
+			results.put("fetchTime", simulator.getFetchTime());
+			File report = getOutput("report", seed);
+			if (report != null) {
+				ExecutionReport executionReport = new ExecutionReport(simulator, report,
+						output.optInt("bucketWidth", 10), output.optDouble("timeScale", 4.0));
+				File trace = getOutput("trace", seed);
+				if (trace != null) {
+					executionReport.addTrace(trace);
+				} else {
+					executionReport.addRetainedAttempts();
+				}
+				executionReport.finish();
+			}
+		} catch (JSONException e) {
+			LOGGER.error("Invalid scenario {}: {}", name, e.getMessage());
+			putError(results, e);
+		} catch (IOException e) {
+			LOGGER.error("Unable to run scenario {}: {}", name, e.getMessage());
+			putError(results, e);
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs the scenario with a seed, unless the results of a run with the same inputs
+	 * are in a result cache. Runs which write a decision log or a report are always
+	 * simulated, since only the results and the execution traces are cached.
+	 * @param seed The seed of the run.
+	 * @param cache The result cache, or null.
+	 * @return the results of the run, or the error which stopped it.
+	 */
+	public JSONObject run(long seed, ResultCache cache) {
+		if (cache == null || output.has("decisions") || output.has("report")) {
+			return run(seed);
+		}
+		String key;
+		try {
+			key = ResultCache.getKey(getInputs(seed));
+		} catch (JSONException e) {
+			// the run reports the invalid setting
+			return run(seed);
+		} catch (IOException e) {
+			return run(seed);
+		}
+		if (key == null) {
+			return run(seed);
+		}
+		File trace = getOutput("trace", seed);
+		JSONObject results = cache.get(key, trace);
+		boolean cached = results != null;
+		if (!cached) {
+			results = run(seed);
+			if (results.has("error")) {
+				return results;
+			}
+		}
+		try {
+			// the name of the scenario is not part of the inputs
+			results.put("scenario", name);
+			results.put("cached", cached);
+		} catch (JSONException e) {
+			putError(results, e);
+			return results;
+		}
+		if (!cached) {
+			cache.put(key, results, trace);
+		}
+		return results;
+	}
+	
+	/**
+	 * Gets the inputs of a run which determine its results: its seed, the resource
+	 * dimensions, the cluster, the task DAGs of the workload as parsed, the scheduler
+	 * and failure settings, and whether the execution trace is written. The name of the scenario and the paths
+	 * of its files are not part of them.
+	 * @param seed The seed of the run.
+	 * @return the inputs of the run.
+	 * @throws JSONException if a setting is invalid.
+	 * @throws IOException if a task DAG cannot be loaded.
+	 */
+	public JSONObject getInputs(long seed) throws JSONException, IOException {
+		declareDimensions();
+		JSONArray dags = new JSONArray();
+		TaskDAGValidator validator = new TaskDAGValidator();
+		for (File file : dagFiles) {
+			dags.put(load(file, validator).toJSONObject());
+		}
+		JSONObject workload = new JSONObject();
+		workload.put("dags", dags);
+		workload.put("copies", copies);
+		JSONObject inputs = new JSONObject();
+		inputs.put("seed", seed);
+		inputs.put("dimensions", new JSONArray(Arrays.asList(
+				ResourceDimensions.getNames())));
+		inputs.put("cluster", cluster);
+		inputs.put("workload", workload);
+		inputs.put("scheduler", scheduler);
+		if (failures != null) {
+			inputs.put("failures", failures);
+		}
+		inputs.put("trace", getOutput("trace", seed) != null);
+		return inputs;
+	}
+	
+	/**
+	 * Records the error which stopped a run in its results.
+	 * @param results The results of the run.
+	 * @param e The error.
+	 */
+	private static void putError(JSONObject results, Exception e) {
+		try {
+			results.put("error", String.valueOf(e.getMessage()));
+		} catch (JSONException ignored) {
+			// the key and the value are never null
+		}
+	}
+	
+	/**
+	 * Gets the name of the scenario.
+	 * @return the name of the scenario.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the seeds of the runs of the scenario.
+	 * @return the seeds, one run per seed.
+	 */
+	public long[] getSeeds() {
+		return seeds;
+	}
+}
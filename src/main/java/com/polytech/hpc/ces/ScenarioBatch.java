@@ -0,0 +1,187 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a batch of scenarios headless, every seed of every scenario being run by a pool
+ * of worker threads. Each simulator runs on a single thread, so that runs are
+ * independent and reproducible whatever the number of workers.
+ * The results are written as JSON lines, one per run, in the order of the scenarios
+ * and seeds. A run which fails writes a line holding its error, without stopping the
+ * other runs.
+ * @class
+ * @author Nicolas
+ */
+public class ScenarioBatch {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScenarioBatch.class);
+	
+	/** The scenarios of the batch. */
+	private ArrayList<Scenario> scenarios;
+	
+	/** The cache of the results of the runs, or null. */
+	private ResultCache cache;
+	
+	/**
+	 * Creates a new empty batch.
+	 * @constructor
+	 */
+	public ScenarioBatch() {
+		scenarios = new ArrayList<Scenario>();
+		cache = null;
+	}
+	
+	/**
+	 * Adds a scenario file, or the scenario files of a directory by name.
+	 * @param file The scenario file or the directory.
+	 * @return false if a scenario cannot be read or the directory holds none.
+	 */
+	public boolean add(File file) {
+		if (!file.isDirectory()) {
+			Scenario scenario = Scenario.load(file);
+			if (scenario == null) {
+				return false;
+			}
+			scenarios.add(scenario);
+			return true;
+		}
+		File[] files = file.listFiles();
+		if (files == null) {
+			LOGGER.error("Unable to list directory {}", file);
+			return false;
+		}
+		Arrays.sort(files);
+		boolean added = false;
+		boolean valid = true;
+		for (File child : files) {
+			if (child.isFile() && child.getName().endsWith(Scenario.FILE_EXTENSION)) {
+				valid &= add(child);
+				added = true;
+			}
+		}
+		if (!added) {
+			LOGGER.error("No scenario file in directory {}", file);
+		}
+		return added && valid;
+	}
+	
+	/**
+	 * Gets the scenarios of the batch.
+	 * @return the list of scenarios.
+	 */
+	public ArrayList<Scenario> getScenarios() {
+		return scenarios;
+	}
+	
+	/**
+	 * Sets the cache of the results of the runs, so that runs whose inputs did not
+	 * change are not simulated again.
+	 * @param cache The result cache, or null to simulate every run.
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Gets the results of a run which stopped on an unexpected error.
+	 * @param scenario The scenario of the run.
+	 * @param seed The seed of the run.
+	 * @param e The error.
+	 * @return the results, which hold the error.
+	 */
+	private static JSONObject getErrorResults(Scenario scenario, long seed,
+			RuntimeException e) {
+		JSONObject results = new JSONObject();
+		try {
+			results.put("scenario", scenario.getName());
+			results.put("seed", seed);
+			results.put("error", e.toString());
+		} catch (JSONException ignored) {
+			// the keys and the values are never null
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs every seed of every scenario and writes the results.
+	 * @param threads The number of worker threads.
+	 * @param output The writer of the results, one JSON object per line.
+	 * @return the number of runs which failed.
+	 * @throws IOException if the results cannot be written.
+	 */
+	public int run(int threads, Writer output) throws IOException {
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		ArrayList<Future<JSONObject>> runs = new ArrayList<Future<JSONObject>>();
+		for (final Scenario scenario : scenarios) {
+			for (final long seed : scenario.getSeeds()) {
+				runs.add(workers.submit(new Callable<JSONObject>() {
+					@Override
+					public JSONObject call() {
+						try {
+							return scenario.run(seed, cache);
+						} catch (RuntimeException e) {
+							// a broken run must not stop the other runs of the batch
+							LOGGER.error("Run of scenario {} with seed {} failed",
+									scenario.getName(), seed, e);
+							return getErrorResults(scenario, seed, e);
+						}
+					}
+				}));
+			}
+		}
+		workers.shutdown();
+		int failed = 0;
+		try {
+			for (Future<JSONObject> run : runs) {
+				JSONObject results = run.get();
+				if (results.has("error") || !results.optBoolean("finished")) {
+					failed++;
+				}
+				output.write(results.toString());
+				output.write('\n');
+				output.flush();
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the runs", e);
+		} catch (ExecutionException e) {
+			workers.shutdownNow();
+			throw new IOException("A run failed unexpectedly", e.getCause());
+		}
+		return failed;
+	}
+}
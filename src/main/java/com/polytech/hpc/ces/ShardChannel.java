@@ -0,0 +1,275 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connects two processes of a distributed simulation through a socket.
+ * Messages are framed by a type byte followed by their date and fields, in big-endian
+ * order. A null message only promises that no message dated before its date will
+ * follow, and carries the resources left in the shard of the sender. The frames read
+ * are queued for the simulation thread by a reader thread.
+ * @class
+ * @author Nicolas
+ */
+public class ShardChannel implements Runnable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardChannel.class);
+	
+	/** The type of a null message. */
+	public static final byte NULL_MESSAGE = 0;
+	
+	/** The type of a message carrying a migrating task. */
+	public static final byte TASK_MIGRATION = 1;
+	
+	/** The type of a message notifying the end of a migrated task. */
+	public static final byte TASK_COMPLETION = 2;
+	
+	/**
+	 * Holds a message read from a channel.
+	 * @class
+	 */
+	static class Frame {
+		/** The index of the process which sent the message. */
+		int peer;
+		
+		/** The type of the message. */
+		byte type;
+		
+		/** The date of the message. */
+		int time;
+		
+		/** The identifier of the task DAG of the task. */
+		int dagId;
+		
+		/** The index of the task in its task DAG. */
+		int taskId;
+		
+		/** The name of the migrating task. */
+		String name;
+		
+		/** The owner of the task DAG of the migrating task. */
+		String owner;
+		
+		/** The duration of the migrating task. */
+		int duration;
+		
+		/** The location of the data of the migrating task, or -1. */
+		int dataNodeId;
+		
+		/** The priority of the migrating task. */
+		double priority;
+		
+		/** The resources required by the migrating task. */
+		ResourceDescriptor resources;
+		
+		/** The resources left in the shard of the sender of a null message. */
+		ResourceDescriptor freeResources;
+		
+		/** The resources left in the container with the most of them. */
+		ResourceDescriptor largestFreeResources;
+	}
+	
+	/** The index of the process at the other end. */
+	private int peer;
+	
+	/** The socket to the other process. */
+	private Socket socket;
+	
+	/** The stream the messages are written to. */
+	private DataOutputStream output;
+	
+	/** The queue of the frames read. */
+	private BlockingQueue<Frame> inbox;
+	
+	/**
+	 * Creates a new channel over a connected socket.
+	 * @param peer The index of the process at the other end.
+	 * @param socket The connected socket.
+	 * @param inbox The queue to which the frames read are added.
+	 * @throws IOException if the socket cannot be written.
+	 * @constructor
+	 */
+	public ShardChannel(int peer, Socket socket, BlockingQueue<Frame> inbox)
+			throws IOException {
+		this.peer = peer;
+		this.socket = socket;
+		this.inbox = inbox;
+		socket.setTcpNoDelay(true);
+		output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+	
+	/**
+	 * Starts the reader thread of the channel.
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "ShardChannel-" + peer);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Writes a null message.
+	 * @param promise The date before which no message will follow.
+	 * @param freeResources The resources left in the shard.
+	 * @param largestFreeResources The resources left in the container with the most of
+	 * them.
+	 * @throws IOException if the socket fails.
+	 */
+	public void sendNullMessage(int promise, ResourceDescriptor freeResources,
+			ResourceDescriptor largestFreeResources) throws IOException {
+		output.writeByte(NULL_MESSAGE);
+		output.writeInt(promise);
+		writeResources(freeResources);
+		writeResources(largestFreeResources);
+	}
+	
+	/**
+	 * Writes a message carrying a migrating task, with all the receiving process needs
+	 * to run it.
+	 * @param time The date at which the task arrives.
+	 * @param task The ready task which migrates.
+	 * @throws IOException if the socket fails.
+	 */
+	public void sendMigration(int time, Task task) throws IOException {
+		output.writeByte(TASK_MIGRATION);
+		output.writeInt(time);
+		output.writeInt(task.getDAG().getId());
+		output.writeInt(task.getId());
+		output.writeUTF(task.getName());
+		output.writeUTF(task.getDAG().getOwner());
+		output.writeInt(task.getDuration());
+		output.writeInt(task.getDataNodeId() != null ? task.getDataNodeId() : -1);
+		output.writeDouble(task.getCriticity());
+		writeResources(task.getRequiredResources());
+	}
+	
+	/**
+	 * Writes a message notifying the end of a migrated task.
+	 * @param time The date at which the notification is received.
+	 * @param task The migrated task which finished.
+	 * @throws IOException if the socket fails.
+	 */
+	public void sendCompletion(int time, Task task) throws IOException {
+		output.writeByte(TASK_COMPLETION);
+		output.writeInt(time);
+		output.writeInt(task.getDAG().getId());
+		output.writeInt(task.getId());
+	}
+	
+	/**
+	 * Sends the messages written since the last flush.
+	 * @throws IOException if the socket fails.
+	 */
+	public void flush() throws IOException {
+		output.flush();
+	}
+	
+	/**
+	 * Writes a resource vector, prefixed by its number of dimensions.
+	 */
+	private void writeResources(ResourceDescriptor res) throws IOException {
+		output.writeByte(res.getDimensionCount());
+		for (int i = 0; i < res.getDimensionCount(); i++) {
+			output.writeInt(res.get(i));
+		}
+	}
+	
+	/**
+	 * Reads a resource vector, prefixed by its number of dimensions.
+	 */
+	private static ResourceDescriptor readResources(DataInputStream input)
+			throws IOException {
+		ResourceDescriptor res = new ResourceDescriptor();
+		int count = input.readUnsignedByte();
+		for (int i = 0; i < count; i++) {
+			res.set(i, input.readInt());
+		}
+		return res;
+	}
+	
+	/**
+	 * Reads the frames until the other process closes the channel, which then promises
+	 * that no message will follow.
+	 */
+	@Override
+	public void run() {
+		try {
+			DataInputStream input = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+			while (true) {
+				Frame frame = new Frame();
+				frame.peer = peer;
+				try {
+					frame.type = input.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				frame.time = input.readInt();
+				if (frame.type == NULL_MESSAGE) {
+					frame.freeResources = readResources(input);
+					frame.largestFreeResources = readResources(input);
+				} else {
+					frame.dagId = input.readInt();
+					frame.taskId = input.readInt();
+				}
+				if (frame.type == TASK_MIGRATION) {
+					frame.name = input.readUTF();
+					frame.owner = input.readUTF();
+					frame.duration = input.readInt();
+					frame.dataNodeId = input.readInt();
+					frame.priority = input.readDouble();
+					frame.resources = readResources(input);
+				}
+				inbox.add(frame);
+			}
+		} catch (IOException e) {
+			if (!socket.isClosed()) {
+				LOGGER.error("Channel to process {} failed: {}", peer, e.getMessage());
+			}
+		}
+		Frame end = new Frame();
+		end.peer = peer;
+		end.type = NULL_MESSAGE;
+		end.time = Integer.MAX_VALUE;
+		inbox.add(end);
+	}
+	
+	/**
+	 * Closes the channel.
+	 */
+	public void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close channel to process {}: {}", peer, e.getMessage());
+		}
+	}
+}
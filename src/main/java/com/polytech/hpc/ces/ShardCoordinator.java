@@ -0,0 +1,50 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Coordinates the shards of a simulation split by nodes, whether they run in threads
+ * of one process or in several processes.
+ * @interface
+ * @author Nicolas
+ */
+public interface ShardCoordinator {
+	/**
+	 * Gets the shard which holds a task DAG.
+	 * @param dag The task DAG of the simulation.
+	 * @return the index of the shard.
+	 */
+	int getHomeShard(TaskDAG dag);
+	
+	/**
+	 * Returns whether a shard other than a given one had room for a task when the
+	 * shards last synchronised.
+	 * @param shard The index of the shard of the task.
+	 * @param task The ready task.
+	 * @return true if the task may migrate.
+	 */
+	boolean hasRoomOutside(int shard, Task task);
+	
+	/**
+	 * Gets the delay of the messages between shards.
+	 * @return the lookahead.
+	 */
+	int getLookahead();
+}
@@ -0,0 +1,86 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents a message sent by a shard of a sharded simulation to another one.
+ * A message is sent at least one lookahead window before its date, so that the shards
+ * which receive it have not reached its date yet.
+ * @class
+ * @author Nicolas
+ */
+public abstract class ShardMessage extends Event {
+	/** The index of the shard which sends the message. */
+	private int source;
+	
+	/** The index of the shard which receives the message, or -1 if not decided yet. */
+	private int target;
+	
+	/** The task the message is about. */
+	private Task task;
+	
+	/**
+	 * Creates a new shard message.
+	 * @param time The date at which the message is received.
+	 * @param source The index of the shard which sends the message.
+	 * @param target The index of the shard which receives the message, or -1 to let the
+	 * coordinator decide.
+	 * @param task The task the message is about.
+	 * @constructor
+	 */
+	public ShardMessage(int time, int source, int target, Task task) {
+		super(time);
+		this.source = source;
+		this.target = target;
+		this.task = task;
+	}
+	
+	/**
+	 * Sets the shard which receives the message.
+	 * @param target The index of the shard which receives the message.
+	 */
+	void setTarget(int target) {
+		this.target = target;
+	}
+	
+	/**
+	 * Gets the shard which sends the message.
+	 * @return the index of the source shard.
+	 */
+	public int getSource() {
+		return source;
+	}
+	
+	/**
+	 * Gets the shard which receives the message.
+	 * @return the index of the target shard, or -1 if not decided yet.
+	 */
+	public int getTarget() {
+		return target;
+	}
+	
+	/**
+	 * Gets the task the message is about.
+	 * @return the task.
+	 */
+	public Task getTask() {
+		return task;
+	}
+}
@@ -0,0 +1,455 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs one simulation across threads with conservative parallel discrete-event
+ * simulation. The nodes are partitioned into shards, each one with its own events,
+ * containers and task DAGs, a task DAG belonging to the shard which holds most of the
+ * data of its tasks.
+ * The shards process the events of a window as wide as the lookahead in parallel, then
+ * synchronise. Shards only interact through messages dated at least one lookahead
+ * after they are sent, which are therefore never in the past of the shard receiving
+ * them: a ready task which does not fit in its shard migrates to the shard the
+ * coordinator chooses, and the shard which ran it notifies the shard of its task DAG
+ * once it finished. The lookahead defaults to the shortest task duration.
+ * Migrated tasks are never read by the shard of their task DAG while they run, so that
+ * policies reading the critical path of running tasks, such as
+ * DelayAwarePreemptionPolicy, must not be used.
+ * @class
+ * @author Nicolas
+ */
+public class ShardedSimulator implements ShardCoordinator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardedSimulator.class);
+	
+	/** The shards of the simulation. */
+	private SimulatorShard[] shards;
+	
+	/** The task DAGs of the simulation, by identifier. */
+	private ArrayList<TaskDAG> dags;
+	
+	/** The shard of every task DAG, by identifier. */
+	private int[] homeShards;
+	
+	/** The number of nodes of the cluster. */
+	private int nodeCount;
+	
+	/** The number of containers of the cluster. */
+	private int containerCount;
+	
+	/** The width of the windows, or 0 to use the shortest task duration. */
+	private int lookahead;
+	
+	/** The resources left in every shard for the migrating tasks. */
+	private ResourceDescriptor[] freeResources;
+	
+	/** The resources left in the container with the most of them of every shard. */
+	private ResourceDescriptor[] largestFreeResources;
+	
+	/** The last date before the end of the current window. */
+	private int windowEnd;
+	
+	/** The number of windows processed. */
+	private long windowCount;
+	
+	/**
+	 * Creates a new sharded simulation.
+	 * @param shardCount The number of shards.
+	 * @param seed The seed of the random generators, the one of a shard being offset by
+	 * its index.
+	 * @constructor
+	 */
+	public ShardedSimulator(int shardCount, long seed) {
+		shards = new SimulatorShard[shardCount];
+		freeResources = new ResourceDescriptor[shardCount];
+		largestFreeResources = new ResourceDescriptor[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new SimulatorShard(this, i, seed + i);
+			freeResources[i] = new ResourceDescriptor();
+			largestFreeResources[i] = new ResourceDescriptor();
+		}
+		dags = new ArrayList<TaskDAG>();
+		homeShards = new int[16];
+		nodeCount = 0;
+		containerCount = 0;
+		lookahead = 0;
+		windowEnd = 0;
+		windowCount = 0;
+	}
+	
+	/**
+	 * Adds a node to the cluster, in the shard of index its identifier modulo the
+	 * number of shards.
+	 * @param capacity The resource capacity of the node.
+	 * @return the node added.
+	 */
+	public Node addNode(ResourceDescriptor capacity) {
+		int id = nodeCount++;
+		return shards[id % shards.length].addNode(id, capacity);
+	}
+	
+	/**
+	 * Deploys a container on a node of the cluster.
+	 * @param node The node on which the container is deployed.
+	 * @param capacity The resource capacity of the container.
+	 * @return the container deployed, or null if the node refuses it.
+	 */
+	public Container addContainer(Node node, ResourceDescriptor capacity) {
+		return shards[getShard(node.getId())].addContainer(containerCount++, node,
+				capacity);
+	}
+	
+	/**
+	 * Adds a task DAG to the shard which holds the data of most of its tasks, or to
+	 * the shards in turn if its tasks have no data location.
+	 * @param dag The task DAG to add.
+	 */
+	public void addDAG(TaskDAG dag) {
+		int id = dags.size();
+		int home = selectHomeShard(dag, id, shards.length);
+		if (id == homeShards.length) {
+			homeShards = Arrays.copyOf(homeShards, 2 * id);
+		}
+		homeShards[id] = home;
+		dags.add(dag);
+		shards[home].addDAG(id, dag);
+	}
+	
+	/**
+	 * Selects the shard which holds the data of most of the tasks of a task DAG, the
+	 * node of identifier i belonging to the shard of index i modulo the number of
+	 * shards.
+	 * @param dag The task DAG.
+	 * @param id The identifier of the task DAG, which selects the shard of a task DAG
+	 * without data location.
+	 * @param shardCount The number of shards.
+	 * @return the index of the shard.
+	 */
+	static int selectHomeShard(TaskDAG dag, int id, int shardCount) {
+		int[] counts = new int[shardCount];
+		int home = id % shardCount;
+		for (Task task : dag.getTasks()) {
+			Integer dataNodeId = task.getDataNodeId();
+			if (dataNodeId != null && dataNodeId >= 0) {
+				int shard = dataNodeId % shardCount;
+				counts[shard]++;
+				if (counts[shard] > counts[home]) {
+					home = shard;
+				}
+			}
+		}
+		return home;
+	}
+	
+	/**
+	 * Sets the preemption policy of every shard. The policy is shared by the shards,
+	 * which run concurrently.
+	 * @param preemptionPolicy The preemption policy, or null to never preempt tasks.
+	 */
+	public void setPreemptionPolicy(PreemptionPolicy preemptionPolicy) {
+		for (SimulatorShard shard : shards) {
+			shard.setPreemptionPolicy(preemptionPolicy);
+		}
+	}
+	
+	/**
+	 * Sets the model of the durations of the execution attempts of every shard. The
+	 * model is shared by the shards, which run concurrently.
+	 * @param durationModel The duration model, or null to run every task for its
+	 * duration.
+	 */
+	public void setDurationModel(DurationModel durationModel) {
+		for (SimulatorShard shard : shards) {
+			shard.setDurationModel(durationModel);
+		}
+	}
+	
+	/**
+	 * Sets the width of the windows, i.e. the delay of the messages between shards.
+	 * @param lookahead The width of the windows, or 0 to use the shortest task duration.
+	 */
+	public void setLookahead(int lookahead) {
+		this.lookahead = lookahead;
+	}
+	
+	/**
+	 * Runs the simulation until no event is left, with a thread per shard up to the
+	 * number of processors.
+	 */
+	public void run() {
+		run(Math.min(shards.length, Runtime.getRuntime().availableProcessors()));
+	}
+	
+	/**
+	 * Runs the simulation until no event is left.
+	 * Every window, the shards process their events up to the end of the window
+	 * concurrently, then the coordinator delivers the messages they sent.
+	 * @param threadCount The number of threads running the shards.
+	 */
+	public void run(int threadCount) {
+		if (lookahead <= 0) {
+			lookahead = getShortestDuration();
+		}
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threadCount));
+		ArrayList<Callable<Void>> windows = new ArrayList<Callable<Void>>();
+		for (final SimulatorShard shard : shards) {
+			windows.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					shard.processEvents(windowEnd);
+					shard.summarizeFreeResources();
+					return null;
+				}
+			});
+		}
+		try {
+			for (SimulatorShard shard : shards) {
+				shard.scheduleReadyTasks();
+				shard.summarizeFreeResources();
+			}
+			deliverMessages();
+			while (true) {
+				int windowStart = Integer.MAX_VALUE;
+				for (SimulatorShard shard : shards) {
+					windowStart = Math.min(windowStart, shard.getNextEventTime());
+				}
+				if (windowStart == Integer.MAX_VALUE) {
+					break;
+				}
+				windowEnd = windowStart > Integer.MAX_VALUE - lookahead ? Integer.MAX_VALUE
+						: windowStart + lookahead - 1;
+				for (Future<Void> window : pool.invokeAll(windows)) {
+					window.get();
+				}
+				deliverMessages();
+				windowCount++;
+			}
+		} catch (InterruptedException e) {
+			LOGGER.error("Sharded simulation interrupted: {}", e.getMessage());
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOGGER.error("Shard failed: {}", e.getCause().toString());
+		} finally {
+			pool.shutdown();
+		}
+		if (!isFinished()) {
+			LOGGER.warn("Sharded simulation stopped at {} with ready tasks that cannot run",
+					getTime());
+		}
+	}
+	
+	/**
+	 * Delivers the messages sent by the shards during the last window, choosing the
+	 * shard of every migrating task. The shards are visited by index so that runs are
+	 * reproducible.
+	 */
+	private void deliverMessages() {
+		for (int i = 0; i < shards.length; i++) {
+			freeResources[i] = new ResourceDescriptor(shards[i].getFreeResources());
+			largestFreeResources[i] =
+					new ResourceDescriptor(shards[i].getLargestFreeResources());
+		}
+		for (SimulatorShard shard : shards) {
+			for (ShardMessage message : shard.drainOutbox()) {
+				if (message.getTarget() < 0) {
+					message.setTarget(reserve(message.getSource(),
+							message.getTask().getRequiredResources(), freeResources,
+							largestFreeResources));
+				}
+				shards[message.getTarget()].schedule(message);
+			}
+		}
+	}
+	
+	/**
+	 * Reserves resources for a migrating task in the shard with the most vcores left,
+	 * among those whose largest container can still run it.
+	 * @param source The index of the shard the task leaves.
+	 * @param res The resources required by the task.
+	 * @param freeResources The resources left in every shard, updated.
+	 * @param largestFreeResources The resources left in the container with the most of
+	 * them of every shard, updated.
+	 * @return the index of the shard, or the source shard if none is left.
+	 */
+	static int reserve(int source, ResourceDescriptor res,
+			ResourceDescriptor[] freeResources, ResourceDescriptor[] largestFreeResources) {
+		int target = source;
+		for (int i = 0; i < freeResources.length; i++) {
+			if (i != source && largestFreeResources[i].isSuperSet(res)
+					&& freeResources[i].isSuperSet(res) && (target == source
+					|| freeResources[i].getVcores() > freeResources[target].getVcores())) {
+				target = i;
+			}
+		}
+		if (target != source) {
+			freeResources[target].subtract(res);
+			for (int i = 0; i < largestFreeResources[target].getDimensionCount(); i++) {
+				largestFreeResources[target].set(i, Math.min(
+						largestFreeResources[target].get(i), freeResources[target].get(i)));
+			}
+		}
+		return target;
+	}
+	
+	/**
+	 * Returns whether a shard other than a given one had room for a task at the end of
+	 * the last window. Only read while the shards run.
+	 * @param shard The index of the shard of the task.
+	 * @param task The ready task.
+	 * @return true if the task may migrate.
+	 */
+	@Override
+	public boolean hasRoomOutside(int shard, Task task) {
+		return hasRoomOutside(shard, task, freeResources, largestFreeResources);
+	}
+	
+	/**
+	 * Returns whether a shard other than a given one has room for a task.
+	 * @param shard The index of the shard of the task.
+	 * @param task The ready task.
+	 * @param freeResources The resources left in every shard.
+	 * @param largestFreeResources The resources left in the container with the most of
+	 * them of every shard.
+	 * @return true if the task may migrate.
+	 */
+	static boolean hasRoomOutside(int shard, Task task, ResourceDescriptor[] freeResources,
+			ResourceDescriptor[] largestFreeResources) {
+		for (int i = 0; i < freeResources.length; i++) {
+			if (i != shard && largestFreeResources[i].isSuperSet(task.getRequiredResources())
+					&& freeResources[i].isSuperSet(task.getRequiredResources())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the shortest duration of the tasks of the simulation, which bounds the date
+	 * of the messages sent by a shard.
+	 * @return the shortest task duration, at least 1.
+	 */
+	private int getShortestDuration() {
+		int shortest = Integer.MAX_VALUE;
+		for (TaskDAG dag : dags) {
+			for (Task task : dag.getTasks()) {
+				shortest = Math.min(shortest, task.getDuration());
+			}
+		}
+		return Math.max(1, shortest == Integer.MAX_VALUE ? 1 : shortest);
+	}
+	
+	/**
+	 * Gets the shard of a node.
+	 * @param nodeId The identifier of the node.
+	 * @return the index of the shard.
+	 */
+	public int getShard(int nodeId) {
+		return nodeId % shards.length;
+	}
+	
+	/**
+	 * Gets the shard which holds a task DAG.
+	 * @param dag The task DAG of the simulation.
+	 * @return the index of the shard.
+	 */
+	@Override
+	public int getHomeShard(TaskDAG dag) {
+		return homeShards[dag.getId()];
+	}
+	
+	/**
+	 * Gets the shards of the simulation.
+	 * @return the shards, by index.
+	 */
+	public List<SimulatorShard> getShards() {
+		return Arrays.asList(shards);
+	}
+	
+	/**
+	 * Gets the task DAGs being simulated.
+	 * @return the list of task DAGs, by identifier.
+	 */
+	public ArrayList<TaskDAG> getDAGs() {
+		return dags;
+	}
+	
+	/**
+	 * Gets the width of the windows.
+	 * @return the lookahead, or 0 if not set and the simulation did not run yet.
+	 */
+	@Override
+	public int getLookahead() {
+		return lookahead;
+	}
+	
+	/**
+	 * Gets the date of the simulation, i.e. the latest date reached by a shard.
+	 * @return the current date.
+	 */
+	public int getTime() {
+		int time = 0;
+		for (SimulatorShard shard : shards) {
+			time = Math.max(time, shard.getCurrentTime());
+		}
+		return time;
+	}
+	
+	/**
+	 * Gets the number of windows processed.
+	 * @return the number of windows.
+	 */
+	public long getWindowCount() {
+		return windowCount;
+	}
+	
+	/**
+	 * Gets the number of tasks which migrated between shards.
+	 * @return the number of migrations.
+	 */
+	public long getMigrationCount() {
+		long count = 0;
+		for (SimulatorShard shard : shards) {
+			count += shard.getMigrationCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns whether all the task DAGs are finished.
+	 * @return true if the simulation is finished.
+	 */
+	public boolean isFinished() {
+		for (SimulatorShard shard : shards) {
+			if (!shard.isFinished()) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,356 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the time and the memory allocated by the phases of a simulation.
+ * Phases nest, e.g. the readiness of the children of a task within the dispatch of its
+ * finish event: the time and bytes of a phase are accounted to its stack of enclosing
+ * phases, without those of the phases it encloses. Allocated bytes are read from the
+ * ThreadMXBean of the JVM, when supported.
+ * 
+ * Profiling is enabled by setting the ces.profile system property to the directory of
+ * the profiles. The simulator checks ENABLED, a constant, before every call, so that
+ * the calls are removed by the JIT compiler when profiling is disabled. At the end of
+ * each run, a summary and collapsed stacks of the time and of the allocated bytes are
+ * written, the latter being the input of flame graph tools.
+ * @see https://github.com/brendangregg/FlameGraph
+ * @class
+ * @author Nicolas
+ */
+public class SimulationProfiler {
+	/** The system property holding the directory of the profiles. */
+	public static final String PROPERTY = "ces.profile";
+	
+	/** Whether simulations are profiled. */
+	public static final boolean ENABLED = System.getProperty(PROPERTY) != null;
+	
+	/** The maximum nesting of the phases. */
+	private static final int MAX_DEPTH = 32;
+	
+	/** The number of profiles written, which numbers their files. */
+	private static final AtomicInteger PROFILE_COUNT = new AtomicInteger();
+	
+	/** The bean which counts the bytes allocated by every thread, or null. */
+	private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+	
+	/** The root of the tree of the stacks of phases. */
+	private final Frame root;
+	
+	/** The stacks of phases being measured, the root first. */
+	private final Frame[] stack;
+	
+	/** The dates at which the phases of the stack were entered, in ns. */
+	private final long[] startTimes;
+	
+	/** The bytes allocated when the phases of the stack were entered. */
+	private final long[] startBytes;
+	
+	/** The time spent in the phases enclosed by the phases of the stack. */
+	private final long[] innerTimes;
+	
+	/** The bytes allocated in the phases enclosed by the phases of the stack. */
+	private final long[] innerBytes;
+	
+	/** The number of phases being measured. */
+	private int depth;
+	
+	/** The date at which the profiler was created, in ns. */
+	private final long creationTime;
+	
+	/**
+	 * Creates a new profiler, no phase being measured.
+	 * @constructor
+	 */
+	public SimulationProfiler() {
+		root = new Frame(null);
+		stack = new Frame[MAX_DEPTH + 1];
+		stack[0] = root;
+		startTimes = new long[MAX_DEPTH + 1];
+		startBytes = new long[MAX_DEPTH + 1];
+		innerTimes = new long[MAX_DEPTH + 1];
+		innerBytes = new long[MAX_DEPTH + 1];
+		depth = 0;
+		creationTime = System.nanoTime();
+	}
+	
+	/**
+	 * Gets the bean which counts the bytes allocated by every thread.
+	 * @return the bean, or null if allocated bytes are not counted by the JVM.
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+	
+	/**
+	 * Gets the bytes allocated by the current thread so far.
+	 * @return the allocated bytes, or 0 if they are not counted.
+	 */
+	private static long getAllocatedBytes() {
+		return THREADS != null
+				? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+	
+	/**
+	 * Starts to measure a phase, within the phases being measured.
+	 * @param phase The phase.
+	 */
+	public void enter(ProfilerPhase phase) {
+		Frame parent = stack[depth];
+		if (depth == MAX_DEPTH) {
+			// deeper phases are accounted to the deepest one
+			parent.overflowCount++;
+			return;
+		}
+		Frame frame = parent.children[phase.ordinal()];
+		if (frame == null) {
+			frame = new Frame(phase);
+			parent.children[phase.ordinal()] = frame;
+		}
+		depth++;
+		stack[depth] = frame;
+		innerTimes[depth] = 0;
+		innerBytes[depth] = 0;
+		startBytes[depth] = getAllocatedBytes();
+		startTimes[depth] = System.nanoTime();
+	}
+	
+	/**
+	 * Stops to measure the last phase entered.
+	 */
+	public void exit() {
+		long time = System.nanoTime();
+		long bytes = getAllocatedBytes();
+		Frame frame = stack[depth];
+		if (frame.overflowCount > 0) {
+			frame.overflowCount--;
+			return;
+		}
+		if (depth == 0) {
+			return;
+		}
+		long elapsed = time - startTimes[depth];
+		long allocated = bytes - startBytes[depth];
+		frame.callCount++;
+		frame.time += elapsed - innerTimes[depth];
+		frame.bytes += allocated - innerBytes[depth];
+		depth--;
+		innerTimes[depth] += elapsed;
+		innerBytes[depth] += allocated;
+	}
+	
+	/**
+	 * Gets the time spent in a phase, enclosed phases apart, whatever its stack.
+	 * @param phase The phase.
+	 * @return the time in ns.
+	 */
+	public long getTime(ProfilerPhase phase) {
+		return sum(root, phase, 0);
+	}
+	
+	/**
+	 * Gets the bytes allocated in a phase, enclosed phases apart, whatever its stack.
+	 * @param phase The phase.
+	 * @return the allocated bytes.
+	 */
+	public long getAllocatedBytes(ProfilerPhase phase) {
+		return sum(root, phase, 1);
+	}
+	
+	/**
+	 * Gets the number of times a phase was measured, whatever its stack.
+	 * @param phase The phase.
+	 * @return the number of calls.
+	 */
+	public long getCallCount(ProfilerPhase phase) {
+		return sum(root, phase, 2);
+	}
+	
+	/**
+	 * Sums a measure of a phase over the frames of a subtree.
+	 * @param frame The root of the subtree.
+	 * @param phase The phase.
+	 * @param measure 0 for the time, 1 for the allocated bytes, 2 for the calls.
+	 * @return the sum.
+	 */
+	private static long sum(Frame frame, ProfilerPhase phase, int measure) {
+		long sum = 0;
+		if (frame.phase == phase) {
+			sum += measure == 0 ? frame.time : measure == 1 ? frame.bytes
+					: frame.callCount;
+		}
+		for (Frame child : frame.children) {
+			if (child != null) {
+				sum += sum(child, phase, measure);
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Writes the profile in the directory given by the ces.profile system property.
+	 * @param seed The seed of the simulation, which names the files.
+	 * @return the prefix of the files written.
+	 * @throws IOException if the profile cannot be written.
+	 */
+	public File write(long seed) throws IOException {
+		File directory = new File(System.getProperty(PROPERTY, "."));
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+		File prefix = new File(directory, "profile-" + seed + "-"
+				+ PROFILE_COUNT.incrementAndGet());
+		write(prefix);
+		return prefix;
+	}
+	
+	/**
+	 * Writes the profile: a summary by phase in prefix.txt, and the collapsed stacks of
+	 * the time (ns) and of the allocated bytes in prefix.collapsed and
+	 * prefix.alloc.collapsed.
+	 * @param prefix The path of the files without extension.
+	 * @throws IOException if the profile cannot be written.
+	 */
+	public void write(File prefix) throws IOException {
+		long elapsed = System.nanoTime() - creationTime;
+		Writer summary = open(new File(prefix.getPath() + ".txt"));
+		try {
+			long profiled = 0;
+			for (ProfilerPhase phase : ProfilerPhase.values()) {
+				profiled += getTime(phase);
+			}
+			summary.write(String.format("%-12s %12s %14s %8s %16s%n", "phase", "calls",
+					"time (ns)", "time %", "allocated (B)"));
+			for (ProfilerPhase phase : ProfilerPhase.values()) {
+				summary.write(String.format("%-12s %12d %14d %7.1f%% %16d%n",
+						ProfilerPhase.toString(phase), getCallCount(phase),
+						getTime(phase), profiled > 0 ? 100.0 * getTime(phase) / profiled
+						: 0.0, getAllocatedBytes(phase)));
+			}
+			summary.write(String.format("%-12s %12s %14d%n", "profiled", "", profiled));
+			summary.write(String.format("%-12s %12s %14d%n", "elapsed", "", elapsed));
+			if (THREADS == null) {
+				summary.write("allocated bytes are not counted by this JVM\n");
+			}
+		} finally {
+			summary.close();
+		}
+		Writer times = open(new File(prefix.getPath() + ".collapsed"));
+		Writer bytes = open(new File(prefix.getPath() + ".alloc.collapsed"));
+		try {
+			for (Frame child : root.children) {
+				if (child != null) {
+					writeCollapsed(child, ProfilerPhase.toString(child.phase), times,
+							bytes);
+				}
+			}
+		} finally {
+			times.close();
+			bytes.close();
+		}
+	}
+	
+	/**
+	 * Opens a profile file.
+	 * @param file The file.
+	 * @return the writer of the file.
+	 * @throws IOException if the file cannot be created.
+	 */
+	private static Writer open(File file) throws IOException {
+		return new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+	}
+	
+	/**
+	 * Writes the collapsed stacks of a subtree, one line per stack: the phases from
+	 * the outermost one separated by semicolons, then the measure.
+	 * @param frame The root of the subtree.
+	 * @param path The stack of the frame.
+	 * @param times The writer of the collapsed stacks of the time.
+	 * @param bytes The writer of the collapsed stacks of the allocated bytes.
+	 * @throws IOException if the stacks cannot be written.
+	 */
+	private static void writeCollapsed(Frame frame, String path, Writer times,
+			Writer bytes) throws IOException {
+		if (frame.time > 0) {
+			times.write(path + " " + frame.time + "\n");
+		}
+		if (frame.bytes > 0) {
+			bytes.write(path + " " + frame.bytes + "\n");
+		}
+		for (Frame child : frame.children) {
+			if (child != null) {
+				writeCollapsed(child, path + ";" + ProfilerPhase.toString(child.phase),
+						times, bytes);
+			}
+		}
+	}
+	
+	/**
+	 * A stack of phases, i.e. a node of the tree of the phases entered.
+	 * @class
+	 */
+	private static class Frame {
+		/** The phase, or null for the root. */
+		private final ProfilerPhase phase;
+		
+		/** The stacks of the phases entered within this one, by phase. */
+		private final Frame[] children;
+		
+		/** The number of times the stack was measured. */
+		private long callCount;
+		
+		/** The time spent in the stack, enclosed stacks apart, in ns. */
+		private long time;
+		
+		/** The bytes allocated in the stack, enclosed stacks apart. */
+		private long bytes;
+		
+		/** The number of phases entered beyond the maximum nesting, not exited yet. */
+		private int overflowCount;
+		
+		/**
+		 * Creates a new stack.
+		 * @param phase The phase, or null for the root.
+		 * @constructor
+		 */
+		Frame(ProfilerPhase phase) {
+			this.phase = phase;
+			children = new Frame[ProfilerPhase.values().length];
+		}
+	}
+}
@@ -18,35 +18,1510 @@
  */
 package com.polytech.hpc.ces;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * CES base class.
+ * The simulator processes the events by increasing date. Once all the events of a
+ * date are processed, the ready tasks are placed in the containers by decreasing
+ * priority, preempting running tasks when the preemption policy decides so.
  */
 public class Simulator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Simulator.class);
+	
+	/**
+	 * Orders the ready tasks by decreasing priority. Ties are broken by task DAG and
+	 * task indexes so that the order does not depend on the insertion order.
+	 */
+	static final Comparator<Task> PRIORITY_ORDER = new Comparator<Task>() {
+		@Override
+		public int compare(Task t1, Task t2) {
+			int order = Double.compare(t2.getCriticity(), t1.getCriticity());
+			if (order == 0) {
+				order = t1.getDAG().getId() - t2.getDAG().getId();
+			}
+			if (order == 0) {
+				order = t1.getId() - t2.getId();
+			}
+			return order;
+		}
+	};
+	
+	/** The default number of waiting tasks examined per scheduling. */
+	static final int DEFAULT_SCHEDULING_WINDOW = 64;
+	
+	/** The time the simulation waits for submissions when idle, in ns. */
+	private static final long IDLE_WAIT = 1000000L;
+	
+	/** The simulator running on the current thread, whose date is returned by getTime. */
+	private static final ThreadLocal<Simulator> CURRENT = new ThreadLocal<Simulator>();
+	
+	/** The current date of the simulation. */
+	private int time;
+	
+	/** The task DAGs being simulated. */
+	private ArrayList<TaskDAG> dags;
+	
+	/** The ready tasks of all the task DAGs, by decreasing priority by default. */
+	private Queue<Task> readyTasks;
+	
+	/** The pool used to update the independent task DAGs concurrently. */
+	private ForkJoinPool pool;
+	
+	/** The pending events, by date. */
+	private EventQueue events;
+	
+	/** The number of events scheduled so far. */
+	private long eventCount;
+	
+	/** The nodes of the cluster. */
+	private ArrayList<Node> nodes;
+	
+	/** The containers of the cluster. */
+	private ArrayList<Container> containers;
+	
+	/** The seed of the random generator. */
+	private long seed;
+	
+	/** The random generator of the simulation. */
+	private Random random;
+	
+	/** The tracker of the dominant resource share of the tenants. */
+	private TenantShareTracker shares;
+	
+	/** The preemption policy, or null if tasks are never preempted. */
+	private PreemptionPolicy preemptionPolicy;
+	
+	/** The log recording the scheduling decisions, if any. */
+	private DecisionLog decisionLog;
+	
+	/** The log being replayed, if any. */
+	private DecisionReplay replay;
+	
+	/** Whether the scheduling policies are being evaluated. */
+	private boolean scheduling;
+	
+	/** How the ended execution attempts of the tasks are kept. */
+	private AttemptRetention retention;
+	
+	/** The execution trace to which ended execution attempts are spilled, if any. */
+	private ExecutionTraceWriter trace;
+	
+	/** The model of the durations of the execution attempts, or null for fixed ones. */
+	private DurationModel durationModel;
+	
+	/** The fraction of its duration after which a task is speculated, or 0. */
+	private double speculationThreshold;
+	
+	/** The running backup attempt of every speculated task. */
+	private HashMap<Task, TaskExecutionRecord> backupAttempts;
+	
+	/** The execution attempts waiting for a container to run their backup attempt. */
+	private ArrayList<TaskExecutionRecord> stragglers;
+	
+	/** The queue of the task DAGs submitted by live feeds, if any. */
+	private SubmissionQueue submissions;
+	
+	/** The number of backup attempts launched. */
+	private long backupCount;
+	
+	/** The number of backup attempts which finished before their original attempt. */
+	private long backupWinCount;
+	
+	/** The number of waiting tasks after which a scheduling stops. */
+	private int schedulingWindow;
+	
+	/** How the ready tasks which do not fit hold resources back. */
+	private BackfillMode backfillMode;
 	
-	private static int time;
+	/** The slack below which a waiting task always gets a reservation. */
+	private int criticalSlack;
+	
+	/** The resources used over future time, kept when backfilling. */
+	private AvailabilityProfile profile;
+	
+	/** The number of reservations made for waiting tasks. */
+	private long reservationCount;
+	
+	/** The profiler of the phases of the simulation, if profiling is enabled. */
+	private SimulationProfiler profiler;
+	
+	/** The number of gangs whose ready tasks started together. */
+	private long gangStartCount;
+	
+	/** The number of gang placements rolled back because a task did not fit. */
+	private long gangRollbackCount;
+	
+	/** The model of the overheads of preemptions and restarts, or null if free. */
+	private PreemptionCostModel costModel;
+	
+	/** The dates until which ready tasks wait for the containers of their victims. */
+	private HashMap<Task, Integer> teardownDates;
+	
+	/** The time spent tearing down the containers of preempted attempts. */
+	private long teardownTime;
+	
+	/** The time spent warming up restarted attempts. */
+	private long warmUpTime;
+	
+	/** The time spent fetching the input of restarted attempts again. */
+	private long fetchTime;
 	
 	public Simulator() {
+		this(0L);
+	}
+	
+	/**
+	 * Creates a new simulator.
+	 * @param seed The seed of the random generator.
+	 * @constructor
+	 */
+	public Simulator(long seed) {
+		this(seed, new HeapEventQueue());
+	}
+	
+	/**
+	 * Creates a new simulator.
+	 * @param seed The seed of the random generator.
+	 * @param events The empty queue which holds the pending events.
+	 * @constructor
+	 */
+	public Simulator(long seed, EventQueue events) {
+		CURRENT.set(this);
 		time = 0;
+		dags = new ArrayList<TaskDAG>();
+		readyTasks = new PriorityQueue<Task>(11, PRIORITY_ORDER);
+		pool = ForkJoinPool.commonPool();
+		this.events = events;
+		eventCount = 0;
+		nodes = new ArrayList<Node>();
+		containers = new ArrayList<Container>();
+		this.seed = seed;
+		random = new Random(seed);
+		shares = new TenantShareTracker();
+		preemptionPolicy = null;
+		decisionLog = null;
+		replay = null;
+		scheduling = false;
+		retention = AttemptRetention.FULL;
+		trace = null;
+		durationModel = null;
+		speculationThreshold = 0.0;
+		backupAttempts = new HashMap<Task, TaskExecutionRecord>();
+		stragglers = new ArrayList<TaskExecutionRecord>();
+		submissions = null;
+		backupCount = 0;
+		backupWinCount = 0;
+		schedulingWindow = DEFAULT_SCHEDULING_WINDOW;
+		backfillMode = BackfillMode.NONE;
+		criticalSlack = 0;
+		profile = null;
+		reservationCount = 0;
+		profiler = SimulationProfiler.ENABLED ? new SimulationProfiler() : null;
+		gangStartCount = 0;
+		gangRollbackCount = 0;
+		costModel = null;
+		teardownDates = new HashMap<Task, Integer>();
+		teardownTime = 0;
+		warmUpTime = 0;
+		fetchTime = 0;
 	}
 	
-	public static void main(String[] args) {
-		new Simulator();
-		while (!isFinished()) {
-			time++;
-			// update all app
-			// update rm
+	/**
+	 * Runs scenario files, or the scenario files of directories, headless.
+	 * Usage: Simulator [-j threads] [-o results.jsonl] [-c cache [-m megabytes]]
+	 * scenario|directory...
+	 * The results are written as JSON lines, to the standard output by default. With a
+	 * cache directory, runs whose inputs were already simulated are read from it. The
+	 * exit status is 1 if a run failed or did not finish.
+	 * @param args The command line arguments.
+	 * @throws IOException if the results cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		File output = null;
+		File cache = null;
+		long cacheSize = 1024L;
+		ScenarioBatch batch = new ScenarioBatch();
+		boolean valid = true;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-o") && i + 1 < args.length) {
+				output = new File(args[++i]);
+			} else if (args[i].equals("-c") && i + 1 < args.length) {
+				cache = new File(args[++i]);
+			} else if (args[i].equals("-m") && i + 1 < args.length) {
+				cacheSize = Long.parseLong(args[++i]);
+			} else {
+				valid &= batch.add(new File(args[i]));
+			}
+		}
+		if (!valid || batch.getScenarios().isEmpty()) {
+			System.err.println("Usage: Simulator [-j threads] [-o results.jsonl]"
+					+ " [-c cache [-m megabytes]] scenario|directory...");
+			System.exit(1);
 		}
+		if (cache != null) {
+			batch.setCache(new ResultCache(cache, cacheSize << 20));
+		}
+		Writer writer = new OutputStreamWriter(output != null
+				? new FileOutputStream(output) : System.out, "UTF-8");
+		int failed = batch.run(threads, writer);
+		writer.close();
+		System.exit(failed > 0 ? 1 : 0);
 	}
 	
+	/**
+	 * Gets the current date of the simulator running on the current thread, i.e. the
+	 * last one created by the thread or whose state it changed.
+	 * @return the current date, or 0 if no simulator was created by the thread.
+	 */
 	public static int getTime() {
+		Simulator current = CURRENT.get();
+		return current != null ? current.time : 0;
+	}
+	
+	/**
+	 * Adds a node to the cluster.
+	 * @param capacity The resource capacity of the node.
+	 * @return the node added.
+	 */
+	public Node addNode(ResourceDescriptor capacity) {
+		return addNode(nodes.size(), capacity);
+	}
+	
+	/**
+	 * Adds a node to the cluster.
+	 * @param id The identifier of the node in the whole cluster.
+	 * @param capacity The resource capacity of the node.
+	 * @return the node added.
+	 */
+	Node addNode(int id, ResourceDescriptor capacity) {
+		Node node = new Node(id, capacity);
+		nodes.add(node);
+		return node;
+	}
+	
+	/**
+	 * Deploys a container on a node of the cluster.
+	 * @param node The node on which the container is deployed.
+	 * @param capacity The resource capacity of the container.
+	 * @return the container deployed, or null if the node refuses it.
+	 */
+	public Container addContainer(Node node, ResourceDescriptor capacity) {
+		return addContainer(containers.size(), node, capacity);
+	}
+	
+	/**
+	 * Deploys a container on a node of the cluster.
+	 * @param id The identifier of the container in the whole cluster.
+	 * @param node The node on which the container is deployed.
+	 * @param capacity The resource capacity of the container.
+	 * @return the container deployed, or null if the node refuses it.
+	 */
+	Container addContainer(int id, Node node, ResourceDescriptor capacity) {
+		Container container = new Container(id, node.getId(), capacity);
+		if (!node.addContainer(container)) {
+			return null;
+		}
+		containers.add(container);
+		container.setShareTracker(shares);
+		shares.addCapacity(capacity);
+		if (profile != null) {
+			profile.addCapacity(capacity);
+		}
+		return container;
+	}
+	
+	/**
+	 * Sets the preemption policy.
+	 * @param preemptionPolicy The preemption policy, or null to never preempt tasks.
+	 */
+	public void setPreemptionPolicy(PreemptionPolicy preemptionPolicy) {
+		this.preemptionPolicy = preemptionPolicy;
+	}
+	
+	/**
+	 * Sets the queue which orders the ready tasks, the tasks already ready being moved
+	 * to it. The default queue orders them by decreasing priority.
+	 * @param readyQueue The empty queue of the ready tasks, e.g. a
+	 * MultilevelFeedbackQueue.
+	 */
+	public void setReadyQueue(Queue<Task> readyQueue) {
+		readyQueue.addAll(readyTasks);
+		readyTasks = readyQueue;
+	}
+	
+	/**
+	 * Sets the number of ready tasks which may wait during a scheduling, i.e. how far
+	 * beyond the first task which does not fit the lower priority tasks are examined.
+	 * The scheduling stops once that many tasks wait, the tasks after them not being
+	 * polled, so that its cost does not grow with the depth of the ready queue.
+	 * @param window The number of waiting tasks, 1 to stop at the first task which
+	 * does not fit, or Integer.MAX_VALUE to examine every ready task.
+	 */
+	public void setSchedulingWindow(int window) {
+		if (window < 1) {
+			LOGGER.error("Invalid scheduling window {}", window);
+			return;
+		}
+		schedulingWindow = window;
+	}
+	
+	/**
+	 * Sets how the ready tasks which do not fit hold resources back for later.
+	 * When backfilling, the resources used by the running tasks until their expected
+	 * end and by the reservations of the waiting tasks are kept in an availability
+	 * profile. A ready task only starts if it fits in the profile from now for its
+	 * duration, so that it never delays the reservations made before it.
+	 * @param mode The backfilling mode.
+	 * @param criticalSlack The slack (maxStartDate - minStartDate) up to which a waiting
+	 * task gets a reservation whatever the mode, e.g. 0 for the tasks on the critical
+	 * path of their DAG.
+	 */
+	public void setBackfilling(BackfillMode mode, int criticalSlack) {
+		backfillMode = mode;
+		this.criticalSlack = criticalSlack;
+		if (mode == BackfillMode.NONE) {
+			profile = null;
+			return;
+		}
+		profile = new AvailabilityProfile();
+		for (Container container : containers) {
+			if (container.isAvailable()) {
+				profile.addCapacity(container.getCapacity());
+			}
+			for (Task task : container.getTasks()) {
+				TaskExecutionRecord attempt = backupAttempts.get(task);
+				if (attempt == null || attempt.getContainer() != container) {
+					attempt = task.getExecutionContext().getAttempt();
+				}
+				profile.reserve(attempt, attempt.getStartDate(),
+						attempt.getExpectedEndDate(), task.getRequiredResources());
+			}
+		}
+	}
+	
+	/**
+	 * Sets the model of the overheads of preemptions and restarts.
+	 * @param costModel The preemption cost model, or null if preemptions are free.
+	 */
+	public void setPreemptionCostModel(PreemptionCostModel costModel) {
+		this.costModel = costModel;
+	}
+	
+	/**
+	 * Sets the model of the durations of the execution attempts.
+	 * @param durationModel The duration model, or null to run every task for its
+	 * duration.
+	 */
+	public void setDurationModel(DurationModel durationModel) {
+		this.durationModel = durationModel;
+	}
+	
+	/**
+	 * Enables speculative execution. A task still running after a fraction of its
+	 * duration gets a backup attempt in another container, as soon as one is left free
+	 * by the ready tasks. The first attempt to finish wins and the other is preempted.
+	 * @param threshold The fraction of the duration after which a task is speculated,
+	 * or 0 to disable speculative execution.
+	 */
+	public void setSpeculation(double threshold) {
+		speculationThreshold = threshold;
+	}
+	
+	/**
+	 * Sets how the ended execution attempts of the tasks are kept.
+	 * Retaining only aggregates bounds the memory used by the tasks whatever the
+	 * number of preemptions.
+	 * @param retention How the ended execution attempts are kept.
+	 */
+	public void setAttemptRetention(AttemptRetention retention) {
+		if (retention == AttemptRetention.SPILL && trace == null) {
+			LOGGER.error("Attempt to spill execution attempts without execution trace");
+			return;
+		}
+		this.retention = retention;
+	}
+	
+	/**
+	 * Spills the ended execution attempts of the tasks to an execution trace.
+	 * @param file The execution trace file.
+	 * @throws IOException if the execution trace cannot be created.
+	 */
+	public void spillExecutionAttempts(File file) throws IOException {
+		trace = new ExecutionTraceWriter(file);
+		retention = AttemptRetention.SPILL;
+	}
+	
+	/**
+	 * Records the scheduling decisions of the simulation in a decision log.
+	 * @param file The log file.
+	 * @throws IOException if the log file cannot be created.
+	 */
+	public void recordDecisions(File file) throws IOException {
+		decisionLog = new DecisionLog(file, seed);
+	}
+	
+	/**
+	 * Loads task DAG files concurrently and adds them to the simulation.
+	 * Every file is parsed and its task DAG updated on a worker of the pool, then
+	 * the ready tasks are merged into the global ready queue.
+	 * @param files The task DAG files to load.
+	 */
+	public void loadDAGs(List<File> files) {
+		CURRENT.set(this);
+		TaskDAG[] loaded = new TaskDAG[files.size()];
+		pool.invoke(new TaskDAGLoadAction(files, loaded));
+		for (int i = 0; i < loaded.length; i++) {
+			if (loaded[i] == null) {
+				LOGGER.error("Task DAG {} was not loaded", files.get(i));
+				continue;
+			}
+			loaded[i].setId(dags.size());
+			dags.add(loaded[i]);
+		}
+		mergeReadyTasks();
+	}
+	
+	/**
+	 * Adds a task DAG to the simulation.
+	 * @param dag The task DAG to add.
+	 */
+	public void addDAG(TaskDAG dag) {
+		CURRENT.set(this);
+		addDAG(dags.size(), dag);
+	}
+	
+	/**
+	 * Adds a task DAG to the simulation.
+	 * @param id The identifier of the task DAG in the whole simulation.
+	 * @param dag The task DAG to add.
+	 */
+	void addDAG(int id, TaskDAG dag) {
+		dag.setId(id);
+		dags.add(dag);
+		offerReadyTasks(dag.drainReadyTasks());
+	}
+	
+	/**
+	 * Takes the task DAGs submitted while the simulation runs from a submission queue.
+	 * Submitted task DAGs arrive at the date they are taken, and the simulation waits
+	 * for submissions as long as producers are registered on the queue.
+	 * @param submissions The submission queue, or null.
+	 */
+	public void setSubmissionQueue(SubmissionQueue submissions) {
+		this.submissions = submissions;
+	}
+	
+	/**
+	 * Turns the task DAGs submitted since the last call into arrival events.
+	 */
+	private void takeSubmissions() {
+		TaskDAG dag;
+		while ((dag = submissions.poll()) != null) {
+			schedule(new DAGArrivalEvent(time, dag));
+		}
+	}
+	
+	/**
+	 * Updates all the task DAGs concurrently, each one on its own worker, then merges
+	 * their ready tasks into the global ready queue.
+	 */
+	public void updateDAGs() {
+		CURRENT.set(this);
+		pool.invoke(new TaskDAGUpdateAction(dags));
+		mergeReadyTasks();
+	}
+	
+	/**
+	 * Merges the tasks that became ready in the task DAGs into the global ready queue.
+	 * Task DAGs are merged in the order they were added to keep runs reproducible.
+	 */
+	private void mergeReadyTasks() {
+		if (SimulationProfiler.ENABLED) {
+			profiler.enter(ProfilerPhase.READINESS);
+		}
+		for (TaskDAG dag : dags) {
+			offerReadyTasks(dag.drainReadyTasks());
+		}
+		if (SimulationProfiler.ENABLED) {
+			profiler.exit();
+		}
+	}
+	
+	/**
+	 * Adds tasks to the global ready queue, unless decisions are replayed, and stamps
+	 * the date at which they became ready with the simulator clock.
+	 * @param tasks The ready tasks.
+	 */
+	void offerReadyTasks(Collection<Task> tasks) {
+		for (Task task : tasks) {
+			// a task may wait again for a parent run again before being drained
+			if (task.getStatus() == TaskStatus.READY) {
+				task.getExecutionContext().setReadyDate(time);
+				if (replay == null) {
+					readyTasks.add(task);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Schedules an event.
+	 * @param event The event to schedule, which must not be in the past.
+	 */
+	public void schedule(Event event) {
+		if (event.getTime() < time) {
+			LOGGER.error("Attempt to schedule an event at {} whereas the date is {}",
+					event.getTime(), time);
+			return;
+		}
+		event.setSequence(eventCount++);
+		events.add(event);
+	}
+	
+	/**
+	 * Runs the simulation until no event is left.
+	 */
+	public void run() {
+		run(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Runs the simulation until no event is left before a given date.
+	 * @param until The date after which the events are not processed.
+	 */
+	public void run(int until) {
+		CURRENT.set(this);
+		scheduleReadyTasks();
+		processEvents(until);
+		if (events.isEmpty() && !isFinished()) {
+			LOGGER.warn("Simulation stopped at {} with {} ready tasks that cannot run",
+					time, readyTasks.size());
+		}
+		if (events.isEmpty()) {
+			if (decisionLog != null) {
+				decisionLog.close();
+			}
+			if (trace != null) {
+				trace.close();
+			}
+			if (SimulationProfiler.ENABLED) {
+				try {
+					profiler.write(seed);
+				} catch (IOException e) {
+					LOGGER.error("Unable to write the profile: {}", e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Processes the events up to a given date. The ready tasks are scheduled once all
+	 * the events of a date are processed.
+	 * @param until The date after which the events are not processed.
+	 */
+	void processEvents(int until) {
+		CURRENT.set(this);
+		while (true) {
+			if (submissions != null) {
+				takeSubmissions();
+				if (events.isEmpty() && submissions.isOpen()) {
+					submissions.await(IDLE_WAIT);
+					continue;
+				}
+			}
+			if (events.isEmpty() || events.peek().getTime() > until) {
+				break;
+			}
+			Event event = events.poll();
+			time = event.getTime();
+			if (SimulationProfiler.ENABLED) {
+				profiler.enter(ProfilerPhase.EVENT);
+			}
+			event.process(this);
+			if (SimulationProfiler.ENABLED) {
+				profiler.exit();
+			}
+			if (events.isEmpty() || events.peek().getTime() != time) {
+				scheduleReadyTasks();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the date of the next pending event.
+	 * @return the date of the next event, or Integer.MAX_VALUE if no event is left.
+	 */
+	int getNextEventTime() {
+		return events.isEmpty() ? Integer.MAX_VALUE : events.peek().getTime();
+	}
+	
+	/**
+	 * Gets the current date of the simulation, whatever the thread running it.
+	 * @return the current date.
+	 */
+	int getCurrentTime() {
 		return time;
 	}
 	
-	private static boolean isFinished() {
-		for (Application app : applications) {
-			if (!app.isFinished()) return false;
+	/**
+	 * Replays the scheduling decisions of a recorded simulation up to a given date.
+	 * The simulator must hold the same cluster and task DAGs as the recorded one. Once
+	 * the date is reached, the simulation can go on with run(), the policies being
+	 * evaluated again.
+	 * @param file The decision log to replay.
+	 * @param until The date up to which the decisions are replayed.
+	 * @throws IOException if the decision log cannot be read.
+	 */
+	public void replay(File file, int until) throws IOException {
+		CURRENT.set(this);
+		replay = new DecisionReplay(file);
+		if (replay.getSeed() != seed) {
+			LOGGER.warn("Replaying {} recorded with seed {} using seed {}", file,
+					replay.getSeed(), seed);
+		}
+		try {
+			readyTasks.clear();
+			run(until);
+		} finally {
+			replay.close();
+			replay = null;
+		}
+		// the ready queue was not maintained during the replay
+		for (TaskDAG dag : dags) {
+			dag.drainReadyTasks();
+			for (Task task : dag.getTasks()) {
+				if (task.getStatus() == TaskStatus.READY) {
+					readyTasks.add(task);
+				}
+			}
 		}
 	}
 	
+	/**
+	 * Adds a ready task to the global ready queue, e.g. a task received from another
+	 * shard of a sharded simulation.
+	 * @param task The ready task.
+	 */
+	void addReadyTask(Task task) {
+		task.getExecutionContext().setReadyDate(time);
+		readyTasks.add(task);
+	}
+	
+	/**
+	 * Places the ready tasks in the containers by decreasing priority.
+	 * A task which does not fit in any container may preempt running tasks according
+	 * to the preemption policy; otherwise it waits for the next scheduling. Once the
+	 * scheduling window is full of waiting tasks, the scheduling stops unless no event
+	 * is pending: only the tasks examined are queued again, the others staying in the
+	 * ready queue. The tasks
+	 * of a gang are placed together when the first of them is polled, or wait together.
+	 * Gangs never preempt running tasks, whereas a task which preempts a task of a gang
+	 * preempts its whole gang: gangs therefore yield to the preempting tasks, and may
+	 * wait as long as such tasks keep on taking their resources.
+	 */
+	void scheduleReadyTasks() {
+		if (replay != null) {
+			replay.apply(this);
+			return;
+		}
+		scheduling = true;
+		if (SimulationProfiler.ENABLED) {
+			profiler.enter(ProfilerPhase.PLACEMENT);
+		}
+		ArrayList<Task> waiting = new ArrayList<Task>();
+		ArrayList<Task> reserved = new ArrayList<Task>();
+		// the first task of the gangs which did not fit during this scheduling
+		HashSet<Task> waitingGangs = new HashSet<Task>();
+		// without pending event, no later scheduling would examine the other tasks
+		while ((waiting.size() < schedulingWindow || events.isEmpty())
+				&& !readyTasks.isEmpty()) {
+			Task task = readyTasks.poll();
+			List<Task> gang = task.getDAG().getGang(task);
+			if (gang != null) {
+				// the tasks of a started gang are still queued, but not ready anymore
+				if (task.getStatus() == TaskStatus.READY
+						&& (waitingGangs.contains(gang.get(0)) || !startGang(gang))) {
+					waitingGangs.add(gang.get(0));
+					waiting.add(task);
+				}
+				continue;
+			}
+			int start = profile != null ? profile.getEarliestStart(time,
+					task.getDuration(), task.getRequiredResources()) : time;
+			// a task which would delay a reservation waits, even if it fits now
+			Container container = start == time ? findContainer(task, null) : null;
+			if (container == null && start == time && preemptionPolicy != null
+					&& !isAwaitingTeardown(task)) {
+				if (SimulationProfiler.ENABLED) {
+					profiler.enter(ProfilerPhase.PREEMPTION);
+				}
+				List<Task> victims = preemptionPolicy.selectVictims(this, task);
+				for (Task victim : victims) {
+					preemptGang(victim);
+				}
+				if (SimulationProfiler.ENABLED) {
+					profiler.exit();
+				}
+				if (!victims.isEmpty()) {
+					container = findContainer(task, null);
+					if (container == null && costModel != null) {
+						// the containers of the victims are being torn down
+						teardownDates.put(task, time + costModel.getTeardownLatency());
+					}
+				}
+			}
+			if (container == null) {
+				if (profile != null && start >= 0 && needsReservation(task, reserved)) {
+					if (start == time) {
+						// the resources are free but scattered among the containers
+						start = profile.getEarliestStart(time + 1, task.getDuration(),
+								task.getRequiredResources());
+					}
+					profile.reserve(task, start, start + task.getDuration(),
+							task.getRequiredResources());
+					reserved.add(task);
+					reservationCount++;
+				}
+				if (!offloadTask(task)) {
+					waiting.add(task);
+				}
+				continue;
+			}
+			startTask(task, container);
+		}
+		readyTasks.addAll(waiting);
+		launchBackupAttempts();
+		// reservations are made again at the next scheduling, from the new profile
+		for (Task task : reserved) {
+			profile.release(task, time);
+		}
+		if (SimulationProfiler.ENABLED) {
+			profiler.exit();
+		}
+		scheduling = false;
+	}
 	
+	/**
+	 * Starts the ready tasks of a gang all together, or none of them.
+	 * The resources of the tasks are reserved in containers, and in the availability
+	 * profile when backfilling, one task after the other; as soon as one of them does
+	 * not fit, the reservations are cancelled so that the waiting gang holds nothing.
+	 * A gang waits as long as one of its tasks waits for its parents, whereas its tasks
+	 * which are already running or finished, e.g. after a failure, are left out.
+	 * The preemption policy is not called: preempting victims for every task of the
+	 * gang would waste their work whenever another task of the gang still does not fit.
+	 * @param gang The tasks of the gang.
+	 * @return true if the ready tasks of the gang started.
+	 */
+	private boolean startGang(List<Task> gang) {
+		ArrayList<Task> members = new ArrayList<Task>(gang.size());
+		for (Task member : gang) {
+			TaskStatus status = member.getStatus();
+			if (status == TaskStatus.UNKNOWN || status == TaskStatus.PENDING) {
+				return false;
+			}
+			if (status == TaskStatus.READY) {
+				members.add(member);
+			}
+		}
+		ArrayList<Container> placement = new ArrayList<Container>(members.size());
+		for (Task member : members) {
+			boolean fits = profile == null || profile.getEarliestStart(time,
+					member.getDuration(), member.getRequiredResources()) == time;
+			Container container = fits ? findContainer(member, null) : null;
+			if (container == null) {
+				cancelGangReservations(members, placement);
+				gangRollbackCount++;
+				return false;
+			}
+			container.reserve(member);
+			if (profile != null) {
+				profile.reserve(member, time, time + member.getDuration(),
+						member.getRequiredResources());
+			}
+			placement.add(container);
+		}
+		cancelGangReservations(members, placement);
+		for (int i = 0; i < members.size(); i++) {
+			startTask(members.get(i), placement.get(i));
+		}
+		gangStartCount++;
+		return true;
+	}
+	
+	/**
+	 * Cancels the reservations made for the tasks of a gang.
+	 * @param members The ready tasks of the gang.
+	 * @param placement The containers reserved for the first tasks of the gang.
+	 */
+	private void cancelGangReservations(List<Task> members, List<Container> placement) {
+		for (int i = 0; i < placement.size(); i++) {
+			placement.get(i).cancelReservation(members.get(i));
+			if (profile != null) {
+				profile.release(members.get(i), time);
+			}
+		}
+	}
+	
+	/**
+	 * Preempts a running task and, if it belongs to a gang, the running tasks of its
+	 * gang, which cannot go on without it.
+	 * @param victim The running task to preempt.
+	 */
+	private void preemptGang(Task victim) {
+		if (victim.getStatus() != TaskStatus.RUNNING) {
+			// already preempted with its gang
+			return;
+		}
+		preemptTask(victim);
+		List<Task> gang = victim.getDAG().getGang(victim);
+		if (gang == null) {
+			return;
+		}
+		for (Task member : gang) {
+			if (member.getStatus() == TaskStatus.RUNNING) {
+				preemptTask(member);
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether a ready task waits for the containers of the tasks it preempted
+	 * to be torn down, so that it does not preempt more tasks meanwhile.
+	 * @param task The ready task.
+	 * @return true if the teardown of the containers is not over.
+	 */
+	private boolean isAwaitingTeardown(Task task) {
+		Integer date = teardownDates.get(task);
+		if (date == null) {
+			return false;
+		}
+		if (date > time) {
+			return true;
+		}
+		teardownDates.remove(task);
+		return false;
+	}
+	
+	/**
+	 * Returns whether a waiting task gets a reservation in the availability profile.
+	 * @param task The waiting task.
+	 * @param reserved The tasks which got a reservation during the current scheduling.
+	 * @return true if the task gets a reservation.
+	 */
+	private boolean needsReservation(Task task, List<Task> reserved) {
+		TaskExecutionContext context = task.getExecutionContext();
+		return backfillMode == BackfillMode.CONSERVATIVE || reserved.isEmpty()
+				|| context.getMaxStartDate() - context.getMinStartDate() <= criticalSlack;
+	}
+	
+	/**
+	 * Launches the backup attempts of the speculated tasks in the containers left free
+	 * by the ready tasks. When backfilling, a backup attempt only starts if it fits in
+	 * the profile from now, so that it does not delay the reservations of the waiting
+	 * tasks either.
+	 */
+	private void launchBackupAttempts() {
+		Iterator<TaskExecutionRecord> iterator = stragglers.iterator();
+		while (iterator.hasNext()) {
+			TaskExecutionRecord attempt = iterator.next();
+			Task task = attempt.getTask();
+			if (attempt.getEndDate() != null
+					|| task.getExecutionContext().getAttempt() != attempt) {
+				iterator.remove();
+				continue;
+			}
+			if (profile != null && profile.getEarliestStart(time, task.getDuration(),
+					task.getRequiredResources()) != time) {
+				continue;
+			}
+			Container container = findContainer(task, attempt.getContainer());
+			if (container != null) {
+				iterator.remove();
+				startTask(task, container);
+			}
+		}
+	}
+	
+	/**
+	 * Finds a container with enough available resources to run a task.
+	 * Containers on the node that holds the data of the task are preferred.
+	 * @param task The task to run.
+	 * @param excluded A container not to use, or null.
+	 * @return the container, or null if the task does not fit in any container.
+	 */
+	private Container findContainer(Task task, Container excluded) {
+		Container found = null;
+		for (Container container : containers) {
+			if (container != excluded && container.canRun(task)) {
+				if (task.getDataNodeId() == null
+						|| task.getDataNodeId() == container.getNode()) {
+					return container;
+				}
+				if (found == null) {
+					found = container;
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Starts an execution attempt of a task in a container.
+	 * Starting a running task without backup attempt launches its backup attempt.
+	 * A task which ran before first warms up and fetches its input again, as set by
+	 * the preemption cost model.
+	 * A task which does not fit in the resources left by the container is not started.
+	 * @param task The task to run, which must be ready or speculated.
+	 * @param container The container which runs the task.
+	 */
+	public void startTask(Task task, Container container) {
+		CURRENT.set(this);
+		TaskExecutionContext context = task.getExecutionContext();
+		boolean backup = context.getStatus() == TaskStatus.RUNNING
+				&& !backupAttempts.containsKey(task);
+		if (context.getStatus() != TaskStatus.READY && !backup) {
+			LOGGER.error("Attempt to start task {} which is {}", task.getName(),
+					TaskStatus.toString(context.getStatus()));
+			return;
+		}
+		if (!container.addTask(task)) {
+			return;
+		}
+		int restartDelay = 0;
+		if (costModel != null && !backup && task.getExecutionAttemptCount() > 0) {
+			int fetch = costModel.getFetchTime(task, container);
+			restartDelay = costModel.getWarmUp() + fetch;
+			warmUpTime += costModel.getWarmUp();
+			fetchTime += fetch;
+		}
+		TaskExecutionRecord attempt = new TaskExecutionRecord(task, time, container);
+		task.addExecutionAttempt(attempt);
+		teardownDates.remove(task);
+		// the profile holds the resources of the attempt until its expected end
+		int duration = drawDuration(task);
+		attempt.setExpectedEndDate(time + restartDelay + duration);
+		if (profile != null) {
+			profile.reserve(attempt, time, attempt.getExpectedEndDate(),
+					task.getRequiredResources());
+		}
+		if (backup) {
+			backupAttempts.put(task, attempt);
+			backupCount++;
+		} else {
+			context.setContainer(container);
+			context.setAttempt(attempt);
+			context.setStatus(TaskStatus.RUNNING);
+			onTaskStarted(task, time);
+		}
+		if (decisionLog != null) {
+			if (SimulationProfiler.ENABLED) {
+				profiler.enter(ProfilerPhase.TRACE);
+			}
+			decisionLog.logPlacement(attempt);
+			if (SimulationProfiler.ENABLED) {
+				profiler.exit();
+			}
+		}
+		if (restartDelay > 0) {
+			TaskWarmUpEvent warmUp = new TaskWarmUpEvent(time + restartDelay, attempt,
+					duration);
+			// cancelled as the finish event if the attempt is interrupted meanwhile
+			attempt.setFinishEvent(warmUp);
+			schedule(warmUp);
+		} else {
+			runAttempt(attempt, duration);
+		}
+	}
+	
+	/**
+	 * Runs the task of a started execution attempt, scheduling its end and the date
+	 * after which it straggles.
+	 * @param attempt The execution attempt, started or warmed up now.
+	 * @param duration The duration drawn for the execution attempt.
+	 */
+	void runAttempt(TaskExecutionRecord attempt, int duration) {
+		Task task = attempt.getTask();
+		TaskFinishEvent finish = new TaskFinishEvent(time + duration, attempt);
+		attempt.setFinishEvent(finish);
+		schedule(finish);
+		boolean backup = backupAttempts.get(task) == attempt;
+		if (!backup && speculationThreshold > 0.0) {
+			int delay = (int) Math.max(1.0,
+					Math.ceil(speculationThreshold * task.getDuration()));
+			if (delay < duration) {
+				schedule(new SpeculationEvent(time + delay, attempt));
+			}
+		}
+	}
+	
+	/**
+	 * Draws the duration of an execution attempt of a task.
+	 * @param task The task which starts to run.
+	 * @return the duration of the execution attempt.
+	 */
+	private int drawDuration(Task task) {
+		if (durationModel == null) {
+			return task.getDuration();
+		}
+		// placements are replayed, so that the durations they draw are event draws
+		boolean policy = scheduling;
+		scheduling = false;
+		int duration = durationModel.drawDuration(this, task);
+		scheduling = policy;
+		return duration;
+	}
+	
+	/**
+	 * Marks an execution attempt as a straggler whose backup attempt must be launched,
+	 * unless it ended or already has one.
+	 * @param attempt The execution attempt running for too long.
+	 */
+	void speculate(TaskExecutionRecord attempt) {
+		Task task = attempt.getTask();
+		if (attempt.getEndDate() == null && task.getExecutionContext().getAttempt() == attempt
+				&& !backupAttempts.containsKey(task)) {
+			stragglers.add(attempt);
+		}
+	}
+	
+	/**
+	 * Preempts a running task, which becomes ready again.
+	 * @param task The task to preempt.
+	 */
+	public void preemptTask(Task task) {
+		CURRENT.set(this);
+		interruptTask(task, false);
+	}
+	
+	/**
+	 * Interrupts a running task, which becomes ready again.
+	 * Preemptions are recorded in the decision log, whereas failures are not since
+	 * they are replayed from the random draws of the failure injector.
+	 * @param task The task to interrupt.
+	 * @param failed Whether the task is killed by a node failure.
+	 */
+	private void interruptTask(Task task, boolean failed) {
+		TaskExecutionContext context = task.getExecutionContext();
+		TaskExecutionRecord attempt = context.getAttempt();
+		if (context.getStatus() != TaskStatus.RUNNING || attempt == null) {
+			LOGGER.error("Attempt to interrupt task {} which is {}", task.getName(),
+					TaskStatus.toString(context.getStatus()));
+			return;
+		}
+		TaskExecutionRecord backup = backupAttempts.remove(task);
+		if (backup != null) {
+			endInterruptedAttempt(backup, failed);
+		}
+		endInterruptedAttempt(attempt, failed);
+		context.setContainer(null);
+		context.setAttempt(null);
+		context.setStatus(TaskStatus.READY);
+		onTaskPreempted(task, attempt.getStartDate());
+		if (decisionLog != null && !failed) {
+			if (SimulationProfiler.ENABLED) {
+				profiler.enter(ProfilerPhase.TRACE);
+			}
+			decisionLog.logPreemption(attempt);
+			if (SimulationProfiler.ENABLED) {
+				profiler.exit();
+			}
+		}
+		// the task waits again if one of its parents is run again
+		if (task.getStatus() == TaskStatus.READY) {
+			context.setReadyDate(time);
+			if (replay == null) {
+				readyTasks.add(task);
+			}
+		}
+	}
+	
+	/**
+	 * Ends an execution attempt before the task finishes and releases its container.
+	 * @param attempt The execution attempt to end.
+	 * @param failed Whether the attempt is killed by a node failure.
+	 */
+	private void endInterruptedAttempt(TaskExecutionRecord attempt, boolean failed) {
+		if (failed) {
+			attempt.setFailed(true);
+		} else {
+			attempt.setPreempted(true);
+		}
+		attempt.setEndDate(time);
+		if (attempt.getFinishEvent() != null) {
+			attempt.getFinishEvent().cancel();
+		}
+		attempt.getContainer().removeTask(attempt.getTask());
+		int teardown = !failed && costModel != null ? costModel.getTeardownLatency() : 0;
+		if (teardown > 0) {
+			// the container holds the resources of the attempt until it is torn down
+			attempt.getContainer().reserve(attempt.getTask());
+			schedule(new ContainerTeardownEvent(time + teardown, attempt));
+			teardownTime += teardown;
+		}
+		if (profile != null) {
+			profile.release(attempt, time + teardown);
+		}
+		endExecutionAttempt(attempt);
+	}
+	
+	/**
+	 * Releases the resources held by the container of a preempted execution attempt
+	 * once it is torn down.
+	 * @param attempt The preempted execution attempt.
+	 */
+	void endTeardown(TaskExecutionRecord attempt) {
+		attempt.getContainer().cancelReservation(attempt.getTask());
+	}
+	
+	/**
+	 * Accounts for an execution attempt which ended in its task, which writes it to the
+	 * execution trace when attempts are spilled.
+	 * @param attempt The execution attempt, which must have an ending date.
+	 */
+	private void endExecutionAttempt(TaskExecutionRecord attempt) {
+		if (SimulationProfiler.ENABLED) {
+			profiler.enter(ProfilerPhase.TRACE);
+		}
+		attempt.getTask().endExecutionAttempt(attempt, retention, trace);
+		if (SimulationProfiler.ENABLED) {
+			profiler.exit();
+		}
+	}
+	
+	/**
+	 * Runs a finished task again, e.g. because its output was lost. The children of
+	 * the task which were ready wait for it again.
+	 * @param task The finished task to run again.
+	 */
+	public void rerunTask(Task task) {
+		CURRENT.set(this);
+		for (Task child : task.getDAG().onTaskLost(task)) {
+			readyTasks.remove(child);
+		}
+		offerReadyTasks(task.getDAG().drainReadyTasks());
+	}
+	
+	/**
+	 * Makes a node fail: its containers stop accepting tasks and the tasks they run
+	 * are killed and become ready again. Only the containers of the node are visited.
+	 * A speculated task keeps on running if its other attempt runs on another node.
+	 * @param node The node which fails.
+	 */
+	public void failNode(Node node) {
+		CURRENT.set(this);
+		if (!node.isUp()) {
+			return;
+		}
+		node.setUp(false);
+		for (Container container : node.getContainers()) {
+			container.setAvailable(false);
+			if (profile != null) {
+				profile.removeCapacity(container.getCapacity());
+			}
+			while (!container.isEmpty()) {
+				Task task = container.getTasks().get(container.getTasks().size() - 1);
+				TaskExecutionRecord backup = backupAttempts.get(task);
+				if (backup == null) {
+					interruptTask(task, true);
+				} else if (backup.getContainer() == container) {
+					backupAttempts.remove(task);
+					endInterruptedAttempt(backup, true);
+				} else {
+					// the backup attempt takes over
+					TaskExecutionContext context = task.getExecutionContext();
+					TaskExecutionRecord attempt = context.getAttempt();
+					backupAttempts.remove(task);
+					endInterruptedAttempt(attempt, true);
+					onTaskAttemptReplaced(task, attempt.getStartDate(),
+							backup.getStartDate());
+					context.setContainer(backup.getContainer());
+					context.setAttempt(backup);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Recovers a failed node, whose containers accept tasks again.
+	 * @param node The node which recovers.
+	 */
+	public void recoverNode(Node node) {
+		CURRENT.set(this);
+		if (node.isUp()) {
+			return;
+		}
+		node.setUp(true);
+		for (Container container : node.getContainers()) {
+			container.setAvailable(true);
+			if (profile != null) {
+				profile.addCapacity(container.getCapacity());
+			}
+		}
+	}
+	
+	/**
+	 * Finishes an execution attempt of a task.
+	 * The other execution attempt of a speculated task is preempted.
+	 * @param attempt The execution attempt which finishes.
+	 */
+	void finishTask(TaskExecutionRecord attempt) {
+		Task task = attempt.getTask();
+		TaskExecutionContext context = task.getExecutionContext();
+		TaskExecutionRecord backup = backupAttempts.remove(task);
+		if (backup == attempt) {
+			backupWinCount++;
+			endInterruptedAttempt(context.getAttempt(), false);
+		} else if (backup != null) {
+			endInterruptedAttempt(backup, false);
+		}
+		attempt.setEndDate(time);
+		attempt.getContainer().removeTask(task);
+		if (profile != null) {
+			profile.release(attempt, time);
+		}
+		if (SimulationProfiler.ENABLED) {
+			profiler.enter(ProfilerPhase.READINESS);
+		}
+		onTaskFinished(task);
+		if (SimulationProfiler.ENABLED) {
+			profiler.exit();
+		}
+		context.setContainer(null);
+		context.setAttempt(null);
+		endExecutionAttempt(attempt);
+	}
+	
+	/**
+	 * Hands a ready task which does not fit in any container over to another part of
+	 * the simulation. Tasks are never handed over by a single simulator.
+	 * @param task The ready task.
+	 * @return true if the task was handed over, false if it waits in the ready queue.
+	 */
+	protected boolean offloadTask(Task task) {
+		return false;
+	}
+	
+	/**
+	 * Notifies the DAG of a task that the task started to run.
+	 * @param task The task which started.
+	 * @param startDate The starting date of its execution attempt.
+	 */
+	protected void onTaskStarted(Task task, int startDate) {
+		task.getDAG().onTaskStarted(task, startDate);
+	}
+	
+	/**
+	 * Notifies the DAG of a task that the task was interrupted and became ready again.
+	 * @param task The task which was interrupted.
+	 * @param startDate The starting date of its interrupted execution attempt.
+	 */
+	protected void onTaskPreempted(Task task, int startDate) {
+		task.getDAG().onTaskPreempted(task, startDate);
+	}
+	
+	/**
+	 * Notifies the DAG of a task that its execution attempt was replaced by its backup.
+	 * @param task The task which keeps on running.
+	 * @param startDate The starting date of the attempt which ended.
+	 * @param newStartDate The starting date of the backup attempt.
+	 */
+	protected void onTaskAttemptReplaced(Task task, int startDate, int newStartDate) {
+		task.getDAG().onTaskAttemptReplaced(task, startDate, newStartDate);
+	}
+	
+	/**
+	 * Notifies the DAG of a task that the task finished, and queues the children which
+	 * became ready. The execution attempt of the task is still set.
+	 * @param task The task which finished.
+	 */
+	protected void onTaskFinished(Task task) {
+		task.getDAG().onTaskFinished(task);
+		offerReadyTasks(task.getDAG().drainReadyTasks());
+	}
+	
+	/**
+	 * Draws a random number, which is recorded in or read from the decision log.
+	 * Every random draw of the simulation must go through this method so that the
+	 * simulation can be replayed.
+	 * @return a random number between 0.0 (included) and 1.0 (excluded).
+	 */
+	public double nextRandom() {
+		double value = random.nextDouble();
+		if (replay != null) {
+			return replay.nextDraw(value);
+		}
+		if (decisionLog != null) {
+			decisionLog.logDraw(time, value, scheduling);
+		}
+		return value;
+	}
+	
+	/**
+	 * Skips a random number drawn by the scheduling policies of a recorded simulation.
+	 */
+	void skipRandom() {
+		random.nextDouble();
+	}
+	
+	/**
+	 * Gets the task DAGs being simulated.
+	 * @return the list of task DAGs.
+	 */
+	public ArrayList<TaskDAG> getDAGs() {
+		return dags;
+	}
+	
+	/**
+	 * Gets the global ready queue, ordered by decreasing priority by default.
+	 * @return the ready tasks of all the task DAGs.
+	 */
+	public Queue<Task> getReadyTasks() {
+		return readyTasks;
+	}
+	
+	/**
+	 * Gets the nodes of the cluster.
+	 * @return the list of nodes.
+	 */
+	public ArrayList<Node> getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Gets the containers of the cluster.
+	 * @return the list of containers.
+	 */
+	public ArrayList<Container> getContainers() {
+		return containers;
+	}
+	
+	/**
+	 * Gets the tracker of the dominant resource share of the tenants.
+	 * @return the tracker of the tenant shares.
+	 */
+	public TenantShareTracker getShareTracker() {
+		return shares;
+	}
+	
+	/**
+	 * Gets the number of backup attempts launched by speculative execution.
+	 * @return the number of backup attempts.
+	 */
+	public long getBackupAttemptCount() {
+		return backupCount;
+	}
+	
+	/**
+	 * Gets the number of backup attempts which finished before their original attempt.
+	 * @return the number of backup attempts which won.
+	 */
+	public long getBackupWinCount() {
+		return backupWinCount;
+	}
+	
+	/**
+	 * Gets the number of reservations made for waiting tasks when backfilling.
+	 * @return the number of reservations.
+	 */
+	public long getReservationCount() {
+		return reservationCount;
+	}
+	
+	/**
+	 * Gets the number of gangs whose ready tasks started together.
+	 * @return the number of gang starts.
+	 */
+	public long getGangStartCount() {
+		return gangStartCount;
+	}
+	
+	/**
+	 * Gets the number of gang placements rolled back because a task did not fit.
+	 * @return the number of rollbacks.
+	 */
+	public long getGangRollbackCount() {
+		return gangRollbackCount;
+	}
+	
+	/**
+	 * Gets the time spent tearing down the containers of preempted attempts.
+	 * @return the teardown time.
+	 */
+	public long getTeardownTime() {
+		return teardownTime;
+	}
+	
+	/**
+	 * Gets the time spent warming up restarted attempts.
+	 * @return the warm-up time.
+	 */
+	public long getWarmUpTime() {
+		return warmUpTime;
+	}
+	
+	/**
+	 * Gets the time spent fetching the input of restarted attempts again.
+	 * @return the fetch time.
+	 */
+	public long getFetchTime() {
+		return fetchTime;
+	}
+	
+	/**
+	 * Gets the profiler of the phases of the simulation.
+	 * @return the profiler, or null if profiling is disabled.
+	 */
+	public SimulationProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**
+	 * Gets the availability profile of the cluster.
+	 * @return the profile, or null if not backfilling.
+	 */
+	public AvailabilityProfile getAvailabilityProfile() {
+		return profile;
+	}
+	
+	/**
+	 * Gets the seed of the random generator.
+	 * @return the seed of the simulation.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Returns whether all the task DAGs are finished.
+	 * @return true if the simulation is finished.
+	 */
+	public boolean isFinished() {
+		for (TaskDAG dag : dags) {
+			if (!dag.isFinished()) return false;
+		}
+		return true;
+	}
 }
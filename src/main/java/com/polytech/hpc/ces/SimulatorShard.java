@@ -0,0 +1,227 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a shard of a sharded simulation: a subset of the nodes of the cluster,
+ * with their containers, and the task DAGs whose data they mostly hold.
+ * A shard runs its own events. It only updates its own task DAGs, so that it never
+ * reads the state of another shard: a ready task which does not fit in the shard
+ * migrates to another one, which notifies the shard of the task DAG once the task
+ * finished. Both messages are received one lookahead window after they are sent.
+ * @class
+ * @author Nicolas
+ */
+public class SimulatorShard extends Simulator {
+	/** The coordinator of the sharded simulation. */
+	private ShardCoordinator coordinator;
+	
+	/** The index of the shard. */
+	private int index;
+	
+	/** The messages sent during the current window. */
+	private ArrayList<ShardMessage> outbox;
+	
+	/** The resources available in the containers at the end of the last window. */
+	private ResourceDescriptor freeResources;
+	
+	/** The resources available in the container with the most of them. */
+	private ResourceDescriptor largestFreeResources;
+	
+	/** The number of tasks which migrated from the shard. */
+	private long migrationCount;
+	
+	/**
+	 * Creates a new shard.
+	 * @param coordinator The coordinator of the sharded simulation.
+	 * @param index The index of the shard.
+	 * @param seed The seed of the random generator of the shard.
+	 * @constructor
+	 */
+	SimulatorShard(ShardCoordinator coordinator, int index, long seed) {
+		super(seed);
+		this.coordinator = coordinator;
+		this.index = index;
+		outbox = new ArrayList<ShardMessage>();
+		freeResources = new ResourceDescriptor();
+		largestFreeResources = new ResourceDescriptor();
+		migrationCount = 0;
+	}
+	
+	/**
+	 * Returns whether the shard holds the task DAG of a task.
+	 * @param task The task.
+	 * @return true if the task DAG belongs to the shard.
+	 */
+	public boolean isHome(Task task) {
+		return coordinator.getHomeShard(task.getDAG()) == index;
+	}
+	
+	/**
+	 * Sends a task of the shard which does not fit in any container to another shard,
+	 * if one had room for it at the end of the last window. Tasks of other shards
+	 * never migrate again.
+	 * @param task The ready task.
+	 * @return true if the task migrates.
+	 */
+	@Override
+	protected boolean offloadTask(Task task) {
+		if (!isHome(task) || !coordinator.hasRoomOutside(index, task)) {
+			return false;
+		}
+		outbox.add(new TaskMigrationEvent(getCurrentTime() + coordinator.getLookahead(),
+				index, task));
+		migrationCount++;
+		return true;
+	}
+	
+	/**
+	 * Notifies the task DAG, unless it belongs to another shard.
+	 * @param task The task which started.
+	 * @param startDate The starting date of its execution attempt.
+	 */
+	@Override
+	protected void onTaskStarted(Task task, int startDate) {
+		if (isHome(task)) {
+			super.onTaskStarted(task, startDate);
+		}
+	}
+	
+	/**
+	 * Notifies the task DAG, unless it belongs to another shard.
+	 * @param task The task which was interrupted.
+	 * @param startDate The starting date of its interrupted execution attempt.
+	 */
+	@Override
+	protected void onTaskPreempted(Task task, int startDate) {
+		if (isHome(task)) {
+			super.onTaskPreempted(task, startDate);
+		}
+	}
+	
+	/**
+	 * Notifies the task DAG, unless it belongs to another shard.
+	 * @param task The task which keeps on running.
+	 * @param startDate The starting date of the attempt which ended.
+	 * @param newStartDate The starting date of the backup attempt.
+	 */
+	@Override
+	protected void onTaskAttemptReplaced(Task task, int startDate, int newStartDate) {
+		if (isHome(task)) {
+			super.onTaskAttemptReplaced(task, startDate, newStartDate);
+		}
+	}
+	
+	/**
+	 * Notifies the task DAG, or the shard which holds it.
+	 * @param task The task which finished.
+	 */
+	@Override
+	protected void onTaskFinished(Task task) {
+		if (isHome(task)) {
+			super.onTaskFinished(task);
+			return;
+		}
+		outbox.add(new RemoteTaskFinishEvent(getCurrentTime() + coordinator.getLookahead(),
+				index, coordinator.getHomeShard(task.getDAG()), task));
+	}
+	
+	/**
+	 * Receives a ready task which migrated, or came back since no shard had room left.
+	 * @param task The ready task.
+	 */
+	void receiveTask(Task task) {
+		addReadyTask(task);
+	}
+	
+	/**
+	 * Marks a task of the shard which finished in another shard as finished.
+	 * @param task The task which finished.
+	 */
+	void onRemoteTaskFinished(Task task) {
+		task.getDAG().onRemoteTaskFinished(task);
+		offerReadyTasks(task.getDAG().drainReadyTasks());
+	}
+	
+	/**
+	 * Takes the messages sent since the last call.
+	 * @return the messages, in the order they were sent.
+	 */
+	List<ShardMessage> drainOutbox() {
+		ArrayList<ShardMessage> messages = outbox;
+		outbox = new ArrayList<ShardMessage>();
+		return messages;
+	}
+	
+	/**
+	 * Sums up the resources available in the containers of the shard.
+	 */
+	void summarizeFreeResources() {
+		freeResources.reset();
+		largestFreeResources.reset();
+		for (Container container : getContainers()) {
+			if (!container.isAvailable()) {
+				continue;
+			}
+			ResourceDescriptor avail = container.getResourcesAvail();
+			freeResources.add(avail);
+			for (int i = 0; i < avail.getDimensionCount(); i++) {
+				largestFreeResources.set(i, Math.max(largestFreeResources.get(i),
+						avail.get(i)));
+			}
+		}
+	}
+	
+	/**
+	 * Gets the index of the shard.
+	 * @return the index of the shard.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Gets the resources available in the containers at the end of the last window.
+	 * @return the sum of the available resources.
+	 */
+	public ResourceDescriptor getFreeResources() {
+		return freeResources;
+	}
+	
+	/**
+	 * Gets the resources available in every dimension in the container which has the
+	 * most of them, at the end of the last window.
+	 * @return the largest available resources.
+	 */
+	public ResourceDescriptor getLargestFreeResources() {
+		return largestFreeResources;
+	}
+	
+	/**
+	 * Gets the number of tasks which migrated from the shard.
+	 * @return the number of migrations.
+	 */
+	public long getMigrationCount() {
+		return migrationCount;
+	}
+}
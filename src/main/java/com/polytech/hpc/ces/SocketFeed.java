@@ -0,0 +1,110 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feeds a running simulation with the task DAGs sent to a local socket, one per line.
+ * Every connection is read by its own producer thread.
+ * @class
+ * @author Nicolas
+ */
+public class SocketFeed extends WorkloadFeed {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SocketFeed.class);
+	
+	/** The socket accepting the connections. */
+	private ServerSocket server;
+	
+	/**
+	 * Creates a new socket feed listening on the loopback interface.
+	 * @param port The port to listen to, or 0 for any free port.
+	 * @param queue The queue to which task DAGs are submitted.
+	 * @throws IOException if the socket cannot be bound.
+	 * @constructor
+	 */
+	public SocketFeed(int port, SubmissionQueue queue) throws IOException {
+		super(queue);
+		server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	}
+	
+	/**
+	 * Accepts the connections until the feed is stopped.
+	 * @throws IOException if the socket fails.
+	 */
+	@Override
+	protected void feed() throws IOException {
+		while (!isStopped()) {
+			final Socket socket = server.accept();
+			getQueue().register();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Reader reader = new InputStreamReader(socket.getInputStream(),
+								"UTF-8");
+						readLines(reader, false);
+					} catch (IOException e) {
+						LOGGER.error("Connection {} failed: {}",
+								socket.getRemoteSocketAddress(), e.getMessage());
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							LOGGER.warn("Unable to close connection: {}", e.getMessage());
+						}
+						getQueue().deregister();
+					}
+				}
+			}, "SocketFeed-" + socket.getPort());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Stops accepting connections. Open connections stop after their current read.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		try {
+			server.close();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close socket: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Gets the port the feed listens to.
+	 * @return the local port.
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+}
@@ -0,0 +1,59 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the date after which a running execution attempt is considered as a
+ * straggler and gets a backup attempt.
+ * @class
+ * @author Nicolas
+ */
+public class SpeculationEvent extends Event {
+	/** The execution attempt which may straggle. */
+	private TaskExecutionRecord attempt;
+	
+	/**
+	 * Creates a new speculation event.
+	 * @param time The date after which the execution attempt straggles.
+	 * @param attempt The execution attempt which may straggle.
+	 * @constructor
+	 */
+	public SpeculationEvent(int time, TaskExecutionRecord attempt) {
+		super(time);
+		this.attempt = attempt;
+	}
+	
+	/**
+	 * Speculates the task, unless its execution attempt ended meanwhile.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		simulator.speculate(attempt);
+	}
+	
+	/**
+	 * Gets the execution attempt which may straggle.
+	 * @return the execution attempt.
+	 */
+	public TaskExecutionRecord getAttempt() {
+		return attempt;
+	}
+}
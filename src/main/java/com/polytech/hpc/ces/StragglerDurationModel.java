@@ -0,0 +1,82 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Slows down some execution attempts, as stragglers do on overloaded or faulty nodes.
+ * @class
+ * @author Nicolas
+ */
+public class StragglerDurationModel implements DurationModel {
+	/** The model of the durations of the attempts which do not straggle, or null. */
+	private DurationModel base;
+	
+	/** The probability that an execution attempt straggles. */
+	private double probability;
+	
+	/** The factor applied to the duration of the attempts which straggle. */
+	private double slowdown;
+	
+	/**
+	 * Creates a new straggler model.
+	 * @param base The model of the durations of the attempts, or null for fixed ones.
+	 * @param probability The probability that an execution attempt straggles.
+	 * @param slowdown The factor applied to the duration of the stragglers.
+	 * @constructor
+	 */
+	public StragglerDurationModel(DurationModel base, double probability,
+			double slowdown) {
+		this.base = base;
+		this.probability = probability;
+		this.slowdown = slowdown;
+	}
+	
+	/**
+	 * Draws the duration of an execution attempt of a task.
+	 * @param simulator The simulator whose random generator is used.
+	 * @param task The task which starts to run.
+	 * @return the duration of the execution attempt.
+	 */
+	@Override
+	public int drawDuration(Simulator simulator, Task task) {
+		int duration = base != null ? base.drawDuration(simulator, task)
+				: task.getDuration();
+		if (simulator.nextRandom() >= probability) {
+			return duration;
+		}
+		return (int) Math.min(Math.ceil(duration * slowdown), Integer.MAX_VALUE / 2);
+	}
+	
+	/**
+	 * Gets the probability that an execution attempt straggles.
+	 * @return the probability of straggling.
+	 */
+	public double getProbability() {
+		return probability;
+	}
+	
+	/**
+	 * Gets the factor applied to the duration of the attempts which straggle.
+	 * @return the slowdown of the stragglers.
+	 */
+	public double getSlowdown() {
+		return slowdown;
+	}
+}
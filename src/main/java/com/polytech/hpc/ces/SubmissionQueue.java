@@ -0,0 +1,141 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free queue of the task DAGs submitted to a running simulation.
+ * Any number of producer threads may submit task DAGs, which are taken by the single
+ * thread running the simulation. Producers only exchange the tail of a linked list,
+ * so that they never wait for each other nor for the simulation.
+ * @see http://www.1024cores.net/home/lock-free-algorithms/queues/non-intrusive-mpsc-node-based-queue
+ * @class
+ * @author Nicolas
+ */
+public class SubmissionQueue {
+	/**
+	 * Represents a submitted task DAG in the linked list.
+	 */
+	private static final class Submission {
+		private static final AtomicReferenceFieldUpdater<Submission, Submission> NEXT =
+				AtomicReferenceFieldUpdater.newUpdater(Submission.class,
+						Submission.class, "next");
+		
+		/** The task DAG submitted, or null once taken. */
+		private TaskDAG dag;
+		
+		/** The next submission, linked by its producer. */
+		private volatile Submission next;
+		
+		private Submission(TaskDAG dag) {
+			this.dag = dag;
+		}
+	}
+	
+	/** The last submission, exchanged by the producers. */
+	private AtomicReference<Submission> tail;
+	
+	/** The submission taken last, only read by the consumer. */
+	private Submission head;
+	
+	/** The number of producers which may still submit task DAGs. */
+	private AtomicInteger producers;
+	
+	/**
+	 * Creates a new empty submission queue.
+	 * @constructor
+	 */
+	public SubmissionQueue() {
+		head = new Submission(null);
+		tail = new AtomicReference<Submission>(head);
+		producers = new AtomicInteger();
+	}
+	
+	/**
+	 * Submits a task DAG. May be called by any thread.
+	 * @param dag The task DAG submitted.
+	 */
+	public void offer(TaskDAG dag) {
+		Submission submission = new Submission(dag);
+		Submission previous = tail.getAndSet(submission);
+		// the consumer waits for the link when it sees the new tail
+		Submission.NEXT.lazySet(previous, submission);
+	}
+	
+	/**
+	 * Takes the task DAG submitted first. Must only be called by the consumer.
+	 * @return the task DAG, or null if none is available yet.
+	 */
+	public TaskDAG poll() {
+		Submission next = head.next;
+		if (next == null) {
+			return null;
+		}
+		TaskDAG dag = next.dag;
+		next.dag = null;
+		head = next;
+		return dag;
+	}
+	
+	/**
+	 * Returns whether no task DAG is available. Must only be called by the consumer.
+	 * @return true if no task DAG is available yet.
+	 */
+	public boolean isEmpty() {
+		return head.next == null;
+	}
+	
+	/**
+	 * Registers a producer which may submit task DAGs.
+	 */
+	public void register() {
+		producers.incrementAndGet();
+	}
+	
+	/**
+	 * Deregisters a producer which will not submit task DAGs anymore.
+	 */
+	public void deregister() {
+		producers.decrementAndGet();
+	}
+	
+	/**
+	 * Returns whether task DAGs may still be submitted, i.e. some producers are
+	 * registered or some submissions are not linked yet.
+	 * @return true if task DAGs may still be taken.
+	 */
+	public boolean isOpen() {
+		return producers.get() > 0 || tail.get() != head;
+	}
+	
+	/**
+	 * Waits a little for submissions. Used by the consumer when it is idle.
+	 * @param nanos The maximum time to wait, in nanoseconds.
+	 */
+	public void await(long nanos) {
+		if (isEmpty()) {
+			LockSupport.parkNanos(this, nanos);
+		}
+	}
+}
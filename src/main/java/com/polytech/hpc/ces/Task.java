@@ -20,6 +20,8 @@
 package com.polytech.hpc.ces;
 
 import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -45,32 +47,38 @@ public class Task {
 	/** The location of data required for this task in the cluster. */
 	private Integer dataNodeId;
 	
+	/** The gang of the task in its task DAG, or null if the task runs alone. */
+	private String group;
+	
 	/** The list of parent tasks in the task DAG. */
-	private ArrayList<Task> parentTasks;
+	private List<Task> parentTasks;
 	
 	/** The list of child tasks in the task DAG. */
-	private ArrayList<Task> childTasks;
+	private List<Task> childTasks;
 	
 	/** The task DAG the task belongs to. */
 	private TaskDAG dag;
 	
-	/** The minimum starting date of the task in the task DAG. */
-	private int minStartDate;
+	/** The index of the task in its task DAG. */
+	private int id;
 	
-	/** The maximum starting date of the task in the task DAG. */
-	private int maxStartDate;
+	/** The execution context of the task (start dates, priority, status, container). */
+	private TaskExecutionContext context;
 	
-	/** The priority of the task in the task DAG. */
-	private double priority;
+	/** The list of execution attempts for the task, the ended ones being retained. */
+	private ArrayList<TaskExecutionRecord> executionAttempts;
 	
-	/** The container that runs the task. */
-	// private Container container;
+	/** The number of execution attempts of the task. */
+	private int attemptCount;
 	
-	/** The current status of the task in the task DAG execution pipeline. */
-	private TaskStatus status;
+	/** The number of preempted execution attempts of the task. */
+	private int preemptionCount;
 	
-	/** The list of execution attempts for the task. */
-	private ArrayList<TaskExecutionRecord> executionAttempts;
+	/** The number of execution attempts of the task killed by node failures. */
+	private int failureCount;
+	
+	/** The time spent running the interrupted execution attempts of the task. */
+	private long wastedTime;
 	
 	/**
 	 * Creates a new task.
@@ -80,17 +88,20 @@ public class Task {
 	 * @param dataNodeId The location of data required for this task in the cluster.
 	 * @param parentTasks The list of parent task nodes in the task DAG.
 	 * @param childTasks The list of child task nodes in the task DAG.
+	 * @param dag The task DAG the task is meant for, which only holds the task once
+	 * the task is added to it.
 	 * @constructor
 	 */
 	public Task(String name, ResourceDescriptor requiredResources, Integer dataNodeId,
 			int duration, ArrayList<Task> parentTasks, ArrayList<Task> childTasks,
 			TaskDAG dag) {
-		dag = null;
-		minStartDate = 0;
-		maxStartDate = 0;
-		priority = 1.0;
-		// container = null;
-		status = TaskStatus.UNKNOWN;
+		// the DAG is attached by TaskDAG.addTask, once the task has an identifier
+		this.dag = null;
+		id = -1;
+		this.parentTasks = new ArrayList<Task>();
+		this.childTasks = new ArrayList<Task>();
+		executionAttempts = new ArrayList<TaskExecutionRecord>();
+		context = new TaskExecutionContext(this);
 		this.name = name;
 		this.requiredResources = requiredResources;
 		setDuration(duration);
@@ -106,16 +117,91 @@ public class Task {
 	 * @constructor
 	 */
 	public Task(TaskDAG dag, JSONObject taskObject) {
-		this.dag = dag;
+		id = -1;
+		parentTasks = new ArrayList<Task>();
+		childTasks = new ArrayList<Task>();
+		executionAttempts = new ArrayList<TaskExecutionRecord>();
+		context = new TaskExecutionContext(this);
 		try {
 			name = taskObject.getString("name");
-			requiredResources = new ResourceDescriptor(
-					taskObject.getJSONArray("requiredResources"));
+			if (taskObject.optJSONObject("requiredResources") != null) {
+				requiredResources = new ResourceDescriptor(
+						taskObject.getJSONObject("requiredResources"));
+			} else {
+				requiredResources = new ResourceDescriptor(
+						taskObject.getJSONArray("requiredResources"));
+			}
 			setDuration(taskObject.getInt("duration"));
-			setDataNodeId(taskObject.optInt("dataNodeId"));
+			if (taskObject.has("dataNodeId")) {
+				setDataNodeId(taskObject.getInt("dataNodeId"));
+			}
+			setGroup(taskObject.optString("group", null));
 		} catch (JSONException e) {
 			LOGGER.error("JSONException occured: {}", e.getMessage());
 		}
+		// the DAG is set last so that parsing does not trigger a DAG update per field
+		this.dag = dag;
+	}
+	
+	/**
+	 * Creates a task as a view of a read-only task DAG.
+	 * The fields are set as is, the task DAG being responsible for their consistency.
+	 * @param dag The read-only task DAG the task belongs to.
+	 * @param id The index of the task in the task DAG.
+	 * @param name The name of the task.
+	 * @param requiredResources The amount of resources required to run the task.
+	 * @param dataNodeId The location of data required for this task in the cluster.
+	 * @param duration The expected duration of the task.
+	 * @param parentTasks The list of parent task nodes in the task DAG.
+	 * @param childTasks The list of child task nodes in the task DAG.
+	 * @constructor
+	 */
+	Task(TaskDAG dag, int id, String name, ResourceDescriptor requiredResources,
+			Integer dataNodeId, int duration, List<Task> parentTasks,
+			List<Task> childTasks) {
+		this.dag = dag;
+		this.id = id;
+		this.name = name;
+		this.requiredResources = requiredResources;
+		this.dataNodeId = dataNodeId;
+		this.duration = duration;
+		this.parentTasks = parentTasks;
+		this.childTasks = childTasks;
+		executionAttempts = new ArrayList<TaskExecutionRecord>();
+		context = new TaskExecutionContext(this);
+	}
+	
+	/**
+	 * Creates a flyweight task, whose properties and state are kept by its task DAG.
+	 * No field but the DAG and the index is set, the getters being overridden.
+	 * @param dag The task DAG which stores the task.
+	 * @param id The index of the task in the task DAG.
+	 * @constructor
+	 */
+	Task(TaskDAG dag, int id) {
+		this.dag = dag;
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the names of the parent tasks declared in a JSON task object.
+	 * @param taskObject The JSON object that holds the properties of the task.
+	 * @return the list of parent task names.
+	 */
+	public static ArrayList<String> getParentTaskNames(JSONObject taskObject) {
+		ArrayList<String> names = new ArrayList<String>();
+		JSONArray parents = taskObject.optJSONArray("parentTasks");
+		if (parents == null) {
+			return names;
+		}
+		try {
+			for (int i = 0; i < parents.length(); i++) {
+				names.add(parents.getString(i));
+			}
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured: {}", e.getMessage());
+		}
+		return names;
 	}
 	
 	/**
@@ -123,7 +209,7 @@ public class Task {
 	 * @return true if the task is a root task.
 	 */
 	public boolean isRoot() {
-		return parentTasks.size() == 0;
+		return getParentTasks().size() == 0;
 	}
 	
 	/**
@@ -131,7 +217,7 @@ public class Task {
 	 * @return true if the task is a leaf task.
 	 */
 	public boolean isLeaf() {
-		return childTasks.size() == 0;
+		return getChildTasks().size() == 0;
 	}
 	
 	/**
@@ -139,19 +225,22 @@ public class Task {
 	 * @param duration The duration of the task.
 	 */
 	public void setDuration(int duration) {
+		if (isReadOnly()) {
+			return;
+		}
 		if (duration <= 0) {
 			LOGGER.error("Attempt to set a invalid duration ({}) for task {}", duration,
 					getName());
 			return;
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to modify the duration of the task {} which is {}",
-					getName(), TaskStatus.toString(status));
+					getName(), TaskStatus.toString(getStatus()));
 			return;
 		}
 		this.duration = duration;
 		if (dag != null) {
-			dag.update();
+			dag.onDurationChanged(this);
 		}
 	}
 	
@@ -160,19 +249,40 @@ public class Task {
 	 * @param dataNodeId the node identifier of data required for this task.
 	 */
 	public void setDataNodeId(Integer dataNodeId) {
-		if (dataNodeId < 0) {
+		if (isReadOnly()) {
+			return;
+		}
+		if (dataNodeId != null && dataNodeId < 0) {
 			LOGGER.error("Attempt to set a negative data location for task {}",
 					getName());
 			return;
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to modify the data location of task {} which is {}",
-					getName(), TaskStatus.toString(status));
+					getName(), TaskStatus.toString(getStatus()));
 			return;
 		}
 		this.dataNodeId = dataNodeId;
+	}
+	
+	/**
+	 * Sets the gang of the task, i.e. the group of tasks of its task DAG which must
+	 * all start together.
+	 * @param group The name of the group, or null if the task runs alone.
+	 */
+	public void setGroup(String group) {
+		if (isReadOnly()) {
+			return;
+		}
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
+			LOGGER.error("Attempt to modify the group of task {} which is {}", getName(),
+					TaskStatus.toString(getStatus()));
+			return;
+		}
+		String previous = this.group;
+		this.group = group;
 		if (dag != null) {
-			dag.update();
+			dag.onGroupChanged(this, previous);
 		}
 	}
 	
@@ -181,6 +291,9 @@ public class Task {
 	 * @param task The parent task to add.
 	 */
 	public void addParentTask(Task task) {
+		if (isReadOnly()) {
+			return;
+		}
 		if (task == this) {
 			LOGGER.error("Attempt to add task {} as a parent of itself", getName());
 			return;
@@ -194,14 +307,14 @@ public class Task {
 			LOGGER.error("Attempt to add task {} which is already a child of {}",
 					task.getName(), getName());
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to add a parent task to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		parentTasks.add(task);
 		if (dag != null) {
-			dag.update();
+			dag.onParentTasksChanged(this, task);
 		}
 	}
 	
@@ -210,19 +323,22 @@ public class Task {
 	 * @param task The parent task to remove.
 	 */
 	public void removeParentTask(Task task) {
+		if (isReadOnly()) {
+			return;
+		}
 		if (!parentTasks.contains(task)) {
 			LOGGER.error("Attempt to remove parent task {} that is not a parent of {}",
 					task.getName(), getName());
 			return;
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to add a parent task to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		parentTasks.remove(task);
 		if (dag != null) {
-			dag.update();
+			dag.onParentTasksChanged(this, null);
 		}
 	}
 	
@@ -230,14 +346,17 @@ public class Task {
 	 * Removes all parents of the task in the task DAG.
 	 */
 	public void clearParentTasks() {
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (isReadOnly()) {
+			return;
+		}
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to clear parent tasks to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		parentTasks.clear();
 		if (dag != null) {
-			dag.update();
+			dag.onParentTasksChanged(this, null);
 		}
 	}
 	
@@ -246,6 +365,9 @@ public class Task {
 	 * @param task The child task to add.
 	 */
 	public void addChildTask(Task task) {
+		if (isReadOnly()) {
+			return;
+		}
 		if (task == this) {
 			LOGGER.error("Attempt to add task {} as a child of itself", getName());
 			return;
@@ -259,14 +381,14 @@ public class Task {
 			LOGGER.error("Attempt to add task {} which is already a parent of {}",
 					task.getName(), getName());
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to add a child task to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		childTasks.add(task);
 		if (dag != null) {
-			dag.update();
+			dag.onChildTasksChanged(this, task);
 		}
 	}
 	
@@ -275,19 +397,22 @@ public class Task {
 	 * @param task The child task to remove.
 	 */
 	public void removeChildTask(Task task) {
+		if (isReadOnly()) {
+			return;
+		}
 		if (!childTasks.contains(task)) {
 			LOGGER.error("Attempt to remove child task {} that is not a child of {}",
 					task.getName(), getName());
 			return;
 		}
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to remove a child task to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		childTasks.remove(task);
 		if (dag != null) {
-			dag.update();
+			dag.onChildTasksChanged(this, null);
 		}
 	}
 	
@@ -295,15 +420,43 @@ public class Task {
 	 * Removes all children of the task in the task DAG.
 	 */
 	public void clearChildTasks() {
-		if (status.ordinal() >= TaskStatus.READY.ordinal()) {
+		if (isReadOnly()) {
+			return;
+		}
+		if (getStatus().ordinal() >= TaskStatus.READY.ordinal()) {
 			LOGGER.error("Attempt to clear child tasks to {} which is {}", getName(),
-					TaskStatus.toString(status));
+					TaskStatus.toString(getStatus()));
 			return;
 		}
 		childTasks.clear();
 		if (dag != null) {
-			dag.update();
+			dag.onChildTasksChanged(this, null);
+		}
+	}
+	
+	/**
+	 * Links a child to the task while one of them is added to the task DAG, whatever
+	 * the status of the task: a task which is ready, running or finished may get new
+	 * children, which wait for it.
+	 * @param task The child task.
+	 */
+	void linkChildTask(Task task) {
+		if (!childTasks.contains(task)) {
+			childTasks.add(task);
+		}
+	}
+	
+	/**
+	 * Returns whether the task belongs to a read-only task DAG, logging an error if so.
+	 * @return true if the task cannot be modified.
+	 */
+	private boolean isReadOnly() {
+		if (dag != null && dag.isReadOnly()) {
+			LOGGER.error("Attempt to modify task {} of the read-only DAG {}", getName(),
+					dag.getName());
+			return true;
 		}
+		return false;
 	}
 	
 	/**
@@ -316,6 +469,22 @@ public class Task {
 		this.dag = dag;
 	}
 	
+	/**
+	 * Sets the index of the task in its task DAG.
+	 * @param id The index of the task.
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the index of the task in its task DAG.
+	 * @return the index of the task, or -1 if the task is not in a DAG.
+	 */
+	public int getId() {
+		return id;
+	}
+	
 	/**
 	 * Gets the name of the task.
 	 * @return the name of the task.
@@ -325,10 +494,18 @@ public class Task {
 		if (dag != null) {
 			taskName += dag.getName() + ".";
 		}
-		taskName += name;
+		taskName += getLocalName();
 		return taskName;
 	}
 	
+	/**
+	 * Gets the name of the task within its task DAG.
+	 * @return the name of the task without the name of its DAG.
+	 */
+	String getLocalName() {
+		return name;
+	}
+	
 	/**
 	 * Gets the amount of resources required to run the task.
 	 * @return the amount of resources required.
@@ -353,11 +530,20 @@ public class Task {
 		return dataNodeId;
 	}
 	
+	/**
+	 * Gets the gang of the task in its task DAG.
+	 * @return the name of the group of tasks which start together, or null if the task
+	 * runs alone.
+	 */
+	public String getGroup() {
+		return group;
+	}
+	
 	/**
 	 * Gets the list of parent tasks in the task DAG.
 	 * @return the list of parent tasks.
 	 */
-	public ArrayList<Task> getParentTasks() {
+	public List<Task> getParentTasks() {
 		return parentTasks;
 	}
 	
@@ -365,7 +551,7 @@ public class Task {
 	 * Gets the list of child tasks in the task DAG.
 	 * @return the list of child tasks.
 	 */
-	public ArrayList<Task> getChildTasks() {
+	public List<Task> getChildTasks() {
 		return childTasks;
 	}
 	
@@ -377,6 +563,125 @@ public class Task {
 		return dag;
 	}
 	
+	/**
+	 * Gets the execution context of the task.
+	 * @return the execution context of the task.
+	 */
+	public TaskExecutionContext getExecutionContext() {
+		return context;
+	}
+	
+	/**
+	 * Gets the current status of the task in the task DAG execution pipeline.
+	 * @return the current status of the task.
+	 */
+	public TaskStatus getStatus() {
+		return getExecutionContext().getStatus();
+	}
+	
+	/**
+	 * Gets the criticity of the task, i.e. its priority in the task DAG.
+	 * @return the criticity of the task, between 0.0 and 1.0.
+	 */
+	public double getCriticity() {
+		return getExecutionContext().getPriority();
+	}
+	
+	/**
+	 * Returns whether all the parent tasks of the task are finished.
+	 * @return true if the task can be run.
+	 */
+	public boolean areParentTasksFinished() {
+		for (Task parent : getParentTasks()) {
+			if (parent.getStatus() != TaskStatus.FINISHED) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds an execution attempt of the task.
+	 * @param attempt The execution attempt, created when the task starts to run.
+	 */
+	public void addExecutionAttempt(TaskExecutionRecord attempt) {
+		executionAttempts.add(attempt);
+		attemptCount++;
+	}
+	
+	/**
+	 * Accounts for an execution attempt which ended, then retains it or not.
+	 * @param attempt The execution attempt, which must have an ending date.
+	 * @param retention How ended execution attempts are kept.
+	 * @param trace The execution trace to which spilled attempts are written.
+	 */
+	public void endExecutionAttempt(TaskExecutionRecord attempt,
+			AttemptRetention retention, ExecutionTraceWriter trace) {
+		if (attempt.isPreempted()) {
+			preemptionCount++;
+		}
+		if (attempt.isFailed()) {
+			failureCount++;
+		}
+		if (attempt.isInterrupted()) {
+			wastedTime += attempt.getEndDate() - attempt.getStartDate();
+		}
+		if (retention == AttemptRetention.FULL) {
+			return;
+		}
+		if (retention == AttemptRetention.SPILL && trace != null) {
+			trace.write(attempt);
+		}
+		// ended attempts are usually the latest ones
+		for (int i = executionAttempts.size() - 1; i >= 0; i--) {
+			if (executionAttempts.get(i) == attempt) {
+				executionAttempts.remove(i);
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the list of execution attempts for the task.
+	 * Unless every attempt is retained, only the running attempts are listed.
+	 * @return the list of execution attempts.
+	 */
+	public ArrayList<TaskExecutionRecord> getExecutionAttempts() {
+		return executionAttempts;
+	}
+	
+	/**
+	 * Gets the number of execution attempts of the task, retained or not.
+	 * @return the number of execution attempts.
+	 */
+	public int getExecutionAttemptCount() {
+		return attemptCount;
+	}
+	
+	/**
+	 * Gets the number of preempted execution attempts of the task, retained or not.
+	 * @return the number of preemptions.
+	 */
+	public int getPreemptionCount() {
+		return preemptionCount;
+	}
+	
+	/**
+	 * Gets the number of execution attempts of the task killed by node failures.
+	 * @return the number of failures.
+	 */
+	public int getFailureCount() {
+		return failureCount;
+	}
+	
+	/**
+	 * Gets the time spent running the interrupted execution attempts of the task.
+	 * @return the wasted time.
+	 */
+	public long getWastedTime() {
+		return wastedTime;
+	}
+	
 	/**
 	 * Returns the string representation of the task.
 	 * @return a string representing the task.
@@ -385,7 +690,7 @@ public class Task {
 	public String toString() {
 		String parentTasksString = "";
 		boolean first = true;
-		for (Task parent : parentTasks) {
+		for (Task parent : getParentTasks()) {
 			if (!first) {
 				parentTasksString += ", ";
 			}
@@ -394,20 +699,22 @@ public class Task {
 		}
 		String childTasksString = "";
 		first = true;
-		for (Task child : childTasks) {
+		for (Task child : getChildTasks()) {
 			if (!first) {
 				childTasksString += ", ";
 			}
 			childTasksString += "\"" + child.getName() + "\"";
 			first = false;
 		}
+		TaskExecutionContext context = getExecutionContext();
 		String taskString = "Task {\n\tname: \"" + getName() + "\"\n\trequiredResources: "
-				+ requiredResources + "\n\tduration: " + duration + "\n\tdataNodeId: "
-				+ dataNodeId + "\n\tparentTasks: [" + parentTasksString + "]\n\t"
-				+ "childTasks: [" + childTasksString + "]\n\tdag: \"" +  dag.getName()
-				+ "\"\n\tminStartDate: " + minStartDate + "\n\tmaxStartDate: "
-				+ maxStartDate + "\n\tpriority: " + priority + "\n\tstatus \""
-				+ TaskStatus.toString(status) + "\"\n}";
+				+ getRequiredResources() + "\n\tduration: " + getDuration()
+				+ "\n\tdataNodeId: " + getDataNodeId() + "\n\tparentTasks: [" + parentTasksString + "]\n\t"
+				+ "childTasks: [" + childTasksString + "]\n\tdag: \""
+				+ (dag != null ? dag.getName() : "") + "\"\n\tminStartDate: "
+				+ context.getMinStartDate() + "\n\tmaxStartDate: "
+				+ context.getMaxStartDate() + "\n\tpriority: " + context.getPriority()
+				+ "\n\tstatus \"" + TaskStatus.toString(getStatus()) + "\"\n}";
 		return taskString;
 	}
 }
@@ -19,11 +19,20 @@
 
 package com.polytech.hpc.ces;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,15 +48,38 @@ public class TaskDAG {
 	/** The name of the task DAG. */
 	private String name;
 	
+	/** The tenant which owns the task DAG, or null if it is its own tenant. */
+	private String owner;
+	
+	/** The index of the task DAG in the simulation. */
+	private int id;
+	
 	/** The list of task nodes. */
 	private ArrayList<Task> tasks;
 	
+	/** The tasks which became ready since the last call to drainReadyTasks. */
+	private ArrayList<Task> readyTasks;
+	
+	/** The estimator of the remaining critical path of the DAG. */
+	private CriticalPathEstimator criticalPath;
+	
+	/** The memoised levels and priorities of the tasks. */
+	private CriticalityEngine criticality;
+	
+	/** The tasks of every gang, by group name. */
+	private HashMap<String, ArrayList<Task>> gangs;
+	
 	/**
 	 * Creates a new task DAG.
 	 * @constructor
 	 */
 	public TaskDAG() {
+		id = -1;
 		tasks = new ArrayList<Task>();
+		readyTasks = new ArrayList<Task>();
+		criticalPath = new CriticalPathEstimator();
+		criticality = new CriticalityEngine(criticalPath);
+		gangs = new HashMap<String, ArrayList<Task>>();
 	}
 	
 	/**
@@ -55,17 +87,132 @@ public class TaskDAG {
 	 * @param dagObject The JSON object that holds the task DAG.
 	 */
 	public TaskDAG(JSONObject dagObject) {
+		this();
 		try {
 			setName(dagObject.getString("name"));
+			setOwner(dagObject.optString("owner", null));
+			JSONArray taskObjects = dagObject.getJSONArray("tasks");
 			// task identifier association
 			// warning: task name can appear several times
 			HashMap<String, Integer> taskId = new HashMap<String, Integer>();
-			/*for (JSONObject taskObject : dagObject.getJSONArray("tasks")) {
-				addTask(new Task(this, taskObject));
-			}*/
+			for (int i = 0; i < taskObjects.length(); i++) {
+				// tasks are attached to the DAG once linked, to update the DAG only once
+				Task task = new Task(null, taskObjects.getJSONObject(i));
+				if (taskId.containsKey(task.getName())) {
+					LOGGER.error("Task name {} appears several times in DAG {}",
+							task.getName(), getName());
+				}
+				taskId.put(task.getName(), tasks.size());
+				task.setId(tasks.size());
+				tasks.add(task);
+			}
+			for (int i = 0; i < taskObjects.length(); i++) {
+				Task task = tasks.get(i);
+				for (String parentName : Task.getParentTaskNames(
+						taskObjects.getJSONObject(i))) {
+					Integer parentId = taskId.get(parentName);
+					if (parentId == null) {
+						LOGGER.error("Unknown parent task {} for task {} in DAG {}",
+								parentName, task.getName(), getName());
+						continue;
+					}
+					Task parent = tasks.get(parentId);
+					task.addParentTask(parent);
+					parent.addChildTask(task);
+				}
+			}
+			for (Task task : tasks) {
+				task.setDAG(this);
+			}
 		} catch (JSONException e) {
 			LOGGER.error("JSONException occured: " + e.getMessage());
 		}
+		update();
+	}
+	
+	/**
+	 * Loads a task DAG from a JSON file or a compiled task DAG file.
+	 * @param file The file that holds the task DAG.
+	 * @return the task DAG, or null if the file cannot be read or is invalid.
+	 */
+	public static TaskDAG load(File file) {
+		return load(file, new TaskDAGValidator());
+	}
+	
+	/**
+	 * Loads a task DAG from a JSON file, once validated, or a compiled task DAG file,
+	 * which was validated when compiled.
+	 * @param file The file that holds the task DAG.
+	 * @param validator The validator of the task DAG, which keeps its report.
+	 * @return the task DAG, or null if the file cannot be read or is invalid.
+	 */
+	public static TaskDAG load(File file, TaskDAGValidator validator) {
+		if (file.getName().endsWith(MappedTaskDAG.FILE_EXTENSION)) {
+			return MappedTaskDAG.load(file);
+		}
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			JSONObject dagObject = new JSONObject(new JSONTokener(reader));
+			DAGValidationReport report = validator.validate(dagObject);
+			if (!report.isValid()) {
+				LOGGER.error("Invalid task DAG {}: {}", file, report);
+				return null;
+			}
+			return new TaskDAG(dagObject);
+		} catch (IOException e) {
+			LOGGER.error("Unable to read task DAG {}: {}", file, e.getMessage());
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured in {}: {}", file, e.getMessage());
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					LOGGER.warn("Unable to close {}: {}", file, e.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the JSON representation of the task DAG, in the format it is loaded from.
+	 * The tasks are listed by identifier, and their parents by name.
+	 * @return the JSON object that holds the task DAG.
+	 */
+	public JSONObject toJSONObject() {
+		JSONObject dagObject = new JSONObject();
+		try {
+			dagObject.put("name", getName());
+			if (owner != null) {
+				dagObject.put("owner", owner);
+			}
+			JSONArray taskObjects = new JSONArray();
+			for (Task task : getTasks()) {
+				JSONObject taskObject = new JSONObject();
+				taskObject.put("name", task.getLocalName());
+				taskObject.put("duration", task.getDuration());
+				taskObject.put("requiredResources",
+						task.getRequiredResources().toJSONArray());
+				if (task.getDataNodeId() != null) {
+					taskObject.put("dataNodeId", task.getDataNodeId().intValue());
+				}
+				if (task.getGroup() != null) {
+					taskObject.put("group", task.getGroup());
+				}
+				JSONArray parentNames = new JSONArray();
+				for (Task parent : task.getParentTasks()) {
+					parentNames.put(parent.getLocalName());
+				}
+				taskObject.put("parentTasks", parentNames);
+				taskObjects.put(taskObject);
+			}
+			dagObject.put("tasks", taskObjects);
+		} catch (JSONException e) {
+			LOGGER.error("JSONException occured: " + e.getMessage());
+		}
+		return dagObject;
 	}
 	
 	/**
@@ -84,33 +231,408 @@ public class TaskDAG {
 		return name;
 	}
 	
+	/**
+	 * Sets the tenant which owns the task DAG.
+	 * @param owner The name of the tenant, or null if the DAG is its own tenant.
+	 */
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+	
+	/**
+	 * Gets the tenant which owns the task DAG.
+	 * @return the name of the tenant, which defaults to the name of the DAG.
+	 */
+	public String getOwner() {
+		return owner != null ? owner : name;
+	}
+	
+	/**
+	 * Sets the index of the task DAG in the simulation.
+	 * @param id The index of the task DAG.
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the index of the task DAG in the simulation.
+	 * @return the index of the task DAG, or -1 if it is not simulated.
+	 */
+	public int getId() {
+		return id;
+	}
+	
 	/**
 	 * Adds a task in the task DAG.
 	 * @param task The task to add.
 	 */
 	public void addTask(Task task) {
+		if (isReadOnly()) {
+			LOGGER.error("Attempt to add the task {} to the read-only DAG {}",
+					task.getName(), getName());
+			return;
+		}
 		if (tasks.contains(task)) {
 			LOGGER.error("Attempt to add the task {} which is already in DAG {}",
 					task.getName(), getName());
 			return;
 		}
+		task.setDAG(null);
+		task.setId(tasks.size());
 		tasks.add(task);
-		// Setup child tasks
+		// Setup child tasks, bypassing the status checks since the parents may be ready
 		task.clearChildTasks();
-		for (Task parentTask : tasks) {
-			
+		for (Task otherTask : tasks) {
+			if (otherTask.getParentTasks().contains(task)) {
+				task.linkChildTask(otherTask);
+			}
+		}
+		for (Task parentTask : task.getParentTasks()) {
+			parentTask.linkChildTask(task);
 		}
+		task.setDAG(this);
 		update();
 	}
 	
 	/**
 	 * Updates the tasks parameters of the task DAG.
+	 * The minimum starting dates are propagated from the root tasks, the maximum
+	 * starting dates from the leaf tasks so that the critical path is not delayed,
+	 * and the priority of a task decreases with its slack. Tasks whose parents are
+	 * all finished become ready.
+	 * This only touches the tasks of this DAG, so that independent DAGs may be
+	 * updated concurrently.
 	 */
 	public void update() {
-		// TODO: minStartDate
-		// TODO: maxStartDate
-		// TODO: priority
-		int maxStartDate = 0;
+		List<Task> order = getTopologicalOrder();
+		if (order.size() < tasks.size()) {
+			LOGGER.error("DAG {} contains a cycle, {} tasks cannot be scheduled",
+					getName(), tasks.size() - order.size());
+		}
+		criticality.rebuild(tasks, order);
+		for (Task task : order) {
+			updateStatus(task);
+		}
+		gangs.clear();
+		for (Task task : tasks) {
+			addToGang(task);
+		}
+		criticalPath.rebuild(getTasks());
+	}
+	
+	/**
+	 * Updates the levels of the tasks after the duration of a task changed, only
+	 * along the paths which go through it.
+	 * @param task The task whose duration changed.
+	 */
+	void onDurationChanged(Task task) {
+		if (!criticality.invalidate(task, true, true)) {
+			update();
+		}
+	}
+	
+	/**
+	 * Updates the levels and the status of a task after its parents changed, and the
+	 * levels of its descendants.
+	 * @param task The task whose parents changed.
+	 * @param addedParent The parent task which was added, or null if parents were
+	 * removed.
+	 */
+	void onParentTasksChanged(Task task, Task addedParent) {
+		if ((addedParent != null && !criticality.isOrdered(addedParent, task))
+				|| !criticality.invalidate(task, true, false)) {
+			update();
+			return;
+		}
+		updateStatus(task);
+	}
+	
+	/**
+	 * Updates the levels of a task and of its ancestors after its children changed.
+	 * @param task The task whose children changed.
+	 * @param addedChild The child task which was added, or null if children were
+	 * removed.
+	 */
+	void onChildTasksChanged(Task task, Task addedChild) {
+		if ((addedChild != null && !criticality.isOrdered(task, addedChild))
+				|| !criticality.invalidate(task, false, true)) {
+			update();
+		}
+	}
+	
+	/**
+	 * Moves a task from its previous gang to its new one.
+	 * @param task The task whose group changed.
+	 * @param previous The previous group of the task, or null.
+	 */
+	void onGroupChanged(Task task, String previous) {
+		ArrayList<Task> gang = previous != null ? gangs.get(previous) : null;
+		if (gang != null) {
+			gang.remove(task);
+			if (gang.isEmpty()) {
+				gangs.remove(previous);
+			}
+		}
+		addToGang(task);
+	}
+	
+	/**
+	 * Adds a task to the gang of its group, if any.
+	 * @param task The task.
+	 */
+	private void addToGang(Task task) {
+		if (task.getGroup() == null) {
+			return;
+		}
+		ArrayList<Task> gang = gangs.get(task.getGroup());
+		if (gang == null) {
+			gang = new ArrayList<Task>();
+			gangs.put(task.getGroup(), gang);
+		}
+		gang.add(task);
+	}
+	
+	/**
+	 * Gets the gang of a task, i.e. the tasks of the DAG which must start together.
+	 * @param task The task.
+	 * @return the tasks of the group of the task, itself included, or null if the task
+	 * runs alone.
+	 */
+	public List<Task> getGang(Task task) {
+		return task.getGroup() != null ? gangs.get(task.getGroup()) : null;
+	}
+	
+	/**
+	 * Counts the unfinished parents of a task and marks it as ready if there is none.
+	 * @param task The task.
+	 */
+	private void updateStatus(Task task) {
+		TaskExecutionContext context = task.getExecutionContext();
+		int unfinishedParentCount = 0;
+		for (Task parent : task.getParentTasks()) {
+			if (parent.getStatus() != TaskStatus.FINISHED) {
+				unfinishedParentCount++;
+			}
+		}
+		context.setUnfinishedParentCount(unfinishedParentCount);
+		if (context.getStatus() == TaskStatus.UNKNOWN) {
+			context.setStatus(TaskStatus.PENDING);
+		}
+		if (context.getStatus() == TaskStatus.PENDING && unfinishedParentCount == 0) {
+			setReady(task);
+		}
+	}
+	
+	/**
+	 * Marks a task of the DAG as finished and the children it was waiting for as ready.
+	 * Every child counts its unfinished parents, so that the readiness of a child is
+	 * decided in constant time.
+	 * @param task The task which finished.
+	 */
+	public void onTaskFinished(Task task) {
+		TaskExecutionRecord attempt = task.getExecutionContext().getAttempt();
+		if (attempt != null) {
+			criticalPath.finish(task, attempt.getStartDate());
+		}
+		releaseChildren(task);
+	}
+	
+	/**
+	 * Marks a task of the DAG which ran in another shard of a sharded simulation as
+	 * finished. The task is accounted as ready by the DAG until it finishes, since its
+	 * execution attempts belong to the other shard.
+	 * @param task The task which finished.
+	 */
+	void onRemoteTaskFinished(Task task) {
+		criticalPath.removeReady(task);
+		releaseChildren(task);
+	}
+	
+	/**
+	 * Marks a task as finished and the children it was waiting for as ready.
+	 * @param task The task which finished.
+	 */
+	private void releaseChildren(Task task) {
+		// children are released before the task is finished, since a compiled DAG
+		// drops the view of a task once it is finished
+		for (Task child : task.getChildTasks()) {
+			if (child.getExecutionContext().onParentFinished() == 0
+					&& child.getStatus() == TaskStatus.PENDING) {
+				setReady(child);
+			}
+		}
+		task.getExecutionContext().setStatus(TaskStatus.FINISHED);
+	}
+	
+	/**
+	 * Marks a finished task of the DAG as ready again, e.g. because its output was lost.
+	 * Its children wait for it again: those which were ready become pending, whereas
+	 * those which already started keep on running.
+	 * @param task The finished task which must run again.
+	 * @return the children which were ready and became pending.
+	 */
+	public List<Task> onTaskLost(Task task) {
+		if (task.getStatus() != TaskStatus.FINISHED) {
+			LOGGER.error("Attempt to run task {} again which is {}", task.getName(),
+					TaskStatus.toString(task.getStatus()));
+			return Collections.emptyList();
+		}
+		ArrayList<Task> blocked = new ArrayList<Task>();
+		for (Task child : task.getChildTasks()) {
+			child.getExecutionContext().onParentLost();
+			if (child.getStatus() == TaskStatus.READY) {
+				child.getExecutionContext().setStatus(TaskStatus.PENDING);
+				readyTasks.remove(child);
+				criticalPath.removeReady(child);
+				blocked.add(child);
+			}
+		}
+		setReady(task);
+		return blocked;
+	}
+	
+	/**
+	 * Accounts for a ready task of the DAG which started to run.
+	 * @param task The task which started.
+	 * @param startDate The starting date of its execution attempt.
+	 */
+	public void onTaskStarted(Task task, int startDate) {
+		criticalPath.start(task, startDate);
+	}
+	
+	/**
+	 * Accounts for a running task of the DAG which was preempted.
+	 * @param task The task which was preempted and became ready.
+	 * @param startDate The starting date of its preempted execution attempt.
+	 */
+	public void onTaskPreempted(Task task, int startDate) {
+		criticalPath.preempt(task, startDate);
+		if (task.getExecutionContext().getUnfinishedParentCount() > 0) {
+			// a parent is run again, which the task waits for
+			task.getExecutionContext().setStatus(TaskStatus.PENDING);
+			criticalPath.removeReady(task);
+		}
+	}
+	
+	/**
+	 * Accounts for a running task of the DAG whose execution attempt was replaced by
+	 * another running one, e.g. its backup attempt.
+	 * @param task The task which keeps on running.
+	 * @param startDate The starting date of the attempt which ended.
+	 * @param newStartDate The starting date of the attempt which replaces it.
+	 */
+	public void onTaskAttemptReplaced(Task task, int startDate, int newStartDate) {
+		criticalPath.preempt(task, startDate);
+		criticalPath.start(task, newStartDate);
+	}
+	
+	/**
+	 * Marks a task of the DAG as ready, so that it is returned by drainReadyTasks.
+	 * @param task The task which became ready.
+	 */
+	protected void setReady(Task task) {
+		task.getExecutionContext().setStatus(TaskStatus.READY);
+		readyTasks.add(task);
+		criticalPath.addReady(task);
+	}
+	
+	/**
+	 * Gets the estimated remaining length of the critical path of the DAG, in
+	 * constant time.
+	 * @return the remaining makespan of the DAG from now, assuming enough resources.
+	 */
+	public int getRemainingMakespan() {
+		return criticalPath.getRemainingMakespan(Simulator.getTime());
+	}
+	
+	/**
+	 * Gets the delay of the DAG if one of its running tasks was preempted now, in
+	 * constant time.
+	 * @param task The running task.
+	 * @return the increase of the remaining makespan of the DAG.
+	 */
+	public int getPreemptionDelay(Task task) {
+		return criticalPath.getPreemptionDelay(task, Simulator.getTime());
+	}
+	
+	/**
+	 * Returns the tasks of the DAG sorted in topological order.
+	 * Tasks that belong to a cycle are not part of the returned list.
+	 * @return the list of tasks in topological order.
+	 */
+	public List<Task> getTopologicalOrder() {
+		int[] parentCount = new int[tasks.size()];
+		ArrayList<Task> order = new ArrayList<Task>(tasks.size());
+		for (Task task : tasks) {
+			parentCount[task.getId()] = task.getParentTasks().size();
+			if (parentCount[task.getId()] == 0) {
+				order.add(task);
+			}
+		}
+		for (int i = 0; i < order.size(); i++) {
+			for (Task child : order.get(i).getChildTasks()) {
+				if (--parentCount[child.getId()] == 0) {
+					order.add(child);
+				}
+			}
+		}
+		return order;
+	}
+	
+	/**
+	 * Returns the tasks which became ready since the last call and forgets them.
+	 * @return the list of newly ready tasks.
+	 */
+	public ArrayList<Task> drainReadyTasks() {
+		ArrayList<Task> drained = readyTasks;
+		readyTasks = new ArrayList<Task>();
+		return drained;
+	}
+	
+	/**
+	 * Gets the list of tasks of the task DAG.
+	 * @return the list of tasks.
+	 */
+	public List<Task> getTasks() {
+		return tasks;
+	}
+	
+	/**
+	 * Returns whether the task DAG is read-only, i.e. its tasks cannot be modified.
+	 * @return true if the task DAG is read-only.
+	 */
+	public boolean isReadOnly() {
+		return false;
+	}
+	
+	/**
+	 * Gets the length of the critical path of the task DAG.
+	 * @return the makespan of the task DAG.
+	 */
+	public int getMakespan() {
+		return criticality.getMakespan();
+	}
+	
+	/**
+	 * Gets the memoised levels and priorities of the tasks of the task DAG.
+	 * @return the criticality engine of the task DAG.
+	 */
+	public CriticalityEngine getCriticality() {
+		return criticality;
+	}
+	
+	/**
+	 * Returns whether all the tasks of the task DAG are finished.
+	 * @return true if the task DAG is finished.
+	 */
+	public boolean isFinished() {
+		for (Task task : getTasks()) {
+			if (task.getStatus() != TaskStatus.FINISHED) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -119,7 +641,7 @@ public class TaskDAG {
 	 */
 	public ArrayList<Task> getRootTasks() {
 		ArrayList<Task> rootTasks = new ArrayList<Task>();
-		for (Task task : tasks) {
+		for (Task task : getTasks()) {
 			if (task.isRoot()) {
 				rootTasks.add(task);
 			}
@@ -133,7 +655,7 @@ public class TaskDAG {
 	 */
 	public ArrayList<Task> getLeafTasks() {
 		ArrayList<Task> leafTasks = new ArrayList<Task>();
-		for (Task task : tasks) {
+		for (Task task : getTasks()) {
 			if (task.isLeaf()) {
 				leafTasks.add(task);
 			}
@@ -149,7 +671,7 @@ public class TaskDAG {
 	public String toString() {
 		String dagString = name + ": [";
 		boolean first = true;
-		for (Task task : tasks) {
+		for (Task task : getTasks()) {
 			if (!first) {
 				dagString += ", ";
 			}
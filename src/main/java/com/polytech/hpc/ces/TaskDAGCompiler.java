@@ -0,0 +1,218 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles JSON task DAGs into the binary format mapped by MappedTaskDAG.
+ * Compiling is done once, so that simulation runs skip parsing the JSON files.
+ * @see MappedTaskDAG
+ * @class
+ * @author Nicolas
+ */
+public class TaskDAGCompiler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskDAGCompiler.class);
+	
+	/**
+	 * Compiles a JSON task DAG file.
+	 * @param input The JSON task DAG file.
+	 * @param output The compiled task DAG file to write.
+	 * @return true if the task DAG was compiled.
+	 */
+	public static boolean compile(File input, File output) {
+		TaskDAG dag = TaskDAG.load(input);
+		if (dag == null) {
+			return false;
+		}
+		return compile(dag, output);
+	}
+	
+	/**
+	 * Compiles a task DAG.
+	 * Tasks are written in topological order, so that the root tasks come first and
+	 * the starting dates and priorities can be stored along with the task properties.
+	 * @param dag The task DAG to compile.
+	 * @param output The compiled task DAG file to write.
+	 * @return true if the task DAG was compiled.
+	 */
+	public static boolean compile(TaskDAG dag, File output) {
+		List<Task> order = dag.getTopologicalOrder();
+		int taskCount = dag.getTasks().size();
+		if (order.size() < taskCount) {
+			LOGGER.error("Unable to compile DAG {} which contains a cycle", dag.getName());
+			return false;
+		}
+		// index of every task in the compiled file
+		int[] index = new int[taskCount];
+		int edgeCount = 0;
+		int rootCount = 0;
+		for (int i = 0; i < taskCount; i++) {
+			Task task = order.get(i);
+			index[task.getId()] = i;
+			edgeCount += task.getParentTasks().size();
+			if (task.isRoot()) {
+				rootCount++;
+			}
+		}
+		byte[][] names = new byte[taskCount + 1][];
+		names[0] = dag.getName().getBytes(MappedTaskDAG.CHARSET);
+		int stringSize = names[0].length;
+		for (int i = 0; i < taskCount; i++) {
+			names[i + 1] = order.get(i).getLocalName().getBytes(MappedTaskDAG.CHARSET);
+			stringSize += names[i + 1].length;
+		}
+		
+		int dimensions = ResourceDimensions.getCount();
+		int offset = MappedTaskDAG.HEADER_SIZE;
+		int[] sections = new int[12];
+		int[] sectionSizes = {taskCount, taskCount, taskCount, taskCount, taskCount,
+				taskCount, taskCount + 1, edgeCount, taskCount + 1, edgeCount,
+				taskCount + 2, 0};
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = offset;
+			offset += 4 * sectionSizes[i];
+		}
+		int extraResources = offset + stringSize;
+		long priorities = (long) extraResources + 4L * (dimensions - 2) * taskCount;
+		if (priorities + 8L * taskCount > Integer.MAX_VALUE) {
+			LOGGER.error("DAG {} is too large to be compiled", dag.getName());
+			return false;
+		}
+		
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(output)));
+			out.writeInt(MappedTaskDAG.MAGIC);
+			out.writeInt(MappedTaskDAG.VERSION);
+			out.writeInt(taskCount);
+			out.writeInt(edgeCount);
+			out.writeInt(rootCount);
+			out.writeInt(dag.getMakespan());
+			for (int section : sections) {
+				out.writeInt(section);
+			}
+			out.writeInt(dimensions);
+			out.writeInt(extraResources);
+			out.writeInt((int) priorities);
+			for (Task task : order) {
+				out.writeInt(task.getDuration());
+			}
+			for (Task task : order) {
+				out.writeInt(task.getRequiredResources().getVcores());
+			}
+			for (Task task : order) {
+				out.writeInt(task.getRequiredResources().getMemory());
+			}
+			for (Task task : order) {
+				out.writeInt(task.getDataNodeId() != null ? task.getDataNodeId() : -1);
+			}
+			for (Task task : order) {
+				out.writeInt(task.getExecutionContext().getMinStartDate());
+			}
+			for (Task task : order) {
+				out.writeInt(task.getExecutionContext().getMaxStartDate());
+			}
+			writeEdges(out, order, index, true);
+			writeEdges(out, order, index, false);
+			int stringOffset = 0;
+			for (byte[] name : names) {
+				out.writeInt(stringOffset);
+				stringOffset += name.length;
+			}
+			out.writeInt(stringOffset);
+			for (byte[] name : names) {
+				out.write(name);
+			}
+			for (int i = 2; i < dimensions; i++) {
+				for (Task task : order) {
+					out.writeInt(task.getRequiredResources().get(i));
+				}
+			}
+			for (Task task : order) {
+				out.writeDouble(task.getExecutionContext().getPriority());
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to write compiled DAG {}: {}", output, e.getMessage());
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					LOGGER.warn("Unable to close {}: {}", output, e.getMessage());
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes the CSR offsets and indices of the parent or child edges.
+	 * @param out The output stream.
+	 * @param order The tasks in compiled order.
+	 * @param index The compiled index of every task, by task identifier.
+	 * @param parents Whether to write the parent edges rather than the child edges.
+	 * @throws IOException if the edges cannot be written.
+	 */
+	private static void writeEdges(DataOutputStream out, List<Task> order, int[] index,
+			boolean parents) throws IOException {
+		int offset = 0;
+		for (Task task : order) {
+			out.writeInt(offset);
+			offset += (parents ? task.getParentTasks() : task.getChildTasks()).size();
+		}
+		out.writeInt(offset);
+		for (Task task : order) {
+			for (Task other : parents ? task.getParentTasks() : task.getChildTasks()) {
+				out.writeInt(index[other.getId()]);
+			}
+		}
+	}
+	
+	/**
+	 * Compiles JSON task DAG files.
+	 * Every file is compiled next to the input, with the compiled task DAG extension.
+	 * @param args The JSON task DAG files.
+	 */
+	public static void main(String[] args) {
+		for (String arg : args) {
+			File input = new File(arg);
+			String name = input.getName();
+			if (name.endsWith(".json")) {
+				name = name.substring(0, name.length() - ".json".length());
+			}
+			File output = new File(input.getParentFile(), name
+					+ MappedTaskDAG.FILE_EXTENSION);
+			if (compile(input, output)) {
+				LOGGER.info("Compiled {} into {}", input, output);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join action that loads a range of task DAG files.
+ * Every file is parsed and its task DAG updated by its own action. The loaded task
+ * DAGs are stored at the index of their file, so that the result does not depend on
+ * the scheduling of the workers.
+ * @class
+ * @author Nicolas
+ */
+public class TaskDAGLoadAction extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	
+	/** The task DAG files to load. */
+	private final List<File> files;
+	
+	/** The loaded task DAGs, indexed as their files. */
+	private final TaskDAG[] dags;
+	
+	/** The index of the first file to load. */
+	private final int from;
+	
+	/** The index following the last file to load. */
+	private final int to;
+	
+	/**
+	 * Creates a new action that loads all the given task DAG files.
+	 * @param files The task DAG files to load.
+	 * @param dags The array receiving the loaded task DAGs.
+	 * @constructor
+	 */
+	public TaskDAGLoadAction(List<File> files, TaskDAG[] dags) {
+		this(files, dags, 0, files.size());
+	}
+	
+	/**
+	 * Creates a new action that loads a range of task DAG files.
+	 * @param files The task DAG files to load.
+	 * @param dags The array receiving the loaded task DAGs.
+	 * @param from The index of the first file to load.
+	 * @param to The index following the last file to load.
+	 * @constructor
+	 */
+	private TaskDAGLoadAction(List<File> files, TaskDAG[] dags, int from, int to) {
+		this.files = files;
+		this.dags = dags;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Loads the task DAG files, forking one action per half of the range.
+	 */
+	@Override
+	protected void compute() {
+		if (to - from <= 1) {
+			if (to > from) {
+				dags[from] = TaskDAG.load(files.get(from));
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new TaskDAGLoadAction(files, dags, from, middle),
+				new TaskDAGLoadAction(files, dags, middle, to));
+	}
+}
@@ -0,0 +1,81 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join action that updates a range of independent task DAGs.
+ * The range is split until every task DAG is updated by its own action, so that the
+ * task DAGs are spread across the workers of the pool.
+ * @class
+ * @author Nicolas
+ */
+public class TaskDAGUpdateAction extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	
+	/** The task DAGs to update. */
+	private final List<TaskDAG> dags;
+	
+	/** The index of the first task DAG to update. */
+	private final int from;
+	
+	/** The index following the last task DAG to update. */
+	private final int to;
+	
+	/**
+	 * Creates a new action that updates all the given task DAGs.
+	 * @param dags The task DAGs to update.
+	 * @constructor
+	 */
+	public TaskDAGUpdateAction(List<TaskDAG> dags) {
+		this(dags, 0, dags.size());
+	}
+	
+	/**
+	 * Creates a new action that updates a range of task DAGs.
+	 * @param dags The task DAGs to update.
+	 * @param from The index of the first task DAG to update.
+	 * @param to The index following the last task DAG to update.
+	 * @constructor
+	 */
+	private TaskDAGUpdateAction(List<TaskDAG> dags, int from, int to) {
+		this.dags = dags;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Updates the task DAGs, forking one action per half of the range.
+	 */
+	@Override
+	protected void compute() {
+		if (to - from <= 1) {
+			if (to > from) {
+				dags.get(from).update();
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new TaskDAGUpdateAction(dags, from, middle),
+				new TaskDAGUpdateAction(dags, middle, to));
+	}
+}
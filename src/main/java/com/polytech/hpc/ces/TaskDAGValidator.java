@@ -0,0 +1,365 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Validates a task DAG in the JSON format it is loaded from, before any task is built.
+ * The names of the tasks are indexed once, so that duplicate names and dangling parent
+ * names are found while the parents are resolved into flat arrays of identifiers. A
+ * single iterative pass of Kahn's algorithm over these arrays then leaves out the
+ * tasks which cannot be ordered, and a cycle is found among them by walking up their
+ * unordered parents. The tasks of a gang must start together, so that none of them
+ * may depend on another one, even through other tasks: every gang is contracted into
+ * a single task and the contracted DAG is ordered again. Resource requests are checked
+ * against the distinct capacities of the nodes. The validation therefore runs in
+ * linear time in the number of tasks and edges, without recursion.
+ * A validator keeps the report of its last validation, so that it must not be shared
+ * between threads.
+ * @class
+ * @author Nicolas
+ */
+public class TaskDAGValidator {
+	/** The number of task names listed before a long cycle is cut short. */
+	private static final int MAX_CYCLE_NAMES = 10;
+	
+	/** The distinct capacities of the nodes, empty if requests are not checked. */
+	private ArrayList<ResourceDescriptor> nodeCapacities;
+	
+	/** The report of the last validation, or null. */
+	private DAGValidationReport report;
+	
+	/**
+	 * Creates a new validator which does not check the resource requests.
+	 * @constructor
+	 */
+	public TaskDAGValidator() {
+		nodeCapacities = new ArrayList<ResourceDescriptor>();
+		report = null;
+	}
+	
+	/**
+	 * Adds the capacity of a node, against which the resource requests are checked.
+	 * @param capacity The resource capacity of the node.
+	 */
+	public void addNodeCapacity(ResourceDescriptor capacity) {
+		for (ResourceDescriptor known : nodeCapacities) {
+			if (known.isSuperSet(capacity)) {
+				return;
+			}
+		}
+		nodeCapacities.add(new ResourceDescriptor(capacity));
+	}
+	
+	/**
+	 * Validates a task DAG.
+	 * @param dagObject The JSON object that holds the task DAG.
+	 * @return the report of the validation.
+	 */
+	public DAGValidationReport validate(JSONObject dagObject) {
+		report = new DAGValidationReport(dagObject.optString("name", null));
+		JSONArray taskObjects = dagObject.optJSONArray("tasks");
+		if (taskObjects == null) {
+			report.add(DAGValidationError.INVALID_TASK, "no task array");
+			return report;
+		}
+		int taskCount = taskObjects.length();
+		String[] names = new String[taskCount];
+		HashMap<String, Integer> ids = new HashMap<String, Integer>(2 * taskCount);
+		// the first task of the gang of every task, and the next task of its gang
+		int[] gangs = new int[taskCount];
+		int[] nextMembers = new int[taskCount];
+		HashMap<String, Integer> lastMembers = new HashMap<String, Integer>();
+		boolean grouped = false;
+		for (int i = 0; i < taskCount; i++) {
+			JSONObject taskObject = taskObjects.optJSONObject(i);
+			gangs[i] = i;
+			nextMembers[i] = -1;
+			String group = taskObject != null ? taskObject.optString("group", null) : null;
+			if (group != null) {
+				Integer last = lastMembers.put(group, i);
+				if (last != null) {
+					gangs[i] = gangs[last];
+					nextMembers[last] = i;
+					grouped = true;
+				}
+			}
+			names[i] = taskObject != null ? taskObject.optString("name", null) : null;
+			if (names[i] == null) {
+				report.add(DAGValidationError.INVALID_TASK, "task #" + i + " has no name");
+				names[i] = "#" + i;
+				continue;
+			}
+			Integer first = ids.get(names[i]);
+			if (first != null) {
+				report.add(DAGValidationError.DUPLICATE_NAME, "task " + names[i]
+						+ " #" + i + " has the name of task #" + first);
+			} else {
+				ids.put(names[i], i);
+			}
+			validateTask(taskObject, names[i]);
+		}
+		// parents resolved into compressed rows, as the children below
+		int[] parentStarts = new int[taskCount + 1];
+		int[] parents = new int[Math.max(16, taskCount)];
+		int edgeCount = 0;
+		int[] childCounts = new int[taskCount];
+		for (int i = 0; i < taskCount; i++) {
+			parentStarts[i] = edgeCount;
+			JSONObject taskObject = taskObjects.optJSONObject(i);
+			JSONArray parentNames = taskObject != null
+					? taskObject.optJSONArray("parentTasks") : null;
+			if (parentNames == null) {
+				continue;
+			}
+			for (int j = 0; j < parentNames.length(); j++) {
+				Integer parent = ids.get(parentNames.optString(j, null));
+				if (parent == null) {
+					report.add(DAGValidationError.DANGLING_PARENT, "task " + names[i]
+							+ " has unknown parent " + parentNames.optString(j, null));
+					continue;
+				}
+				if (edgeCount == parents.length) {
+					parents = Arrays.copyOf(parents, 2 * edgeCount);
+				}
+				parents[edgeCount++] = parent;
+				childCounts[parent]++;
+			}
+		}
+		parentStarts[taskCount] = edgeCount;
+		int[] childStarts = new int[taskCount + 1];
+		for (int i = 0; i < taskCount; i++) {
+			childStarts[i + 1] = childStarts[i] + childCounts[i];
+		}
+		int[] children = new int[edgeCount];
+		int[] parentCounts = new int[taskCount];
+		for (int i = 0; i < taskCount; i++) {
+			for (int e = parentStarts[i]; e < parentStarts[i + 1]; e++) {
+				children[childStarts[parents[e] + 1] - childCounts[parents[e]]--] = i;
+			}
+			parentCounts[i] = parentStarts[i + 1] - parentStarts[i];
+		}
+		// Kahn's algorithm, the order doubling as the queue
+		int[] order = new int[taskCount];
+		int orderedCount = 0;
+		for (int i = 0; i < taskCount; i++) {
+			if (parentCounts[i] == 0) {
+				order[orderedCount++] = i;
+			}
+		}
+		for (int k = 0; k < orderedCount; k++) {
+			int task = order[k];
+			for (int e = childStarts[task]; e < childStarts[task + 1]; e++) {
+				if (--parentCounts[children[e]] == 0) {
+					order[orderedCount++] = children[e];
+				}
+			}
+		}
+		if (orderedCount < taskCount) {
+			reportCycle(names, parentStarts, parents, parentCounts,
+					taskCount - orderedCount);
+		} else if (grouped) {
+			validateGangs(names, gangs, nextMembers, parentStarts, parents, childStarts,
+					children);
+		}
+		return report;
+	}
+	
+	/**
+	 * Checks that no task of a gang depends on another task of its gang, which would
+	 * never let the gang start. A direct dependency is reported as such; otherwise the
+	 * DAG whose gangs are contracted into their first task is ordered by Kahn's
+	 * algorithm, and a gang is found on a cycle among the tasks left out by walking up
+	 * their unordered parents.
+	 * @param names The names of the tasks.
+	 * @param gangs The first task of the gang of every task.
+	 * @param nextMembers The next task of the gang of every task, or -1.
+	 * @param parentStarts The index of the first parent of every task.
+	 * @param parents The parents of all the tasks.
+	 * @param childStarts The index of the first child of every task.
+	 * @param children The children of all the tasks.
+	 */
+	private void validateGangs(String[] names, int[] gangs, int[] nextMembers,
+			int[] parentStarts, int[] parents, int[] childStarts, int[] children) {
+		int taskCount = names.length;
+		int[] parentCounts = new int[taskCount];
+		for (int i = 0; i < taskCount; i++) {
+			for (int e = parentStarts[i]; e < parentStarts[i + 1]; e++) {
+				if (gangs[parents[e]] == gangs[i]) {
+					report.add(DAGValidationError.GANG_DEPENDENCY, "task " + names[i]
+							+ " depends on task " + names[parents[e]] + " of its gang");
+				} else {
+					parentCounts[gangs[i]]++;
+				}
+			}
+		}
+		int[] order = new int[taskCount];
+		int orderedCount = 0;
+		for (int i = 0; i < taskCount; i++) {
+			if (gangs[i] == i && parentCounts[i] == 0) {
+				order[orderedCount++] = i;
+			}
+		}
+		for (int k = 0; k < orderedCount; k++) {
+			for (int task = order[k]; task >= 0; task = nextMembers[task]) {
+				for (int e = childStarts[task]; e < childStarts[task + 1]; e++) {
+					int child = gangs[children[e]];
+					if (child != order[k] && --parentCounts[child] == 0) {
+						order[orderedCount++] = child;
+					}
+				}
+			}
+		}
+		int gang = 0;
+		while (gang < taskCount && parentCounts[gang] == 0) {
+			gang++;
+		}
+		if (gang == taskCount) {
+			return;
+		}
+		// the walk closes a cycle of the contracted DAG, which goes through a gang
+		boolean[] visited = new boolean[taskCount];
+		while (!visited[gang]) {
+			visited[gang] = true;
+			gang = getUnorderedParent(gang, gangs, nextMembers, parentStarts, parents,
+					parentCounts);
+		}
+		while (nextMembers[gang] < 0) {
+			gang = getUnorderedParent(gang, gangs, nextMembers, parentStarts, parents,
+					parentCounts);
+		}
+		report.add(DAGValidationError.GANG_DEPENDENCY, "the gang of task " + names[gang]
+				+ " depends on itself through other tasks");
+	}
+	
+	/**
+	 * Checks the duration and the resource request of a task.
+	 * @param taskObject The JSON object that holds the task.
+	 * @param name The name of the task.
+	 */
+	private void validateTask(JSONObject taskObject, String name) {
+		if (taskObject.optInt("duration", 0) <= 0) {
+			report.add(DAGValidationError.INVALID_TASK, "task " + name
+					+ " has no positive duration");
+		}
+		ResourceDescriptor request;
+		if (taskObject.optJSONObject("requiredResources") != null) {
+			request = new ResourceDescriptor(taskObject.optJSONObject("requiredResources"));
+		} else if (taskObject.optJSONArray("requiredResources") != null) {
+			request = new ResourceDescriptor(taskObject.optJSONArray("requiredResources"));
+		} else {
+			report.add(DAGValidationError.INVALID_TASK, "task " + name
+					+ " has no required resources");
+			return;
+		}
+		if (nodeCapacities.isEmpty()) {
+			return;
+		}
+		for (ResourceDescriptor capacity : nodeCapacities) {
+			if (capacity.isSuperSet(request)) {
+				return;
+			}
+		}
+		report.add(DAGValidationError.OVERSIZED_REQUEST, "task " + name + " requires "
+				+ request + ", more than any node");
+	}
+	
+	/**
+	 * Reports a cycle among the tasks left out of the topological order. Every such
+	 * task has a parent left out too, so that walking up these parents from any of
+	 * them comes back to a task already visited, which closes a cycle.
+	 * @param names The names of the tasks.
+	 * @param parentStarts The index of the first parent of every task.
+	 * @param parents The parents of all the tasks.
+	 * @param parentCounts The number of parents of every task left out of the order.
+	 * @param blockedCount The number of tasks left out of the order.
+	 */
+	private void reportCycle(String[] names, int[] parentStarts, int[] parents,
+			int[] parentCounts, int blockedCount) {
+		int task = 0;
+		while (parentCounts[task] == 0) {
+			task++;
+		}
+		// the step of the walk at which every task was visited, or 0
+		int[] steps = new int[names.length];
+		ArrayList<Integer> walk = new ArrayList<Integer>();
+		while (steps[task] == 0) {
+			walk.add(task);
+			steps[task] = walk.size();
+			for (int e = parentStarts[task]; e < parentStarts[task + 1]; e++) {
+				if (parentCounts[parents[e]] > 0) {
+					task = parents[e];
+					break;
+				}
+			}
+		}
+		// the walk goes up the parents, so that the cycle is listed backward
+		int length = walk.size() - steps[task] + 1;
+		StringBuilder cycle = new StringBuilder(names[task]);
+		for (int k = walk.size() - 1; k >= steps[task] - 1; k--) {
+			if (k >= steps[task] && walk.size() - k > MAX_CYCLE_NAMES) {
+				cycle.append(" -> ...");
+				k = steps[task];
+				continue;
+			}
+			cycle.append(" -> ").append(names[walk.get(k)]);
+		}
+		report.add(DAGValidationError.CYCLE, cycle + " (" + length + " tasks in the cycle, "
+				+ blockedCount + " tasks cannot be ordered)");
+	}
+	
+	/**
+	 * Gets a parent left out of the order of the DAG whose gangs are contracted.
+	 * @param gang The contracted task, left out of the order.
+	 * @param gangs The first task of the gang of every task.
+	 * @param nextMembers The next task of the gang of every task, or -1.
+	 * @param parentStarts The index of the first parent of every task.
+	 * @param parents The parents of all the tasks.
+	 * @param parentCounts The number of parents of every contracted task left out of
+	 * the order.
+	 * @return the first task of the gang of the parent.
+	 */
+	private static int getUnorderedParent(int gang, int[] gangs, int[] nextMembers,
+			int[] parentStarts, int[] parents, int[] parentCounts) {
+		for (int task = gang; task >= 0; task = nextMembers[task]) {
+			for (int e = parentStarts[task]; e < parentStarts[task + 1]; e++) {
+				int parent = gangs[parents[e]];
+				if (parent != gang && parentCounts[parent] > 0) {
+					return parent;
+				}
+			}
+		}
+		return gang;
+	}
+	
+	/**
+	 * Gets the report of the last validation.
+	 * @return the report, or null if no task DAG was validated.
+	 */
+	public DAGValidationReport getReport() {
+		return report;
+	}
+}
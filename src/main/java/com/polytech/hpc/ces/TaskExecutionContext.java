@@ -51,6 +51,15 @@ public class TaskExecutionContext {
 	/** The current status of the task in the task DAG execution pipeline. */
 	private TaskStatus status;
 	
+	/** The current execution attempt of the task, if it is running. */
+	private TaskExecutionRecord attempt;
+	
+	/** The number of parent tasks which are not finished, kept by the task DAG. */
+	private int unfinishedParentCount;
+	
+	/** The date at which the task last became ready. */
+	private int readyDate;
+	
 	/**
 	 * Creates a new task execution context.
 	 * @param task The task wrapped in the execution context.
@@ -63,6 +72,9 @@ public class TaskExecutionContext {
 		priority = 0.0;
 		container = null;
 		status = TaskStatus.UNKNOWN;
+		attempt = null;
+		unfinishedParentCount = 0;
+		readyDate = 0;
 	}
 	
 	/**
@@ -88,9 +100,13 @@ public class TaskExecutionContext {
 			return;
 		}
 		*/
-		this.minStartDate = Math.max(minStartDate, this.minStartDate);
+		if (minStartDate <= this.minStartDate) {
+			return;
+		}
+		this.minStartDate = minStartDate;
 		for (Task child : task.getChildTasks()) {
-			child.setMinStartDate(this.minStartDate + task.getDuration());
+			child.getExecutionContext().setMinStartDate(this.minStartDate
+					+ task.getDuration());
 		}
 	}
 	
@@ -117,21 +133,36 @@ public class TaskExecutionContext {
 			return;
 		}
 		*/
-		this.maxStartDate = Math.min(maxStartDate, this.maxStartDate);
+		if (maxStartDate >= this.maxStartDate) {
+			return;
+		}
+		this.maxStartDate = maxStartDate;
 		for (Task parent : task.getParentTasks()) {
-			parent.setMaxStartDate(this.maxStartDate - task.getDuration());
+			parent.getExecutionContext().setMaxStartDate(this.maxStartDate
+					- parent.getDuration());
 		}
 	}
 	
+	/**
+	 * Sets both starting dates of the task without propagating them in the task DAG.
+	 * This is used by the task DAG which updates the tasks in topological order.
+	 * @param minStartDate The minimum starting date of the task.
+	 * @param maxStartDate The maximum starting date of the task.
+	 */
+	void setStartDates(int minStartDate, int maxStartDate) {
+		this.minStartDate = minStartDate;
+		this.maxStartDate = maxStartDate;
+	}
+	
 	/**
 	 * Sets the priority of the task in the execution context.
 	 * @param priority The priority of the task.
 	 */
 	public void setPriority(double priority) {
-		if (priority > 0.0) {
+		if (priority > 1.0) {
 			LOGGER.warn("Priority was clamped to 1.0 for task {}", task.getName());
 			priority = 1.0;
-		} else if (priority > 1.0) {
+		} else if (priority < 0.0) {
 			LOGGER.warn("Priority was clamped to 0.0 for task {}", task.getName());
 			priority = 0.0;
 		}
@@ -146,6 +177,14 @@ public class TaskExecutionContext {
 		this.container = container;
 	}
 	
+	/**
+	 * Sets the current execution attempt of the task.
+	 * @param attempt The current execution attempt, or null if the task is not running.
+	 */
+	public void setAttempt(TaskExecutionRecord attempt) {
+		this.attempt = attempt;
+	}
+	
 	/**
 	 * Sets the current status of the task in the task DAG execution pipeline.
 	 * @param status The current status of the task.
@@ -154,6 +193,54 @@ public class TaskExecutionContext {
 		this.status = status;
 	}
 	
+	/**
+	 * Sets the date at which the task became ready, stamped by the simulator when it
+	 * offers the task to its ready queue.
+	 * @param readyDate The date at which the task became ready.
+	 */
+	void setReadyDate(int readyDate) {
+		this.readyDate = readyDate;
+	}
+	
+	/**
+	 * Sets the number of parent tasks which are not finished.
+	 * @param unfinishedParentCount The number of unfinished parent tasks.
+	 */
+	void setUnfinishedParentCount(int unfinishedParentCount) {
+		this.unfinishedParentCount = unfinishedParentCount;
+	}
+	
+	/**
+	 * Accounts for a parent task which finished.
+	 * @return the number of parent tasks which are still not finished.
+	 */
+	int onParentFinished() {
+		return --unfinishedParentCount;
+	}
+	
+	/**
+	 * Accounts for a finished parent task which must run again.
+	 */
+	void onParentLost() {
+		unfinishedParentCount++;
+	}
+	
+	/**
+	 * Gets the number of parent tasks which are not finished.
+	 * @return the number of unfinished parent tasks, 0 if the task can run.
+	 */
+	public int getUnfinishedParentCount() {
+		return unfinishedParentCount;
+	}
+	
+	/**
+	 * Gets the date at which the task last became ready, e.g. after being preempted.
+	 * @return the date at which the task became ready.
+	 */
+	public int getReadyDate() {
+		return readyDate;
+	}
+	
 	/**
 	 * Gets the task wrapped in the execution context.
 	 * @return the task of the execution context.
@@ -194,6 +281,14 @@ public class TaskExecutionContext {
 		return container;
 	}
 	
+	/**
+	 * Gets the current execution attempt of the task.
+	 * @return the current execution attempt, or null if the task is not running.
+	 */
+	public TaskExecutionRecord getAttempt() {
+		return attempt;
+	}
+	
 	/**
 	 * Gets the current status of the task in the task DAG execution pipeline.
 	 * @return the current status of the task.
@@ -49,6 +49,15 @@ public class TaskExecutionRecord {
 	/** Whether the task was preempted during the execution attempt. */
 	private boolean preempted;
 	
+	/** Whether the execution attempt was killed by a node failure. */
+	private boolean failed;
+	
+	/** The event which finishes the execution attempt, cancelled if it is interrupted. */
+	private Event finishEvent;
+	
+	/** The date at which the execution attempt is expected to end, as drawn. */
+	private int expectedEndDate;
+	
 	/**
 	 * Creates a new task execution record.
 	 * The entity is supposed to be created every time a task starts to run.
@@ -63,6 +72,9 @@ public class TaskExecutionRecord {
 		endDate = null;
 		this.container = container;
 		preempted = false;
+		failed = false;
+		finishEvent = null;
+		expectedEndDate = startDate;
 	}
 	
 	/**
@@ -70,7 +82,7 @@ public class TaskExecutionRecord {
 	 * @param endDate the ending date of the execution attempt.
 	 */
 	public void setEndDate(int endDate) {
-		if (endDate <= startDate) {
+		if (endDate < startDate || (endDate == startDate && !preempted && !failed)) {
 			LOGGER.error("Attempt to end the task {} at {} whereas it starts at {}",
 					task.getName(), endDate, startDate);
 			return;
@@ -80,13 +92,40 @@ public class TaskExecutionRecord {
 	
 	/**
 	 * Sets whether the task was preempted during the execution attempt.
-	 * True means the execution attempt failed.
+	 * True means the execution attempt failed. A preempted attempt may end at its
+	 * starting date.
 	 * @param preempted Whether the task was preempted.
 	 */
 	public void setPreempted(boolean preempted) {
 		this.preempted = preempted;
 	}
 	
+	/**
+	 * Sets whether the execution attempt was killed by a node failure.
+	 * A failed attempt may end at its starting date.
+	 * @param failed Whether the node of the container failed.
+	 */
+	public void setFailed(boolean failed) {
+		this.failed = failed;
+	}
+	
+	/**
+	 * Sets the event which finishes the execution attempt.
+	 * @param finishEvent The finish event.
+	 */
+	void setFinishEvent(Event finishEvent) {
+		this.finishEvent = finishEvent;
+	}
+	
+	/**
+	 * Sets the date at which the execution attempt is expected to end, after its
+	 * warm-up and its drawn duration.
+	 * @param expectedEndDate The expected ending date.
+	 */
+	void setExpectedEndDate(int expectedEndDate) {
+		this.expectedEndDate = expectedEndDate;
+	}
+	
 	/**
 	 * Gets the task of the record.
 	 * @return the task executed.
@@ -120,6 +159,22 @@ public class TaskExecutionRecord {
 		return container;
 	}
 	
+	/**
+	 * Gets the event which finishes the execution attempt.
+	 * @return the finish event, or null if it is not scheduled.
+	 */
+	Event getFinishEvent() {
+		return finishEvent;
+	}
+	
+	/**
+	 * Gets the date at which the execution attempt is expected to end.
+	 * @return the expected ending date, after the warm-up and the drawn duration.
+	 */
+	int getExpectedEndDate() {
+		return expectedEndDate;
+	}
+	
 	/**
 	 * Returns whether the task was preempted during the execution attempt.
 	 * @return true if the task was preempted (the execution failed), false otherwise.
@@ -128,6 +183,22 @@ public class TaskExecutionRecord {
 		return preempted;
 	}
 	
+	/**
+	 * Returns whether the execution attempt was killed by a node failure.
+	 * @return true if the node of the container failed during the attempt.
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+	
+	/**
+	 * Returns whether the execution attempt was interrupted before the task finished.
+	 * @return true if the task was preempted or its node failed.
+	 */
+	public boolean isInterrupted() {
+		return preempted || failed;
+	}
+	
 	/**
 	 * Returns the string representation of a task execution attempt.
 	 * @return a string representing the attempt of execution of the task.
@@ -135,6 +206,6 @@ public class TaskExecutionRecord {
 	public String toString() {
 		String endDateString = endDate != null ? endDate.toString() : "?";
 		return task.getName() + ": d=(" + startDate + "," + endDateString + ") p="
-				+ preempted;
+				+ preempted + (failed ? " f=true" : "");
 	}
 }
@@ -0,0 +1,61 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the end of an execution attempt of a task.
+ * @class
+ * @author Nicolas
+ */
+public class TaskFinishEvent extends Event {
+	/** The execution attempt which finishes. */
+	private TaskExecutionRecord attempt;
+	
+	/**
+	 * Creates a new task finish event.
+	 * @param time The date at which the execution attempt finishes.
+	 * @param attempt The execution attempt which finishes.
+	 * @constructor
+	 */
+	public TaskFinishEvent(int time, TaskExecutionRecord attempt) {
+		super(time);
+		this.attempt = attempt;
+	}
+	
+	/**
+	 * Finishes the execution attempt, unless it was preempted or killed meanwhile.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		if (attempt.isInterrupted()) {
+			return;
+		}
+		simulator.finishTask(attempt);
+	}
+	
+	/**
+	 * Gets the execution attempt which finishes.
+	 * @return the execution attempt.
+	 */
+	public TaskExecutionRecord getAttempt() {
+		return attempt;
+	}
+}
@@ -0,0 +1,49 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the arrival of a ready task in another shard of a sharded simulation,
+ * because its own shard had no room left for it.
+ * @class
+ * @author Nicolas
+ */
+public class TaskMigrationEvent extends ShardMessage {
+	/**
+	 * Creates a new task migration event, whose target shard is chosen by the
+	 * coordinator.
+	 * @param time The date at which the task arrives.
+	 * @param source The index of the shard the task leaves.
+	 * @param task The ready task which migrates.
+	 * @constructor
+	 */
+	public TaskMigrationEvent(int time, int source, Task task) {
+		super(time, source, -1, task);
+	}
+	
+	/**
+	 * Adds the task to the ready queue of the shard.
+	 * @param simulator The shard processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		((SimulatorShard) simulator).receiveTask(getTask());
+	}
+}
@@ -0,0 +1,201 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.polytech.hpc.ces;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Stores the mutable state of the tasks of a task DAG off the heap.
+ * Every field is a column held by a direct buffer and addressed by the index of the
+ * task, so that the memory used by the state does not grow the heap nor the work of
+ * the garbage collector with the number of tasks.
+ * A column is limited to 2 GB, i.e. about 268 million tasks for 8-byte fields.
+ * @class
+ * @author Nicolas
+ */
+final class TaskStateStore {
+	/** The statuses that may be stored, indexed by their ordinal. */
+	private static final TaskStatus[] STATUSES = TaskStatus.values();
+	
+	/** The number of tasks. */
+	private final int taskCount;
+	
+	/**
+	 * The status of every task, as the ordinal of the status xor the ordinal of the
+	 * pending status, so that the zeroed column holds pending tasks.
+	 */
+	private final ByteBuffer statuses;
+	
+	/** The number of finished parents of every task. */
+	private final ByteBuffer finishedParentCounts;
+	
+	/** The number of execution attempts of every task. */
+	private final ByteBuffer attemptCounts;
+	
+	/** The number of preempted execution attempts of every task. */
+	private final ByteBuffer preemptionCounts;
+	
+	/** The number of execution attempts of every task killed by node failures. */
+	private final ByteBuffer failureCounts;
+	
+	/** The time spent running the interrupted execution attempts of every task. */
+	private final ByteBuffer wastedTimes;
+	
+	/**
+	 * Creates a new store, every task being pending with no attempt.
+	 * The columns are left zeroed, so that creating a store does not visit the tasks.
+	 * @param taskCount The number of tasks.
+	 * @constructor
+	 */
+	TaskStateStore(int taskCount) {
+		this.taskCount = taskCount;
+		statuses = allocate(1);
+		finishedParentCounts = allocate(4);
+		attemptCounts = allocate(4);
+		preemptionCounts = allocate(4);
+		failureCounts = allocate(4);
+		wastedTimes = allocate(8);
+	}
+	
+	/**
+	 * Allocates a column, which is zeroed.
+	 * @param width The size of a field in bytes.
+	 * @return the column.
+	 */
+	private ByteBuffer allocate(int width) {
+		return ByteBuffer.allocateDirect(taskCount * width).order(ByteOrder.nativeOrder());
+	}
+	
+	/**
+	 * Gets the number of tasks of the store.
+	 * @return the number of tasks.
+	 */
+	int getTaskCount() {
+		return taskCount;
+	}
+	
+	/**
+	 * Gets the number of bytes stored off the heap per task.
+	 * @return the size of the state of a task.
+	 */
+	static int getBytesPerTask() {
+		return 1 + 4 * 4 + 8;
+	}
+	
+	/**
+	 * Gets the status of a task.
+	 * @param index The index of the task.
+	 * @return the status of the task.
+	 */
+	TaskStatus getStatus(int index) {
+		return STATUSES[statuses.get(index) ^ TaskStatus.PENDING.ordinal()];
+	}
+	
+	/**
+	 * Sets the status of a task.
+	 * @param index The index of the task.
+	 * @param status The status of the task.
+	 */
+	void setStatus(int index, TaskStatus status) {
+		statuses.put(index, (byte) (status.ordinal() ^ TaskStatus.PENDING.ordinal()));
+	}
+	
+	/**
+	 * Gets the number of finished parents of a task.
+	 * @param index The index of the task.
+	 * @return the number of finished parents.
+	 */
+	int getFinishedParentCount(int index) {
+		return finishedParentCounts.getInt(4 * index);
+	}
+	
+	/**
+	 * Sets the number of finished parents of a task.
+	 * @param index The index of the task.
+	 * @param count The number of finished parents.
+	 */
+	void setFinishedParentCount(int index, int count) {
+		finishedParentCounts.putInt(4 * index, count);
+	}
+	
+	/**
+	 * Gets the number of execution attempts of a task.
+	 * @param index The index of the task.
+	 * @return the number of attempts.
+	 */
+	int getAttemptCount(int index) {
+		return attemptCounts.getInt(4 * index);
+	}
+	
+	/**
+	 * Gets the number of preempted execution attempts of a task.
+	 * @param index The index of the task.
+	 * @return the number of preemptions.
+	 */
+	int getPreemptionCount(int index) {
+		return preemptionCounts.getInt(4 * index);
+	}
+	
+	/**
+	 * Gets the number of execution attempts of a task killed by node failures.
+	 * @param index The index of the task.
+	 * @return the number of failures.
+	 */
+	int getFailureCount(int index) {
+		return failureCounts.getInt(4 * index);
+	}
+	
+	/**
+	 * Gets the time spent running the interrupted execution attempts of a task.
+	 * @param index The index of the task.
+	 * @return the wasted time.
+	 */
+	long getWastedTime(int index) {
+		return wastedTimes.getLong(8 * index);
+	}
+	
+	/**
+	 * Accounts for a new execution attempt of a task.
+	 * @param index The index of the task.
+	 */
+	void addAttempt(int index) {
+		attemptCounts.putInt(4 * index, attemptCounts.getInt(4 * index) + 1);
+	}
+	
+	/**
+	 * Accounts for an execution attempt of a task which ended.
+	 * @param index The index of the task.
+	 * @param attempt The execution attempt, which must have an ending date.
+	 */
+	void endAttempt(int index, TaskExecutionRecord attempt) {
+		if (attempt.isPreempted()) {
+			preemptionCounts.putInt(4 * index, preemptionCounts.getInt(4 * index) + 1);
+		}
+		if (attempt.isFailed()) {
+			failureCounts.putInt(4 * index, failureCounts.getInt(4 * index) + 1);
+		}
+		if (attempt.isInterrupted()) {
+			wastedTimes.putLong(8 * index, wastedTimes.getLong(8 * index)
+					+ attempt.getEndDate() - attempt.getStartDate());
+		}
+	}
+}
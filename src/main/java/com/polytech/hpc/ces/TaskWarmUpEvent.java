@@ -0,0 +1,72 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+/**
+ * Represents the date at which a restarted execution attempt is warmed up and has
+ * fetched its input again, so that it starts running its task.
+ * @class
+ * @author Nicolas
+ */
+public class TaskWarmUpEvent extends Event {
+	/** The restarted execution attempt. */
+	private TaskExecutionRecord attempt;
+	
+	/** The duration drawn for the execution attempt. */
+	private int duration;
+	
+	/**
+	 * Creates a new warm-up event.
+	 * @param time The date at which the execution attempt is warmed up.
+	 * @param attempt The restarted execution attempt.
+	 * @param duration The duration drawn for the execution attempt.
+	 * @constructor
+	 */
+	public TaskWarmUpEvent(int time, TaskExecutionRecord attempt, int duration) {
+		super(time);
+		this.attempt = attempt;
+		this.duration = duration;
+	}
+	
+	/**
+	 * Runs the task of the execution attempt for its drawn duration.
+	 * @param simulator The simulator processing the event.
+	 */
+	@Override
+	public void process(Simulator simulator) {
+		simulator.runAttempt(attempt, duration);
+	}
+	
+	/**
+	 * Gets the restarted execution attempt.
+	 * @return the execution attempt.
+	 */
+	public TaskExecutionRecord getAttempt() {
+		return attempt;
+	}
+	
+	/**
+	 * Gets the duration drawn for the execution attempt.
+	 * @return the duration of the execution attempt once warmed up.
+	 */
+	public int getDuration() {
+		return duration;
+	}
+}
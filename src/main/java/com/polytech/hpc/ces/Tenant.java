@@ -0,0 +1,174 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * Represents a tenant of the cluster, i.e. the owner of task DAGs.
+ * The tenant accounts for the resources used by its running tasks and for its
+ * dominant share, the greatest share of the cluster it uses over all the resource
+ * dimensions, divided by its weight.
+ * @see TenantShareTracker
+ * @class
+ * @author Nicolas
+ */
+public class Tenant {
+	/** The name of the tenant. */
+	private String name;
+	
+	/** The weight of the tenant, a tenant of weight 2 deserving twice the resources. */
+	private double weight;
+	
+	/** The resources used by the running tasks of the tenant. */
+	private long[] usage;
+	
+	/** The running tasks of the tenant, with their number of running attempts. */
+	private LinkedHashMap<Task, Integer> runningTasks;
+	
+	/** The weighted dominant share of the tenant. */
+	private double dominantShare;
+	
+	/** The position of the tenant in the heap of its tracker. */
+	private int heapIndex;
+	
+	/**
+	 * Creates a new tenant.
+	 * @param name The name of the tenant.
+	 * @param heapIndex The position of the tenant in the heap of its tracker.
+	 * @constructor
+	 */
+	Tenant(String name, int heapIndex) {
+		this.name = name;
+		this.heapIndex = heapIndex;
+		weight = 1.0;
+		usage = new long[ResourceDimensions.getCount()];
+		runningTasks = new LinkedHashMap<Task, Integer>();
+		dominantShare = 0.0;
+	}
+	
+	/**
+	 * Accounts for a task which started or stopped to run.
+	 * @param task The task.
+	 * @param sign 1 if the task started, -1 if it stopped.
+	 */
+	void account(Task task, int sign) {
+		ResourceDescriptor res = task.getRequiredResources();
+		for (int i = 0; i < usage.length; i++) {
+			usage[i] += sign * res.get(i);
+		}
+		Integer attempts = runningTasks.get(task);
+		int count = (attempts != null ? attempts : 0) + sign;
+		if (count > 0) {
+			runningTasks.put(task, count);
+		} else {
+			runningTasks.remove(task);
+		}
+	}
+	
+	/**
+	 * Computes the weighted dominant share of the tenant.
+	 * @param capacity The resource capacity of the cluster.
+	 */
+	void computeDominantShare(long[] capacity) {
+		double share = 0.0;
+		for (int i = 0; i < usage.length && i < capacity.length; i++) {
+			if (capacity[i] > 0) {
+				share = Math.max(share, (double) usage[i] / capacity[i]);
+			}
+		}
+		dominantShare = share / weight;
+	}
+	
+	/**
+	 * Sets the weight of the tenant.
+	 * @param weight The weight of the tenant, strictly positive.
+	 */
+	void setWeight(double weight) {
+		this.weight = weight;
+	}
+	
+	/**
+	 * Sets the position of the tenant in the heap of its tracker.
+	 * @param heapIndex The position of the tenant.
+	 */
+	void setHeapIndex(int heapIndex) {
+		this.heapIndex = heapIndex;
+	}
+	
+	/**
+	 * Gets the position of the tenant in the heap of its tracker.
+	 * @return the position of the tenant.
+	 */
+	int getHeapIndex() {
+		return heapIndex;
+	}
+	
+	/**
+	 * Gets the name of the tenant.
+	 * @return the name of the tenant.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the weight of the tenant.
+	 * @return the weight of the tenant.
+	 */
+	public double getWeight() {
+		return weight;
+	}
+	
+	/**
+	 * Gets the amount of a resource dimension used by the tenant.
+	 * @param dimension The index of the dimension.
+	 * @return the amount used.
+	 */
+	public long getUsage(int dimension) {
+		return dimension < usage.length ? usage[dimension] : 0;
+	}
+	
+	/**
+	 * Gets the weighted dominant share of the tenant.
+	 * @return the dominant share of the tenant divided by its weight.
+	 */
+	public double getDominantShare() {
+		return dominantShare;
+	}
+	
+	/**
+	 * Gets the running tasks of the tenant.
+	 * @return the running tasks, in starting order.
+	 */
+	public Collection<Task> getRunningTasks() {
+		return runningTasks.keySet();
+	}
+	
+	/**
+	 * Returns the string representation of the tenant.
+	 * @return a string representing the tenant.
+	 */
+	@Override
+	public String toString() {
+		return name + ": s=" + dominantShare + " w=" + weight;
+	}
+}
@@ -0,0 +1,234 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Tracks the dominant resource share of every tenant of the cluster.
+ * Usages are updated incrementally as tasks are added to or removed from containers,
+ * and the tenants are kept in an indexed binary heap ordered by decreasing weighted
+ * dominant share. The most over-share tenant is read in constant time and every
+ * update costs a logarithmic number of tenant comparisons.
+ * @class
+ * @author Nicolas
+ */
+public class TenantShareTracker {
+	/** The resource capacity of the cluster. */
+	private long[] capacity;
+	
+	/** The tenants, by name. */
+	private HashMap<String, Tenant> tenants;
+	
+	/** The heap of tenants, ordered by decreasing weighted dominant share. */
+	private ArrayList<Tenant> heap;
+	
+	/**
+	 * Creates a new tracker for an empty cluster.
+	 * @constructor
+	 */
+	public TenantShareTracker() {
+		capacity = new long[ResourceDimensions.getCount()];
+		tenants = new HashMap<String, Tenant>();
+		heap = new ArrayList<Tenant>();
+	}
+	
+	/**
+	 * Adds resources to the capacity of the cluster.
+	 * Every dominant share changes, so that the heap is rebuilt.
+	 * @param res The resources to add.
+	 */
+	public void addCapacity(ResourceDescriptor res) {
+		if (res.getDimensionCount() > capacity.length) {
+			long[] extended = new long[res.getDimensionCount()];
+			System.arraycopy(capacity, 0, extended, 0, capacity.length);
+			capacity = extended;
+		}
+		for (int i = 0; i < res.getDimensionCount(); i++) {
+			capacity[i] += res.get(i);
+		}
+		for (Tenant tenant : heap) {
+			tenant.computeDominantShare(capacity);
+		}
+		for (int i = heap.size() / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Gets a tenant, creating it if needed.
+	 * @param name The name of the tenant.
+	 * @return the tenant.
+	 */
+	public Tenant getTenant(String name) {
+		Tenant tenant = tenants.get(name);
+		if (tenant == null) {
+			tenant = new Tenant(name, heap.size());
+			tenants.put(name, tenant);
+			heap.add(tenant);
+			siftUp(tenant.getHeapIndex());
+		}
+		return tenant;
+	}
+	
+	/**
+	 * Gets the tenant which owns a task.
+	 * @param task The task.
+	 * @return the owner of the DAG of the task.
+	 */
+	public Tenant getTenant(Task task) {
+		return getTenant(task.getDAG().getOwner());
+	}
+	
+	/**
+	 * Sets the weight of a tenant.
+	 * @param name The name of the tenant.
+	 * @param weight The weight of the tenant, strictly positive.
+	 */
+	public void setWeight(String name, double weight) {
+		Tenant tenant = getTenant(name);
+		tenant.setWeight(weight);
+		update(tenant);
+	}
+	
+	/**
+	 * Accounts for a task which started to run in a container.
+	 * @param task The task.
+	 */
+	public void onTaskAdded(Task task) {
+		Tenant tenant = getTenant(task);
+		tenant.account(task, 1);
+		update(tenant);
+	}
+	
+	/**
+	 * Accounts for a task which stopped to run in a container.
+	 * @param task The task.
+	 */
+	public void onTaskRemoved(Task task) {
+		Tenant tenant = getTenant(task);
+		tenant.account(task, -1);
+		update(tenant);
+	}
+	
+	/**
+	 * Gets the tenant whose weighted dominant share is the greatest.
+	 * @return the most over-share tenant, or null if there is no tenant.
+	 */
+	public Tenant getMostOverShareTenant() {
+		return heap.isEmpty() ? null : heap.get(0);
+	}
+	
+	/**
+	 * Gets the weighted dominant share a tenant would have with more resources.
+	 * @param tenant The tenant.
+	 * @param res The additional resources.
+	 * @return the weighted dominant share of the tenant.
+	 */
+	public double getDominantShareWith(Tenant tenant, ResourceDescriptor res) {
+		return getDominantShare(tenant, res, 1);
+	}
+	
+	/**
+	 * Gets the weighted dominant share a tenant would have with fewer resources.
+	 * @param tenant The tenant.
+	 * @param res The resources released.
+	 * @return the weighted dominant share of the tenant.
+	 */
+	public double getDominantShareWithout(Tenant tenant, ResourceDescriptor res) {
+		return getDominantShare(tenant, res, -1);
+	}
+	
+	/**
+	 * Gets the weighted dominant share a tenant would have with a change of usage.
+	 * @param tenant The tenant.
+	 * @param res The resources acquired or released.
+	 * @param sign 1 if the resources are acquired, -1 if they are released.
+	 * @return the weighted dominant share of the tenant.
+	 */
+	private double getDominantShare(Tenant tenant, ResourceDescriptor res, int sign) {
+		double share = 0.0;
+		for (int i = 0; i < capacity.length; i++) {
+			if (capacity[i] > 0) {
+				share = Math.max(share, (double) (tenant.getUsage(i) + sign * res.get(i))
+						/ capacity[i]);
+			}
+		}
+		return share / tenant.getWeight();
+	}
+	
+	/**
+	 * Recomputes the dominant share of a tenant and restores the heap order.
+	 * @param tenant The tenant whose usage or weight changed.
+	 */
+	private void update(Tenant tenant) {
+		tenant.computeDominantShare(capacity);
+		siftUp(tenant.getHeapIndex());
+		siftDown(tenant.getHeapIndex());
+	}
+	
+	/**
+	 * Moves a tenant up the heap while its share is greater than its parent's.
+	 * @param index The position of the tenant.
+	 */
+	private void siftUp(int index) {
+		Tenant tenant = heap.get(index);
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (heap.get(parent).getDominantShare() >= tenant.getDominantShare()) {
+				break;
+			}
+			place(heap.get(parent), index);
+			index = parent;
+		}
+		place(tenant, index);
+	}
+	
+	/**
+	 * Moves a tenant down the heap while its share is lower than a child's.
+	 * @param index The position of the tenant.
+	 */
+	private void siftDown(int index) {
+		Tenant tenant = heap.get(index);
+		int size = heap.size();
+		while (2 * index + 1 < size) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && heap.get(child + 1).getDominantShare()
+					> heap.get(child).getDominantShare()) {
+				child++;
+			}
+			if (heap.get(child).getDominantShare() <= tenant.getDominantShare()) {
+				break;
+			}
+			place(heap.get(child), index);
+			index = child;
+		}
+		place(tenant, index);
+	}
+	
+	/**
+	 * Places a tenant at a position of the heap.
+	 */
+	private void place(Tenant tenant, int index) {
+		heap.set(index, tenant);
+		tenant.setHeapIndex(index);
+	}
+}
@@ -0,0 +1,303 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayDeque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event queue backed by a hierarchical timing wheel, in amortised O(1) per event.
+ * The wheel has LEVELS levels of SLOTS slots, which cover all the non-negative int
+ * dates. An event is stored at the lowest level whose slot identifies its date
+ * relatively to the cursor, the date of the last event polled: the slots of level 0
+ * hold the events of a single date, those of level k the events of 256^k dates. When
+ * the cursor moves, the slot of each level that it enters is cascaded to the lower
+ * levels, so that every event moves down at most LEVELS times. Slots keep the events
+ * in scheduling order, and cancelled events are dropped when met.
+ * @see http://www.cs.columbia.edu/~nahum/w6998/papers/sosp87-timing-wheels.pdf
+ * @class
+ * @author Nicolas
+ */
+public class TimingWheelEventQueue implements EventQueue {
+	private static final Logger LOGGER = LoggerFactory.getLogger(
+			TimingWheelEventQueue.class);
+	
+	/** The number of bits of a date which index the slots of a level. */
+	static final int BITS = 8;
+	
+	/** The number of slots of a level. */
+	static final int SLOTS = 1 << BITS;
+	
+	/** The number of levels, enough to cover the non-negative int dates. */
+	static final int LEVELS = 4;
+	
+	/** The slots of every level, created on first use. */
+	private ArrayDeque<Event>[][] slots;
+	
+	/** The bitmaps of the non-empty slots of every level. */
+	private long[][] occupied;
+	
+	/** The date of the last event polled. */
+	private int cursor;
+	
+	/** The number of events held. */
+	private int size;
+	
+	/** The next event, if known, which is invalidated when polled. */
+	private Event next;
+	
+	/**
+	 * Creates a new empty event queue.
+	 * @constructor
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TimingWheelEventQueue() {
+		slots = new ArrayDeque[LEVELS][SLOTS];
+		occupied = new long[LEVELS][SLOTS / 64];
+		cursor = 0;
+		size = 0;
+		next = null;
+	}
+	
+	/**
+	 * Adds an event.
+	 * @param event The event to add.
+	 */
+	@Override
+	public void add(Event event) {
+		if (event.getTime() < cursor) {
+			LOGGER.error("Attempt to add an event at {} whereas the wheel is at {}",
+					event.getTime(), cursor);
+			append(0, cursor & (SLOTS - 1), event);
+		} else {
+			place(event);
+		}
+		size++;
+		if (next != null && event.compareTo(next) < 0) {
+			next = event;
+		}
+	}
+	
+	/**
+	 * Gets the next event which is not cancelled, without removing it.
+	 * The cursor does not move, since events may still be added before the next one.
+	 * @return the next event, or null if no event is pending.
+	 */
+	@Override
+	public Event peek() {
+		if (next != null && !next.isCancelled()) {
+			return next;
+		}
+		next = null;
+		// the events of level 0 have the date of their slot
+		int slot = nextSlot(0, cursor & (SLOTS - 1));
+		while (slot >= 0) {
+			ArrayDeque<Event> events = slots[0][slot];
+			while (!events.isEmpty() && events.peekFirst().isCancelled()) {
+				events.pollFirst();
+				size--;
+			}
+			if (!events.isEmpty()) {
+				next = events.peekFirst();
+				return next;
+			}
+			clear(0, slot);
+			slot = nextSlot(0, slot + 1);
+		}
+		// the next event is the first one of the next slot of a higher level
+		for (int level = 1; level < LEVELS; level++) {
+			slot = nextSlot(level, digit(cursor, level) + 1);
+			while (slot >= 0) {
+				next = removeCancelledAndFindFirst(level, slot);
+				if (next != null) {
+					return next;
+				}
+				slot = nextSlot(level, slot + 1);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes the next event which is not cancelled.
+	 * @return the next event, or null if no event is pending.
+	 */
+	@Override
+	public Event poll() {
+		Event event = peek();
+		if (event == null) {
+			return null;
+		}
+		advance(event.getTime());
+		ArrayDeque<Event> events = slots[0][cursor & (SLOTS - 1)];
+		Event first = events.pollFirst();
+		while (first.isCancelled()) {
+			size--;
+			first = events.pollFirst();
+		}
+		if (events.isEmpty()) {
+			clear(0, cursor & (SLOTS - 1));
+		}
+		size--;
+		next = null;
+		return first;
+	}
+	
+	/**
+	 * Returns whether no event is pending, cancelled events apart.
+	 * @return true if no event is pending.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+	
+	/**
+	 * Gets the number of events held, including the cancelled events not dropped yet.
+	 * @return the number of events held.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the date of the last event polled.
+	 * @return the date of the cursor of the wheel.
+	 */
+	public int getCursor() {
+		return cursor;
+	}
+	
+	/**
+	 * Moves the cursor to the date of the next event and cascades the slots entered.
+	 * No event is held at the lower levels of the highest level whose digit changes,
+	 * since they would be earlier than the next event.
+	 * @param time The date of the next event.
+	 */
+	private void advance(int time) {
+		int diff = time ^ cursor;
+		cursor = time;
+		if (diff < SLOTS) {
+			return;
+		}
+		for (int level = (31 - Integer.numberOfLeadingZeros(diff)) / BITS; level > 0;
+				level--) {
+			int slot = digit(time, level);
+			ArrayDeque<Event> events = slots[level][slot];
+			if (events == null || events.isEmpty()) {
+				continue;
+			}
+			clear(level, slot);
+			// events keep their scheduling order as they move down
+			Event event;
+			while ((event = events.pollFirst()) != null) {
+				if (event.isCancelled()) {
+					size--;
+				} else {
+					place(event);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stores an event at the lowest level which identifies its date.
+	 */
+	private void place(Event event) {
+		int time = event.getTime();
+		int diff = time ^ cursor;
+		int level = diff < SLOTS ? 0
+				: (31 - Integer.numberOfLeadingZeros(diff)) / BITS;
+		append(level, digit(time, level), event);
+	}
+	
+	/**
+	 * Appends an event to a slot.
+	 */
+	private void append(int level, int slot, Event event) {
+		ArrayDeque<Event> events = slots[level][slot];
+		if (events == null) {
+			events = new ArrayDeque<Event>();
+			slots[level][slot] = events;
+		}
+		events.addLast(event);
+		occupied[level][slot >>> 6] |= 1L << slot;
+	}
+	
+	/**
+	 * Drops the cancelled events of a slot of a higher level and finds its first event.
+	 * @return the first event of the slot, or null if it is empty.
+	 */
+	private Event removeCancelledAndFindFirst(int level, int slot) {
+		ArrayDeque<Event> events = slots[level][slot];
+		Event first = null;
+		int count = events.size();
+		for (int i = 0; i < count; i++) {
+			Event event = events.pollFirst();
+			if (event.isCancelled()) {
+				size--;
+				continue;
+			}
+			events.addLast(event);
+			if (first == null || event.compareTo(first) < 0) {
+				first = event;
+			}
+		}
+		if (first == null) {
+			clear(level, slot);
+		}
+		return first;
+	}
+	
+	/**
+	 * Marks a slot as empty.
+	 */
+	private void clear(int level, int slot) {
+		occupied[level][slot >>> 6] &= ~(1L << slot);
+	}
+	
+	/**
+	 * Finds the first non-empty slot of a level from a given slot.
+	 * @return the index of the slot, or -1 if there is none.
+	 */
+	private int nextSlot(int level, int from) {
+		long[] bitmap = occupied[level];
+		for (int word = from >>> 6; word < bitmap.length; word++) {
+			long bits = bitmap[word];
+			if (word == from >>> 6) {
+				bits &= -1L << from;
+			}
+			if (bits != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Gets the digit of a date which indexes the slots of a level.
+	 */
+	private static int digit(int time, int level) {
+		return (time >>> (level * BITS)) & (SLOTS - 1);
+	}
+}
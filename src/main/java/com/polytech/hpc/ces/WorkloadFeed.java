@@ -0,0 +1,190 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feeds a running simulation with task DAGs read from a live stream.
+ * The stream holds a task DAG JSON object per line. Lines are parsed and the task DAGs
+ * updated on the thread of the feed, then submitted to the simulation through a
+ * submission queue, so that the simulation thread never parses nor waits.
+ * @class
+ * @author Nicolas
+ */
+public abstract class WorkloadFeed implements Runnable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkloadFeed.class);
+	
+	/** The delay between two reads of a stream with nothing to read, in ms. */
+	static final long POLL_INTERVAL = 10;
+	
+	/** The queue to which task DAGs are submitted. */
+	private SubmissionQueue queue;
+	
+	/** Whether the feed was asked to stop. */
+	private volatile boolean stopped;
+	
+	/** The number of task DAGs submitted. */
+	private AtomicLong submittedCount;
+	
+	/**
+	 * Creates a new workload feed.
+	 * @param queue The queue to which task DAGs are submitted.
+	 * @constructor
+	 */
+	public WorkloadFeed(SubmissionQueue queue) {
+		this.queue = queue;
+		stopped = false;
+		submittedCount = new AtomicLong();
+	}
+	
+	/**
+	 * Starts to feed the simulation on a new thread.
+	 * @return the thread of the feed.
+	 */
+	public Thread start() {
+		queue.register();
+		Thread thread = new Thread(this, getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	/**
+	 * Feeds the simulation until the stream ends or the feed is stopped.
+	 */
+	@Override
+	public void run() {
+		try {
+			feed();
+		} catch (IOException e) {
+			if (!stopped) {
+				LOGGER.error("Workload feed stopped: {}", e.getMessage());
+			}
+		} finally {
+			queue.deregister();
+		}
+	}
+	
+	/**
+	 * Reads the stream and submits its task DAGs.
+	 * @throws IOException if the stream cannot be read.
+	 */
+	protected abstract void feed() throws IOException;
+	
+	/**
+	 * Asks the feed to stop.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+	
+	/**
+	 * Returns whether the feed was asked to stop.
+	 * @return true if the feed must stop.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Gets the number of task DAGs submitted by the feed.
+	 * @return the number of task DAGs submitted.
+	 */
+	public long getSubmittedCount() {
+		return submittedCount.get();
+	}
+	
+	/**
+	 * Gets the queue to which task DAGs are submitted.
+	 * @return the submission queue.
+	 */
+	protected SubmissionQueue getQueue() {
+		return queue;
+	}
+	
+	/**
+	 * Reads lines from a stream and submits their task DAGs.
+	 * An incomplete last line is only submitted once the stream ends.
+	 * @param reader The stream.
+	 * @param follow Whether to wait for new lines at the end of the stream, until the
+	 * feed is stopped.
+	 * @throws IOException if the stream cannot be read.
+	 */
+	protected void readLines(Reader reader, boolean follow) throws IOException {
+		StringBuilder line = new StringBuilder();
+		char[] buffer = new char[1 << 16];
+		while (!stopped) {
+			int count = reader.read(buffer);
+			if (count < 0) {
+				if (!follow) {
+					break;
+				}
+				try {
+					Thread.sleep(POLL_INTERVAL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				continue;
+			}
+			for (int i = 0; i < count; i++) {
+				if (buffer[i] == '\n') {
+					submit(line);
+					line.setLength(0);
+				} else {
+					line.append(buffer[i]);
+				}
+			}
+		}
+		submit(line);
+	}
+	
+	/**
+	 * Parses a line and submits its task DAG.
+	 * @param line The line which holds a task DAG JSON object.
+	 */
+	protected void submit(CharSequence line) {
+		String json = line.toString().trim();
+		if (json.isEmpty()) {
+			return;
+		}
+		try {
+			JSONObject dagObject = new JSONObject(json);
+			// connections of a socket feed submit on their own threads
+			DAGValidationReport report = new TaskDAGValidator().validate(dagObject);
+			if (!report.isValid()) {
+				LOGGER.error("Invalid task DAG submitted: {}", report);
+				return;
+			}
+			queue.offer(new TaskDAG(dagObject));
+			submittedCount.incrementAndGet();
+		} catch (JSONException e) {
+			LOGGER.error("Invalid task DAG submitted: {}", e.getMessage());
+		}
+	}
+}
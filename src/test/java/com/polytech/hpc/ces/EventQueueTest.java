@@ -0,0 +1,131 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Event queue unit tests.
+ */
+public class EventQueueTest extends TestCase {
+	/**
+	 * Creates the test case.
+	 * @param testName Name of the test case.
+	 */
+	public EventQueueTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Test a suite of tests.
+	 * @return the suite of tests being tested.
+	 */
+	public static Test suite() {
+		return new TestSuite(EventQueueTest.class);
+	}
+	
+	/**
+	 * Creates an event which does nothing.
+	 */
+	private static Event createEvent(int time, long sequence) {
+		Event event = new Event(time) {
+			@Override
+			public void process(Simulator simulator) {
+			}
+		};
+		event.setSequence(sequence);
+		return event;
+	}
+	
+	/**
+	 * Tests that the timing wheel returns the events in the same order as the heap,
+	 * with dates spread over all its levels and cancellations.
+	 */
+	public void testTimingWheelOrder() {
+		Random random = new Random(42L);
+		EventQueue heap = new HeapEventQueue();
+		EventQueue wheel = new TimingWheelEventQueue();
+		ArrayList<Event> added = new ArrayList<Event>();
+		int now = 0;
+		long sequence = 0;
+		for (int step = 0; step < 200000; step++) {
+			int action = random.nextInt(10);
+			if (action < 5) {
+				int delay = random.nextInt(4) == 0 ? random.nextInt(1 << 26)
+						: random.nextInt(300);
+				Event event = createEvent(now + delay, sequence);
+				Event copy = createEvent(now + delay, sequence++);
+				heap.add(event);
+				wheel.add(copy);
+				added.add(event);
+				added.add(copy);
+			} else if (action < 6 && !added.isEmpty()) {
+				int index = random.nextInt(added.size() / 2) * 2;
+				added.get(index).cancel();
+				added.get(index + 1).cancel();
+			} else if (action < 8) {
+				Event expected = heap.peek();
+				Event actual = wheel.peek();
+				assertEquals(expected == null, actual == null);
+				if (expected != null) {
+					assertEquals(expected.getSequence(), actual.getSequence());
+				}
+			} else {
+				Event expected = heap.poll();
+				Event actual = wheel.poll();
+				assertEquals(expected == null, actual == null);
+				if (expected != null) {
+					assertEquals(expected.getTime(), actual.getTime());
+					assertEquals(expected.getSequence(), actual.getSequence());
+					assertFalse(actual.isCancelled());
+					now = actual.getTime();
+				}
+			}
+		}
+		while (!heap.isEmpty()) {
+			assertEquals(heap.poll().getSequence(), wheel.poll().getSequence());
+		}
+		assertTrue(wheel.isEmpty());
+	}
+	
+	/**
+	 * Tests that a simulation runs identically with both event queues.
+	 */
+	public void testSimulationWithTimingWheel() {
+		Simulator heap = SimulatorTest.createSimulator();
+		heap.run();
+		String expected = SimulatorTest.describeAttempts(heap);
+		
+		Simulator wheel = new Simulator(42L, new TimingWheelEventQueue());
+		Node node = wheel.addNode(new ResourceDescriptor(16, 32768));
+		wheel.addContainer(node, node.getCapacity());
+		wheel.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		wheel.addDAG(TaskDAG.load(SimulatorTest.EXAMPLE));
+		wheel.addDAG(TaskDAG.load(SimulatorTest.EXAMPLE));
+		wheel.run();
+		assertTrue(wheel.isFinished());
+		assertEquals(expected, SimulatorTest.describeAttempts(wheel));
+	}
+}
@@ -0,0 +1,738 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Simulator unit tests.
+ */
+public class SimulatorTest extends TestCase {
+	/** The example task DAG shipped with CES. */
+	static final File EXAMPLE = new File("dag/example.json");
+	
+	/**
+	 * Creates the test case.
+	 * @param testName Name of the test case.
+	 */
+	public SimulatorTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Test a suite of tests.
+	 * @return the suite of tests being tested.
+	 */
+	public static Test suite() {
+		return new TestSuite(SimulatorTest.class);
+	}
+	
+	/**
+	 * Creates a simulator running two example task DAGs on a single node.
+	 */
+	static Simulator createSimulator() {
+		Simulator simulator = new Simulator(42L);
+		Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+		simulator.addContainer(node, node.getCapacity());
+		simulator.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		simulator.addDAG(TaskDAG.load(EXAMPLE));
+		simulator.addDAG(TaskDAG.load(EXAMPLE));
+		return simulator;
+	}
+	
+	/**
+	 * Describes the execution attempts of all the tasks of a simulation.
+	 */
+	static String describeAttempts(Simulator simulator) {
+		return describeAttempts(simulator.getDAGs());
+	}
+	
+	/**
+	 * Describes the execution attempts of all the tasks of some task DAGs.
+	 */
+	static String describeAttempts(List<TaskDAG> dags) {
+		StringBuilder builder = new StringBuilder();
+		for (TaskDAG dag : dags) {
+			for (Task task : dag.getTasks()) {
+				for (TaskExecutionRecord attempt : task.getExecutionAttempts()) {
+					builder.append(attempt).append(" c=")
+							.append(attempt.getContainer().getId()).append('\n');
+				}
+			}
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Tests that all the tasks are run, some of them being preempted.
+	 */
+	public void testRun() {
+		Simulator simulator = createSimulator();
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		assertTrue(describeAttempts(simulator).contains("p=true"));
+	}
+	
+	/**
+	 * Tests that replaying a decision log reproduces the recorded simulation, and that
+	 * the simulation goes on identically after the replay.
+	 */
+	public void testReplay() throws IOException {
+		File log = File.createTempFile("decisions", ".log");
+		log.deleteOnExit();
+		Simulator recorded = createSimulator();
+		recorded.recordDecisions(log);
+		recorded.run();
+		
+		Simulator replayed = createSimulator();
+		replayed.replay(log, 40);
+		assertTrue(Simulator.getTime() <= 40);
+		assertFalse(replayed.isFinished());
+		replayed.run();
+		assertTrue(replayed.isFinished());
+		assertEquals(describeAttempts(recorded), describeAttempts(replayed));
+	}
+	
+	/**
+	 * Tests that spilled execution attempts are counted but no longer kept in the tasks.
+	 */
+	public void testSpilledAttempts() throws IOException {
+		File file = File.createTempFile("trace", ".bin");
+		file.deleteOnExit();
+		Simulator simulator = createSimulator();
+		simulator.spillExecutionAttempts(file);
+		simulator.run();
+		int attempts = 0;
+		int preemptions = 0;
+		for (TaskDAG dag : simulator.getDAGs()) {
+			for (Task task : dag.getTasks()) {
+				assertTrue(task.getExecutionAttempts().isEmpty());
+				attempts += task.getExecutionAttemptCount();
+				preemptions += task.getPreemptionCount();
+			}
+		}
+		assertTrue(preemptions > 0);
+		assertEquals(8 + attempts * ExecutionTraceWriter.RECORD_SIZE, file.length());
+	}
+	
+	/**
+	 * Tests the remaining critical path estimate of a task DAG during a simulation.
+	 */
+	public void testRemainingMakespan() {
+		Simulator simulator = createSimulator();
+		simulator.setPreemptionPolicy(new DelayAwarePreemptionPolicy());
+		TaskDAG dag = simulator.getDAGs().get(0);
+		assertEquals(53, dag.getRemainingMakespan());
+		simulator.run(20);
+		// E is the critical task which follows A
+		assertTrue(dag.getRemainingMakespan() >= 33);
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		assertEquals(0, dag.getRemainingMakespan());
+	}
+	
+	/**
+	 * Tests that a multi-level feedback queue serves the highest levels first and
+	 * promotes the waiting tasks as time goes by.
+	 */
+	public void testMultilevelFeedbackQueue() {
+		Simulator simulator = createSimulator();
+		MultilevelFeedbackQueue queue = new MultilevelFeedbackQueue(4, 10);
+		simulator.setReadyQueue(queue);
+		assertEquals(6, queue.size());
+		Task head = queue.peek();
+		for (Task task : queue) {
+			assertTrue(queue.getLevel(head) <= queue.getLevel(task));
+		}
+		simulator.run(20);
+		int waiting = 0;
+		for (Task task : queue) {
+			int readyDate = task.getExecutionContext().getReadyDate();
+			int promotions = Simulator.getTime() / 10 - readyDate / 10;
+			assertEquals(Math.max(0, queue.getBaseLevel(task) - promotions),
+					queue.getLevel(task));
+			waiting++;
+		}
+		assertTrue(waiting > 0);
+		assertEquals(queue.size(), waiting);
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		assertTrue(queue.isEmpty());
+	}
+	
+	/**
+	 * Tests that the availability profile finds the holes long enough for a task, and
+	 * that backfilled simulations run every task.
+	 */
+	public void testBackfilling() {
+		int now = Simulator.getTime();
+		AvailabilityProfile profile = new AvailabilityProfile();
+		profile.addCapacity(new ResourceDescriptor(16, 32768));
+		profile.reserve("a", now, now + 10, new ResourceDescriptor(12, 1024));
+		profile.reserve("b", now + 20, now + 30, new ResourceDescriptor(16, 1024));
+		assertEquals(now, profile.getEarliestStart(now, 5, new ResourceDescriptor(4, 1)));
+		assertEquals(now + 10,
+				profile.getEarliestStart(now, 5, new ResourceDescriptor(8, 1)));
+		assertEquals(now + 30,
+				profile.getEarliestStart(now, 15, new ResourceDescriptor(8, 1)));
+		assertEquals(-1, profile.getEarliestStart(now, 1, new ResourceDescriptor(17, 1)));
+		profile.release("a", now);
+		assertEquals(now, profile.getEarliestStart(now, 20, new ResourceDescriptor(8, 1)));
+		assertEquals(now + 1000,
+				profile.getEarliestStart(now + 1000, 5000, new ResourceDescriptor(16, 1)));
+		
+		// the profile grows with its intervals, not with how far in the future they end
+		AvailabilityProfile distant = new AvailabilityProfile();
+		distant.addCapacity(new ResourceDescriptor(16, 32768));
+		distant.reserve("a", now, now + 3600000, new ResourceDescriptor(16, 1));
+		distant.reserve("b", now + 3600000, Integer.MAX_VALUE - 1,
+				new ResourceDescriptor(8, 1));
+		assertEquals(3, distant.getStepCount());
+		assertEquals(now + 3600000,
+				distant.getEarliestStart(now, 1200000000, new ResourceDescriptor(8, 1)));
+		assertEquals(Integer.MAX_VALUE - 1,
+				distant.getEarliestStart(now, 1, new ResourceDescriptor(9, 1)));
+		distant.release("b", now + 3600000);
+		distant.release("a", now);
+		assertEquals(0, distant.getStepCount());
+		
+		for (BackfillMode mode : new BackfillMode[] {BackfillMode.EASY,
+				BackfillMode.CONSERVATIVE}) {
+			Simulator simulator = createSimulator();
+			simulator.setPreemptionPolicy(null);
+			simulator.setBackfilling(mode, 0);
+			simulator.run();
+			assertTrue(simulator.isFinished());
+			assertTrue(simulator.getReservationCount() > 0);
+			assertEquals(0, simulator.getAvailabilityProfile().getIntervalCount());
+		}
+	}
+	
+	/**
+	 * Tests that preempted containers are torn down and restarted tasks warm up
+	 * before running, every overhead being accounted.
+	 */
+	public void testPreemptionCost() {
+		Simulator simulator = createSimulator();
+		simulator.setPreemptionCostModel(new PreemptionCostModel(3, 2, 1, 4));
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		long tasks = 0;
+		long attempts = 0;
+		long preemptions = 0;
+		for (TaskDAG dag : simulator.getDAGs()) {
+			for (Task task : dag.getTasks()) {
+				tasks++;
+				attempts += task.getExecutionAttemptCount();
+				preemptions += task.getPreemptionCount();
+			}
+		}
+		assertTrue(preemptions > 0);
+		assertEquals(3 * preemptions, simulator.getTeardownTime());
+		assertEquals(2 * (attempts - tasks), simulator.getWarmUpTime());
+		assertTrue(simulator.getFetchTime() <= 4 * (attempts - tasks));
+		for (Container container : simulator.getContainers()) {
+			assertEquals(0, container.getResourcesUsed().getVcores());
+		}
+	}
+	
+	/**
+	 * Tests that the tasks of a gang start together once they all fit, rather than one
+	 * of them holding a container alone.
+	 */
+	public void testGangScheduling() throws JSONException {
+		Simulator simulator = new Simulator(42L);
+		Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+		simulator.addContainer(node, node.getCapacity());
+		simulator.addDAG(new TaskDAG(new JSONObject("{\"name\": \"gang\", \"tasks\": ["
+				+ "{\"name\": \"X\", \"duration\": 10, \"requiredResources\": [8, 1024]},"
+				+ "{\"name\": \"Y\", \"duration\": 5, \"requiredResources\": [6, 1024],"
+				+ " \"group\": \"mpi\"},"
+				+ "{\"name\": \"Z\", \"duration\": 5, \"requiredResources\": [6, 1024],"
+				+ " \"group\": \"mpi\"}]}")));
+		TaskDAG dag = simulator.getDAGs().get(0);
+		assertEquals(2, dag.getGang(dag.getTasks().get(1)).size());
+		assertNull(dag.getGang(dag.getTasks().get(0)));
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		// X runs first, and Y would fit beside it but not Z
+		assertTrue(simulator.getGangRollbackCount() > 0);
+		assertEquals(1, simulator.getGangStartCount());
+		for (Task task : dag.getGang(dag.getTasks().get(1))) {
+			assertEquals(1, task.getExecutionAttempts().size());
+			assertEquals(10, task.getExecutionAttempts().get(0).getStartDate());
+		}
+	}
+	
+	/**
+	 * Tests that a node refuses a container larger than its resources left, and that
+	 * a task which does not fit in a container is not started in it.
+	 */
+	public void testRefusedPlacement() throws JSONException {
+		Simulator simulator = new Simulator(42L);
+		Node node = simulator.addNode(new ResourceDescriptor(4, 32768));
+		assertNull(simulator.addContainer(node, new ResourceDescriptor(16, 32768)));
+		assertTrue(simulator.getContainers().isEmpty());
+		Container container = simulator.addContainer(node, node.getCapacity());
+		assertNotNull(container);
+		simulator.addDAG(new TaskDAG(new JSONObject("{\"name\": \"large\", \"tasks\": ["
+				+ "{\"name\": \"X\", \"duration\": 10, \"requiredResources\": [8, 1024]}]}")));
+		Task task = simulator.getDAGs().get(0).getTasks().get(0);
+		simulator.startTask(task, container);
+		assertEquals(TaskStatus.READY, task.getStatus());
+		assertTrue(task.getExecutionAttempts().isEmpty());
+		assertTrue(container.getTasks().isEmpty());
+	}
+	
+	/**
+	 * Tests that a scheduling stops once its window is full of waiting tasks, leaving
+	 * the lower priority tasks in the ready queue until the next scheduling.
+	 */
+	public void testSchedulingWindow() throws JSONException {
+		for (int window : new int[] {1, Simulator.DEFAULT_SCHEDULING_WINDOW}) {
+			Simulator simulator = new Simulator(42L);
+			Node node = simulator.addNode(new ResourceDescriptor(12, 32768));
+			simulator.addContainer(node, node.getCapacity());
+			simulator.setSchedulingWindow(window);
+			simulator.addDAG(new TaskDAG(new JSONObject("{\"name\": \"window\", \"tasks\": ["
+					+ "{\"name\": \"A\", \"duration\": 10, \"requiredResources\": [8, 1024]},"
+					+ "{\"name\": \"B\", \"duration\": 10, \"requiredResources\": [8, 1024]},"
+					+ "{\"name\": \"C\", \"duration\": 5, \"requiredResources\": [4, 1024]}]}")));
+			simulator.scheduleReadyTasks();
+			List<Task> tasks = simulator.getDAGs().get(0).getTasks();
+			assertEquals(TaskStatus.RUNNING, tasks.get(0).getStatus());
+			assertEquals(TaskStatus.READY, tasks.get(1).getStatus());
+			assertEquals(window == 1 ? TaskStatus.READY : TaskStatus.RUNNING,
+					tasks.get(2).getStatus());
+			simulator.run();
+			assertTrue(simulator.isFinished());
+		}
+	}
+	
+	/**
+	 * Tests that the results of a run are read from the cache once its inputs were
+	 * simulated, whatever the name and the formatting of the scenario, and that the
+	 * least recently used entries are evicted.
+	 */
+	public void testResultCache() throws IOException, JSONException {
+		File directory = File.createTempFile("cache", "");
+		assertTrue(directory.delete() && directory.mkdir());
+		ResultCache cache = new ResultCache(directory, 1L << 20);
+		Scenario scenario = new Scenario(new JSONObject("{\"name\": \"first\","
+				+ " \"cluster\": [{\"capacity\": [16, 32768]}],"
+				+ " \"workload\": {\"dags\": [\"example.json\"], \"copies\": 2}}"),
+				new File("dag"), null);
+		JSONObject simulated = scenario.run(42L, cache);
+		assertFalse(simulated.getBoolean("cached"));
+		assertEquals(1, cache.getEntryCount());
+		Scenario renamed = new Scenario(new JSONObject("{\"workload\": {\"copies\": 2,"
+				+ " \"dags\": [\"example.json\"]}, \"name\": \"second\","
+				+ " \"cluster\": [{\"capacity\": [16.0, 32768]}]}"), new File("dag"), null);
+		JSONObject cached = renamed.run(42L, cache);
+		assertTrue(cached.getBoolean("cached"));
+		assertEquals("second", cached.getString("scenario"));
+		assertEquals(simulated.getLong("makespan"), cached.getLong("makespan"));
+		assertEquals(simulated.getLong("attempts"), cached.getLong("attempts"));
+		assertFalse(scenario.run(43L, cache).getBoolean("cached"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		
+		// reopening the cache indexes its entries, evicting them down to its size
+		ResultCache reopened = new ResultCache(directory, cache.getSize() - 1);
+		assertEquals(1, reopened.getEntryCount());
+		assertTrue(reopened.getSize() < cache.getSize());
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	/**
+	 * Tests that a full cache evicts its least recently used entry, not its oldest one.
+	 */
+	public void testResultCacheEviction() throws IOException, JSONException {
+		File directory = File.createTempFile("cache", "");
+		assertTrue(directory.delete() && directory.mkdir());
+		// every entry takes 7 bytes, so that only two of them fit
+		ResultCache cache = new ResultCache(directory, 20L);
+		cache.put("a", new JSONObject("{\"v\": 1}"), null);
+		cache.put("b", new JSONObject("{\"v\": 2}"), null);
+		assertEquals(1, cache.get("a", null).getInt("v"));
+		cache.put("c", new JSONObject("{\"v\": 3}"), null);
+		assertEquals(2, cache.getEntryCount());
+		assertNull(cache.get("b", null));
+		assertEquals(1, cache.get("a", null).getInt("v"));
+		assertEquals(3, cache.get("c", null).getInt("v"));
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	/**
+	 * Tests that the scenarios of a directory run in parallel as they run serially.
+	 */
+	public void testScenarioBatch() throws IOException, JSONException {
+		ScenarioBatch batch = new ScenarioBatch();
+		assertTrue(batch.add(new File("dag")));
+		assertEquals(1, batch.getScenarios().size());
+		StringWriter serial = new StringWriter();
+		StringWriter parallel = new StringWriter();
+		assertEquals(0, batch.run(1, serial));
+		assertEquals(0, batch.run(2, parallel));
+		String[] expected = serial.toString().split("\n");
+		String[] actual = parallel.toString().split("\n");
+		assertEquals(2, actual.length);
+		for (int i = 0; i < actual.length; i++) {
+			JSONObject results = new JSONObject(actual[i]);
+			assertTrue(results.getBoolean("finished"));
+			assertEquals(44, results.getLong("tasks"));
+			for (String key : new String[] {"seed", "makespan", "attempts",
+					"preemptions"}) {
+				assertEquals(new JSONObject(expected[i]).getLong(key),
+						results.getLong(key));
+			}
+		}
+		
+		// an invalid setting stops the run with an error instead of being ignored
+		Scenario invalid = new Scenario(new JSONObject("{\"cluster\": [{\"capacity\":"
+				+ " [16, 32768]}], \"workload\": {\"dags\": [\"example.json\"]},"
+				+ " \"scheduler\": {\"retention\": \"partial\"}}"), new File("dag"), null);
+		assertEquals("Unknown retention partial", invalid.run(1L).getString("error"));
+	}
+	
+	/**
+	 * Tests that nested phases are accounted to their stack, and that a profiled batch
+	 * writes a summary and collapsed stacks per run.
+	 */
+	public void testProfiler() throws IOException, InterruptedException {
+		SimulationProfiler profiler = new SimulationProfiler();
+		profiler.enter(ProfilerPhase.EVENT);
+		profiler.enter(ProfilerPhase.READINESS);
+		profiler.exit();
+		profiler.enter(ProfilerPhase.READINESS);
+		profiler.exit();
+		profiler.exit();
+		assertEquals(1, profiler.getCallCount(ProfilerPhase.EVENT));
+		assertEquals(2, profiler.getCallCount(ProfilerPhase.READINESS));
+		assertEquals(0, profiler.getCallCount(ProfilerPhase.PLACEMENT));
+		// the profiler of the tests is only set when they run profiled
+		assertEquals(SimulationProfiler.ENABLED, createSimulator().getProfiler() != null);
+		
+		File directory = File.createTempFile("profile", "");
+		assertTrue(directory.delete() && directory.mkdir());
+		File results = new File(directory, "results.jsonl");
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-D" + SimulationProfiler.PROPERTY + "=" + directory.getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Simulator.class.getName());
+		command.add("-o");
+		command.add(results.getPath());
+		command.add("dag/example.scenario.json");
+		Process process = new ProcessBuilder(command)
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		try {
+			assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+			assertEquals(0, process.exitValue());
+			int profiles = 0;
+			for (File file : directory.listFiles()) {
+				if (file.getName().endsWith(".alloc.collapsed")) {
+					continue;
+				}
+				if (file.getName().endsWith(".collapsed")) {
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(new FileInputStream(file), "UTF-8"));
+					String stacks = "";
+					for (String line = reader.readLine(); line != null;
+							line = reader.readLine()) {
+						assertTrue(line, line.matches("[a-z]+(;[a-z]+)* \\d+"));
+						stacks += line + "\n";
+					}
+					reader.close();
+					assertTrue(stacks, stacks.contains("event;readiness "));
+					assertTrue(stacks, stacks.contains("placement "));
+					profiles++;
+				}
+			}
+			assertEquals(2, profiles);
+		} finally {
+			process.destroyForcibly();
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+	
+	/**
+	 * Tests that the dominant shares follow the tasks run by the containers.
+	 */
+	public void testDominantShares() {
+		Simulator simulator = createSimulator();
+		simulator.setPreemptionPolicy(new DominantSharePreemptionPolicy());
+		simulator.getDAGs().get(0).setOwner("alice");
+		simulator.getDAGs().get(1).setOwner("bob");
+		TenantShareTracker shares = simulator.getShareTracker();
+		simulator.run(20);
+		long vcores = 0;
+		for (Task task : simulator.getContainers().get(0).getTasks()) {
+			if (task.getDAG().getOwner().equals("alice")) {
+				vcores += task.getRequiredResources().getVcores();
+			}
+		}
+		assertEquals(vcores, shares.getTenant("alice").getUsage(ResourceDimensions.VCORES));
+		Tenant top = shares.getMostOverShareTenant();
+		assertTrue(top.getDominantShare() >= shares.getTenant("alice").getDominantShare());
+		assertTrue(top.getDominantShare() >= shares.getTenant("bob").getDominantShare());
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		assertEquals(0.0, shares.getMostOverShareTenant().getDominantShare());
+	}
+	
+	/**
+	 * Tests that the tasks killed by node failures are run again once nodes recover.
+	 */
+	public void testNodeFailures() {
+		Simulator simulator = createSimulator();
+		Node node = simulator.addNode(new ResourceDescriptor(8, 16384));
+		node.setRack(0);
+		simulator.addContainer(node, node.getCapacity());
+		new FailureInjector(15.0, 5.0, 0.5).start(simulator);
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		int failures = 0;
+		for (TaskDAG dag : simulator.getDAGs()) {
+			for (Task task : dag.getTasks()) {
+				failures += task.getFailureCount();
+			}
+		}
+		assertTrue(failures > 0);
+		assertTrue(describeAttempts(simulator).contains("f=true"));
+	}
+	
+	/**
+	 * Creates a simulator whose tasks straggle and are speculated on a second node.
+	 */
+	static Simulator createSpeculativeSimulator() {
+		Simulator simulator = createSimulator();
+		Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+		simulator.addContainer(node, node.getCapacity());
+		simulator.setDurationModel(new StragglerDurationModel(
+				new LognormalDurationModel(0.3), 0.3, 4.0));
+		simulator.setSpeculation(1.5);
+		return simulator;
+	}
+	
+	/**
+	 * Tests that stragglers get backup attempts and that speculative simulations with
+	 * random durations are replayed identically.
+	 */
+	public void testSpeculation() throws IOException {
+		File log = File.createTempFile("decisions", ".log");
+		log.deleteOnExit();
+		Simulator recorded = createSpeculativeSimulator();
+		recorded.recordDecisions(log);
+		recorded.run();
+		assertTrue(recorded.isFinished());
+		assertTrue(recorded.getBackupAttemptCount() > 0);
+		assertTrue(recorded.getBackupWinCount() <= recorded.getBackupAttemptCount());
+		
+		Simulator replayed = createSpeculativeSimulator();
+		replayed.replay(log, 40);
+		replayed.run();
+		assertTrue(replayed.isFinished());
+		assertEquals(describeAttempts(recorded), describeAttempts(replayed));
+	}
+	
+	/**
+	 * Tests that the report of a spilled simulation holds every attempt.
+	 */
+	public void testExecutionReport() throws IOException {
+		File trace = File.createTempFile("trace", ".bin");
+		trace.deleteOnExit();
+		Simulator simulator = createSimulator();
+		simulator.spillExecutionAttempts(trace);
+		simulator.run();
+		File directory = new File(trace.getPath() + ".report");
+		ExecutionReport report = new ExecutionReport(simulator, directory, 5, 4.0);
+		report.addTrace(trace);
+		report.finish();
+		
+		int attempts = 0;
+		for (TaskDAG dag : simulator.getDAGs()) {
+			for (Task task : dag.getTasks()) {
+				attempts += task.getExecutionAttemptCount();
+			}
+		}
+		assertEquals(attempts, report.getAttemptCount());
+		String[] files = { "gantt.csv", "gantt.svg", "utilisation.csv", "index.html" };
+		for (String name : files) {
+			File file = new File(directory, name);
+			assertTrue(file.length() > 0);
+			file.delete();
+		}
+		assertTrue(directory.delete());
+	}
+	
+	/**
+	 * Creates a sharded simulation of 8 nodes in 4 shards, whose task DAGs all hold
+	 * their data in two of the shards.
+	 */
+	static ShardedSimulator createShardedSimulator(int shardCount) {
+		ShardedSimulator simulator = new ShardedSimulator(shardCount, 42L);
+		for (int i = 0; i < 8; i++) {
+			Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+			simulator.addContainer(node, node.getCapacity());
+		}
+		simulator.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		for (int i = 0; i < 12; i++) {
+			simulator.addDAG(TaskDAG.load(EXAMPLE));
+		}
+		return simulator;
+	}
+	
+	/**
+	 * Tests that a single shard runs like a simulator, and that the shards of a
+	 * sharded simulation share their load and give the same result whatever the
+	 * number of threads.
+	 */
+	public void testShardedSimulation() {
+		Simulator simulator = createSimulator();
+		simulator.run();
+		ShardedSimulator single = new ShardedSimulator(1, 42L);
+		Node node = single.addNode(new ResourceDescriptor(16, 32768));
+		single.addContainer(node, node.getCapacity());
+		single.setPreemptionPolicy(new PriorityPreemptionPolicy());
+		single.addDAG(TaskDAG.load(EXAMPLE));
+		single.addDAG(TaskDAG.load(EXAMPLE));
+		single.run(1);
+		assertTrue(single.isFinished());
+		assertEquals(describeAttempts(simulator), describeAttempts(single.getDAGs()));
+		
+		ShardedSimulator sequential = createShardedSimulator(4);
+		sequential.run(1);
+		assertTrue(sequential.isFinished());
+		assertTrue(sequential.getMigrationCount() > 0);
+		ShardedSimulator parallel = createShardedSimulator(4);
+		parallel.run(4);
+		assertTrue(parallel.isFinished());
+		assertEquals(sequential.getTime(), parallel.getTime());
+		assertEquals(describeAttempts(sequential.getDAGs()),
+				describeAttempts(parallel.getDAGs()));
+	}
+	
+	/**
+	 * Tests that a simulation split across three local processes runs all the tasks.
+	 * The output of every process is read once it exits, so that a hung process fails
+	 * the test instead of blocking it.
+	 */
+	public void testDistributedSimulation() throws IOException, InterruptedException {
+		int port = findFreePorts(3);
+		ArrayList<Process> processes = new ArrayList<Process>();
+		ArrayList<File> outputs = new ArrayList<File>();
+		try {
+			for (int rank = 0; rank < 3; rank++) {
+				ArrayList<String> command = new ArrayList<String>();
+				command.add(System.getProperty("java.home") + File.separator + "bin"
+						+ File.separator + "java");
+				command.add("-cp");
+				command.add(System.getProperty("java.class.path"));
+				command.add(DistributedSimulator.class.getName());
+				command.add(String.valueOf(rank));
+				command.add("3");
+				command.add(String.valueOf(port));
+				command.add("6");
+				command.add("16");
+				command.add("32768");
+				for (int i = 0; i < 6; i++) {
+					command.add(EXAMPLE.getPath());
+				}
+				File output = File.createTempFile("rank" + rank, ".out");
+				outputs.add(output);
+				processes.add(new ProcessBuilder(command).redirectOutput(output)
+						.redirectError(ProcessBuilder.Redirect.INHERIT).start());
+			}
+			int tasks = 0;
+			for (int rank = 0; rank < 3; rank++) {
+				Process process = processes.get(rank);
+				assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+				assertEquals(0, process.exitValue());
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						new FileInputStream(outputs.get(rank)), "UTF-8"));
+				String line = reader.readLine();
+				reader.close();
+				assertNotNull(line);
+				assertTrue(line, line.contains("finished=true"));
+				tasks += Integer.parseInt(line.replaceAll(".* tasks=(\\d+).*", "$1"));
+			}
+			assertEquals(6 * TaskDAG.load(EXAMPLE).getTasks().size(), tasks);
+		} finally {
+			for (Process process : processes) {
+				process.destroyForcibly();
+			}
+			for (File output : outputs) {
+				output.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Finds consecutive free ports on the loopback interface.
+	 * @param count The number of consecutive ports.
+	 * @return the first port.
+	 */
+	static int findFreePorts(int count) throws IOException {
+		while (true) {
+			ServerSocket probe = new ServerSocket(0);
+			int port = probe.getLocalPort();
+			probe.close();
+			boolean free = port + count <= 65536;
+			for (int i = 1; free && i < count; i++) {
+				try {
+					new ServerSocket(port + i).close();
+				} catch (IOException e) {
+					free = false;
+				}
+			}
+			if (free) {
+				return port;
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Submission queue and workload feed unit tests.
+ */
+public class SubmissionQueueTest extends TestCase {
+	/** The example task DAG shipped with CES. */
+	private static final File EXAMPLE = new File("dag/example.json");
+	
+	/**
+	 * Creates the test case.
+	 * @param testName Name of the test case.
+	 */
+	public SubmissionQueueTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Test a suite of tests.
+	 * @return the suite of tests being tested.
+	 */
+	public static Test suite() {
+		return new TestSuite(SubmissionQueueTest.class);
+	}
+	
+	/**
+	 * Tests that every task DAG submitted by concurrent producers is taken once, in
+	 * the order of each producer.
+	 */
+	public void testConcurrentProducers() throws InterruptedException {
+		final SubmissionQueue queue = new SubmissionQueue();
+		final int producerCount = 4;
+		final int submissionCount = 25000;
+		Thread[] producers = new Thread[producerCount];
+		for (int p = 0; p < producerCount; p++) {
+			final int producer = p;
+			queue.register();
+			producers[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < submissionCount; i++) {
+						TaskDAG dag = new TaskDAG();
+						dag.setName(producer + ":" + i);
+						queue.offer(dag);
+					}
+					queue.deregister();
+				}
+			});
+			producers[p].start();
+		}
+		int[] next = new int[producerCount];
+		int taken = 0;
+		while (queue.isOpen()) {
+			TaskDAG dag = queue.poll();
+			if (dag == null) {
+				continue;
+			}
+			String[] name = dag.getName().split(":");
+			int producer = Integer.parseInt(name[0]);
+			assertEquals(next[producer]++, Integer.parseInt(name[1]));
+			taken++;
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		assertNull(queue.poll());
+		assertEquals(producerCount * submissionCount, taken);
+	}
+	
+	/**
+	 * Tests that a simulation runs the task DAGs read from files by concurrent feeds.
+	 */
+	public void testFileFeeds() throws IOException, JSONException {
+		File file = File.createTempFile("workload", ".jsonl");
+		file.deleteOnExit();
+		InputStreamReader reader = new InputStreamReader(new FileInputStream(EXAMPLE),
+				"UTF-8");
+		String line = new JSONObject(new JSONTokener(reader)).toString();
+		reader.close();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		for (int i = 0; i < 50; i++) {
+			writer.write(line);
+			writer.write('\n');
+		}
+		writer.close();
+		
+		Simulator simulator = SimulatorTest.createSimulator();
+		SubmissionQueue queue = new SubmissionQueue();
+		simulator.setSubmissionQueue(queue);
+		FileTailFeed first = new FileTailFeed(file, queue, false);
+		FileTailFeed second = new FileTailFeed(file, queue, false);
+		first.start();
+		second.start();
+		simulator.run();
+		assertEquals(50, first.getSubmittedCount());
+		assertEquals(50, second.getSubmittedCount());
+		assertEquals(102, simulator.getDAGs().size());
+		assertTrue(simulator.isFinished());
+	}
+}
@@ -0,0 +1,352 @@
+/* 
+ * This source file is part of CES.
+ * 
+ * Copyright(C) 2015 Nicolas Gougeon
+ *
+ * CES is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CES is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CES.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.polytech.hpc.ces;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Task DAG unit tests.
+ */
+public class TaskDAGTest extends TestCase {
+	/** The example task DAG shipped with CES. */
+	private static final File EXAMPLE = new File("dag/example.json");
+	
+	/**
+	 * Creates the test case.
+	 * @param testName Name of the test case.
+	 */
+	public TaskDAGTest(String testName) {
+		super(testName);
+	}
+	
+	/**
+	 * Test a suite of tests.
+	 * @return the suite of tests being tested.
+	 */
+	public static Test suite() {
+		return new TestSuite(TaskDAGTest.class);
+	}
+	
+	/**
+	 * Gets a task of a task DAG from its name.
+	 */
+	private static Task getTask(TaskDAG dag, String name) {
+		for (Task task : dag.getTasks()) {
+			if (task.getName().equals(dag.getName() + "." + name)) {
+				return task;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Tests the starting dates and the priorities computed when loading a task DAG.
+	 */
+	public void testLoad() {
+		TaskDAG dag = TaskDAG.load(EXAMPLE);
+		assertNotNull(dag);
+		assertEquals(11, dag.getTasks().size());
+		assertEquals(53, dag.getMakespan());
+		TaskExecutionContext e = getTask(dag, "E").getExecutionContext();
+		assertEquals(20, e.getMinStartDate().intValue());
+		assertEquals(20, e.getMaxStartDate().intValue());
+		assertEquals(1.0, e.getPriority(), 1e-9);
+		TaskExecutionContext k = getTask(dag, "K").getExecutionContext();
+		assertEquals(24, k.getMinStartDate().intValue());
+		assertEquals(48, k.getMaxStartDate().intValue());
+		assertTrue(k.getPriority() < 1.0);
+		assertEquals(3, dag.drainReadyTasks().size());
+		assertEquals(TaskStatus.PENDING, getTask(dag, "I").getStatus());
+	}
+	
+	/**
+	 * Tests that tasks added one by one are linked to their parents, even ready ones,
+	 * and only attached to the task DAG once added.
+	 */
+	public void testAddTask() {
+		TaskDAG dag = new TaskDAG();
+		dag.setName("added");
+		Task first = new Task("t1", new ResourceDescriptor(1, 1), null, 5,
+				new ArrayList<Task>(), new ArrayList<Task>(), dag);
+		assertNull(first.getDAG());
+		dag.addTask(first);
+		assertSame(dag, first.getDAG());
+		assertEquals(TaskStatus.READY, first.getStatus());
+		ArrayList<Task> parents = new ArrayList<Task>();
+		parents.add(first);
+		Task second = new Task("t2", new ResourceDescriptor(1, 1), null, 3, parents,
+				new ArrayList<Task>(), dag);
+		assertNull(second.getDAG());
+		assertEquals(-1, second.getId());
+		dag.addTask(second);
+		assertEquals(1, second.getId());
+		assertEquals(1, first.getChildTasks().size());
+		assertEquals(TaskStatus.PENDING, second.getStatus());
+		assertEquals(8, dag.getMakespan());
+		
+		Simulator simulator = new Simulator(42L);
+		Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+		simulator.addContainer(node, node.getCapacity());
+		simulator.addDAG(dag);
+		simulator.run();
+		assertTrue(simulator.isFinished());
+		assertEquals(5, second.getExecutionAttempts().get(0).getStartDate());
+	}
+	
+	/**
+	 * Tests that loading many task DAGs concurrently merges all their ready tasks.
+	 */
+	public void testParallelLoad() {
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i = 0; i < 64; i++) {
+			files.add(EXAMPLE);
+		}
+		Simulator simulator = new Simulator();
+		simulator.loadDAGs(files);
+		assertEquals(64, simulator.getDAGs().size());
+		assertEquals(64 * 3, simulator.getReadyTasks().size());
+		simulator.updateDAGs();
+		assertEquals(64 * 3, simulator.getReadyTasks().size());
+		assertEquals(1.0, simulator.getReadyTasks().peek().getCriticity(), 1e-9);
+	}
+	
+	/**
+	 * Tests that a compiled task DAG is mapped with the same structure and dates.
+	 */
+	public void testCompiledDAG() throws IOException {
+		File compiled = File.createTempFile("example", MappedTaskDAG.FILE_EXTENSION);
+		compiled.deleteOnExit();
+		assertTrue(TaskDAGCompiler.compile(EXAMPLE, compiled));
+		TaskDAG dag = TaskDAG.load(compiled);
+		assertTrue(dag instanceof MappedTaskDAG);
+		assertEquals("example", dag.getName());
+		assertEquals(53, dag.getMakespan());
+		assertEquals(3, dag.drainReadyTasks().size());
+		Task e = getTask(dag, "E");
+		assertEquals(27, e.getDuration());
+		assertEquals(10, e.getRequiredResources().getVcores());
+		assertEquals(2, e.getDataNodeId().intValue());
+		assertEquals("example.A", e.getParentTasks().get(0).getName());
+		assertEquals("example.I", e.getChildTasks().get(0).getName());
+		assertEquals(20, e.getExecutionContext().getMaxStartDate().intValue());
+		assertEquals(getTask(TaskDAG.load(EXAMPLE), "E").getExecutionContext().getPriority(),
+				e.getExecutionContext().getPriority(), 1e-9);
+		assertNull(getTask(dag, "B").getDataNodeId());
+		e.setDuration(1);
+		assertEquals(27, e.getDuration());
+		
+		// a file compiled with other resource dimensions is rejected
+		RandomAccessFile output = new RandomAccessFile(compiled, "rw");
+		output.seek(MappedTaskDAG.HEADER_DIMENSION_COUNT);
+		output.writeInt(ResourceDimensions.getCount() + 1);
+		output.close();
+		assertNull(MappedTaskDAG.load(compiled));
+	}
+	
+	/**
+	 * Tests that the tasks of a compiled task DAG are flyweight views which keep their
+	 * state off the heap, and which are simulated as the tasks of a loaded DAG.
+	 */
+	public void testMappedTaskViews() throws IOException {
+		File compiled = File.createTempFile("example", MappedTaskDAG.FILE_EXTENSION);
+		compiled.deleteOnExit();
+		assertTrue(TaskDAGCompiler.compile(EXAMPLE, compiled));
+		MappedTaskDAG dag = (MappedTaskDAG) TaskDAG.load(compiled);
+		assertNotSame(getTask(dag, "I"), getTask(dag, "I"));
+		assertSame(getTask(dag, "A"), dag.drainReadyTasks().get(0));
+		assertEquals(2, getTask(dag, "I").getExecutionContext().getUnfinishedParentCount());
+		
+		Simulator loaded = new Simulator(42L);
+		Simulator mapped = new Simulator(42L);
+		for (Simulator simulator : new Simulator[] {loaded, mapped}) {
+			Node node = simulator.addNode(new ResourceDescriptor(16, 32768));
+			simulator.addContainer(node, node.getCapacity());
+			simulator.setPreemptionPolicy(new PriorityPreemptionPolicy());
+			simulator.setAttemptRetention(AttemptRetention.AGGREGATE);
+			for (int i = 0; i < 2; i++) {
+				simulator.addDAG(simulator == loaded ? TaskDAG.load(EXAMPLE)
+						: TaskDAG.load(compiled));
+			}
+			simulator.run();
+			assertTrue(simulator.isFinished());
+		}
+		for (int i = 0; i < 2; i++) {
+			TaskDAG expected = loaded.getDAGs().get(i);
+			TaskDAG actual = mapped.getDAGs().get(i);
+			for (Task task : expected.getTasks()) {
+				Task view = getTask(actual, task.getLocalName());
+				assertEquals(TaskStatus.FINISHED, view.getStatus());
+				assertEquals(task.getExecutionAttemptCount(),
+						view.getExecutionAttemptCount());
+				assertEquals(task.getPreemptionCount(), view.getPreemptionCount());
+				assertEquals(task.getWastedTime(), view.getWastedTime());
+			}
+		}
+	}
+	
+	/**
+	 * Tests that the levels updated along the paths of a modified task match those
+	 * computed from scratch, whether the makespan changes or not.
+	 */
+	public void testIncrementalCriticality() {
+		TaskDAG dag = TaskDAG.load(EXAMPLE);
+		CriticalityEngine criticality = dag.getCriticality();
+		Task d = getTask(dag, "D");
+		d.setDuration(d.getDuration() + 5);
+		assertEquals(53, dag.getMakespan());
+		assertTrue(criticality.getRecomputedCount() < dag.getTasks().size());
+		assertSameLevels(dag);
+		Task e = getTask(dag, "E");
+		e.setDuration(e.getDuration() + 5);
+		assertEquals(58, dag.getMakespan());
+		assertEquals(0, criticality.getSlack(e));
+		assertSameLevels(dag);
+		getTask(dag, "K").addParentTask(d);
+		d.addChildTask(getTask(dag, "K"));
+		assertSameLevels(dag);
+		criticality.setDownstreamWeight(1.0);
+		assertEquals((double) criticality.getBottomLevel(e) / dag.getMakespan(),
+				e.getCriticity(), 1e-9);
+	}
+	
+	/**
+	 * Asserts that the starting dates and priorities of the tasks of a task DAG do not
+	 * change when they are computed from scratch.
+	 */
+	private static void assertSameLevels(TaskDAG dag) {
+		int size = dag.getTasks().size();
+		int[] minStartDates = new int[size];
+		int[] maxStartDates = new int[size];
+		double[] priorities = new double[size];
+		for (Task task : dag.getTasks()) {
+			minStartDates[task.getId()] = task.getExecutionContext().getMinStartDate();
+			maxStartDates[task.getId()] = task.getExecutionContext().getMaxStartDate();
+			priorities[task.getId()] = task.getCriticity();
+		}
+		int makespan = dag.getMakespan();
+		dag.update();
+		assertEquals(makespan, dag.getMakespan());
+		for (Task task : dag.getTasks()) {
+			assertEquals(minStartDates[task.getId()],
+					task.getExecutionContext().getMinStartDate().intValue());
+			assertEquals(maxStartDates[task.getId()],
+					task.getExecutionContext().getMaxStartDate().intValue());
+			assertEquals(priorities[task.getId()], task.getCriticity(), 1e-9);
+		}
+	}
+	
+	/**
+	 * Tests that the validation reports every kind of error, and finds a cycle in a
+	 * long chain of tasks without recursion.
+	 */
+	public void testValidation() throws JSONException {
+		TaskDAGValidator validator = new TaskDAGValidator();
+		validator.addNodeCapacity(new ResourceDescriptor(16, 32768));
+		DAGValidationReport report = validator.validate(new JSONObject("{\"name\": \"bad\","
+				+ " \"tasks\": ["
+				+ "{\"name\": \"A\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"parentTasks\": [\"C\"]},"
+				+ "{\"name\": \"B\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"parentTasks\": [\"A\"]},"
+				+ "{\"name\": \"C\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"parentTasks\": [\"B\"]},"
+				+ "{\"name\": \"D\", \"duration\": 1, \"requiredResources\": [32, 1],"
+				+ " \"parentTasks\": [\"X\"]},"
+				+ "{\"name\": \"D\", \"duration\": 0, \"requiredResources\": [1, 1]}]}"));
+		assertFalse(report.isValid());
+		assertEquals(1, report.getCount(DAGValidationError.CYCLE));
+		assertEquals(1, report.getCount(DAGValidationError.DANGLING_PARENT));
+		assertEquals(1, report.getCount(DAGValidationError.DUPLICATE_NAME));
+		assertEquals(1, report.getCount(DAGValidationError.OVERSIZED_REQUEST));
+		assertEquals(1, report.getCount(DAGValidationError.INVALID_TASK));
+		assertTrue(report.toString().contains("A -> B -> C -> A"));
+		
+		JSONArray chain = new JSONArray();
+		int length = 200000;
+		for (int i = 0; i < length; i++) {
+			chain.put(new JSONObject().put("name", "T" + i).put("duration", 1)
+					.put("requiredResources", new JSONArray().put(1).put(1))
+					.put("parentTasks", new JSONArray().put("T" + ((i + length - 1) % length))));
+		}
+		report = new TaskDAGValidator().validate(new JSONObject().put("name", "chain")
+				.put("tasks", chain));
+		assertEquals(1, report.getCount(DAGValidationError.CYCLE));
+		assertTrue(report.toString().contains(length + " tasks in the cycle"));
+		assertTrue(new TaskDAGValidator().validate(new JSONObject().put("name", "empty")
+				.put("tasks", new JSONArray())).isValid());
+		
+		// a gang depends on itself directly, the other one through the task D
+		report = new TaskDAGValidator().validate(new JSONObject("{\"name\": \"gangs\","
+				+ " \"tasks\": ["
+				+ "{\"name\": \"A\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"group\": \"g\"},"
+				+ "{\"name\": \"B\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"group\": \"g\", \"parentTasks\": [\"A\"]},"
+				+ "{\"name\": \"C\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"group\": \"h\"},"
+				+ "{\"name\": \"D\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"parentTasks\": [\"C\"]},"
+				+ "{\"name\": \"E\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"group\": \"h\", \"parentTasks\": [\"D\"]},"
+				+ "{\"name\": \"F\", \"duration\": 1, \"requiredResources\": [1, 1],"
+				+ " \"parentTasks\": [\"E\"]}]}"));
+		assertEquals(2, report.getCount(DAGValidationError.GANG_DEPENDENCY));
+		assertTrue(report.toString().contains("task B depends on task A of its gang"));
+		assertTrue(report.toString().contains("the gang of task C depends on itself"));
+	}
+	
+	/**
+	 * Tests that the unfinished parent counters follow finished and lost tasks.
+	 */
+	public void testLostTask() {
+		TaskDAG dag = TaskDAG.load(EXAMPLE);
+		dag.drainReadyTasks();
+		Task a = getTask(dag, "A");
+		Task d = getTask(dag, "D");
+		Task i = getTask(dag, "I");
+		assertEquals(2, i.getExecutionContext().getUnfinishedParentCount());
+		dag.onTaskFinished(a);
+		assertEquals(TaskStatus.READY, d.getStatus());
+		assertEquals(2, dag.drainReadyTasks().size());
+		dag.onTaskFinished(d);
+		assertEquals(1, i.getExecutionContext().getUnfinishedParentCount());
+		
+		// A runs again: D goes on, E waits again
+		assertEquals(1, dag.onTaskLost(a).size());
+		assertEquals(TaskStatus.PENDING, getTask(dag, "E").getStatus());
+		assertEquals(1, getTask(dag, "E").getExecutionContext().getUnfinishedParentCount());
+		assertEquals(TaskStatus.READY, a.getStatus());
+		dag.onTaskFinished(a);
+		assertEquals(TaskStatus.READY, getTask(dag, "E").getStatus());
+		assertEquals(0, d.getExecutionContext().getUnfinishedParentCount());
+		assertEquals(1, i.getExecutionContext().getUnfinishedParentCount());
+	}
+}